@@ -47,7 +47,6 @@ import edu.mit.csail.sdg.alloy4.Util;
 import edu.mit.csail.sdg.alloy4.Version;
 import edu.mit.csail.sdg.alloy4.WorkerEngine.WorkerCallback;
 import edu.mit.csail.sdg.alloy4.WorkerEngine.WorkerTask;
-import edu.mit.csail.sdg.alloy4.XMLNode;
 import edu.mit.csail.sdg.alloy4viz.StaticInstanceReader;
 import edu.mit.csail.sdg.alloy4viz.VizGUI;
 import edu.mit.csail.sdg.ast.Command;
@@ -713,7 +712,7 @@ public final class SimpleReporter extends A4Reporter {
      * Validate the given filename to see if it is a valid Alloy XML instance file.
      */
     private static void validate(String filename) throws Exception {
-        A4SolutionReader.read(new ArrayList<Sig>(), new XMLNode(new File(filename))).toString();
+        A4SolutionReader.read(new ArrayList<Sig>(), new File(filename)).toString();
         StaticInstanceReader.parseInstance(new File(filename), 0);
     }
 
@@ -1,5 +1,6 @@
 package org.alloytools.alloy.cli;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FilterInputStream;
 import java.io.FilterOutputStream;
@@ -10,6 +11,7 @@ import java.io.PrintWriter;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -17,6 +19,9 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -133,6 +138,9 @@ public class CLI extends Env {
 		@Description("Find multiple solutions, up to this number. Use 0 for as many as can be found. The default is 1, only the first solution.")
 		int repeat(int deflt);
 
+		@Description("Translate and solve up to this number of commands in parallel. The output is still reported in the order of the commands. The default is 1, the commands are executed one after another.")
+		int parallel(int deflt);
+
 	}
 
 	/**
@@ -232,73 +240,210 @@ public class CLI extends Env {
 
 		String source = IO.collect(file);
 
-		for (Command c : commands) {
+		int parallel = options.parallel(1);
+		if (parallel < 1) {
+			error("The number of parallel commands must be at least 1: %s", parallel);
+			return;
+		}
+		ExecutorService executor = parallel > 1 ? Executors.newFixedThreadPool(parallel) : null;
+		try {
+			List<Future<CommandOutput>> pending = new ArrayList<>();
+			for (Command c : commands) {
 
-			if (!run.test(c)) {
-				trace("ignore command %s", c);
-				continue;
-			}
+				if (!run.test(c)) {
+					trace("ignore command %s", c);
+					continue;
+				}
 
-			CommandDTO commandReceipt = Util.toDTO(c, source);
-			receipt.commands.put(c.label, commandReceipt);
-
-			int index = 0;
-			trace.format("%02d. %-5s %-20s ", n, c.check ? "check" : "run", c.label);
-			String cname = toCName(c);
-
-			try {
-				A4Solution solution = TranslateAlloyToKodkod.execute_commandFromBook(rep, world.getAllReachableSigs(),
-						c, opt);
-
-				if (!solution.satisfiable()) {
-					if (rep.output != null) {
-						trace.format("  %s", cname + "." + ext(rep.output));
-						String path = showTransformerFile(rep.output, outdir, cname);
-						commandReceipt.transformPath = path;
-					} else {
-						trace.format("    0       UNSAT", options.repeat(1));
-						if (c.expects == 1) {
-							trace.format(" expects=%s", c.expects);
-							error("'%s' was not satisfied against expectation",c);
-						}
-					}
+				if (executor == null) {
+					CommandOutput out = new CommandOutput(c, source, trace, stdout, false);
+					receipt.commands.put(c.label, out.receipt);
+					trace.format("%02d. %-5s %-20s ", n, c.check ? "check" : "run", c.label);
+					execute(world, out, opt, options, outdir, repeat);
+					n = report(world, out, trace, options, outdir, receipt, n);
 				} else {
+					// each command gets its own reporter, options and solver, and
+					// buffers its output until the preceding commands are reported
+					A4Options copy = opt.dup();
+					int solutions = repeat;
+					pending.add(executor.submit(() -> {
+						ByteArrayOutputStream console = new ByteArrayOutputStream();
+						CommandOutput out = new CommandOutput(c, source, null, new PrintStream(console, true), true);
+						out.console = console;
+						execute(world, out, copy, options, outdir, solutions);
+						return out;
+					}));
+				}
+			}
+			for (Future<CommandOutput> f : pending) {
+				CommandOutput out = f.get();
+				Command c = out.command;
+				receipt.commands.put(c.label, out.receipt);
+				trace.format("%02d. %-5s %-20s ", n, c.check ? "check" : "run", c.label);
+				trace.format("%s", out.buffer);
+				stdout.write(out.console.toByteArray());
+				stdout.flush();
+				for (Runnable r : out.reports)
+					r.run();
+				n = report(world, out, trace, options, outdir, receipt, n);
+			}
+		} finally {
+			if (executor != null)
+				executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * The output of the execution of a single command. If buffered, the trace,
+	 * the errors, the warnings and the traces of its reporter are recorded so
+	 * that they can be reported after those of the preceding commands, from
+	 * the thread that reports the commands.
+	 */
+	class CommandOutput {
+		final Command			command;
+		final CommandDTO		receipt;
+		final OutputTrace		trace;
+		final StringBuilder		buffer	= new StringBuilder();
+		final PrintStream		out;
+		final boolean			buffered;
+		final List<Runnable>	reports	= new ArrayList<>();
+		ByteArrayOutputStream	console;
+		A4Solution				solution;
+		boolean					solved;
+
+		CommandOutput(Command command, String source, OutputTrace trace, PrintStream out, boolean buffered) {
+			this.command = command;
+			this.receipt = Util.toDTO(command, source);
+			this.trace = buffered ? new OutputTrace(buffer) : trace;
+			this.out = out;
+			this.buffered = buffered;
+		}
+
+		void error(String format, Object... args) {
+			if (buffered)
+				reports.add(() -> CLI.this.error(format, args));
+			else
+				CLI.this.error(format, args);
+		}
+
+		void exception(Throwable t, String format, Object... args) {
+			if (buffered)
+				reports.add(() -> CLI.this.exception(t, format, args));
+			else
+				CLI.this.exception(t, format, args);
+		}
+
+		void warning(String format, Object... args) {
+			if (buffered)
+				reports.add(() -> CLI.this.warning(format, args));
+			else
+				CLI.this.warning(format, args);
+		}
 
-					int back = 0;
-					do {
-						solution.setModule(world);
-						trace.back(back).format("%5d", index);
-						SolutionDTO solutionDTO = solution.toDTO();
-						commandReceipt.solution.add(solutionDTO);
-						generate(world, solution, options.type(OutputType.table), outdir, cname, index, solutionDTO);
-						index++;
-						back = 5;
-					} while (index < repeat && solution.isIncremental() && (solution = solution.next()).satisfiable());
-
-					trace.back(back).format("%5d/%-5s SAT", index, options.repeat(1), c.expects);
-					if (c.expects == 0) {
+		void trace(String format, Object... args) {
+			if (buffered)
+				reports.add(() -> CLI.this.trace(format, args));
+			else
+				CLI.this.trace(format, args);
+		}
+
+		/**
+		 * Returns a reporter whose warnings and traces go through this output.
+		 */
+		SimpleReporter reporter() throws IOException {
+			return new SimpleReporter(CLI.this) {
+				@Override
+				void warning(String format, Object... args) {
+					CommandOutput.this.warning(format, args);
+				}
+
+				@Override
+				void trace(String format, Object... args) {
+					CommandOutput.this.trace(format, args);
+				}
+			};
+		}
+	}
+
+	/**
+	 * Translates and solves the command of the given output, generating its
+	 * solutions and recording them in its receipt.
+	 */
+	private void execute(CompModule world, CommandOutput out, A4Options opt, ExecOptions options, File outdir,
+			int repeat) throws IOException {
+		Command c = out.command;
+		OutputTrace trace = out.trace;
+		CommandDTO commandReceipt = out.receipt;
+		int index = 0;
+		String cname = toCName(c);
+
+		try {
+			SimpleReporter rep = out.reporter();
+			A4Solution solution = TranslateAlloyToKodkod.execute_commandFromBook(rep, world.getAllReachableSigs(), c,
+					opt);
+
+			if (!solution.satisfiable()) {
+				if (rep.output != null) {
+					trace.format("  %s", cname + "." + ext(rep.output));
+					String path = showTransformerFile(rep.output, outdir, cname, out.out);
+					commandReceipt.transformPath = path;
+				} else {
+					trace.format("    0       UNSAT", options.repeat(1));
+					if (c.expects == 1) {
 						trace.format(" expects=%s", c.expects);
-						error("'%s' was satisfied against expectation",c);
-					}
-					trace.format("\n");
-					if (options.evaluator()) {
-						evaluator(world, solution);
+						out.error("'%s' was not satisfied against expectation", c);
 					}
 				}
-				n++;
-				if (outdir != null)
-					try {
-						File receiptFile = IO.getFile(outdir, "receipt.json");
-						new JSONCodec().enc().to(receiptFile).put(receipt).close();
-					} catch (Exception e) {
-						error("failed to save receipt: %s", e.getMessage());
-					}
-			} catch (Exception e) {
-				exception(e,"command %s could not be solved: %s", cname, Exceptions.unrollCause(e));
-				trace.format("!%s", Exceptions.unrollCause(e));
+			} else {
+
+				int back = 0;
+				do {
+					solution.setModule(world);
+					trace.back(back).format("%5d", index);
+					SolutionDTO solutionDTO = solution.toDTO();
+					commandReceipt.solution.add(solutionDTO);
+					generate(world, solution, options.type(OutputType.table), outdir, cname, index, solutionDTO,
+							out.out);
+					index++;
+					back = 5;
+				} while (index < repeat && solution.isIncremental() && (solution = solution.next()).satisfiable());
+
+				trace.back(back).format("%5d/%-5s SAT", index, options.repeat(1), c.expects);
+				if (c.expects == 0) {
+					trace.format(" expects=%s", c.expects);
+					out.error("'%s' was satisfied against expectation", c);
+				}
+				trace.format("\n");
+				out.solution = solution;
+			}
+			out.solved = true;
+		} catch (Exception e) {
+			out.exception(e, "command %s could not be solved: %s", cname, Exceptions.unrollCause(e));
+			trace.format("!%s", Exceptions.unrollCause(e));
+		}
+	}
+
+	/**
+	 * Completes the report of an executed command: starts the evaluator if
+	 * requested and saves the receipt. Returns the index of the next command.
+	 */
+	private int report(CompModule world, CommandOutput out, OutputTrace trace, ExecOptions options, File outdir,
+			ExecutionDTO receipt, int n) throws Exception {
+		if (out.solved) {
+			if (out.solution != null && options.evaluator()) {
+				evaluator(world, out.solution);
 			}
-			trace.format("%n");
+			n++;
+			if (outdir != null)
+				try {
+					File receiptFile = IO.getFile(outdir, "receipt.json");
+					new JSONCodec().enc().to(receiptFile).put(receipt).close();
+				} catch (Exception e) {
+					error("failed to save receipt: %s", e.getMessage());
+				}
 		}
+		trace.format("%n");
+		return n;
 	}
 
 	private Predicate<Command> getCommandPredicate(ExecOptions options, List<Command> commands) {
@@ -319,10 +464,11 @@ public class CLI extends Env {
 		return run;
 	}
 
-	private String showTransformerFile(File source, File outdir, String cname) throws IOException {
+	private String showTransformerFile(File source, File outdir, String cname, PrintStream console)
+			throws IOException {
 		try {
 			if (outdir == null) {
-				IO.copy(source, stdout);
+				IO.copy(source, console);
 				return null;
 			} else {
 				String child = cname + "." + ext(source);
@@ -416,7 +562,7 @@ public class CLI extends Env {
 	}
 
 	private File generate(CompModule world, A4Solution solution, OutputType type, File outdir, String cname, int index,
-			SolutionDTO dto) throws Exception {
+			SolutionDTO dto, PrintStream console) throws Exception {
 		switch (type) {
 		default:
 		case none:
@@ -424,7 +570,7 @@ public class CLI extends Env {
 
 		case text: {
 			File path = getPath(outdir, cname, ".txt", index);
-			try (PrintWriter pw = getPrintWriter(path)) {
+			try (PrintWriter pw = getPrintWriter(path, console)) {
 				pw.println(solution.toString());
 			}
 			return path;
@@ -432,7 +578,7 @@ public class CLI extends Env {
 
 		case table: {
 			File path = getPath(outdir, cname, ".md", index);
-			try (PrintWriter pw = getPrintWriter(path)) {
+			try (PrintWriter pw = getPrintWriter(path, console)) {
 				pw.printf("%-40s %s%n", "Command", cname);
 				pw.printf("%-40s %s%n", "Solution index", index);
 				int loopstate = -1;
@@ -486,12 +632,12 @@ public class CLI extends Env {
 		case json: {
 			File path = getPath(outdir, cname, ".json", index);
 			JSONCodec codec = new JSONCodec();
-			codec.enc().writeDefaults().indent("  ").to(getPrintWriter(path)).put(dto);
+			codec.enc().writeDefaults().indent("  ").to(getPrintWriter(path, console)).put(dto);
 			return path;
 		}
 		case xml:
 			File path = getPath(outdir, cname, ".xml", index);
-			try (PrintWriter pw = getPrintWriter(path)) {
+			try (PrintWriter pw = getPrintWriter(path, console)) {
 				A4SolutionWriter.writeInstance(null, solution, pw, Collections.emptyList(), Collections.emptyMap());
 			}
 			return path;
@@ -504,9 +650,9 @@ public class CLI extends Env {
 		return new File(outdir, cname + "-solution-" + index + extension);
 	}
 
-	private PrintWriter getPrintWriter(File file) throws IOException {
+	private PrintWriter getPrintWriter(File file, PrintStream console) throws IOException {
 		if (file == null)
-			return new PrintWriter(stdout);
+			return new PrintWriter(console);
 
 		return new PrintWriter(IO.writer(file));
 	}
@@ -28,7 +28,7 @@ class SimpleReporter extends A4Reporter {
 
 	@Override
 	public void debug(String msg) {
-		cli.trace("%s",msg);
+		trace("%s",msg);
 	}
 
 	@Override
@@ -41,7 +41,7 @@ class SimpleReporter extends A4Reporter {
 
 	@Override
 	public void warning(ErrorWarning msg) {
-		cli.warning("%s %s", msg.pos, msg.msg);
+		warning("%s %s", msg.pos, msg.msg);
 	}
 
 	@Override
@@ -68,7 +68,7 @@ class SimpleReporter extends A4Reporter {
 
 	@Override
 	public void resultCNF(String filename) {
-		cli.trace("received cnf file %s", filename);
+		trace("received cnf file %s", filename);
 		output = new File(filename);
 	}
 
@@ -85,4 +85,20 @@ class SimpleReporter extends A4Reporter {
 		if (db)
 			db("   UNSAT!\n");
 	}
+
+	/**
+	 * Reports a warning to the environment. Overridden when the warnings must
+	 * be reported from another thread.
+	 */
+	void warning(String format, Object... args) {
+		cli.warning(format, args);
+	}
+
+	/**
+	 * Traces a message to the environment. Overridden when the traces must be
+	 * reported from another thread.
+	 */
+	void trace(String format, Object... args) {
+		cli.trace(format, args);
+	}
 }
@@ -0,0 +1,70 @@
+package org.alloytools.alloy.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import aQute.lib.getopt.CommandLine;
+import aQute.lib.io.IO;
+
+public class CLITest {
+
+	@Rule
+	public TemporaryFolder	folder	= new TemporaryFolder();
+
+	/**
+	 * A model whose commands report errors against their expectations while
+	 * they are solved, and whose parsing reports a warning.
+	 */
+	static final String		MODEL	= "sig A { r: set A }\n" //
+			+ "run a1 { some r } for 3 expect 0\n" //
+			+ "run a2 { no r } for 4\n" //
+			+ "check c1 { all x: A | x in A } for 5 expect 1\n" //
+			+ "check c2 { no r } for 3\n" //
+			+ "run a3 { some A  some r } for 6 expect 0\n" //
+			+ "run a4 { some A && no A } for 3 expect 1\n";
+
+	/**
+	 * Executes the model with the given extra arguments and returns
+	 * everything it reported: the console, the progress trace, the errors
+	 * and warnings in order, and the receipt without its times.
+	 */
+	private String exec(String name, String... extra) throws Exception {
+		File model = folder.newFile(name + ".als");
+		IO.store(MODEL, model);
+		File outdir = new File(folder.getRoot(), name);
+
+		CLI cli = new CLI();
+		ByteArrayOutputStream console = new ByteArrayOutputStream();
+		ByteArrayOutputStream progress = new ByteArrayOutputStream();
+		cli.stdout = new PrintStream(console, true);
+		cli.stderr = new PrintStream(progress, true);
+
+		List<String> args = new ArrayList<>(Arrays.asList("--output", outdir.getPath(), "--repeat", "2"));
+		args.addAll(Arrays.asList(extra));
+		args.add(model.getPath());
+		assertNull(new CommandLine(cli).execute(cli, "exec", args));
+
+		String receipt = IO.collect(new File(outdir, "receipt.json"))
+				.replaceAll("\"(timestamp|utctime|duration|localtime)\":(\"[^\"]*\"|\\d+)", "");
+		return console + "\n" + progress + "\n" + cli.getErrors() + "\n" + cli.getWarnings() + "\n" + receipt;
+	}
+
+	@Test
+	public void parallelExecutionReportsLikeSequentialExecution() throws Exception {
+		String sequential = exec("sequential");
+		assertFalse(sequential.contains("\n[]\n"));
+		assertEquals(sequential, exec("parallel", "--parallel", "2").replace("parallel", "sequential"));
+	}
+}
@@ -35,7 +35,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import aQute.lib.io.IO;
-import kodkod.engine.satlab.SATFactory;
 import kodkod.solvers.api.NativeCode;
 
 /**
@@ -53,8 +52,11 @@ import kodkod.solvers.api.NativeCode;
  * As long as the subprocess hasn't terminated either due to crashing or due to
  * user calling stop(), then the same subprocess is reused to execute each
  * subsequent task; however, if the subprocess crashed, the crash will be
- * reported to the parent process via callback, and if we try to execute another
- * task, then a new subprocess will be spawned automatically.
+ * reported to the parent process via callback, and a new subprocess will be
+ * spawned in the background for the next task.
+ * <p>
+ * To execute several tasks at the same time, each in its own subprocess, use
+ * a {@link WorkerPool}.
  *
  * @modified [electrum] handle external executables
  */
@@ -102,7 +104,7 @@ public final class WorkerEngine {
      * method does nothing; if stream==null, we get an InputStream that always
      * returns EOF.
      */
-    private static InputStream wrap(final InputStream stream) {
+    static InputStream wrap(final InputStream stream) {
         return new InputStream() {
 
             @Override
@@ -139,7 +141,7 @@ public final class WorkerEngine {
      * method simply calls "flush()"; if stream==null, we get an OutputStream that
      * ignores all writes.
      */
-    private static OutputStream wrap(final OutputStream stream) {
+    static OutputStream wrap(final OutputStream stream) {
         return new OutputStream() {
 
             @Override
@@ -170,14 +172,14 @@ public final class WorkerEngine {
         };
     }
 
-    /** If nonnull, it is the latest sub JVM. */
-    private static Process latest_sub     = null;
-
     /**
-     * If nonnull, it is the latest worker thread talking to the sub JVM. (If
-     * latest_sub==null, then we guarantee latest_manager is also null)
+     * If nonnull, it is the pool of one worker that executes the tasks given to
+     * run(); it is replaced when the settings of the sub JVM change.
      */
-    private static Thread  latest_manager = null;
+    private static WorkerPool     latest_pool = null;
+
+    /** If nonnull, it is the latest task given to run(). */
+    private static WorkerPool.Job latest_job  = null;
 
     /**
      * Constructor is private since this class does not need to be instantiated.
@@ -186,35 +188,21 @@ public final class WorkerEngine {
     }
 
     /**
-     * This terminates the subprocess, and prevent any further results from reaching
-     * the parent's callback handler.
+     * This terminates the task being executed by the subprocess, and prevent any
+     * further results from reaching the parent's callback handler. The
+     * subprocess is then replaced in the background, so that the next task does
+     * not have to wait for a new sub JVM to start.
      */
     public static void stop() {
+        final WorkerPool.Job job;
         synchronized (WorkerEngine.class) {
-            try {
-                if (latest_sub != null) {
-                    // [electrum] this replaces the currently WorkerTask so that it exits gracefully
-                    try {
-                        ObjectOutputStream main2sub = new ObjectOutputStream(wrap(latest_sub.getOutputStream()));
-                        main2sub.writeObject(new WorkerTask() {
-
-                            private static final long serialVersionUID = 1L;
-
-                            @Override
-                            public void run(WorkerCallback out) throws Exception {
-                            }
-                        });
-                        main2sub.close();
-                    } catch (IOException e) {
-                    }
-
-                    latest_sub.destroy();
-                }
-            } finally {
-                latest_manager = null;
-                latest_sub = null;
-            }
+            job = latest_job;
+            latest_job = null;
         }
+        // the job is stopped outside of the lock, since its callback handler
+        // may be calling isBusy() while it holds the job
+        if (job != null)
+            job.stop();
     }
 
     /**
@@ -222,7 +210,7 @@ public final class WorkerEngine {
      */
     public static boolean isBusy() {
         synchronized (WorkerEngine.class) {
-            return latest_manager != null && latest_manager.isAlive();
+            return latest_job != null && !latest_job.isDone();
         }
     }
 
@@ -235,7 +223,7 @@ public final class WorkerEngine {
      */
     public static void runLocally(final WorkerTask task, final WorkerCallback callback) throws Exception {
         synchronized (WorkerEngine.class) {
-            if (latest_manager != null && latest_manager.isAlive())
+            if (isBusy())
                 throw new IOException("Subprocess still performing the last task.");
             try {
                 task.run(callback);
@@ -249,16 +237,17 @@ public final class WorkerEngine {
 
     /**
      * This issues a new task to the subprocess; if subprocess hasn't been
-     * constructed yet or has terminated abnormally, this method will launch a new
-     * subprocess.
+     * constructed yet, has terminated abnormally, or was launched with other
+     * settings, this method will launch a new subprocess.
+     * <p>
+     * The subprocess is the only worker of a {@link WorkerPool}; use a pool
+     * directly to execute several tasks at the same time.
      *
      * @param task - the task that we want the subprocess to execute
      * @param newmem - the amount of memory (in megabytes) we want the subprocess to
-     *            have (if the subproces has not terminated, then this parameter is
-     *            ignored)
+     *            have
      * @param newstack - the amount of stack (in kilobytes) we want the subprocess
-     *            to have (if the subproces has not terminated, then this parameter
-     *            is ignored)
+     *            to have
      * @param classPath - if nonnull and nonempty, then it specifies the
      *            subprocess's default CLASSPATH, else we'll use
      *            System.getProperty("java.class.path")
@@ -267,100 +256,44 @@ public final class WorkerEngine {
      * @throws IOException - if an error occurred in launching a sub JVM or talking
      *             to it
      */
-
-
     public static void run(final WorkerTask task, int newmem, int newstack, String classPath, final WorkerCallback callback) throws IOException {
-        SATFactory.getSolvers(); // init native code
-
-        String cmdline[];
-        boolean fork = Boolean.getBoolean("alloy.fork");
-        if (fork) {
-            cmdline = getForkCommandLine();
-        } else {
-            cmdline = getJarCommandLine(classPath, newmem, newstack);
-        }
-
+        String cmdline[] = getCommandLine(classPath, newmem, newstack);
 
         synchronized (WorkerEngine.class) {
-            final Process sub;
-            if (latest_manager != null && latest_manager.isAlive())
+            if (isBusy())
                 throw new IOException("Subprocess still performing the last task.");
-
-            try {
-                if (latest_sub != null)
-                    latest_sub.exitValue();
-                latest_manager = null;
-                latest_sub = null;
-            } catch (IllegalThreadStateException ex) {
-            }
-
-            if (latest_sub == null) {
-                sub = Runtime.getRuntime().exec(cmdline);
-                latest_sub = sub;
-            } else {
-                sub = latest_sub;
+            if (latest_pool == null || !latest_pool.hasCommandLine(cmdline)) {
+                if (latest_pool != null)
+                    latest_pool.close();
+                latest_pool = new WorkerPool(1, cmdline);
             }
+            latest_job = latest_pool.submit(task, callback);
+        }
+    }
 
-            copyStderr(sub);
+    /**
+     * This terminates a sub JVM. The sub JVM is first sent an empty task, so that
+     * it exits on its own if its current task does not finish in time.
+     */
+    static void terminate(Process sub) {
+        // [electrum] this replaces the currently WorkerTask so that it exits gracefully
+        try {
+            ObjectOutputStream main2sub = new ObjectOutputStream(wrap(sub.getOutputStream()));
+            main2sub.writeObject(new WorkerTask() {
 
-            latest_manager = new Thread(new Runnable() {
+                private static final long serialVersionUID = 1L;
 
                 @Override
-                public void run() {
-                    ObjectInputStream sub2main = null;
-                    ObjectOutputStream main2sub = null;
-                    try {
-                        main2sub = new ObjectOutputStream(wrap(sub.getOutputStream()));
-                        main2sub.writeObject(task);
-                        main2sub.close();
-                        sub2main = new ObjectInputStream(wrap(sub.getInputStream()));
-                    } catch (Throwable ex) {
-                        sub.destroy();
-                        Util.close(main2sub);
-                        Util.close(sub2main);
-                        synchronized (WorkerEngine.class) {
-                            if (latest_sub != sub)
-                                return;
-                            callback.fail();
-                            return;
-                        }
-                    }
-                    while (true) {
-                        synchronized (WorkerEngine.class) {
-                            if (latest_sub != sub)
-                                return;
-                        }
-                        Object x;
-                        try {
-                            x = sub2main.readObject();
-                        } catch (Throwable ex) {
-                            sub.destroy();
-                            Util.close(sub2main);
-                            synchronized (WorkerEngine.class) {
-                                if (latest_sub != sub)
-                                    return;
-                                callback.fail();
-                                return;
-                            }
-                        }
-                        synchronized (WorkerEngine.class) {
-                            if (latest_sub != sub)
-                                return;
-                            if (x == null) {
-                                callback.done();
-                                return;
-                            } else
-                                callback.callback(x);
-                        }
-                    }
+                public void run(WorkerCallback out) throws Exception {
                 }
             });
-            latest_manager.start();
+            main2sub.close();
+        } catch (IOException e) {
         }
+        sub.destroy();
     }
 
-
-    private static void copyStderr(final Process sub) {
+    static void copyStderr(final Process sub) {
         new Thread(() -> {
             try {
                 IO.copy(sub.getErrorStream(), System.err);
@@ -370,6 +303,16 @@ public final class WorkerEngine {
         }, "copy-stderr").start();
     }
 
+    /**
+     * This returns the command line that launches a sub JVM with the given
+     * settings, or that forks this executable if the alloy.fork property is set.
+     */
+    static String[] getCommandLine(String classPath, int newmem, int newstack) {
+        if (Boolean.getBoolean("alloy.fork"))
+            return getForkCommandLine();
+        return getJarCommandLine(classPath, newmem, newstack);
+    }
+
     private static String[] getForkCommandLine() {
         ProcessHandle current = ProcessHandle.current();
         Info info = current.info();
@@ -0,0 +1,453 @@
+package edu.mit.csail.sdg.alloy4;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.mit.csail.sdg.alloy4.WorkerEngine.WorkerCallback;
+import edu.mit.csail.sdg.alloy4.WorkerEngine.WorkerTask;
+import edu.mit.csail.sdg.ast.Command;
+import edu.mit.csail.sdg.parser.CompModule;
+import edu.mit.csail.sdg.parser.CompUtil;
+import edu.mit.csail.sdg.translator.A4Options;
+import edu.mit.csail.sdg.translator.TranslateAlloyToKodkod;
+import kodkod.engine.satlab.SATFactory;
+
+/**
+ * A pool of worker JVMs that execute tasks in subprocesses, using the same
+ * protocol as {@link WorkerEngine}.
+ * <p>
+ * The pool keeps a fixed number of worker processes, all started with the
+ * same memory and stack settings, and executes up to that many tasks at the
+ * same time; further tasks wait in a queue. A worker is reused for the next
+ * task once it has finished one, so only the first task of a worker pays for
+ * the startup of its JVM. Workers can be started ahead of time with
+ * {@link #prestart()}; each new worker first solves a small model, so that
+ * the classes of the parser, the translator and the SAT solvers are loaded
+ * before it receives its first task.
+ * <p>
+ * A worker whose process dies, or that is stopped while executing a task, is
+ * replaced by a new one started in the background. Idle workers are checked
+ * periodically with an empty task, and those that do not answer in time are
+ * replaced too.
+ */
+public final class WorkerPool implements Closeable {
+
+    final static Logger            logger               = LoggerFactory.getLogger(WorkerPool.class);
+
+    /** Time between two health checks of the idle workers. */
+    public static final long       HEALTH_CHECK_MILLIS  = 30 * 1000L;
+
+    /** Time an idle worker has to answer a health check. */
+    public static final long       PING_TIMEOUT_MILLIS  = 10 * 1000L;
+
+    private final String[]         cmdline;
+    private final int              size;
+    private final LinkedBlockingQueue<Worker> idle      = new LinkedBlockingQueue<>();
+    private final List<Worker>     workers              = new ArrayList<>();
+    private final ExecutorService  executor;
+    private final ExecutorService  starter;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicInteger    launched             = new AtomicInteger();
+    private final AtomicInteger    reused               = new AtomicInteger();
+    private volatile boolean       closed;
+
+    /**
+     * A worker process, and the task it is executing if any. A worker that has
+     * not been started yet, or whose process has died, has no process; it is
+     * started when it is next taken from the pool.
+     */
+    private static final class Worker {
+
+        private Process process;
+        private int     tasks;
+    }
+
+    /**
+     * A task submitted to the pool.
+     */
+    public final class Job {
+
+        private final WorkerTask     task;
+        private final WorkerCallback callback;
+        private Future< ? >          future;
+        private Worker               worker;
+        private boolean              stopped;
+        private volatile boolean     done;
+
+        private Job(WorkerTask task, WorkerCallback callback) {
+            this.task = task;
+            this.callback = callback;
+        }
+
+        /**
+         * Stop the task, and prevent any further results from reaching its
+         * callback handler. A task that has not started yet is removed from
+         * the queue; a task that is executing is stopped by terminating its
+         * worker process, which the pool then replaces.
+         */
+        public void stop() {
+            Process process = null;
+            synchronized (this) {
+                if (stopped || done)
+                    return;
+                stopped = true;
+                done = true;
+                if (future != null)
+                    future.cancel(false);
+                if (worker != null)
+                    process = worker.process;
+            }
+            if (process != null)
+                WorkerEngine.terminate(process);
+        }
+
+        /**
+         * Return true iff the task has completed, failed or was stopped.
+         */
+        public boolean isDone() {
+            return done;
+        }
+
+        private synchronized void callback(Object msg) {
+            if (!stopped)
+                callback.callback(msg);
+        }
+
+        private synchronized void finish(boolean success) {
+            if (stopped)
+                return;
+            done = true;
+            if (success)
+                callback.done();
+            else
+                callback.fail();
+        }
+    }
+
+    /**
+     * Create a pool of worker JVMs.
+     *
+     * @param size - the number of workers, and so of tasks executed at the same
+     *            time
+     * @param memory - the amount of memory (in megabytes) of each worker
+     * @param stack - the amount of stack (in kilobytes) of each worker
+     * @param classPath - if nonnull and nonempty, then it specifies the workers'
+     *            CLASSPATH, else we'll use System.getProperty("java.class.path")
+     */
+    public WorkerPool(int size, int memory, int stack, String classPath) {
+        this(size, WorkerEngine.getCommandLine(classPath, memory, stack));
+    }
+
+    /**
+     * Create a pool of worker JVMs launched with the given command line.
+     */
+    WorkerPool(int size, String[] cmdline) {
+        if (size < 1)
+            throw new IllegalArgumentException("The size of a worker pool must be positive");
+        this.size = size;
+        this.cmdline = cmdline;
+        AtomicInteger threads = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "alloy-worker-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = Executors.newFixedThreadPool(size, factory);
+        this.starter = Executors.newSingleThreadExecutor(factory);
+        this.scheduler = Executors.newScheduledThreadPool(2, factory);
+        for (int i = 0; i < size; i++) {
+            Worker worker = new Worker();
+            workers.add(worker);
+            idle.add(worker);
+        }
+        scheduler.scheduleWithFixedDelay(this::checkHealth, HEALTH_CHECK_MILLIS, HEALTH_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Start the workers that are not running yet in the background, so that
+     * the next tasks do not wait for them to start.
+     */
+    public void prestart() {
+        List<Worker> unstarted = new ArrayList<>();
+        for (int i = idle.size(); i > 0; i--) {
+            Worker worker = idle.poll();
+            if (worker == null)
+                break;
+            if (worker.process == null)
+                unstarted.add(worker);
+            else
+                idle.add(worker);
+        }
+        for (Worker worker : unstarted)
+            restart(worker);
+    }
+
+    /**
+     * Queue a task, to be executed by the next idle worker.
+     *
+     * @param task - the task that we want a worker to execute
+     * @param callback - the handler that will receive outputs from the task; it
+     *            is called from a thread of the pool
+     * @return the submitted task, which can be stopped
+     * @throws IOException - if the pool is closed
+     */
+    public Job submit(WorkerTask task, WorkerCallback callback) throws IOException {
+        if (closed)
+            throw new IOException("The worker pool is closed.");
+        Job job = new Job(task, callback);
+        synchronized (job) {
+            job.future = executor.submit(() -> execute(job));
+        }
+        return job;
+    }
+
+    /**
+     * Return true iff the pool launches its workers with the given command
+     * line.
+     */
+    boolean hasCommandLine(String[] cmdline) {
+        return Arrays.equals(this.cmdline, cmdline);
+    }
+
+    /**
+     * Stop every task and terminate every worker.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+        starter.shutdownNow();
+        scheduler.shutdownNow();
+        synchronized (workers) {
+            for (Worker worker : workers) {
+                if (worker.process != null)
+                    WorkerEngine.terminate(worker.process);
+            }
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Return the number of workers that are waiting for a task.
+     */
+    public int getIdle() {
+        return idle.size();
+    }
+
+    /**
+     * Return the number of worker JVMs launched so far.
+     */
+    public int getLaunched() {
+        return launched.get();
+    }
+
+    /**
+     * Return the number of tasks executed by a worker that had already
+     * executed a task, and so did not pay for the startup of a JVM.
+     */
+    public int getReused() {
+        return reused.get();
+    }
+
+    private void execute(Job job) {
+        Worker worker;
+        try {
+            worker = idle.take();
+        } catch (InterruptedException e) {
+            return;
+        }
+        boolean alive = false;
+        try {
+            synchronized (job) {
+                if (job.stopped) {
+                    alive = worker.process != null;
+                    return;
+                }
+                job.worker = worker;
+            }
+            if (worker.process == null || !worker.process.isAlive()) {
+                try {
+                    start(worker);
+                } catch (Throwable ex) {
+                    job.callback(ex);
+                    job.finish(false);
+                    return;
+                }
+            } else if (worker.tasks > 0) {
+                reused.incrementAndGet();
+            }
+            synchronized (job) {
+                if (job.stopped) {
+                    alive = true;
+                    return;
+                }
+            }
+            worker.tasks++;
+            alive = exchange(worker.process, job.task, job::callback);
+            job.finish(alive);
+        } finally {
+            synchronized (job) {
+                job.worker = null;
+            }
+            if (alive)
+                idle.add(worker);
+            else
+                restart(worker);
+        }
+    }
+
+    /**
+     * Replace the process of the given worker by a new one in the background,
+     * and then give the worker back to the pool. If the new process cannot be
+     * started, the worker is given back without a process, and will be started
+     * again when it is next taken.
+     */
+    private void restart(Worker worker) {
+        synchronized (workers) {
+            if (worker.process != null)
+                WorkerEngine.terminate(worker.process);
+            worker.process = null;
+        }
+        if (closed)
+            return;
+        try {
+            starter.execute(() -> {
+                try {
+                    start(worker);
+                } catch (Throwable ex) {
+                    logger.warn("cannot start a worker: {}", ex.toString());
+                } finally {
+                    idle.add(worker);
+                }
+            });
+        } catch (RuntimeException ex) {
+            idle.add(worker);
+        }
+    }
+
+    /**
+     * Launch the process of the given worker, and warm it up.
+     */
+    private void start(Worker worker) throws IOException {
+        SATFactory.getSolvers(); // init native code
+        Process process = Runtime.getRuntime().exec(cmdline);
+        synchronized (workers) {
+            worker.process = process;
+            worker.tasks = 0;
+            if (closed) {
+                WorkerEngine.terminate(process);
+                throw new IOException("The worker pool is closed.");
+            }
+        }
+        launched.incrementAndGet();
+        WorkerEngine.copyStderr(process);
+        if (!exchange(process, new WarmUp(), msg -> {}))
+            throw new IOException("The worker failed to start.");
+    }
+
+    /**
+     * Send an empty task to the idle workers that are running, and replace
+     * those that do not answer in time.
+     */
+    private void checkHealth() {
+        for (int i = idle.size(); i > 0; i--) {
+            Worker worker = idle.poll();
+            if (worker == null)
+                return;
+            if (worker.process == null) {
+                idle.add(worker);
+                continue;
+            }
+            Process process = worker.process;
+            ScheduledFuture< ? > timeout = scheduler.schedule(() -> WorkerEngine.terminate(process), PING_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            boolean alive = process.isAlive() && exchange(process, new Ping(), msg -> {});
+            timeout.cancel(false);
+            if (alive) {
+                idle.add(worker);
+            } else {
+                logger.info("replacing an unresponsive worker");
+                restart(worker);
+            }
+        }
+    }
+
+    /**
+     * Send a task to a worker process, and pass the objects it sends back to
+     * the given handler until the task is done.
+     *
+     * @return true if the task completed and the worker can be reused, false
+     *         if the task failed or the worker died
+     */
+    private static boolean exchange(Process process, WorkerTask task, Consumer<Object> handler) {
+        ObjectOutputStream main2sub = null;
+        ObjectInputStream sub2main = null;
+        try {
+            main2sub = new ObjectOutputStream(WorkerEngine.wrap(process.getOutputStream()));
+            main2sub.writeObject(task);
+            main2sub.close();
+            sub2main = new ObjectInputStream(WorkerEngine.wrap(process.getInputStream()));
+            while (true) {
+                Object x = sub2main.readObject();
+                if (x == null)
+                    return true;
+                handler.accept(x);
+            }
+        } catch (Throwable ex) {
+            process.destroy();
+            return false;
+        } finally {
+            Util.close(main2sub);
+            Util.close(sub2main);
+        }
+    }
+
+    /**
+     * The task that checks that a worker still answers.
+     */
+    private static final class Ping implements WorkerTask {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void run(WorkerCallback out) throws Exception {
+        }
+    }
+
+    /**
+     * The first task of a worker, which solves a small model so that the
+     * classes needed by the real tasks are loaded and compiled.
+     */
+    private static final class WarmUp implements WorkerTask {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void run(WorkerCallback out) throws Exception {
+            SATFactory.getSolvers();
+            CompModule world = CompUtil.parseEverything_fromString(A4Reporter.NOP, "sig A { r: set A } run { some r } for 3");
+            for (Command cmd : world.getAllCommands())
+                TranslateAlloyToKodkod.execute_command(A4Reporter.NOP, world.getAllReachableSigs(), cmd, new A4Options());
+        }
+    }
+}
@@ -31,6 +31,10 @@ import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Set;
 
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
 /** Immutable; this class represents an XML element node. */
 
 public final class XMLNode implements Iterable<XMLNode> {
@@ -565,6 +569,32 @@ public final class XMLNode implements Iterable<XMLNode> {
         }
     }
 
+    /**
+     * Constructs an XMLNode with the given type, attributes and children.
+     */
+    public XMLNode(String type, Map<String,String> attributes, List<XMLNode> children) {
+        this.type = type;
+        map.putAll(attributes);
+        sub.addAll(children);
+    }
+
+    /**
+     * Constructs the XMLNode of the element at the current position of the given
+     * StAX reader, which must be at the start of the element; the reader is left
+     * at the end of the element. Unlike the constructors that parse a whole
+     * document, this lets a caller build the nodes of a large document one element
+     * at a time. Text is ignored.
+     */
+    public XMLNode(XMLStreamReader reader) throws XMLStreamException {
+        reader.require(XMLStreamConstants.START_ELEMENT, null, null);
+        type = reader.getLocalName();
+        for (int i = 0; i < reader.getAttributeCount(); i++)
+            map.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+        while (reader.next() != XMLStreamConstants.END_ELEMENT)
+            if (reader.isStartElement())
+                sub.add(new XMLNode(reader));
+    }
+
     /** Returns the type of the element. */
     public String getType() {
         return type;
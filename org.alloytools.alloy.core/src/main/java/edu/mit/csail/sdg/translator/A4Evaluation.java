@@ -0,0 +1,171 @@
+/* Alloy Analyzer 4 -- Copyright (c) 2006-2009, Felix Chang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files
+ * (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ * OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.mit.csail.sdg.translator;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.mit.csail.sdg.alloy4.ConstList;
+import edu.mit.csail.sdg.alloy4.ErrorAPI;
+import edu.mit.csail.sdg.ast.Expr;
+import kodkod.ast.Formula;
+import kodkod.ast.IntExpression;
+import kodkod.instance.TupleSet;
+
+/**
+ * Immutable; holds the values of a list of expressions at a list of states of
+ * a solution, as computed by {@link A4Solution#evalAll(Collection, int...)}.
+ * <p>
+ * The values are stored by column, one column per expression: the values of a
+ * formula are stored as bits, those of an integer expression as ints, and those
+ * of a relational expression as tuplesets. A tupleset that is equal to the one
+ * of the previous state is shared rather than stored again, since most
+ * expressions keep their value over many states of a trace.
+ */
+
+public final class A4Evaluation {
+
+    /** The expressions, one per column. */
+    private final ConstList<Expr>   exprs;
+
+    /** The states, one per row. */
+    private final int[]             states;
+
+    /**
+     * The values, one column per expression: a BitSet for a formula, an int[]
+     * for an integer expression, or an A4TupleSet[] for a relational expression.
+     */
+    private final Object[]          columns;
+
+    /** The column of each expression. */
+    private final Map<Expr,Integer> index = new IdentityHashMap<Expr,Integer>();
+
+    /**
+     * Construct the table from the values computed by the Kodkod evaluator, where
+     * values[i][j] is the value of the j-th expression at the i-th state, and
+     * nodes.get(j) is the Kodkod translation of the j-th expression.
+     */
+    A4Evaluation(A4Solution sol, List<Expr> exprs, List<Object> nodes, int[] states, Object[][] values) {
+        this.exprs = ConstList.make(exprs);
+        this.states = states.clone();
+        this.columns = new Object[exprs.size()];
+        for (int j = 0; j < columns.length; j++) {
+            index.put(exprs.get(j), j);
+            if (nodes.get(j) instanceof Formula) {
+                BitSet column = new BitSet(states.length);
+                for (int i = 0; i < states.length; i++)
+                    column.set(i, (Boolean) values[i][j]);
+                columns[j] = column;
+            } else if (nodes.get(j) instanceof IntExpression) {
+                int[] column = new int[states.length];
+                for (int i = 0; i < states.length; i++)
+                    column[i] = (Integer) values[i][j];
+                columns[j] = column;
+            } else {
+                A4TupleSet[] column = new A4TupleSet[states.length];
+                TupleSet previous = null;
+                for (int i = 0; i < states.length; i++) {
+                    TupleSet ts = (TupleSet) values[i][j];
+                    if (ts.equals(previous))
+                        column[i] = column[i - 1];
+                    else
+                        column[i] = new A4TupleSet(ts, sol);
+                    previous = ts;
+                }
+                columns[j] = column;
+            }
+        }
+    }
+
+    /** Returns the expressions, in the order of the columns. */
+    public ConstList<Expr> getExprs() {
+        return exprs;
+    }
+
+    /** Returns the number of states, that is, the number of rows. */
+    public int size() {
+        return states.length;
+    }
+
+    /** Returns the state of the given row. */
+    public int getState(int row) {
+        return states[row];
+    }
+
+    /**
+     * Returns the column of the given expression (or -1 if it was not evaluated).
+     * Expressions are compared by identity.
+     */
+    public int column(Expr expr) {
+        Integer ans = index.get(expr);
+        return ans == null ? -1 : ans;
+    }
+
+    /**
+     * Returns the value of the given column at the given row, as
+     * {@link A4Solution#eval(Expr, int)} would: an A4TupleSet, a java Integer, or
+     * a java Boolean.
+     */
+    public Object get(int column, int row) {
+        Object values = columns[column];
+        if (values instanceof BitSet) {
+            if (row < 0 || row >= states.length)
+                throw new ArrayIndexOutOfBoundsException(row);
+            return ((BitSet) values).get(row);
+        }
+        if (values instanceof int[])
+            return ((int[]) values)[row];
+        return ((A4TupleSet[]) values)[row];
+    }
+
+    /**
+     * Returns the value of the given formula column at the given row.
+     *
+     * @throws ErrorAPI if the column is not a formula
+     */
+    public boolean getBoolean(int column, int row) throws ErrorAPI {
+        if (!(columns[column] instanceof BitSet))
+            throw new ErrorAPI("Expression " + exprs.get(column) + " is not a formula.");
+        if (row < 0 || row >= states.length)
+            throw new ArrayIndexOutOfBoundsException(row);
+        return ((BitSet) columns[column]).get(row);
+    }
+
+    /**
+     * Returns the value of the given integer column at the given row.
+     *
+     * @throws ErrorAPI if the column is not an integer expression
+     */
+    public int getInt(int column, int row) throws ErrorAPI {
+        if (!(columns[column] instanceof int[]))
+            throw new ErrorAPI("Expression " + exprs.get(column) + " is not an integer expression.");
+        return ((int[]) columns[column])[row];
+    }
+
+    /**
+     * Returns the value of the given relational column at the given row.
+     *
+     * @throws ErrorAPI if the column is not a relational expression
+     */
+    public A4TupleSet getTupleSet(int column, int row) throws ErrorAPI {
+        if (!(columns[column] instanceof A4TupleSet[]))
+            throw new ErrorAPI("Expression " + exprs.get(column) + " is not a relational expression.");
+        return ((A4TupleSet[]) columns[column])[row];
+    }
+}
@@ -23,7 +23,9 @@ import static edu.mit.csail.sdg.ast.Sig.UNIV;
 import static kodkod.engine.Solution.Outcome.UNSATISFIABLE;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -35,6 +37,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -1074,6 +1077,41 @@ public final class A4Solution {
         }
     }
 
+    /**
+     * If this solution is solved and satisfiable, evaluates the given expressions
+     * at each of the given states, with the same results as
+     * {@link #eval(Expr, int)}, except that integers are not marked when they
+     * overflow. Each expression is translated to Kodkod once for all states, and
+     * the expressions are evaluated together at each state, so the work on the
+     * subexpressions they share, and on the subexpressions that do not depend on
+     * the state, is not repeated.
+     *
+     * @param exprs - the expressions; an expression given twice is evaluated once
+     * @param states - the states at which to evaluate them
+     * @return the values, with one column per distinct expression and one row per
+     *         state
+     */
+    public A4Evaluation evalAll(Collection<? extends Expr> exprs, int... states) throws Err {
+        if (!solved)
+            throw new ErrorAPI("This solution is not yet solved, so eval() is not allowed.");
+        if (eval == null)
+            throw new ErrorAPI("This solution is unsatisfiable, so eval() is not allowed.");
+        List<Expr> distinct = new ArrayList<Expr>(exprs.size());
+        Set<Expr> seen = Collections.newSetFromMap(new IdentityHashMap<Expr,Boolean>());
+        for (Expr expr : exprs)
+            if (seen.add(expr))
+                distinct.add(expr);
+        List<Object> nodes = TranslateAlloyToKodkod.alloy2kodkod(this, distinct);
+        List<Node> kodkod = new ArrayList<Node>(nodes.size());
+        for (Object node : nodes)
+            kodkod.add((Node) node);
+        try {
+            return new A4Evaluation(this, distinct, nodes, states, eval.evaluate(kodkod, states));
+        } catch (CapacityExceededException ex) {
+            throw TranslateAlloyToKodkod.rethrow(ex);
+        }
+    }
+
     /**
      * Returns the Kodkod instance represented by this solution; throws an exception
      * if the problem is not yet solved or if it is unsatisfiable.
@@ -1670,7 +1708,7 @@ public final class A4Solution {
         // To ensure no more output during SolutionEnumeration
         solver.options().setReporter(oldReporter);
         // If unsatisfiable, then retrieve the unsat core if desired
-        if (inst == null && solver.options().solver().prover()) {
+        if (inst == null && sol.proof() != null) {
             try {
                 lCore = new LinkedHashSet<Node>();
                 Proof p = sol.proof();
@@ -1965,6 +2003,18 @@ public final class A4Solution {
         }
     }
 
+    /**
+     * Helper method to write out a full solution file in the compact binary form,
+     * which {@link A4SolutionReader#read(Iterable, File)} reads back.
+     */
+    public void writeBinary(String filename, Iterable<Func> macros, Map<String,String> sourceFiles) throws Err {
+        try (OutputStream out = new FileOutputStream(filename)) {
+            A4SolutionWriter.writeBinaryInstance(null, this, out, macros, sourceFiles);
+        } catch (IOException ex) {
+            throw new ErrorFatal("Error writing the solution binary file.", ex);
+        }
+    }
+
     /** Helper method to write out a full XML file. */
     public void writeXML(PrintWriter writer, Iterable<Func> macros, Map<String,String> sourceFiles) throws Err {
         A4SolutionWriter.writeInstance(null, this, writer, macros, sourceFiles);
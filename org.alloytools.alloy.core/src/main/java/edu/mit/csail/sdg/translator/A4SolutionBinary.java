@@ -0,0 +1,273 @@
+/* Alloy Analyzer 4 -- Copyright (c) 2006-2009, Felix Chang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files
+ * (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ * OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.mit.csail.sdg.translator;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.mit.csail.sdg.alloy4.XMLNode;
+
+/**
+ * This helper class reads and writes the compact binary form of the solution
+ * XML files.
+ * <p>
+ * The binary form holds the same elements and attributes as the XML file, in
+ * the same order. An element is written as a START code, its name, its number
+ * of attributes, the name and value of each attribute, its children, then an
+ * END code. Numbers are written as variable-length integers. Each string is
+ * written in full the first time it occurs and is then referred to by its
+ * index, so the labels of atoms and the ids of types, which make up most of a
+ * solution and repeat in every state, take one or two bytes each.
+ * <p>
+ * Long strings, such as the content of the source files, are unlikely to
+ * repeat and are written in full without being remembered.
+ */
+
+final class A4SolutionBinary {
+
+    /** The bytes that start every binary solution file. */
+    private static final byte[] MAGIC      = {
+                                               'A', '4', 'S', 'B', 1
+    };
+
+    /** The code that ends an element. */
+    private static final int    END        = 0;
+
+    /** The code that starts an element. */
+    private static final int    START      = 1;
+
+    /** The code of a string written in full and remembered. */
+    private static final int    NEW        = 0;
+
+    /** The code of a string written in full and not remembered. */
+    private static final int    LITERAL    = 1;
+
+    /** Strings longer than this are not remembered. */
+    private static final int    MAX_SHARED = 256;
+
+    private A4SolutionBinary() {}
+
+    /**
+     * Returns true if the given stream starts with the bytes of a binary
+     * solution; the stream must support mark/reset, and is reset to where it
+     * was.
+     */
+    static boolean isBinary(InputStream in) throws IOException {
+        in.mark(MAGIC.length);
+        try {
+            byte[] start = new byte[MAGIC.length];
+            int n = 0;
+            while (n < start.length) {
+                int k = in.read(start, n, start.length - n);
+                if (k < 0)
+                    return false;
+                n += k;
+            }
+            return Arrays.equals(start, MAGIC);
+        } finally {
+            in.reset();
+        }
+    }
+
+    /** Writes the elements of a solution in the binary form. */
+    static final class Writer implements A4SolutionWriter.Sink {
+
+        private final OutputStream         out;
+
+        /** The index of each remembered string. */
+        private final Map<String,Integer> strings = new HashMap<String,Integer>();
+
+        /** The attributes of the element just started. */
+        private final List<String[]>      pending = new ArrayList<String[]>();
+
+        /** The name of the element whose attributes are being collected, if any. */
+        private String                    element = null;
+
+        Writer(OutputStream out) throws IOException {
+            this.out = new BufferedOutputStream(out);
+            this.out.write(MAGIC);
+        }
+
+        @Override
+        public void start(String element) throws IOException {
+            flushStart();
+            this.element = element;
+        }
+
+        @Override
+        public void attribute(String name, String value) {
+            pending.add(new String[] {
+                                      name, value
+            });
+        }
+
+        @Override
+        public void end() throws IOException {
+            flushStart();
+            writeInt(END);
+        }
+
+        /** Writes the element just started, once all its attributes are known. */
+        private void flushStart() throws IOException {
+            if (element == null)
+                return;
+            writeInt(START);
+            writeString(element);
+            writeInt(pending.size());
+            for (String[] attribute : pending) {
+                writeString(attribute[0]);
+                writeString(attribute[1]);
+            }
+            pending.clear();
+            element = null;
+        }
+
+        /** Writes the buffered bytes to the underlying stream, without closing it. */
+        void flush() throws IOException {
+            flushStart();
+            out.flush();
+        }
+
+        private void writeString(String s) throws IOException {
+            Integer index = strings.get(s);
+            if (index != null) {
+                writeInt(index + 2);
+                return;
+            }
+            if (s.length() <= MAX_SHARED) {
+                strings.put(s, strings.size());
+                writeInt(NEW);
+            } else
+                writeInt(LITERAL);
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private void writeInt(int i) throws IOException {
+            while ((i & ~0x7F) != 0) {
+                out.write((i & 0x7F) | 0x80);
+                i >>>= 7;
+            }
+            out.write(i);
+        }
+    }
+
+    /** Reads the elements of a solution in the binary form. */
+    static final class Reader implements Closeable {
+
+        private final DataInputStream in;
+
+        /** The remembered strings, by index. */
+        private final List<String>    strings = new ArrayList<String>();
+
+        /**
+         * Starts reading the given stream, which must start with the bytes of a
+         * binary solution.
+         */
+        Reader(InputStream in) throws IOException {
+            this.in = new DataInputStream(in);
+            byte[] start = new byte[MAGIC.length];
+            this.in.readFully(start);
+            if (!Arrays.equals(start, MAGIC))
+                throw new IOException("This is not a binary solution file.");
+        }
+
+        /**
+         * Reads the start of the next element, and returns it without its children;
+         * the children are then read by {@link #next()}.
+         */
+        XMLNode open() throws IOException {
+            if (readInt() != START)
+                throw new IOException("Expects the start of an element.");
+            return readElement(false);
+        }
+
+        /**
+         * Reads the next child of the innermost element that is not yet ended, with
+         * all its children; returns null and ends that element if it has no more
+         * children.
+         */
+        XMLNode next() throws IOException {
+            int code = readInt();
+            if (code == END)
+                return null;
+            if (code != START)
+                throw new IOException("Expects the start or the end of an element.");
+            return readElement(true);
+        }
+
+        private XMLNode readElement(boolean children) throws IOException {
+            String type = readString();
+            int n = readInt();
+            Map<String,String> attributes = new LinkedHashMap<String,String>();
+            for (int i = 0; i < n; i++) {
+                String name = readString();
+                attributes.put(name, readString());
+            }
+            List<XMLNode> sub = new ArrayList<XMLNode>();
+            if (children)
+                for (XMLNode x = next(); x != null; x = next())
+                    sub.add(x);
+            return new XMLNode(type, attributes, sub);
+        }
+
+        private String readString() throws IOException {
+            int code = readInt();
+            if (code >= 2) {
+                if (code - 2 >= strings.size())
+                    throw new IOException("Unknown string " + (code - 2) + ".");
+                return strings.get(code - 2);
+            }
+            byte[] bytes = new byte[readInt()];
+            in.readFully(bytes);
+            String s = new String(bytes, StandardCharsets.UTF_8);
+            if (code == NEW)
+                strings.add(s);
+            return s;
+        }
+
+        private int readInt() throws IOException {
+            int ans = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = in.read();
+                if (b < 0)
+                    throw new EOFException("Unexpected end of the binary solution file.");
+                ans |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return ans;
+            }
+            throw new IOException("Malformed number in the binary solution file.");
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
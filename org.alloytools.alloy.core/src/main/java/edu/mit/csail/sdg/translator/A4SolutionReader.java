@@ -21,7 +21,12 @@ import static edu.mit.csail.sdg.ast.Sig.SIGINT;
 import static edu.mit.csail.sdg.ast.Sig.STRING;
 import static edu.mit.csail.sdg.ast.Sig.UNIV;
 
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -32,6 +37,11 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
 import edu.mit.csail.sdg.alloy4.Err;
 import edu.mit.csail.sdg.alloy4.ErrorFatal;
 import edu.mit.csail.sdg.alloy4.ErrorSyntax;
@@ -341,32 +351,29 @@ public final class A4SolutionReader {
         return var;
     }
 
-    /** Parse everything. */
-    // [electrum] heavily modified to support sequences of <instance> nodes, A4Solutions are built incrementally
-    private A4SolutionReader(Iterable<Sig> sigs, XMLNode xml) throws IOException, Err {
-        Map<ExprVar,String> skolemIds = new HashMap<>();
-        Map<Relation,ExprVar> skolemRels = new HashMap<>();
-        // find <instance>..</instance>
-        if (!xml.is("alloy"))
-            throw new ErrorSyntax("The XML file's root node must be <alloy> or <instance>.");
-        XMLNode inst = null;
-        A4Solution prev = null;
-        for (XMLNode sub : xml)
-            if (sub.is("instance")) {
-                inst = sub;
-                break;
-            }
+    /** The sigs that we expect to exist, or those of the previous state. */
+    private Iterable<Sig>         sigs;
 
-        if (inst == null)
-            throw new ErrorSyntax("The XML file must contain an <instance> element.");
+    /** The solution of the previous state, or null if none. */
+    private A4Solution            prev;
 
-        // set up the basic values of the A4Solution object
-        final int bitwidth = Integer.parseInt(inst.getAttribute("bitwidth"));
-        final int maxseq = Integer.parseInt(inst.getAttribute("maxseq"));
-        final int tracelength;
-        final int looplen;
-        final int maxtrace;
-        final int mintrace;
+    /** The basic values of the A4Solution object, read from the first state. */
+    private int                   bitwidth, maxseq, tracelength, looplen, maxtrace, mintrace;
+
+    /** Maps each skolem to its id. */
+    private final Map<ExprVar,String>   skolemIds  = new HashMap<>();
+
+    /** Maps each skolem relation to its skolem. */
+    private final Map<Relation,ExprVar> skolemRels = new HashMap<>();
+
+    private A4SolutionReader(Iterable<Sig> sigs) {
+        this.sigs = sigs;
+    }
+
+    /** Parse the basic values of the A4Solution object from the first state. */
+    private void header(XMLNode inst) throws Err {
+        bitwidth = Integer.parseInt(inst.getAttribute("bitwidth"));
+        maxseq = Integer.parseInt(inst.getAttribute("maxseq"));
         try {
             mintrace = Integer.parseInt(inst.getAttribute("mintrace"));
             maxtrace = Integer.parseInt(inst.getAttribute("maxtrace"));
@@ -380,123 +387,248 @@ public final class A4SolutionReader {
             for (int i = min; i <= max; i++) {
                 atoms.add(Integer.toString(i));
             }
+    }
 
-        // [electrum] get all atoms of the universe, must traverse all states
-        for (XMLNode sub : xml)
-            if (sub.is("instance")) {
-                inst = sub;
-                for (XMLNode x : inst) {
-                    if (x.is("sig")) {
-                        boolean isString = STRING.label.equals(label(x)) && yes(x, "builtin");
-                        for (XMLNode y : x)
-                            if (y.is("atom")) {
-                                String attr = y.getAttribute("label");
-                                atoms.add(attr);
-                                if (isString)
-                                    strings.add(attr);
-                            }
+    /**
+     * Collect the atoms of a state.
+     */
+    // [electrum] get all atoms of the universe, must traverse all states
+    private void atoms(XMLNode inst) {
+        for (XMLNode x : inst) {
+            if (x.is("sig")) {
+                boolean isString = STRING.label.equals(label(x)) && yes(x, "builtin");
+                for (XMLNode y : x)
+                    if (y.is("atom")) {
+                        String attr = y.getAttribute("label");
+                        atoms.add(attr);
+                        if (isString)
+                            strings.add(attr);
                     }
+            }
+        }
+    }
+
+    /**
+     * Parse a state, once the atoms of all states are collected.
+     */
+    // [electrum] heavily modified to support sequences of <instance> nodes, A4Solutions are built incrementally
+    private void step(XMLNode inst) throws IOException, Err {
+        // [electrum] if not first step, retrieve already created sigs
+        prev = sol;
+        if (prev != null)
+            sigs = prev.getAllReachableSigs();
+
+        for (Sig s : sigs)
+            if (!s.builtin) {
+                allsigs.add(s);
+                choices.add(s);
+                for (Field f : s.getFields())
+                    choices.add(f);
+            }
+
+        nmap.clear();
+        expr2ts.clear();
+        for (XMLNode x : inst) {
+            String id = x.getAttribute("ID");
+            if (id.length() > 0 && (x.is("field") || x.is("skolem") || x.is("sig"))) {
+                if (nmap.put(id, x) != null)
+                    throw new IOException("ID " + id + " is repeated.");
+            }
+        }
+
+        // create the A4Solution object
+        A4Options opt = new A4Options();
+        opt.originalFilename = inst.getAttribute("filename");
+        // [electrum] do not use actual max trace, solution would identify unbounded solving but no unbounded solver
+        sol = new A4Solution(inst.getAttribute("command"), bitwidth, Math.min(tracelength, mintrace), Math.min(tracelength, maxtrace), maxseq, strings, atoms, null, opt, 1);
+        factory = sol.getFactory();
+        // parse all the sigs, fields, and skolems
+        for (Map.Entry<String,XMLNode> e : nmap.entrySet())
+            if (e.getValue().is("sig"))
+                parseSig(e.getKey(), 0);
+        for (Map.Entry<String,XMLNode> e : nmap.entrySet())
+            if (e.getValue().is("field"))
+                parseField(e.getKey());
+        for (Map.Entry<String,XMLNode> e : nmap.entrySet())
+            if (e.getValue().is("skolem")) {
+                ExprVar v = parseSkolem(e.getKey());
+                skolemIds.put(v, e.getKey());
+            }
+        for (Sig s : allsigs)
+            if (!s.builtin) {
+                TupleSet ts = expr2ts.remove(s);
+                if (ts == null)
+                    ts = factory.noneOf(1); // If the sig was NOT mentioned in the XML file...
+                Relation r;
+                // [electrum] if first state create the relation
+                if (prev == null)
+                    r = sol.addRel(s.label, ts, ts, s.isVariable != null);
+                // [electrum] otherwise use previously created
+                else {
+                    r = (Relation) prev.a2k(s);
+                    sol.addPreRel(s.label, ts, ts, r);
+                }
+                sol.addSig(s, r);
+                for (Field f : s.getFields()) {
+                    ts = expr2ts.remove(f);
+                    if (ts == null)
+                        ts = factory.noneOf(f.type().arity()); // If the field was NOT mentioned in the XML file...
+                    // [electrum] if first state create the relation
+                    if (prev == null)
+                        r = sol.addRel(s.label + "." + f.label, ts, ts, f.isVariable != null);
+                    // [electrum] otherwise use previously created
+                    else {
+                        r = (Relation) prev.a2k(f);
+                        sol.addPreRel(s.label + "." + f.label, ts, ts, r);
+                    }
+                    sol.addField(f, r);
                 }
             }
+        for (Map.Entry<Expr,TupleSet> e : expr2ts.entrySet()) {
+            ExprVar v = (ExprVar) (e.getKey());
+            TupleSet ts = e.getValue();
+            Relation r = null;
+            if (prev == null) {
+                r = sol.addRel(v.label, ts, ts, true);
+                skolemRels.put(r, v);
+            } else {
+                // [electrum] search for skolem relation, must use id since skolems may be renamed at A4Solution
+                for (Expr exp : prev.getAllSkolems()) {
+                    ExprVar x = skolemRels.get(prev.a2k(exp));
+                    if (skolemIds.get(x).equals(skolemIds.get(v))) {
+                        r = (Relation) prev.a2k(exp);
+                        break;
+                    }
+                }
+                sol.addPreRel(v.label, ts, ts, r);
+            }
+            sol.kr2type(r, v.type());
+        }
+        // Done!
+        sol.solve(null, prev, looplen); // [electrum] merge current solution with previous, if any
+    }
 
+    /** Parse everything. */
+    private A4SolutionReader(Iterable<Sig> sigs, XMLNode xml) throws IOException, Err {
+        this(sigs);
+        // find <instance>..</instance>
+        if (!xml.is("alloy"))
+            throw new ErrorSyntax("The XML file's root node must be <alloy> or <instance>.");
+        XMLNode inst = null;
         for (XMLNode sub : xml)
             if (sub.is("instance")) {
                 inst = sub;
+                break;
+            }
 
-                // [electrum] if not first step, retrieve already created sigs
-                prev = sol;
-                if (prev != null)
-                    sigs = prev.getAllReachableSigs();
-
-                for (Sig s : sigs)
-                    if (!s.builtin) {
-                        allsigs.add(s);
-                        choices.add(s);
-                        for (Field f : s.getFields())
-                            choices.add(f);
-                    }
+        if (inst == null)
+            throw new ErrorSyntax("The XML file must contain an <instance> element.");
 
-                nmap.clear();
-                expr2ts.clear();
-                for (XMLNode x : inst) {
-                    String id = x.getAttribute("ID");
-                    if (id.length() > 0 && (x.is("field") || x.is("skolem") || x.is("sig"))) {
-                        if (nmap.put(id, x) != null)
-                            throw new IOException("ID " + id + " is repeated.");
-                    }
-                }
+        // set up the basic values of the A4Solution object
+        header(inst);
+        for (XMLNode sub : xml)
+            if (sub.is("instance"))
+                atoms(sub);
+        for (XMLNode sub : xml)
+            if (sub.is("instance"))
+                step(sub);
+    }
 
-                // create the A4Solution object
-                A4Options opt = new A4Options();
-                opt.originalFilename = inst.getAttribute("filename");
-                // [electrum] do not use actual max trace, solution would identify unbounded solving but no unbounded solver
-                sol = new A4Solution(inst.getAttribute("command"), bitwidth, Math.min(tracelength, mintrace), Math.min(tracelength, maxtrace), maxseq, strings, atoms, null, opt, 1);
-                factory = sol.getFactory();
-                // parse all the sigs, fields, and skolems
-                for (Map.Entry<String,XMLNode> e : nmap.entrySet())
-                    if (e.getValue().is("sig"))
-                        parseSig(e.getKey(), 0);
-                for (Map.Entry<String,XMLNode> e : nmap.entrySet())
-                    if (e.getValue().is("field"))
-                        parseField(e.getKey());
-                for (Map.Entry<String,XMLNode> e : nmap.entrySet())
-                    if (e.getValue().is("skolem")) {
-                        ExprVar v = parseSkolem(e.getKey());
-                        skolemIds.put(v, e.getKey());
-                    }
-                for (Sig s : allsigs)
-                    if (!s.builtin) {
-                        TupleSet ts = expr2ts.remove(s);
-                        if (ts == null)
-                            ts = factory.noneOf(1); // If the sig was NOT mentioned in the XML file...
-                        Relation r;
-                        // [electrum] if first state create the relation
-                        if (prev == null)
-                            r = sol.addRel(s.label, ts, ts, s.isVariable != null);
-                        // [electrum] otherwise use previously created
-                        else {
-                            r = (Relation) prev.a2k(s);
-                            sol.addPreRel(s.label, ts, ts, r);
-                        }
-                        sol.addSig(s, r);
-                        for (Field f : s.getFields()) {
-                            ts = expr2ts.remove(f);
-                            if (ts == null)
-                                ts = factory.noneOf(f.type().arity()); // If the field was NOT mentioned in the XML file...
-                            // [electrum] if first state create the relation
-                            if (prev == null)
-                                r = sol.addRel(s.label + "." + f.label, ts, ts, f.isVariable != null);
-                            // [electrum] otherwise use previously created
-                            else {
-                                r = (Relation) prev.a2k(f);
-                                sol.addPreRel(s.label + "." + f.label, ts, ts, r);
-                            }
-                            sol.addField(f, r);
-                        }
-                    }
-                for (Map.Entry<Expr,TupleSet> e : expr2ts.entrySet()) {
-                    ExprVar v = (ExprVar) (e.getKey());
-                    TupleSet ts = e.getValue();
-                    Relation r = null;
-                    if (prev == null) {
-                        r = sol.addRel(v.label, ts, ts, true);
-                        skolemRels.put(r, v);
-                    } else {
-                        // [electrum] search for skolem relation, must use id since skolems may be renamed at A4Solution
-                        for (Expr exp : prev.getAllSkolems()) {
-                            ExprVar x = skolemRels.get(prev.a2k(exp));
-                            if (skolemIds.get(x).equals(skolemIds.get(v))) {
-                                r = (Relation) prev.a2k(exp);
-                                break;
-                            }
-                        }
-                        sol.addPreRel(v.label, ts, ts, r);
-                    }
-                    sol.kr2type(r, v.type());
+    /**
+     * Reads the &lt;instance&gt; elements of a solution file one at a time, so
+     * that only one state of the trace is held in memory as XML nodes.
+     */
+    private abstract static class Instances implements Closeable {
+
+        /**
+         * Opens the given file, which may hold either the XML of a solution or its
+         * binary form.
+         */
+        static Instances open(File file) throws IOException, Err {
+            InputStream in = new BufferedInputStream(new FileInputStream(file));
+            try {
+                return A4SolutionBinary.isBinary(in) ? new Binary(in) : new Stax(in);
+            } catch (IOException | RuntimeException ex) {
+                in.close();
+                throw ex;
+            }
+        }
+
+        /**
+         * Returns the next &lt;instance&gt; element, or null if there is none left.
+         */
+        abstract XMLNode next() throws IOException;
+    }
+
+    /** Reads the &lt;instance&gt; elements of an XML file with StAX. */
+    private static final class Stax extends Instances {
+
+        private final InputStream     in;
+        private final XMLStreamReader reader;
+
+        Stax(InputStream in) throws IOException, Err {
+            this.in = in;
+            try {
+                XMLInputFactory factory = XMLInputFactory.newInstance();
+                factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+                factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+                reader = factory.createXMLStreamReader(in, "UTF-8");
+                if (reader.nextTag() != XMLStreamConstants.START_ELEMENT || !reader.getLocalName().equals("alloy"))
+                    throw new ErrorSyntax("The XML file's root node must be <alloy> or <instance>.");
+            } catch (XMLStreamException ex) {
+                throw new IOException(ex.getMessage(), ex);
+            }
+        }
+
+        @Override
+        XMLNode next() throws IOException {
+            try {
+                while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                    XMLNode x = new XMLNode(reader);
+                    if (x.is("instance"))
+                        return x;
                 }
-                // Done!
-                sol.solve(null, prev, looplen); // [electrum] merge current solution with previous, if any
+                return null;
+            } catch (XMLStreamException ex) {
+                throw new IOException(ex.getMessage(), ex);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                reader.close();
+            } catch (XMLStreamException ex) {
+                throw new IOException(ex.getMessage(), ex);
+            } finally {
+                in.close();
             }
+        }
+    }
+
+    /** Reads the &lt;instance&gt; elements of a binary file. */
+    private static final class Binary extends Instances {
+
+        private final A4SolutionBinary.Reader reader;
+
+        Binary(InputStream in) throws IOException, Err {
+            reader = new A4SolutionBinary.Reader(in);
+            if (!reader.open().is("alloy"))
+                throw new ErrorSyntax("The XML file's root node must be <alloy> or <instance>.");
+        }
+
+        @Override
+        XMLNode next() throws IOException {
+            for (XMLNode x = reader.next(); x != null; x = reader.next())
+                if (x.is("instance"))
+                    return x;
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
     }
 
     /**
@@ -509,6 +641,44 @@ public final class A4SolutionReader {
      * if there's a sig or field X in the XML but not in the list, then X (and its
      * value in XML file) is added to the solution.
      */
+    /**
+     * Read a solution from a file written by
+     * {@link A4SolutionWriter#writeInstance(edu.mit.csail.sdg.alloy4.A4Reporter, A4Solution, java.io.PrintWriter, Iterable, Map)}
+     * or by
+     * {@link A4SolutionWriter#writeBinaryInstance(edu.mit.csail.sdg.alloy4.A4Reporter, A4Solution, java.io.OutputStream, Iterable, Map)}.
+     * <p>
+     * Unlike {@link #read(Iterable, XMLNode)}, the file is streamed: only one
+     * state of the trace is held in memory as XML nodes at a time. Since the
+     * atoms of every state must be known before the first state is built, the
+     * file is read twice. The list of sigs is used as in
+     * {@link #read(Iterable, XMLNode)}.
+     */
+    public static A4Solution read(Iterable<Sig> sigs, File file) throws Err {
+        try {
+            if (sigs == null)
+                sigs = new ArrayList<Sig>();
+            A4SolutionReader x = new A4SolutionReader(sigs);
+            try (Instances in = Instances.open(file)) {
+                XMLNode inst = in.next();
+                if (inst == null)
+                    throw new ErrorSyntax("The XML file must contain an <instance> element.");
+                x.header(inst);
+                for (; inst != null; inst = in.next())
+                    x.atoms(inst);
+            }
+            try (Instances in = Instances.open(file)) {
+                for (XMLNode inst = in.next(); inst != null; inst = in.next())
+                    x.step(inst);
+            }
+            return x.sol;
+        } catch (Throwable ex) {
+            if (ex instanceof Err)
+                throw ((Err) ex);
+            else
+                throw new ErrorFatal("Fatal error occurred: " + ex, ex);
+        }
+    }
+
     public static A4Solution read(Iterable<Sig> sigs, XMLNode xml) throws Err {
         try {
             if (sigs == null)
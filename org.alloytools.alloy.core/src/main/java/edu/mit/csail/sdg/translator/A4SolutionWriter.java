@@ -15,6 +15,8 @@
 
 package edu.mit.csail.sdg.translator;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.IdentityHashMap;
@@ -71,7 +73,72 @@ public final class A4SolutionWriter {
     private final List<PrimSig>                toplevels = new ArrayList<PrimSig>();
 
     /** This is the output file. */
-    private final PrintWriter                  out;
+    private final Sink                         out;
+
+    /**
+     * Receives the elements of the solution as they are written, so that the same
+     * traversal writes both the XML file and its binary form.
+     */
+    interface Sink {
+
+        /** Starts an element; its attributes follow, then its children. */
+        void start(String element) throws IOException;
+
+        /** Adds an attribute to the element just started. */
+        void attribute(String name, String value) throws IOException;
+
+        /** Ends the innermost element that is not yet ended. */
+        void end() throws IOException;
+    }
+
+    /**
+     * Writes the elements as XML text: the sigs, fields and skolems of a state
+     * each start a line, as do their atoms, tuples and types, and the atoms of a
+     * tuple and the types of a field are written on the line of their parent.
+     */
+    private static final class XMLSink implements Sink {
+
+        private final PrintWriter  out;
+
+        /** The names of the elements that are not yet ended. */
+        private final List<String> names = new ArrayList<String>();
+
+        /** Whether the start tag of the innermost element is not yet closed. */
+        private boolean            open  = false;
+
+        XMLSink(PrintWriter out) {
+            this.out = out;
+        }
+
+        @Override
+        public void start(String element) {
+            if (open)
+                out.print(">");
+            out.print(names.size() <= 2 ? "\n" : names.size() == 3 ? "\n   " : " ");
+            out.print("<");
+            out.print(element);
+            names.add(element);
+            open = true;
+        }
+
+        @Override
+        public void attribute(String name, String value) {
+            Util.encodeXMLs(out, " " + name + "=\"", value, "\"");
+        }
+
+        @Override
+        public void end() {
+            String element = names.remove(names.size() - 1);
+            if (open)
+                out.print("/>");
+            else {
+                out.print(names.size() <= 2 ? "\n</" : " </");
+                out.print(element);
+                out.print(">");
+            }
+            open = false;
+        }
+    }
 
     /**
      * Helper method that returns a unique id for the given Sig, Field, or Skolem.
@@ -98,7 +165,7 @@ public final class A4SolutionWriter {
     }
 
     /** Write the given Expr and its Type. */
-    private boolean writeExpr(String prefix, Expr expr, int state) throws Err {
+    private boolean writeExpr(Expr expr, int state) throws Err, IOException {
         Type type = expr.type();
         if (!type.hasTuple())
             return false;
@@ -124,32 +191,32 @@ public final class A4SolutionWriter {
             }
             // Now, write out the tupleset
             A4TupleSet ts = (A4TupleSet) (sol.eval(expr, state));
-            // [electrum] force printing of element even if ts empty, otherwise mutable skolem funs missing from certain steps
-            if (prefix.length() > 0) {
-                out.print(prefix);
-                prefix = "";
-            }
             for (A4Tuple t : ts) {
-                out.print("   <tuple>");
+                out.start("tuple");
                 for (int i = 0; i < t.arity(); i++)
-                    Util.encodeXMLs(out, " <atom label=\"", t.atom(i), "\"/>");
-                out.print(" </tuple>\n");
+                    element("atom", "label", t.atom(i));
+                out.end();
             }
         }
         // Now, write out the type
-        if (prefix.length() > 0)
-            return false;
         for (List<PrimSig> ps : type.fold()) {
-            out.print("   <types>");
+            out.start("types");
             for (PrimSig sig : ps)
-                Util.encodeXMLs(out, " <type ID=\"", map(sig), "\"/>");
-            out.print(" </types>\n");
+                element("type", "ID", map(sig));
+            out.end();
         }
         return true;
     }
 
+    /** Write an element with one attribute and no children. */
+    private void element(String element, String name, String value) throws IOException {
+        out.start(element);
+        out.attribute(name, value);
+        out.end();
+    }
+
     /** Write the given Sig. */
-    private A4TupleSet writeSig(final Sig x, int state) throws Err {
+    private A4TupleSet writeSig(final Sig x, int state) throws Err, IOException {
         A4TupleSet ts = null, ts2 = null;
         if (x == Sig.NONE)
             return null; // should not happen, but we test for it anyway
@@ -165,43 +232,44 @@ public final class A4SolutionWriter {
             }
         if (rep != null)
             rep.write(x);
-        Util.encodeXMLs(out, "\n<sig label=\"", x.label, "\" ID=\"", map(x));
+        out.start("sig");
+        out.attribute("label", x.label);
+        out.attribute("ID", map(x));
         if (x instanceof PrimSig && x != Sig.UNIV)
-            Util.encodeXMLs(out, "\" parentID=\"", map(((PrimSig) x).parent));
+            out.attribute("parentID", map(((PrimSig) x).parent));
         if (x.builtin)
-            out.print("\" builtin=\"yes");
+            out.attribute("builtin", "yes");
         if (x.isAbstract != null)
-            out.print("\" abstract=\"yes");
+            out.attribute("abstract", "yes");
         if (x.isOne != null)
-            out.print("\" one=\"yes");
+            out.attribute("one", "yes");
         if (x.isLone != null)
-            out.print("\" lone=\"yes");
+            out.attribute("lone", "yes");
         if (x.isSome != null)
-            out.print("\" some=\"yes");
+            out.attribute("some", "yes");
         if (x.isPrivate != null)
-            out.print("\" private=\"yes");
+            out.attribute("private", "yes");
         if (x.isMeta != null)
-            out.print("\" meta=\"yes");
+            out.attribute("meta", "yes");
         if (x instanceof SubsetSig && ((SubsetSig) x).exact)
-            out.print("\" exact=\"yes");
+            out.attribute("exact", "yes");
         if (x.isEnum != null)
-            out.print("\" enum=\"yes");
+            out.attribute("enum", "yes");
         if (x.isVariable != null)
-            out.print("\" var=\"yes");
-        out.print("\">\n");
+            out.attribute("var", "yes");
         try {
             if (sol != null && x != Sig.UNIV && x != Sig.SIGINT && x != Sig.SEQIDX) {
                 ts = (sol.eval(x, state));
                 for (A4Tuple t : ts.minus(ts2))
-                    Util.encodeXMLs(out, "   <atom label=\"", t.atom(0), "\"/>\n");
+                    element("atom", "label", t.atom(0));
             }
         } catch (Throwable ex) {
             throw new ErrorFatal("Error evaluating sig " + x.label, ex);
         }
         if (x instanceof SubsetSig)
             for (Sig p : ((SubsetSig) x).parents)
-                Util.encodeXMLs(out, "   <type ID=\"", map(p), "\"/>\n");
-        out.print("</sig>\n");
+                element("type", "ID", map(p));
+        out.end();
         for (Field field : x.getFields())
             writeField(field, state);
         return ts;
@@ -218,16 +286,18 @@ public final class A4SolutionWriter {
                        // declarations
             if (rep != null)
                 rep.write(x);
-            Util.encodeXMLs(out, "\n<field label=\"", x.label, "\" ID=\"", map(x), "\" parentID=\"", map(x.sig));
+            out.start("field");
+            out.attribute("label", x.label);
+            out.attribute("ID", map(x));
+            out.attribute("parentID", map(x.sig));
             if (x.isPrivate != null)
-                out.print("\" private=\"yes");
+                out.attribute("private", "yes");
             if (x.isMeta != null)
-                out.print("\" meta=\"yes");
+                out.attribute("meta", "yes");
             if (x.isVariable != null)
-                out.print("\" var=\"yes");
-            out.print("\">\n");
-            writeExpr("", x, state);
-            out.print("</field>\n");
+                out.attribute("var", "yes");
+            writeExpr(x, state);
+            out.end();
         } catch (Throwable ex) {
             throw new ErrorFatal("Error evaluating field " + x.sig.label + "." + x.label, ex);
         }
@@ -238,14 +308,14 @@ public final class A4SolutionWriter {
         try {
             if (sol == null)
                 return; // when writing a metamodel, skip the skolems
-            if (x.type().hasNoTuple())
+            if (!x.type().hasTuple())
                 return; // we do not allow "none" in the XML file's type
                        // declarations
-            StringBuilder sb = new StringBuilder();
-            Util.encodeXMLs(sb, "\n<skolem label=\"", x.label, "\" ID=\"", map(x), "\">\n");
-            if (writeExpr(sb.toString(), x, state)) {
-                out.print("</skolem>\n");
-            }
+            out.start("skolem");
+            out.attribute("label", x.label);
+            out.attribute("ID", map(x));
+            writeExpr(x, state);
+            out.end();
         } catch (Throwable ex) {
             throw new ErrorFatal("Error evaluating skolem " + x.label, ex);
         }
@@ -255,7 +325,7 @@ public final class A4SolutionWriter {
      * If sol==null, write the list of Sigs as a Metamodel, else write the solution
      * as an XML file.
      */
-    private A4SolutionWriter(A4Reporter rep, A4Solution sol, Iterable<Sig> sigs, int bitwidth, int maxseq, int mintrace, int maxtrace, int tracelength, int backloop, String originalCommand, String originalFileName, PrintWriter out, Iterable<Func> extraSkolems, int state) throws Err {
+    private A4SolutionWriter(A4Reporter rep, A4Solution sol, Iterable<Sig> sigs, int bitwidth, int maxseq, int mintrace, int maxtrace, int tracelength, int backloop, String originalCommand, String originalFileName, Sink out, Iterable<Func> extraSkolems, int state) throws Err, IOException {
         this.rep = rep;
         this.out = out;
         this.sol = sol;
@@ -263,25 +333,17 @@ public final class A4SolutionWriter {
             if (s instanceof PrimSig && ((PrimSig) s).parent == Sig.UNIV)
                 toplevels.add((PrimSig) s);
         // [electrum] write temporal metadata
-        out.print("<instance bitwidth=\"");
-        out.print(bitwidth);
-        out.print("\" maxseq=\"");
-        out.print(maxseq);
-        out.print("\" mintrace=\"");
-        out.print(mintrace);
-        out.print("\" maxtrace=\"");
-        out.print(maxtrace);
-        out.print("\" command=\"");
-        Util.encodeXML(out, originalCommand);
-        out.print("\" filename=\"");
-        Util.encodeXML(out, originalFileName);
-        out.print("\" tracelength=\"");
-        out.print(tracelength);
-        out.print("\" looplength=\"");
-        out.print((tracelength-backloop));
+        out.start("instance");
+        out.attribute("bitwidth", Integer.toString(bitwidth));
+        out.attribute("maxseq", Integer.toString(maxseq));
+        out.attribute("mintrace", Integer.toString(mintrace));
+        out.attribute("maxtrace", Integer.toString(maxtrace));
+        out.attribute("command", originalCommand);
+        out.attribute("filename", originalFileName);
+        out.attribute("tracelength", Integer.toString(tracelength));
+        out.attribute("looplength", Integer.toString(tracelength - backloop));
         if (sol == null)
-            out.print("\" metamodel=\"yes");
-        out.print("\">\n");
+            out.attribute("metamodel", "yes");
         writeSig(Sig.UNIV, state);
         for (Sig s : sigs)
             if (s instanceof SubsetSig)
@@ -303,33 +365,31 @@ public final class A4SolutionWriter {
                     try {
                         if (rep != null)
                             rep.write(f.call());
-                        StringBuilder sb = new StringBuilder();
-                        Util.encodeXMLs(sb, "\n<skolem label=\"", label, "\" ID=\"m" + m);
+                        out.start("skolem");
+                        out.attribute("label", label);
+                        out.attribute("ID", "m" + m);
                         if (f.isPrivate != null)
-                            sb.append("\" private=\"yes");
-                        sb.append("\">\n");
-                        if (writeExpr(sb.toString(), f.call(), state)) {
-                            out.print("</skolem>\n");
-                        }
+                            out.attribute("private", "yes");
+                        writeExpr(f.call(), state);
+                        out.end();
                         m++;
                     } catch (Throwable ex) {
                         throw new ErrorFatal("Error evaluating skolem " + label, ex);
                     }
                 }
-        out.print("\n</instance>\n");
+        out.end();
     }
 
     /**
-     * If this solution is a satisfiable solution, this method will write it out in
-     * XML format as a sequence of &lt;instance&gt;..&lt;/instance&gt;.
+     * Write every state of the solution, then the source files, as the children
+     * of an &lt;alloy&gt; element.
      */
-    public static void writeInstance(A4Reporter rep, A4Solution sol, PrintWriter out, Iterable<Func> extraSkolems, Map<String,String> sources) throws Err {
-        if (!sol.satisfiable())
-            throw new ErrorAPI("This solution is unsatisfiable.");
-        try {
-            Util.encodeXMLs(out, "<alloy builddate=\"", Version.buildDate(), "\">\n\n");
+    private static void writeInstance(A4Reporter rep, A4Solution sol, Sink out, Iterable<Func> extraSkolems, Map<String,String> sources) throws Err, IOException {
+        out.start("alloy");
+        out.attribute("builddate", Version.buildDate());
 
-            int unrolls = 0;
+        int unrolls = 0;
+        if (extraSkolems != null)
             for (Func f : extraSkolems) {
                 if (f.count() == 0 && f.call().type().hasTuple()) {
                     int dpt = f.getBody().pastDepth();
@@ -338,14 +398,32 @@ public final class A4SolutionWriter {
                 }
             }
 
-            // [electrum] write all instances of the trace
-            for (int i = 0; i < sol.getTraceLength()+unrolls*(sol.getTraceLength()-sol.getLoopState()); i++)
-                new A4SolutionWriter(rep, sol, sol.getAllReachableSigs(), sol.getBitwidth(), sol.getMaxSeq(), sol.getMinTrace(), sol.getMaxTrace(), sol.getTraceLength(), sol.getLoopState(), sol.getOriginalCommand(), sol.getOriginalFilename(), out, extraSkolems, i);
-            if (sources != null)
-                for (Map.Entry<String,String> e : sources.entrySet()) {
-                    Util.encodeXMLs(out, "\n<source filename=\"", e.getKey(), "\" content=\"", e.getValue(), "\"/>\n");
-                }
-            out.print("\n</alloy>\n");
+        // [electrum] write all instances of the trace
+        for (int i = 0; i < sol.getTraceLength() + unrolls * (sol.getTraceLength() - sol.getLoopState()); i++)
+            new A4SolutionWriter(rep, sol, sol.getAllReachableSigs(), sol.getBitwidth(), sol.getMaxSeq(), sol.getMinTrace(), sol.getMaxTrace(), sol.getTraceLength(), sol.getLoopState(), sol.getOriginalCommand(), sol.getOriginalFilename(), out, extraSkolems, i);
+        if (sources != null)
+            for (Map.Entry<String,String> e : sources.entrySet()) {
+                out.start("source");
+                out.attribute("filename", e.getKey());
+                out.attribute("content", e.getValue());
+                out.end();
+            }
+        out.end();
+    }
+
+    /**
+     * If this solution is a satisfiable solution, this method will write it out in
+     * XML format as a sequence of &lt;instance&gt;..&lt;/instance&gt;.
+     * <p>
+     * The states are evaluated and written one at a time, so the XML is never held
+     * in memory.
+     */
+    public static void writeInstance(A4Reporter rep, A4Solution sol, PrintWriter out, Iterable<Func> extraSkolems, Map<String,String> sources) throws Err {
+        if (!sol.satisfiable())
+            throw new ErrorAPI("This solution is unsatisfiable.");
+        try {
+            writeInstance(rep, sol, new XMLSink(out), extraSkolems, sources);
+            out.print("\n");
         } catch (Throwable ex) {
             if (ex instanceof Err)
                 throw (Err) ex;
@@ -356,12 +434,37 @@ public final class A4SolutionWriter {
             throw new ErrorFatal("Error writing the solution XML file.");
     }
 
+    /**
+     * If this solution is a satisfiable solution, this method will write it out in
+     * a compact binary form of the XML written by
+     * {@link #writeInstance(A4Reporter, A4Solution, PrintWriter, Iterable, Map)}.
+     * The binary form can be read back with
+     * {@link A4SolutionReader#read(Iterable, java.io.File)}; it is several times
+     * smaller than the XML, and faster to read. The stream is flushed but not
+     * closed.
+     */
+    public static void writeBinaryInstance(A4Reporter rep, A4Solution sol, OutputStream out, Iterable<Func> extraSkolems, Map<String,String> sources) throws Err {
+        if (!sol.satisfiable())
+            throw new ErrorAPI("This solution is unsatisfiable.");
+        try {
+            A4SolutionBinary.Writer writer = new A4SolutionBinary.Writer(out);
+            writeInstance(rep, sol, writer, extraSkolems, sources);
+            writer.flush();
+        } catch (Throwable ex) {
+            if (ex instanceof Err)
+                throw (Err) ex;
+            else
+                throw new ErrorFatal("Error writing the solution binary file.", ex);
+        }
+    }
+
     /**
      * Write the metamodel as &lt;instance&gt;..&lt;/instance&gt; in XML format.
      */
     public static void writeMetamodel(List<Sig> sigs, String originalFilename, PrintWriter out) throws Err {
         try {
-            new A4SolutionWriter(null, null, sigs, 4, 4, 1, 1, 1, 0, "show metamodel", originalFilename, out, null, 0);
+            new A4SolutionWriter(null, null, sigs, 4, 4, 1, 1, 1, 0, "show metamodel", originalFilename, new XMLSink(out), null, 0);
+            out.print("\n");
         } catch (Throwable ex) {
             if (ex instanceof Err)
                 throw (Err) ex;
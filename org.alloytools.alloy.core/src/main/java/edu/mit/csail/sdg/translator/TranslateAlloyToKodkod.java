@@ -631,14 +631,40 @@ public final class TranslateAlloyToKodkod extends VisitReturn<Object> {
      * @param expr - this is the Alloy expression we want to translate
      */
     public static Object alloy2kodkod(A4Solution sol, Expr expr) throws Err {
+        TranslateAlloyToKodkod tr = new TranslateAlloyToKodkod(sol.getBitwidth(), sol.unrolls(), sol.a2k(), sol.s2k());
+        return tr.alloy2kodkod(expr);
+    }
+
+    /**
+     * Translate the Alloy expressions into equivalent Kodkod Expression or
+     * IntExpression or Formula objects. The expressions are translated by the
+     * same translator, so the functions without parameters that they call are
+     * translated once, and their translations are shared by the resulting
+     * objects.
+     *
+     * @param sol - an existing satisfiable A4Solution object
+     * @param exprs - the Alloy expressions we want to translate
+     * @return the translations, in the order of the expressions
+     */
+    public static List<Object> alloy2kodkod(A4Solution sol, List<? extends Expr> exprs) throws Err {
+        TranslateAlloyToKodkod tr = new TranslateAlloyToKodkod(sol.getBitwidth(), sol.unrolls(), sol.a2k(), sol.s2k());
+        List<Object> ans = new ArrayList<Object>(exprs.size());
+        for (Expr expr : exprs)
+            ans.add(tr.alloy2kodkod(expr));
+        return ans;
+    }
+
+    /**
+     * Translate the Alloy expression with this translator.
+     */
+    private Object alloy2kodkod(Expr expr) throws Err {
         if (expr.ambiguous && !expr.errors.isEmpty())
             expr = expr.resolve(expr.type(), null);
         if (!expr.errors.isEmpty())
             throw expr.errors.pick();
-        TranslateAlloyToKodkod tr = new TranslateAlloyToKodkod(sol.getBitwidth(), sol.unrolls(), sol.a2k(), sol.s2k());
         Object ans;
         try {
-            ans = tr.visitThis(expr);
+            ans = visitThis(expr);
         } catch (UnsatisfiedLinkError ex) {
             throw new ErrorFatal("The required JNI library cannot be found: " + ex.toString().trim());
         } catch (CapacityExceededException ex) {
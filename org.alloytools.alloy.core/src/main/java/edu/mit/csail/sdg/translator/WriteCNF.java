@@ -15,10 +15,11 @@
 
 package edu.mit.csail.sdg.translator;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 
 import edu.mit.csail.sdg.alloy4.Util;
+import kodkod.engine.satlab.DIMACSWriter;
 import kodkod.engine.satlab.SATFactory;
 import kodkod.engine.satlab.SATSolver;
 
@@ -44,23 +45,17 @@ final public class WriteCNF implements SATSolver {
         }
     }
 
-    /** This is the CNF file we are generating. */
-    private final RandomAccessFile cnf;
-
     /**
-     * This buffers up the clauses we are writing to the CNF file, to avoid
-     * excessive I/O.
+     * This is the CNF file we are generating; it buffers up the clauses, to
+     * avoid excessive I/O.
      */
-    private final StringBuilder    buffer;
-
-    /** This is the buffer size. */
-    private static final int       capacity = 8192;
+    private final DIMACSWriter cnf;
 
     /** The number of variables so far. */
-    private int                    vars     = 0;
+    private int                vars    = 0;
 
     /** The number of clauses so far. */
-    private int                    clauses  = 0;
+    private int                clauses = 0;
 
     /**
      * Helper method that returns a factory for WriteCNF instances.
@@ -94,30 +89,14 @@ final public class WriteCNF implements SATSolver {
      */
     private WriteCNF(String filename) {
         try {
-            this.cnf = new RandomAccessFile(filename, "rw");
-            this.cnf.setLength(0);
-            this.buffer = new StringBuilder(capacity);
-            for (int i = String.valueOf(Integer.MAX_VALUE).length() * 2 + 8; i > 0; i--) {
-                // get enough space into the buffer for the cnf header, which
-                // will be written last
-                buffer.append(' ');
-            }
-            buffer.append('\n');
+            // the writer reserves space for the cnf header, which will be
+            // written last
+            this.cnf = new DIMACSWriter(new File(filename));
         } catch (Exception ex) {
             throw new RuntimeException("WriteCNF failed.", ex);
         }
     }
 
-    /** Helper method that flushes the buffer. */
-    private void flush() {
-        try {
-            cnf.writeBytes(buffer.toString());
-            buffer.setLength(0);
-        } catch (IOException ex) {
-            throw new RuntimeException("WriteCNF failed.", ex);
-        }
-    }
-
     /** {@inheritDoc} */
     @Override
     protected void finalize() throws Throwable {
@@ -144,11 +123,11 @@ final public class WriteCNF implements SATSolver {
     public boolean addClause(int[] lits) {
         if (lits.length > 0) {
             clauses++;
-            if (buffer.length() > capacity)
-                flush();
-            for (int i = 0; i < lits.length; i++)
-                buffer.append(lits[i]).append(' ');
-            buffer.append("0\n");
+            try {
+                cnf.addClause(lits);
+            } catch (IOException ex) {
+                throw new RuntimeException("WriteCNF failed.", ex);
+            }
             return true;
         }
         return false;
@@ -170,10 +149,7 @@ final public class WriteCNF implements SATSolver {
     @Override
     public boolean solve() {
         try {
-            flush();
-            cnf.seek(0);
-            cnf.writeBytes("p cnf " + vars + " " + clauses);
-            cnf.close();
+            cnf.close(vars);
             return false;
         } catch (Exception ex) {
             throw new RuntimeException("WriteCNF failed.", ex);
@@ -0,0 +1,172 @@
+/* Alloy Analyzer 4 -- Copyright (c) 2006-2009, Felix Chang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files
+ * (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ * OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package edu.mit.csail.sdg.translator;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+import edu.mit.csail.sdg.alloy4.XMLNode;
+import edu.mit.csail.sdg.ast.Sig;
+
+/**
+ * Compares the ways of reading a large solution file: the DOM reader that
+ * parses the whole XML file into memory before reading it, the streaming reader
+ * that reads it one state at a time, and the streaming reader on the binary
+ * form of the same solution.
+ * <p>
+ * The solution is generated rather than solved, so that it can be made as
+ * large as needed: one sig with the given number of atoms, and a mutable field
+ * with the given number of random tuples in each of the given number of states.
+ * For every reader, it reports the size of the file, the average time to read
+ * it, and the peak heap used while reading it.
+ * <p>
+ * Usage: java edu.mit.csail.sdg.translator.SolutionFiles [atoms] [tuples]
+ * [states] [repetitions]
+ */
+public final class SolutionFiles {
+
+    private interface Read {
+
+        A4Solution read(File file) throws Exception;
+    }
+
+    private static void usage() {
+        System.out.println("Usage: java edu.mit.csail.sdg.translator.SolutionFiles [atoms] [tuples] [states] [repetitions]");
+        System.exit(1);
+    }
+
+    /**
+     * Writes a solution with the given numbers of atoms, tuples per state and
+     * states to the given file.
+     */
+    private static void generate(File file, int atoms, int tuples, int states) throws IOException {
+        Random random = new Random(0);
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            out.print("<alloy builddate=\"1970-01-01T00:00:00Z\">\n");
+            for (int state = 0; state < states; state++) {
+                out.print("\n<instance bitwidth=\"4\" maxseq=\"4\" mintrace=\"1\" maxtrace=\"" + states + "\" command=\"Run generated\" filename=\"\"");
+                out.print(" tracelength=\"" + states + "\" looplength=\"1\">\n");
+                out.print("\n<sig label=\"seq/Int\" ID=\"0\" parentID=\"1\" builtin=\"yes\"/>");
+                out.print("\n<sig label=\"Int\" ID=\"1\" parentID=\"2\" builtin=\"yes\"/>");
+                out.print("\n<sig label=\"String\" ID=\"3\" parentID=\"2\" builtin=\"yes\"/>");
+                out.print("\n<sig label=\"this/Node\" ID=\"4\" parentID=\"2\">");
+                for (int i = 0; i < atoms; i++)
+                    out.print("\n   <atom label=\"Node$" + i + "\"/>");
+                out.print("\n</sig>\n");
+                out.print("\n<field label=\"edges\" ID=\"5\" parentID=\"4\" var=\"yes\">");
+                for (int i = 0; i < tuples; i++)
+                    out.print("\n   <tuple> <atom label=\"Node$" + random.nextInt(atoms) + "\"/> <atom label=\"Node$" + random.nextInt(atoms) + "\"/> </tuple>");
+                out.print("\n   <types> <type ID=\"4\"/> <type ID=\"4\"/> </types>");
+                out.print("\n</field>\n");
+                out.print("\n<sig label=\"univ\" ID=\"2\" builtin=\"yes\"/>\n");
+                out.print("\n</instance>\n");
+            }
+            out.print("\n</alloy>\n");
+        }
+    }
+
+    /**
+     * Returns the peak heap usage since the last call, and resets it.
+     */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+                pool.resetPeakUsage();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Reads the given file the given number of times after one warm-up run, and
+     * prints the average time and the peak heap usage of a read.
+     */
+    private static A4Solution run(String name, File file, Read reader, int repetitions) throws Exception {
+        A4Solution sol = null;
+        long time = 0, heap = 0;
+        for (int i = 0; i <= repetitions; i++) {
+            sol = null;
+            System.gc();
+            peakHeap();
+            long start = System.nanoTime();
+            sol = reader.read(file);
+            long end = System.nanoTime();
+            if (i > 0) {
+                time += end - start;
+                heap = Math.max(heap, peakHeap());
+            }
+        }
+        System.out.println(String.format("%-10s %12d %12.2f %12.2f", name, file.length(), time / 1e6 / repetitions, heap / 1048576.0));
+        return sol;
+    }
+
+    /**
+     * Usage: java edu.mit.csail.sdg.translator.SolutionFiles [atoms] [tuples]
+     * [states] [repetitions]
+     */
+    public static void main(String[] args) throws Exception {
+        int atoms = 1000, tuples = 50000, states = 5, repetitions = 3;
+        try {
+            if (args.length > 0)
+                atoms = Integer.parseInt(args[0]);
+            if (args.length > 1)
+                tuples = Integer.parseInt(args[1]);
+            if (args.length > 2)
+                states = Integer.parseInt(args[2]);
+            if (args.length > 3)
+                repetitions = Integer.parseInt(args[3]);
+        } catch (NumberFormatException e) {
+            usage();
+        }
+        if (atoms < 1 || tuples < 0 || states < 1 || repetitions < 1)
+            usage();
+
+        File xml = File.createTempFile("solution", ".xml"), bin = File.createTempFile("solution", ".bin");
+        try {
+            generate(xml, atoms, tuples, states);
+            System.out.println(String.format("%-10s %12s %12s %12s", "reader", "bytes", "read ms", "peak heap MB"));
+            A4Solution dom = run("dom", xml, file -> A4SolutionReader.read(new ArrayList<Sig>(), new XMLNode(file)), repetitions);
+            A4Solution stream = run("stream", xml, file -> A4SolutionReader.read(new ArrayList<Sig>(), file), repetitions);
+            if (!dom.toString().equals(stream.toString()))
+                throw new AssertionError("The DOM and streaming readers gave different solutions.");
+            // reading relabels the atoms, so the binary file is compared with
+            // an XML file written from the same solution
+            stream.writeXML(xml.getPath());
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(bin))) {
+                A4SolutionWriter.writeBinaryInstance(null, stream, out, null, Collections.<String,String> emptyMap());
+            }
+            A4Solution binary = run("binary", bin, file -> A4SolutionReader.read(new ArrayList<Sig>(), file), repetitions);
+            if (!A4SolutionReader.read(new ArrayList<Sig>(), xml).toString().equals(binary.toString()))
+                throw new AssertionError("The XML and binary files gave different solutions.");
+        } finally {
+            xml.delete();
+            bin.delete();
+        }
+    }
+}
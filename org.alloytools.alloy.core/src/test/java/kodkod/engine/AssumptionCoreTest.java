@@ -0,0 +1,83 @@
+package kodkod.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import kodkod.ast.Formula;
+import kodkod.ast.Node;
+import kodkod.ast.Relation;
+import kodkod.engine.config.ExtendedOptions;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.instance.PardinusBounds;
+import kodkod.instance.Universe;
+import kodkod.solvers.CDCLCoreRef;
+import kodkod.solvers.SAT4JRef;
+
+public class AssumptionCoreTest {
+
+    private final Relation a = Relation.unary_variable("A");
+    private final Relation b = Relation.unary("B");
+
+    private PardinusBounds bounds() {
+        Universe u = new Universe("a0", "a1");
+        PardinusBounds bounds = new PardinusBounds(u);
+        bounds.bound(a, u.factory().allOf(1));
+        bounds.bound(b, u.factory().allOf(1));
+        return bounds;
+    }
+
+    private Solution solve(Formula formula, SATFactory factory, boolean incremental, int logTranslation) {
+        ExtendedOptions options = new ExtendedOptions();
+        options.setSolver(factory);
+        options.setRunTemporal(true);
+        options.setRunDecomposed(false);
+        options.setMaxTraceLength(4);
+        options.setIncrementalTraces(incremental);
+        options.setLogTranslation(logTranslation);
+        options.setSkolemDepth(-1);
+        options.setSolver(factory.doOptions(options));
+        return new PardinusSolver(options).solve(formula, bounds());
+    }
+
+    private Set<Formula> minimalCore(boolean incremental) {
+        Formula formula = Formula.and(a.some().always(), b.some(), a.no().eventually(), b.lone());
+        Solution sol = solve(formula, CDCLCoreRef.INSTANCE, incremental, 2);
+        assertFalse(sol.sat());
+        Proof proof = sol.proof();
+        assertNotNull(proof);
+        proof.minimize(null);
+        Set<Formula> core = new LinkedHashSet<>();
+        for (Node node : proof.highLevelCore().values())
+            core.add((Formula) node);
+        return core;
+    }
+
+    @Test
+    public void coreOfIncrementalTracesIsUnsatisfiable() {
+        Set<Formula> core = minimalCore(true);
+        assertEquals(2, core.size());
+        assertFalse(solve(Formula.and(core), SAT4JRef.INSTANCE, false, 0).sat());
+    }
+
+    @Test
+    public void coreOfSeparateTracesIsUnsatisfiable() {
+        Set<Formula> core = minimalCore(false);
+        assertEquals(2, core.size());
+        assertFalse(solve(Formula.and(core), SAT4JRef.INSTANCE, false, 0).sat());
+    }
+
+    @Test
+    public void solversWithoutProofsOnlyExtractCoresWhenAsked() {
+        Formula formula = Formula.and(a.some().always(), b.some(), a.no().eventually(), b.lone());
+        Solution sol = solve(formula, SAT4JRef.INSTANCE, false, 2);
+        assertFalse(sol.sat());
+        assertNull(sol.proof());
+    }
+}
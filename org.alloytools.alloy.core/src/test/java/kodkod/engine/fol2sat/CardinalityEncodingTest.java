@@ -0,0 +1,116 @@
+package kodkod.engine.fol2sat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import kodkod.ast.Expression;
+import kodkod.ast.Formula;
+import kodkod.ast.IntConstant;
+import kodkod.ast.IntExpression;
+import kodkod.ast.Relation;
+import kodkod.ast.Variable;
+import kodkod.ast.operator.IntCompOperator;
+import kodkod.engine.Solution;
+import kodkod.engine.Solver;
+import kodkod.engine.config.Options.CardinalityEncoding;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.Universe;
+import kodkod.util.nodes.AnnotatedNode;
+
+/**
+ * Checks that every cardinality encoding gives the same models as the adder,
+ * for comparisons of cardinalities with constants, with bitwidths for which
+ * the cardinalities can or cannot overflow.
+ */
+public class CardinalityEncodingTest {
+
+    private final Relation r    = Relation.unary("r");
+    private final Relation e    = Relation.binary("e");
+    private final Universe universe = new Universe("a0", "a1", "a2", "a3", "a4", "a5");
+
+    private static final IntCompOperator[] OPS = {
+        IntCompOperator.EQ, IntCompOperator.NEQ, IntCompOperator.LT, IntCompOperator.LTE, IntCompOperator.GT, IntCompOperator.GTE
+    };
+
+    private List<Formula> formulas(int max) {
+        List<Formula> formulas = new ArrayList<>();
+        IntExpression count = r.count();
+        for (IntCompOperator op : OPS) {
+            for (int k = -1; k <= max; k++)
+                formulas.add(count.compare(op, IntConstant.constant(k)));
+        }
+        Variable x = Variable.unary("x");
+        formulas.add(x.join(e).count().lte(IntConstant.constant(1)).forAll(x.oneOf(r)));
+        formulas.add(e.count().eq(IntConstant.constant(3)).and(r.count().gt(IntConstant.constant(2))));
+        formulas.add(r.union(e.join(Expression.UNIV)).count().gte(IntConstant.constant(4)));
+        return formulas;
+    }
+
+    private Bounds bounds(int bitwidth) {
+        TupleFactory f = universe.factory();
+        Bounds bounds = new Bounds(universe);
+        bounds.bound(r, f.allOf(1));
+        bounds.bound(e, f.setOf(f.tuple("a0", "a1"), f.tuple("a0", "a2"), f.tuple("a1", "a2"), f.tuple("a3", "a4")));
+        for (int i = -(1 << (bitwidth - 1)); i < 1 << (bitwidth - 1); i++)
+            bounds.boundExactly(i, f.setOf(universe.atom(Math.abs(i) % universe.size())));
+        return bounds;
+    }
+
+    /**
+     * Returns the values of the relations of the given formula in its models.
+     * A comparison that cannot fail, such as #r <= 6, is folded to true by the
+     * unary encodings but not by the adder, and a formula folded to a constant
+     * has a model for every value of the relations it does not mention, so
+     * only the relations it mentions are compared.
+     */
+    private Set<String> models(Formula formula, int bitwidth, CardinalityEncoding encoding) {
+        Solver solver = new Solver();
+        solver.options().setSymmetryBreaking(0);
+        solver.options().setBitwidth(bitwidth);
+        solver.options().setCardinalityEncoding(encoding);
+        Set<Relation> relations = AnnotatedNode.annotate(formula).relations();
+        Set<String> models = new LinkedHashSet<>();
+        for (Iterator<Solution> it = solver.solveAll(formula, bounds(bitwidth)); it.hasNext();) {
+            Solution sol = it.next();
+            if (sol.sat()) {
+                StringBuilder model = new StringBuilder();
+                for (Relation relation : new Relation[] { r, e }) {
+                    if (relations.contains(relation))
+                        model.append(relation).append('=').append(sol.instance().tuples(relation)).append(' ');
+                }
+                models.add(model.toString());
+            }
+        }
+        return models;
+    }
+
+    private void checkEncodings(int bitwidth, int max) {
+        int total = 0;
+        for (Formula formula : formulas(max)) {
+            Set<String> expected = models(formula, bitwidth, CardinalityEncoding.ADDER);
+            total += expected.size();
+            for (CardinalityEncoding encoding : CardinalityEncoding.values())
+                assertEquals(encoding + " on " + formula + " with bitwidth " + bitwidth, expected, models(formula, bitwidth, encoding));
+        }
+        assertTrue(total > 0);
+    }
+
+    @Test
+    public void encodingsHaveTheModelsOfTheAdder() {
+        checkEncodings(5, 7);
+    }
+
+    @Test
+    public void encodingsHaveTheModelsOfTheAdderWhenCountsOverflow() {
+        checkEncodings(3, 3);
+    }
+}
@@ -0,0 +1,114 @@
+package kodkod.engine.fol2sat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import kodkod.ast.Expression;
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.ast.Variable;
+import kodkod.engine.Solution;
+import kodkod.engine.Solver;
+import kodkod.engine.config.Options.ClosureEncoding;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.TupleSet;
+import kodkod.instance.Universe;
+
+/**
+ * Checks that every closure encoding gives the same models as squaring, on
+ * upper bounds whose graphs are cyclic, acyclic or made of several strongly
+ * connected components.
+ */
+public class ClosureEncodingTest {
+
+    private final Relation r     = Relation.binary("r");
+    private final Relation first = Relation.unary("first");
+    private final Relation last  = Relation.unary("last");
+    private final Universe universe = new Universe("a0", "a1", "a2", "a3");
+
+    private List<Formula> formulas() {
+        Variable x = Variable.unary("x");
+        return Arrays.asList(
+            r.closure().intersection(Expression.IDEN).some(),
+            r.closure().intersection(Expression.IDEN).no(),
+            last.in(first.join(r.closure())),
+            r.closure().eq(r),
+            Expression.UNIV.in(x.join(r.reflexiveClosure())).forAll(x.oneOf(Expression.UNIV)),
+            first.join(r.closure()).join(r.closure()).eq(first.join(r.closure())).not(),
+            // trivially true, so every value of r is a model
+            first.product(last).closure().some());
+    }
+
+    /**
+     * Returns bounds in which r is bounded above by the given edges, and below
+     * by the first edges given.
+     */
+    private Bounds bounds(int lower, String... edges) {
+        TupleFactory f = universe.factory();
+        TupleSet upper = f.noneOf(2);
+        TupleSet low = f.noneOf(2);
+        for (int i = 0; i < edges.length; i++) {
+            String[] ends = edges[i].split("->");
+            upper.add(f.tuple(ends[0], ends[1]));
+            if (i < lower)
+                low.add(f.tuple(ends[0], ends[1]));
+        }
+        Bounds bounds = new Bounds(universe);
+        bounds.bound(r, low, upper);
+        bounds.boundExactly(first, f.setOf("a0"));
+        bounds.boundExactly(last, f.setOf("a3"));
+        return bounds;
+    }
+
+    private List<Bounds> shapes() {
+        return Arrays.asList(
+            // a cycle with a tail and a self loop
+            bounds(0, "a0->a1", "a1->a2", "a2->a0", "a2->a3", "a3->a3"),
+            // acyclic, where every component is a single atom
+            bounds(0, "a0->a1", "a0->a2", "a1->a3", "a2->a3", "a0->a3"),
+            // two components, one of which is partly known
+            bounds(1, "a0->a1", "a1->a0", "a0->a0", "a1->a2", "a2->a3", "a3->a2"),
+            // a dense component and an isolated atom
+            bounds(0, "a0->a1", "a1->a0", "a1->a2", "a2->a1", "a0->a2", "a2->a0", "a0->a0", "a2->a3"));
+    }
+
+    /**
+     * Returns every value of r in the models of the given formula, which is
+     * folded to a constant when the bounds decide it.
+     */
+    private Set<String> models(Formula formula, Bounds bounds, ClosureEncoding encoding) {
+        Solver solver = new Solver();
+        solver.options().setSymmetryBreaking(0);
+        solver.options().setClosureEncoding(encoding);
+        Set<String> models = new LinkedHashSet<>();
+        for (Iterator<Solution> it = solver.solveAll(formula, bounds.clone()); it.hasNext();) {
+            Solution sol = it.next();
+            if (sol.sat())
+                models.add(sol.instance().tuples(r).toString());
+        }
+        return models;
+    }
+
+    @Test
+    public void encodingsHaveTheModelsOfSquaring() {
+        int total = 0;
+        for (Bounds bounds : shapes()) {
+            for (Formula formula : formulas()) {
+                Set<String> expected = models(formula, bounds, ClosureEncoding.SQUARING);
+                total += expected.size();
+                for (ClosureEncoding encoding : ClosureEncoding.values())
+                    assertEquals(encoding + " on " + formula + " with " + bounds.upperBound(r), expected, models(formula, bounds, encoding));
+            }
+        }
+        assertTrue(total > 0);
+    }
+}
@@ -0,0 +1,152 @@
+package kodkod.engine.fol2sat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.ast.Variable;
+import kodkod.engine.Solution;
+import kodkod.engine.Solver;
+import kodkod.engine.config.Options;
+import kodkod.engine.satlab.AssumptionSATSolver;
+import kodkod.engine.satlab.InterruptibleSATSolver;
+import kodkod.engine.satlab.SATAbortedException;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.engine.satlab.SATSolver;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.Universe;
+import kodkod.solvers.CDCLProverRef;
+import kodkod.solvers.CDCLRef;
+import kodkod.solvers.SAT4JRef;
+
+public class TranslationCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Relation pigeon = Relation.unary("Pigeon");
+    private final Relation hole   = Relation.unary("Hole");
+    private final Relation nest   = Relation.binary("nest");
+
+    /**
+     * Every pigeon is in one hole and no two pigeons share a hole, which is
+     * unsatisfiable when there are more pigeons than holes.
+     */
+    private Formula pigeonhole() {
+        Variable p = Variable.unary("p"), h = Variable.unary("h");
+        return Formula.and(nest.in(pigeon.product(hole)), p.join(nest).one().forAll(p.oneOf(pigeon)), nest.join(h).lone().forAll(h.oneOf(hole)));
+    }
+
+    private Bounds bounds(int pigeons, int holes) {
+        Object[] atoms = new Object[pigeons + holes];
+        for (int i = 0; i < pigeons; i++)
+            atoms[i] = "P" + i;
+        for (int i = 0; i < holes; i++)
+            atoms[pigeons + i] = "H" + i;
+        Universe u = new Universe(atoms);
+        TupleFactory f = u.factory();
+        Bounds b = new Bounds(u);
+        b.boundExactly(pigeon, f.range(f.tuple("P0"), f.tuple("P" + (pigeons - 1))));
+        b.boundExactly(hole, f.range(f.tuple("H0"), f.tuple("H" + (holes - 1))));
+        b.bound(nest, b.upperBound(pigeon).product(b.upperBound(hole)));
+        return b;
+    }
+
+    private Options options(SATFactory factory) {
+        Options options = new Options();
+        options.setSolver(factory);
+        options.setSymmetryBreaking(0);
+        return options;
+    }
+
+    @Test
+    public void cachedSolvesAreNotRepeated() throws Exception {
+        TranslationCache cache = new TranslationCache(folder.newFolder());
+        Solver solver = new Solver(options(SAT4JRef.INSTANCE));
+        solver.options().setTranslationCache(cache);
+        Solution first = solver.solve(pigeonhole(), bounds(3, 3));
+        Solution second = solver.solve(pigeonhole(), bounds(3, 3));
+        assertTrue(first.sat());
+        assertTrue(second.sat());
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    public void cachedSolversSolveUnderAssumptions() throws Exception {
+        TranslationCache cache = new TranslationCache(folder.newFolder());
+        for (int i = 0; i < 2; i++) {
+            Translation.Whole translation = cache.translate(pigeonhole(), bounds(2, 2), options(CDCLRef.INSTANCE));
+            SATSolver cnf = translation.cnf();
+            assertTrue(cnf instanceof AssumptionSATSolver);
+            assertTrue(cnf instanceof InterruptibleSATSolver);
+            assertTrue(cnf.solve());
+
+            AssumptionSATSolver solver = (AssumptionSATSolver) cnf;
+            int[] none = translation.primaryVariables(nest).toArray();
+            for (int j = 0; j < none.length; j++)
+                none[j] = -none[j];
+            assertFalse(solver.solve(none));
+            assertTrue(solver.failedAssumptions().length > 0);
+            int var = translation.primaryVariables(nest).min();
+            assertTrue(solver.solve(new int[] {
+                                               var
+            }));
+            assertTrue(solver.valueOf(var));
+            assertTrue(cnf.solve());
+            cnf.free();
+        }
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.hits());
+    }
+
+    @Test(timeout = 60000)
+    public void cachedSolversCanBeInterrupted() throws Exception {
+        TranslationCache cache = new TranslationCache(folder.newFolder());
+        Translation.Whole translation = cache.translate(pigeonhole(), bounds(12, 11), options(CDCLRef.INSTANCE));
+        SATSolver cnf = translation.cnf();
+        assertTrue(cnf instanceof InterruptibleSATSolver);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> outcome = executor.submit(cnf::solve);
+            while (true) {
+                ((InterruptibleSATSolver) cnf).interrupt();
+                try {
+                    outcome.get(10, TimeUnit.MILLISECONDS);
+                    fail("the search was not interrupted");
+                } catch (TimeoutException e) {
+                    // interrupt again, in case the search had not started
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof SATAbortedException);
+                    break;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            cnf.free();
+        }
+    }
+
+    @Test
+    public void proversAreNotCached() throws Exception {
+        TranslationCache cache = new TranslationCache(folder.newFolder());
+        cache.translate(pigeonhole(), bounds(2, 2), options(CDCLProverRef.INSTANCE));
+        assertEquals(0, cache.misses());
+        assertEquals(0, cache.hits());
+    }
+}
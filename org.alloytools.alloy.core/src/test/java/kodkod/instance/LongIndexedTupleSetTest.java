@@ -0,0 +1,117 @@
+package kodkod.instance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import kodkod.ast.Relation;
+import kodkod.engine.CapacityExceededException;
+import kodkod.engine.Solution;
+import kodkod.engine.Solver;
+
+/**
+ * Checks that tuple sets whose tuples do not fit in an int index can be built
+ * and used in bounds, and that translating a problem which mentions such a
+ * relation fails with an error that names it.
+ */
+public class LongIndexedTupleSetTest {
+
+    // 300^4 tuples do not fit in an int
+    private final Universe universe = universe(300);
+    private final TupleFactory f        = universe.factory();
+
+    private static Universe universe(int size) {
+        List<String> atoms = new ArrayList<>();
+        for (int i = 0; i < size; i++)
+            atoms.add("a" + i);
+        return new Universe(atoms);
+    }
+
+    @Test
+    public void wideTuplesHaveLongIndices() {
+        Tuple t = f.tuple("a299", "a0", "a0", "a1");
+        assertTrue(t.longIndex() > Integer.MAX_VALUE);
+        assertEquals(Arrays.asList("a299", "a0", "a0", "a1"), Arrays.asList(t.atom(0), t.atom(1), t.atom(2), t.atom(3)));
+        assertEquals(t, f.tuple(4, t.longIndex()));
+        assertEquals(t.hashCode(), f.tuple(4, t.longIndex()).hashCode());
+        assertEquals(t, f.tuple("a299", "a0").product(f.tuple("a0", "a1")));
+        assertTrue(t.contains("a1"));
+        assertFalse(t.contains("a2"));
+        try {
+            t.index();
+            fail("A wide tuple has no int index");
+        } catch (CapacityExceededException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void wideSetsAreSparseAndOrdered() {
+        Tuple high = f.tuple("a299", "a0", "a0", "a1");
+        Tuple low = f.tuple("a0", "a1", "a2", "a3");
+        TupleSet set = f.noneOf(4);
+        assertTrue(set.add(high));
+        assertTrue(set.add(low));
+        assertFalse(set.add(f.tuple(4, high.longIndex())));
+        assertEquals(2, set.size());
+        assertTrue(set.contains(low));
+
+        Iterator<Tuple> it = set.iterator();
+        assertEquals(low, it.next());
+        assertEquals(high, it.next());
+        assertFalse(it.hasNext());
+
+        assertEquals(f.setOf("a0", "a299"), set.project(0));
+        assertEquals(set, set.clone());
+        assertEquals(set, f.setOf(high, low));
+        assertEquals(set.hashCode(), f.setOf(low, high).hashCode());
+        assertEquals(set, set.unmodifiableView());
+
+        TupleSet pairs = f.setOf(f.tuple("a299", "a0"), f.tuple("a0", "a1"));
+        TupleSet product = pairs.product(f.setOf(f.tuple("a0", "a1"), f.tuple("a2", "a3")));
+        assertEquals(4, product.size());
+        assertTrue(product.containsAll(set));
+
+        assertTrue(set.remove(high));
+        assertEquals(f.setOf(low), set);
+        try {
+            set.indexView();
+            fail("A wide set has no int index view");
+        } catch (CapacityExceededException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void unusedWideRelationsAreDropped() {
+        Relation wide = Relation.nary("wide", 4);
+        Relation s = Relation.unary("s");
+        Bounds bounds = new Bounds(universe);
+        bounds.bound(wide, f.setOf(f.tuple("a0", "a1", "a2", "a3")));
+        bounds.bound(s, f.setOf("a0", "a1"));
+        Solution sol = new Solver().solve(s.some(), bounds);
+        assertTrue(sol.sat());
+    }
+
+    @Test
+    public void wideRelationsFailBeforeTranslationNamingTheRelation() {
+        Relation wide = Relation.nary("wide", 4);
+        Bounds bounds = new Bounds(universe);
+        bounds.bound(wide, f.setOf(f.tuple("a0", "a1", "a2", "a3")));
+        try {
+            new Solver().solve(wide.some(), bounds);
+            fail("A relation of 300^4 tuples cannot be translated");
+        } catch (CapacityExceededException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("wide"));
+            assertEquals(4, expected.dims().size());
+        }
+    }
+}
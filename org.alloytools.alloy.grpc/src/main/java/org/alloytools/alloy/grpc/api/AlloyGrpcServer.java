@@ -1,9 +1,13 @@
 package org.alloytools.alloy.grpc.api;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.alloytools.alloy.grpc.impl.AlloySolverServiceImpl;
+import org.alloytools.alloy.grpc.impl.SolveScheduler;
+import org.alloytools.alloy.grpc.util.SolverCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,18 +27,40 @@ public class AlloyGrpcServer {
     private final int port;
     private final Server server;
     private final HealthStatusManager healthStatusManager;
+    private final SolveScheduler scheduler;
+    private final ExecutorService handlers;
 
     /**
-     * Create a new Alloy gRPC server.
+     * Create a new Alloy gRPC server that solves as many requests at the same
+     * time as the cores and memory of this machine allow.
      * 
      * @param port The port to listen on
      */
     public AlloyGrpcServer(int port) {
+        this(port, SolveScheduler.forAvailableResources());
+    }
+
+    /**
+     * Create a new Alloy gRPC server.
+     * 
+     * @param port The port to listen on
+     * @param scheduler The scheduler that runs the solve requests
+     */
+    public AlloyGrpcServer(int port, SolveScheduler scheduler) {
         this.port = port;
         this.healthStatusManager = new HealthStatusManager();
+        this.scheduler = scheduler;
+
+        // The handlers only queue the solve requests, so a few threads serve all calls
+        this.handlers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "alloy-grpc-handler");
+            thread.setDaemon(true);
+            return thread;
+        });
         
         this.server = ServerBuilder.forPort(port)
-            .addService(new AlloySolverServiceImpl())
+            .executor(handlers)
+            .addService(new AlloySolverServiceImpl(new SolverCache(), scheduler))
             .addService(healthStatusManager.getHealthService())
             .addService(ProtoReflectionService.newInstance())
             .build();
@@ -70,7 +96,10 @@ public class AlloyGrpcServer {
     public void stop() throws InterruptedException {
         if (server != null) {
             healthStatusManager.setStatus("", ServingStatus.NOT_SERVING);
-            server.shutdown().awaitTermination(30, TimeUnit.SECONDS);
+            server.shutdown();
+            scheduler.shutdown();
+            server.awaitTermination(30, TimeUnit.SECONDS);
+            handlers.shutdown();
             logger.info("Alloy gRPC server stopped");
         }
     }
@@ -116,21 +145,34 @@ public class AlloyGrpcServer {
     /**
      * Main method for running the server standalone.
      * 
-     * @param args command line arguments (optional port number)
+     * @param args command line arguments (optional port number, maximum
+     *            number of concurrent solves and queue capacity)
      */
     public static void main(String[] args) {
         int port = 50051; // Default port
+        SolveScheduler scheduler = null;
         
-        if (args.length > 0) {
-            try {
+        try {
+            if (args.length > 0) {
                 port = Integer.parseInt(args[0]);
-            } catch (NumberFormatException e) {
-                logger.error("Invalid port number: {}", args[0]);
-                System.exit(1);
             }
+            if (args.length > 1) {
+                int concurrency = Integer.parseInt(args[1]);
+                int queueCapacity = args.length > 2 ? Integer.parseInt(args[2])
+                    : concurrency * SolveScheduler.QUEUE_PER_SOLVE;
+                scheduler = new SolveScheduler(concurrency, queueCapacity);
+            }
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid arguments, expected [port [concurrency [queue capacity]]]: {}", e.getMessage());
+            System.exit(1);
         }
 
-        AlloyGrpcServer server = new AlloyGrpcServer(port);
+        if (scheduler == null) {
+            scheduler = SolveScheduler.forAvailableResources();
+        }
+        logger.info("Solving {} requests at a time with {} more queued",
+            scheduler.getConcurrency(), scheduler.getQueueCapacity());
+        AlloyGrpcServer server = new AlloyGrpcServer(port, scheduler);
         try {
             server.start();
             logger.info("Alloy gRPC server is running on port {}", port);
@@ -1,16 +1,23 @@
 package org.alloytools.alloy.grpc.impl;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
+import org.alloytools.alloy.grpc.proto.LatencyMetrics;
+import org.alloytools.alloy.grpc.proto.MetricsRequest;
+import org.alloytools.alloy.grpc.proto.MetricsResponse;
+import org.alloytools.alloy.grpc.proto.SchedulerMetrics;
 import org.alloytools.alloy.grpc.proto.PingRequest;
 import org.alloytools.alloy.grpc.proto.PingResponse;
 import org.alloytools.alloy.grpc.proto.SolveRequest;
 import org.alloytools.alloy.grpc.proto.SolveResponse;
 import org.alloytools.alloy.grpc.proto.SolverServiceGrpc;
+import org.alloytools.alloy.grpc.util.CancellableSATFactory;
 import org.alloytools.alloy.grpc.util.ModelLoader;
 import org.alloytools.alloy.grpc.util.ProtocolBufferConverter;
+import org.alloytools.alloy.grpc.util.SolverCache;
 
 import edu.mit.csail.sdg.alloy4.Err;
 import edu.mit.csail.sdg.ast.Command;
@@ -18,7 +25,10 @@ import edu.mit.csail.sdg.parser.CompModule;
 import edu.mit.csail.sdg.translator.A4Options;
 import edu.mit.csail.sdg.translator.A4Solution;
 import edu.mit.csail.sdg.translator.TranslateAlloyToKodkod;
+import io.grpc.Context;
+import io.grpc.Deadline;
 import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import kodkod.engine.satlab.SATFactory;
 
@@ -29,10 +39,50 @@ public class AlloySolverServiceImpl extends SolverServiceGrpc.SolverServiceImplB
 
     private static final String VERSION = "6.3.0";
 
+    private final SolverCache cache;
+
+    /**
+     * Runs the Solve and SolveStream requests. The gRPC threads only queue a
+     * request, so that they remain free to accept calls and to deliver the
+     * flow control and cancellation callbacks of the running ones.
+     */
+    private final SolveScheduler scheduler;
+
+    /**
+     * Create the service with a cache of the default size and a scheduler sized
+     * for this machine.
+     */
+    public AlloySolverServiceImpl() {
+        this(new SolverCache(), SolveScheduler.forAvailableResources());
+    }
+
+    /**
+     * Create the service with the given cache of parsed modules and solved
+     * commands, and the given scheduler of requests.
+     */
+    public AlloySolverServiceImpl(SolverCache cache, SolveScheduler scheduler) {
+        this.cache = cache;
+        this.scheduler = scheduler;
+    }
+
     @Override
     public void solve(SolveRequest request, StreamObserver<SolveResponse> responseObserver) {
+        if (!scheduler.submit(Context.current(), () -> solveNow(request, responseObserver))) {
+            responseObserver.onError(busy());
+        }
+    }
+
+    /**
+     * Solve the request on a thread of the scheduler, in the context of its
+     * call. The SAT solvers are aborted when the call is cancelled or its
+     * deadline passes.
+     */
+    private void solveNow(SolveRequest request, StreamObserver<SolveResponse> responseObserver) {
         long startTime = System.currentTimeMillis();
-        
+        Context context = Context.current();
+        Context.CancellationListener abort = null;
+        CancellableSATFactory factory = null;
+
         try {
             // Validate request
             ValidationResult validation = validateRequest(request);
@@ -56,7 +106,7 @@ public class AlloySolverServiceImpl extends SolverServiceGrpc.SolverServiceImplB
 
             // Load and parse the model
             ModelLoader.CollectingReporter reporter = new ModelLoader.CollectingReporter();
-            ModelLoader.ModelLoadResult loadResult = ModelLoader.loadModel(request.getModelContent(), reporter);
+            ModelLoader.ModelLoadResult loadResult = cache.loadModel(request.getModelContent(), reporter);
             
             if (!loadResult.isSuccess()) {
                 responseObserver.onError(Status.fromCode(Status.Code.INVALID_ARGUMENT)
@@ -73,11 +123,16 @@ public class AlloySolverServiceImpl extends SolverServiceGrpc.SolverServiceImplB
                 request.getSolverOptions(), 
                 request.getSolverType()
             );
+            factory = CancellableSATFactory.wrap(options.solver);
+            if (factory != null) {
+                CancellableSATFactory cancellable = factory;
+                options.solver = factory;
+                abort = cancelled -> cancellable.cancel();
+                context.addListener(abort, Runnable::run);
+            }
 
             // Check if specific command requested or execute all commands (default)
-            if (!request.getCommand().trim().isEmpty() && 
-                !"*".equals(request.getCommand().trim()) && 
-                !"ALL".equalsIgnoreCase(request.getCommand().trim())) {
+            if (!runsAllCommands(request)) {
                 // Execute specific command
                 Optional<Command> commandOpt = ModelLoader.findCommand(commands, request.getCommand());
                 if (!commandOpt.isPresent()) {
@@ -90,22 +145,12 @@ public class AlloySolverServiceImpl extends SolverServiceGrpc.SolverServiceImplB
                 Command command = commandOpt.get();
 
                 // Execute the specific command
-                A4Solution solution = TranslateAlloyToKodkod.execute_command(
-                    reporter, 
-                    world.getAllReachableSigs(), 
-                    command, 
-                    options
-                );
+                A4Solution solution = cache.execute(reporter, world, command, options);
 
                 long solvingTime = System.currentTimeMillis() - startTime;
 
                 // Convert solution to response
-                SolveResponse response = ProtocolBufferConverter.toSolveResponse(
-                    solution, 
-                    request.getOutputFormat(), 
-                    solvingTime, 
-                    command.toString()
-                );
+                SolveResponse response = toSolveResponse(solution, request, solvingTime, command);
 
                 responseObserver.onNext(response);
             } else {
@@ -120,23 +165,13 @@ public class AlloySolverServiceImpl extends SolverServiceGrpc.SolverServiceImplB
                     Command command = commands.get(i);
                     long commandStartTime = System.currentTimeMillis();
                     
-                    A4Solution solution = TranslateAlloyToKodkod.execute_command(
-                        reporter, 
-                        world.getAllReachableSigs(), 
-                        command, 
-                        options
-                    );
+                    A4Solution solution = cache.execute(reporter, world, command, options);
 
                     long commandSolvingTime = System.currentTimeMillis() - commandStartTime;
                     totalSolvingTime += commandSolvingTime;
 
                     // Convert individual solution to string
-                    SolveResponse individualResponse = ProtocolBufferConverter.toSolveResponse(
-                        solution, 
-                        request.getOutputFormat(), 
-                        commandSolvingTime, 
-                        command.toString()
-                    );
+                    SolveResponse individualResponse = toSolveResponse(solution, request, commandSolvingTime, command);
 
                     if (individualResponse.getSatisfiable()) {
                         anySatisfiable = true;
@@ -175,15 +210,168 @@ public class AlloySolverServiceImpl extends SolverServiceGrpc.SolverServiceImplB
             responseObserver.onCompleted();
 
         } catch (Err err) {
+            if (abortIfCancelled(context, responseObserver)) {
+                return;
+            }
             responseObserver.onError(Status.fromCode(Status.Code.INTERNAL)
                 .withDescription("Alloy error: " + err.toString())
                 .asRuntimeException());
             
         } catch (Exception ex) {
+            if (abortIfCancelled(context, responseObserver)) {
+                return;
+            }
             responseObserver.onError(Status.INTERNAL
                 .withDescription("Internal server error: " + ex.getMessage())
                 .withCause(ex)
                 .asRuntimeException());
+
+        } finally {
+            if (abort != null) {
+                context.removeListener(abort);
+            }
+            if (factory != null) {
+                factory.close();
+            }
+        }
+    }
+
+    /**
+     * If the call was cancelled or its deadline passed, which aborts its
+     * solvers, close it with the corresponding status.
+     *
+     * @return true if the call was closed
+     */
+    private boolean abortIfCancelled(Context context, StreamObserver<?> responseObserver) {
+        if (!context.isCancelled()) {
+            return false;
+        }
+        scheduler.recordAborted();
+        Deadline deadline = context.getDeadline();
+        Status status = deadline != null && deadline.isExpired()
+            ? Status.DEADLINE_EXCEEDED.withDescription("Solving did not finish before the deadline")
+            : Status.CANCELLED.withDescription("The call was cancelled");
+        responseObserver.onError(status.asRuntimeException());
+        return true;
+    }
+
+    /**
+     * Return the status of a request rejected because the queue is full.
+     */
+    private io.grpc.StatusRuntimeException busy() {
+        return Status.RESOURCE_EXHAUSTED
+            .withDescription("The server is busy: " + scheduler.getQueueDepth() + " requests are waiting")
+            .asRuntimeException();
+    }
+
+    @Override
+    public void solveStream(SolveRequest request, StreamObserver<SolveResponse> responseObserver) {
+        // the handlers must be registered before this method returns
+        SolutionStream stream = new SolutionStream(responseObserver);
+
+        ValidationResult validation = validateRequest(request);
+        if (!validation.isValid()) {
+            responseObserver.onNext(ProtocolBufferConverter.createErrorResponse(validation.getErrorMessage(), 0));
+            responseObserver.onCompleted();
+            return;
+        }
+
+        if (!ProtocolBufferConverter.isSolverAvailable(request.getSolverType())) {
+            responseObserver.onError(Status.UNIMPLEMENTED
+                .withDescription("Solver " + request.getSolverType() + " is not available on this system")
+                .asRuntimeException());
+            return;
+        }
+
+        if (!scheduler.submit(Context.current(), () -> enumerate(request, stream))) {
+            responseObserver.onError(busy());
+        }
+    }
+
+    /**
+     * Enumerate the solutions of the requested commands, sending each one as
+     * soon as it is found and the client is ready to receive it.
+     */
+    private void enumerate(SolveRequest request, SolutionStream stream) {
+        try {
+            // the module is shared through the cache, but each stream translates the
+            // command itself, since the cache would retain every solution enumerated
+            ModelLoader.CollectingReporter reporter = new ModelLoader.CollectingReporter();
+            ModelLoader.ModelLoadResult loadResult = cache.loadModel(request.getModelContent(), reporter);
+
+            if (!loadResult.isSuccess()) {
+                stream.fail(Status.INVALID_ARGUMENT.withDescription(loadResult.getErrorMessage()));
+                return;
+            }
+
+            CompModule world = loadResult.getModule();
+            List<Command> commands = loadResult.getCommands();
+
+            if (!runsAllCommands(request)) {
+                Optional<Command> commandOpt = ModelLoader.findCommand(commands, request.getCommand());
+                if (!commandOpt.isPresent()) {
+                    stream.fail(Status.INVALID_ARGUMENT.withDescription("Command not found: " + request.getCommand()));
+                    return;
+                }
+                commands = Collections.singletonList(commandOpt.get());
+            }
+
+            A4Options options = ProtocolBufferConverter.toA4Options(
+                request.getSolverOptions(),
+                request.getSolverType()
+            );
+            CancellableSATFactory factory = CancellableSATFactory.wrap(options.solver);
+            if (factory != null) {
+                options.solver = factory;
+                stream.watch(factory);
+            }
+
+            int maxSolutions = request.getMaxSolutions() > 0 ? request.getMaxSolutions() : Integer.MAX_VALUE;
+            for (Command command : commands) {
+                long startTime = System.currentTimeMillis();
+                A4Solution solution = TranslateAlloyToKodkod.execute_command(
+                    reporter,
+                    world.getAllReachableSigs(),
+                    command,
+                    options
+                );
+
+                // an unsatisfiable command is reported once, the end of an enumeration is not
+                for (int index = 0; index == 0 || solution.satisfiable(); index++) {
+                    SolveResponse response = ProtocolBufferConverter.toSolveResponse(
+                        solution,
+                        request.getOutputFormat(),
+                        System.currentTimeMillis() - startTime,
+                        command.toString(),
+                        index
+                    );
+                    if (!stream.send(response)) {
+                        return;
+                    }
+                    if (!solution.satisfiable() || !solution.isIncremental() || index + 1 >= maxSolutions) {
+                        break;
+                    }
+                    startTime = System.currentTimeMillis();
+                    solution = solution.next();
+                }
+            }
+
+            stream.complete();
+
+        } catch (Err err) {
+            stream.fail(Status.INTERNAL.withDescription("Alloy error: " + err.toString()));
+
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            stream.cancel();
+
+        } catch (Exception ex) {
+            stream.fail(Status.INTERNAL
+                .withDescription("Internal server error: " + ex.getMessage())
+                .withCause(ex));
+
+        } finally {
+            stream.close();
         }
     }
 
@@ -215,6 +403,68 @@ public class AlloySolverServiceImpl extends SolverServiceGrpc.SolverServiceImplB
         }
     }
 
+    @Override
+    public void getMetrics(MetricsRequest request, StreamObserver<MetricsResponse> responseObserver) {
+        MetricsResponse response = MetricsResponse.newBuilder()
+            .setModuleCache(ProtocolBufferConverter.toCacheMetrics(cache.getModules()))
+            .setTranslationCache(ProtocolBufferConverter.toCacheMetrics(cache.getTranslations()))
+            .setScheduler(toSchedulerMetrics(scheduler))
+            .build();
+
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Create SchedulerMetrics from the counters of the scheduler.
+     */
+    private static SchedulerMetrics toSchedulerMetrics(SolveScheduler scheduler) {
+        return SchedulerMetrics.newBuilder()
+            .setConcurrency(scheduler.getConcurrency())
+            .setQueueCapacity(scheduler.getQueueCapacity())
+            .setQueueDepth(scheduler.getQueueDepth())
+            .setActive(scheduler.getActive())
+            .setCompleted(scheduler.getCompleted())
+            .setRejected(scheduler.getRejected())
+            .setExpired(scheduler.getExpired())
+            .setAborted(scheduler.getAborted())
+            .setQueueLatency(toLatencyMetrics(scheduler.getQueueLatency()))
+            .setSolveLatency(toLatencyMetrics(scheduler.getSolveLatency()))
+            .build();
+    }
+
+    private static LatencyMetrics toLatencyMetrics(SolveScheduler.Latency latency) {
+        return LatencyMetrics.newBuilder()
+            .setCount(latency.getCount())
+            .setTotalMs(latency.getTotalMillis())
+            .setMaxMs(latency.getMaxMillis())
+            .build();
+    }
+
+    /**
+     * Convert a solution that may be shared through the cache to a response.
+     */
+    private static SolveResponse toSolveResponse(A4Solution solution, SolveRequest request, long solvingTime,
+                                                 Command command) {
+        synchronized (solution) {
+            return ProtocolBufferConverter.toSolveResponse(
+                solution,
+                request.getOutputFormat(),
+                solvingTime,
+                command.toString()
+            );
+        }
+    }
+
+    /**
+     * Check if the request executes all commands of the model, which is the
+     * case when no command, "*" or "ALL" is requested.
+     */
+    private static boolean runsAllCommands(SolveRequest request) {
+        String command = request.getCommand().trim();
+        return command.isEmpty() || "*".equals(command) || "ALL".equalsIgnoreCase(command);
+    }
+
     /**
      * Validate the solve request.
      */
@@ -227,6 +477,119 @@ public class AlloySolverServiceImpl extends SolverServiceGrpc.SolverServiceImplB
         return ValidationResult.success();
     }
 
+    /**
+     * The response stream of a SolveStream call. Responses are only sent when
+     * the transport is ready to accept them, so a slow client holds back the
+     * enumeration instead of having the solutions buffered on the server. When
+     * the client cancels the call, the SAT solvers of the request are aborted
+     * and nothing more is sent.
+     */
+    private static class SolutionStream {
+        private final StreamObserver<SolveResponse> observer;
+        private final ServerCallStreamObserver<SolveResponse> call;
+        private final Object lock = new Object();
+        private boolean cancelled;
+        private CancellableSATFactory factory;
+
+        SolutionStream(StreamObserver<SolveResponse> observer) {
+            this.observer = observer;
+            if (observer instanceof ServerCallStreamObserver) {
+                this.call = (ServerCallStreamObserver<SolveResponse>) observer;
+                call.setOnReadyHandler(this::ready);
+                call.setOnCancelHandler(this::cancel);
+            } else {
+                this.call = null;
+            }
+        }
+
+        /**
+         * Abort the solvers created by the given factory when the call is
+         * cancelled.
+         */
+        void watch(CancellableSATFactory factory) {
+            synchronized (lock) {
+                this.factory = factory;
+                if (!cancelled) {
+                    return;
+                }
+            }
+            factory.cancel();
+        }
+
+        private void ready() {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+
+        void cancel() {
+            CancellableSATFactory watched;
+            synchronized (lock) {
+                cancelled = true;
+                watched = factory;
+                lock.notifyAll();
+            }
+            if (watched != null) {
+                watched.cancel();
+            }
+        }
+
+        /**
+         * Stop aborting the solvers of the watched factory, once the
+         * enumeration is over.
+         */
+        void close() {
+            CancellableSATFactory watched;
+            synchronized (lock) {
+                watched = factory;
+            }
+            if (watched != null) {
+                watched.close();
+            }
+        }
+
+        boolean isCancelled() {
+            synchronized (lock) {
+                return cancelled;
+            }
+        }
+
+        /**
+         * Send the given response once the client is ready to receive it.
+         *
+         * @return false if the call was cancelled
+         */
+        boolean send(SolveResponse response) throws InterruptedException {
+            synchronized (lock) {
+                while (!cancelled && call != null && !call.isReady()) {
+                    lock.wait();
+                }
+                if (cancelled) {
+                    return false;
+                }
+            }
+            observer.onNext(response);
+            return true;
+        }
+
+        void complete() {
+            if (!isCancelled()) {
+                observer.onCompleted();
+            }
+        }
+
+        /**
+         * Close the call with the given status, unless it was cancelled, in
+         * which case the failure is only the consequence of aborting the
+         * solvers.
+         */
+        void fail(Status status) {
+            if (!isCancelled()) {
+                observer.onError(status.asRuntimeException());
+            }
+        }
+    }
+
     /**
      * Simple validation result class.
      */
@@ -0,0 +1,204 @@
+package org.alloytools.alloy.grpc.impl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.grpc.Context;
+
+/**
+ * Runs the solve requests of the server on a fixed number of threads, with a
+ * bounded queue of waiting requests. Solving a command can take a lot of
+ * memory and time, so the number of requests solved at the same time is
+ * limited, and a request that arrives when the queue is full is rejected
+ * instead of being accepted and exhausting the memory of the server.
+ * <p>
+ * Each request runs in the gRPC context of its call. A request whose call was
+ * cancelled or whose deadline passed while it was waiting is dropped without
+ * being solved.
+ */
+public class SolveScheduler {
+
+    /** Memory reserved for each request solved at the same time. */
+    public static final long MEMORY_PER_SOLVE = 512L * 1024 * 1024;
+    /** Number of waiting requests allowed per request solved at the same time. */
+    public static final int QUEUE_PER_SOLVE = 4;
+
+    private final int concurrency;
+    private final int queueCapacity;
+    private final ThreadPoolExecutor executor;
+    private final Latency queueLatency = new Latency();
+    private final Latency solveLatency = new Latency();
+    private long completed;
+    private long rejected;
+    private long expired;
+    private long aborted;
+
+    /**
+     * Counts and sums durations.
+     */
+    public static class Latency {
+        private long count;
+        private long totalMillis;
+        private long maxMillis;
+
+        synchronized void record(long millis) {
+            count++;
+            totalMillis += millis;
+            maxMillis = Math.max(maxMillis, millis);
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized long getTotalMillis() {
+            return totalMillis;
+        }
+
+        public synchronized long getMaxMillis() {
+            return maxMillis;
+        }
+    }
+
+    /**
+     * Create a scheduler.
+     *
+     * @param concurrency the maximum number of requests solved at the same time
+     * @param queueCapacity the maximum number of requests waiting to be solved
+     */
+    public SolveScheduler(int concurrency, int queueCapacity) {
+        if (concurrency < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("concurrency and queue capacity must be positive");
+        }
+        this.concurrency = concurrency;
+        this.queueCapacity = queueCapacity;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, "alloy-solve-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    /**
+     * Create a scheduler sized for this machine: one request per core, but no
+     * more than the maximum heap allows at {@link #MEMORY_PER_SOLVE} each.
+     */
+    public static SolveScheduler forAvailableResources() {
+        Runtime runtime = Runtime.getRuntime();
+        int concurrency = (int) Math.max(1,
+            Math.min(runtime.availableProcessors(), runtime.maxMemory() / MEMORY_PER_SOLVE));
+        return new SolveScheduler(concurrency, concurrency * QUEUE_PER_SOLVE);
+    }
+
+    /**
+     * Queue a request, to be run in the given context.
+     *
+     * @param context the context of the call of the request
+     * @param task the request
+     * @return false if the queue is full and the request was rejected
+     */
+    public boolean submit(Context context, Runnable task) {
+        long queued = System.currentTimeMillis();
+        try {
+            executor.execute(context.wrap(() -> run(context, task, queued)));
+            return true;
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                rejected++;
+            }
+            return false;
+        }
+    }
+
+    private void run(Context context, Runnable task, long queued) {
+        long started = System.currentTimeMillis();
+        queueLatency.record(started - queued);
+        if (context.isCancelled()) {
+            synchronized (this) {
+                expired++;
+            }
+            return;
+        }
+        try {
+            task.run();
+        } finally {
+            solveLatency.record(System.currentTimeMillis() - started);
+            synchronized (this) {
+                completed++;
+            }
+        }
+    }
+
+    /**
+     * Record that a request was aborted while it was being solved, because
+     * its call was cancelled or its deadline passed.
+     */
+    public synchronized void recordAborted() {
+        aborted++;
+    }
+
+    /**
+     * Stop accepting requests and abandon those that are waiting.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getActive() {
+        return executor.getActiveCount();
+    }
+
+    public synchronized long getCompleted() {
+        return completed;
+    }
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Return the number of requests dropped because their call was cancelled
+     * or their deadline passed while they were waiting.
+     */
+    public synchronized long getExpired() {
+        return expired;
+    }
+
+    /**
+     * Return the number of requests aborted while they were being solved.
+     */
+    public synchronized long getAborted() {
+        return aborted;
+    }
+
+    /**
+     * Return the time requests waited in the queue.
+     */
+    public Latency getQueueLatency() {
+        return queueLatency;
+    }
+
+    /**
+     * Return the time requests took to be solved, once started.
+     */
+    public Latency getSolveLatency() {
+        return solveLatency;
+    }
+}
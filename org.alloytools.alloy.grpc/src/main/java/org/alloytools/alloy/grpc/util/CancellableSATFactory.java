@@ -0,0 +1,223 @@
+package org.alloytools.alloy.grpc.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import kodkod.engine.config.ExtendedOptions;
+import kodkod.engine.satlab.InterruptibleSATSolver;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.engine.satlab.SATSolver;
+import kodkod.solvers.api.TemporalSolverFactory;
+
+/**
+ * A SATFactory that delegates to another factory and keeps track of the solvers
+ * it creates, so that the SAT search of a request can be aborted from another
+ * thread, for example when the client cancels the call.
+ * <p>
+ * The solvers are returned as created by the delegate, so they keep the
+ * capabilities (prover, assumptions, ...) the translation checks for. Only
+ * solvers that implement {@link InterruptibleSATSolver} can be stopped in the
+ * middle of a search; for the others cancellation takes effect once their
+ * current call to solve returns.
+ * <p>
+ * A solver may only notice an interrupt once its search has started, and a
+ * request can be cancelled while the formula is still being translated, before
+ * the search begins. The solvers of a cancelled factory are therefore
+ * interrupted again periodically until {@link #close()} is called at the end of
+ * the request.
+ */
+public class CancellableSATFactory extends SATFactory {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The delay between two interrupts of the solvers of a cancelled factory.
+     */
+    private static final long REINTERRUPT_MILLIS = 20;
+
+    private static final ScheduledExecutorService REINTERRUPTS = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "solver-interrupts");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final SATFactory delegate;
+    private final Shared shared;
+
+    /**
+     * The state shared by a factory and the configured copies returned by
+     * {@link #doOptions(ExtendedOptions)}.
+     */
+    private static class Shared {
+        private final List<SATSolver> solvers = new ArrayList<>();
+        private boolean cancelled;
+        private boolean closed;
+        private ScheduledFuture<?> reinterrupts;
+    }
+
+    private CancellableSATFactory(SATFactory delegate, Shared shared) {
+        this.delegate = delegate;
+        this.shared = shared;
+    }
+
+    /**
+     * Wrap the given factory so that its solvers can be cancelled.
+     *
+     * @param delegate the factory that creates the solvers
+     * @return a cancellable factory, or null if the factory does not create
+     *         solvers that the translation calls directly (transformers and
+     *         temporal solvers)
+     */
+    public static CancellableSATFactory wrap(SATFactory delegate) {
+        if (delegate.isTransformer() || delegate instanceof TemporalSolverFactory) {
+            return null;
+        }
+        return new CancellableSATFactory(delegate, new Shared());
+    }
+
+    /**
+     * Abort the searches of all solvers created so far, and make any
+     * further attempt to create a solver fail. The solvers keep being
+     * interrupted until {@link #close()} is called, so that a search that
+     * starts after this call is aborted as well.
+     */
+    public void cancel() {
+        synchronized (shared) {
+            boolean first = !shared.cancelled;
+            shared.cancelled = true;
+            if (!first || shared.closed) {
+                return;
+            }
+        }
+        interruptAll();
+        synchronized (shared) {
+            if (!shared.closed) {
+                shared.reinterrupts = REINTERRUPTS.scheduleWithFixedDelay(this::interruptAll, REINTERRUPT_MILLIS,
+                    REINTERRUPT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Stop interrupting the solvers of this factory. Must be called once the
+     * request that uses the factory is done, whether or not it was cancelled.
+     */
+    public void close() {
+        ScheduledFuture<?> reinterrupts;
+        synchronized (shared) {
+            shared.closed = true;
+            reinterrupts = shared.reinterrupts;
+            shared.reinterrupts = null;
+        }
+        if (reinterrupts != null) {
+            reinterrupts.cancel(false);
+        }
+    }
+
+    private void interruptAll() {
+        List<SATSolver> solvers;
+        synchronized (shared) {
+            solvers = new ArrayList<>(shared.solvers);
+        }
+        for (SATSolver solver : solvers) {
+            if (solver instanceof InterruptibleSATSolver) {
+                ((InterruptibleSATSolver) solver).interrupt();
+            }
+        }
+    }
+
+    /**
+     * Check if this factory was cancelled.
+     *
+     * @return true if {@link #cancel()} was called
+     */
+    public boolean isCancelled() {
+        synchronized (shared) {
+            return shared.cancelled;
+        }
+    }
+
+    @Override
+    protected SATSolver createSolver() {
+        synchronized (shared) {
+            if (shared.cancelled) {
+                throw new IllegalStateException("the request was cancelled");
+            }
+        }
+        SATSolver solver = delegate.instance();
+        synchronized (shared) {
+            shared.solvers.add(solver);
+            if (!shared.cancelled) {
+                return solver;
+            }
+        }
+        solver.free();
+        throw new IllegalStateException("the request was cancelled");
+    }
+
+    @Override
+    public SATFactory doOptions(ExtendedOptions options) {
+        SATFactory configured = delegate.doOptions(options);
+        if (configured == delegate) {
+            return this;
+        }
+        if (configured.isTransformer() || configured instanceof TemporalSolverFactory) {
+            return configured;
+        }
+        return new CancellableSATFactory(configured, shared);
+    }
+
+    @Override
+    public String id() {
+        return delegate.id();
+    }
+
+    @Override
+    public String name() {
+        return delegate.name();
+    }
+
+    @Override
+    public String type() {
+        return delegate.type();
+    }
+
+    @Override
+    public boolean prover() {
+        return delegate.prover();
+    }
+
+    @Override
+    public boolean incremental() {
+        return delegate.incremental();
+    }
+
+    @Override
+    public boolean assumptions() {
+        return delegate.assumptions();
+    }
+
+    @Override
+    public boolean unbounded() {
+        return delegate.unbounded();
+    }
+
+    @Override
+    public boolean maxsat() {
+        return delegate.maxsat();
+    }
+
+    @Override
+    public String[] getExecutables() {
+        return delegate.getExecutables();
+    }
+
+    @Override
+    public String[] getLibraries() {
+        return delegate.getLibraries();
+    }
+}
@@ -0,0 +1,153 @@
+package org.alloytools.alloy.grpc.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * A thread-safe cache that holds at most a given number of entries, evicting
+ * the least recently used one when full, and that drops entries which were
+ * not used for longer than a given age. Hits, misses and evictions are counted
+ * so that the effectiveness of the cache can be monitored.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class LruCache<K, V> {
+
+    private final int capacity;
+    private final long maxAgeMillis;
+    private final LongSupplier clock;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private static class Entry<V> {
+        private final V value;
+        private long lastUsed;
+
+        private Entry(V value, long lastUsed) {
+            this.value = value;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    /**
+     * Create a cache.
+     *
+     * @param capacity the maximum number of entries, 0 disables the cache
+     * @param maxAgeMillis the time after which an unused entry is dropped, 0
+     *            for no limit
+     */
+    public LruCache(int capacity, long maxAgeMillis) {
+        this(capacity, maxAgeMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * Create a cache that reads the time from the given clock.
+     */
+    LruCache(int capacity, long maxAgeMillis, LongSupplier clock) {
+        if (capacity < 0 || maxAgeMillis < 0) {
+            throw new IllegalArgumentException("capacity and age must not be negative");
+        }
+        this.capacity = capacity;
+        this.maxAgeMillis = maxAgeMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Get the value for the given key, marking it as recently used.
+     *
+     * @return the cached value, or null if there is none
+     */
+    public synchronized V get(K key) {
+        long now = clock.getAsLong();
+        expire(now);
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        entry.lastUsed = now;
+        return entry.value;
+    }
+
+    /**
+     * Store the value for the given key, evicting the least recently used
+     * entries if the cache is full.
+     */
+    public synchronized void put(K key, V value) {
+        if (capacity == 0) {
+            return;
+        }
+        long now = clock.getAsLong();
+        expire(now);
+        entries.put(key, new Entry<>(value, now));
+        Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+        while (entries.size() > capacity) {
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Remove the entry for the given key, if any.
+     */
+    public synchronized void remove(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Drop the entries that were not used since the maximum age. Entries are
+     * kept in the order of their last use, so the scan stops at the first
+     * entry that is recent enough.
+     */
+    private void expire(long now) {
+        if (maxAgeMillis == 0) {
+            return;
+        }
+        Iterator<Entry<V>> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().lastUsed < maxAgeMillis) {
+                return;
+            }
+            it.remove();
+            evictions++;
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getMaxAgeMillis() {
+        return maxAgeMillis;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}
@@ -1,5 +1,6 @@
 package org.alloytools.alloy.grpc.util;
 
+import org.alloytools.alloy.grpc.proto.CacheMetrics;
 import org.alloytools.alloy.grpc.proto.OutputFormat;
 import org.alloytools.alloy.grpc.proto.SolveResponse;
 import org.alloytools.alloy.grpc.proto.SolverOptions;
@@ -123,6 +124,15 @@ public class ProtocolBufferConverter {
      */
     public static SolveResponse toSolveResponse(A4Solution solution, OutputFormat outputFormat, 
                                                long solvingTimeMs, String executedCommand) {
+        return toSolveResponse(solution, outputFormat, solvingTimeMs, executedCommand, 0);
+    }
+
+    /**
+     * Create SolveResponse from the solution with the given index among those
+     * enumerated for a command.
+     */
+    public static SolveResponse toSolveResponse(A4Solution solution, OutputFormat outputFormat,
+                                               long solvingTimeMs, String executedCommand, int solutionIndex) {
         SolveResponse.Builder responseBuilder = SolveResponse.newBuilder()
             .setSatisfiable(solution.satisfiable());
 
@@ -133,7 +143,7 @@ public class ProtocolBufferConverter {
         }
 
         // Create metadata
-        SolutionMetadata metadata = createSolutionMetadata(solution, solvingTimeMs, executedCommand);
+        SolutionMetadata metadata = createSolutionMetadata(solution, solvingTimeMs, executedCommand, solutionIndex);
         responseBuilder.setMetadata(metadata);
 
         return responseBuilder.build();
@@ -199,7 +209,7 @@ public class ProtocolBufferConverter {
      * Create SolutionMetadata from A4Solution.
      */
     private static SolutionMetadata createSolutionMetadata(A4Solution solution, long solvingTimeMs,
-                                                          String executedCommand) {
+                                                          String executedCommand, int solutionIndex) {
         return SolutionMetadata.newBuilder()
             .setSolvingTimeMs(solvingTimeMs)
             .setSolverUsed("sat4j") // Default solver name, will be improved later
@@ -210,6 +220,7 @@ public class ProtocolBufferConverter {
             .setSymmetryBreaking(false) // Will be improved later
             .setIncremental(solution.isIncremental())
             .setExecutedCommand(executedCommand != null ? executedCommand : "")
+            .setSolutionIndex(solutionIndex)
             .build();
     }
 
@@ -302,4 +313,17 @@ public class ProtocolBufferConverter {
             .setMetadata(metadata)
             .build();
     }
+
+    /**
+     * Create CacheMetrics from the counters of a cache.
+     */
+    public static CacheMetrics toCacheMetrics(LruCache<?, ?> cache) {
+        return CacheMetrics.newBuilder()
+            .setHits(cache.getHits())
+            .setMisses(cache.getMisses())
+            .setEvictions(cache.getEvictions())
+            .setSize(cache.size())
+            .setCapacity(cache.getCapacity())
+            .build();
+    }
 }
@@ -0,0 +1,166 @@
+package org.alloytools.alloy.grpc.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.mit.csail.sdg.alloy4.A4Reporter;
+import edu.mit.csail.sdg.alloy4.Err;
+import edu.mit.csail.sdg.ast.Command;
+import edu.mit.csail.sdg.parser.CompModule;
+import edu.mit.csail.sdg.translator.A4Options;
+import edu.mit.csail.sdg.translator.A4Solution;
+import edu.mit.csail.sdg.translator.TranslateAlloyToKodkod;
+
+/**
+ * Caches the work the server repeats when clients resend the same model.
+ * <p>
+ * Parsed and typechecked modules are keyed by a SHA-256 hash of the model
+ * content, so a model that is sent again with another command or other scopes
+ * is not parsed again. Solved commands are keyed by their module, the command
+ * and the solver options, so a repeated request skips both the translation to
+ * Kodkod and the SAT call. Cached solutions are shared between requests:
+ * callers must synchronize on a solution while reading it, and must not
+ * enumerate it with {@link A4Solution#next()}, since every solution found that
+ * way would be retained by the cache.
+ */
+public class SolverCache {
+
+    /** Default number of parsed modules kept in the cache. */
+    public static final int DEFAULT_MODULES = 64;
+    /** Default number of solved commands kept in the cache. */
+    public static final int DEFAULT_TRANSLATIONS = 32;
+    /** Default time after which an unused entry is dropped. */
+    public static final long DEFAULT_MAX_AGE_MILLIS = 30 * 60 * 1000L;
+
+    private final LruCache<String, ModelLoader.ModelLoadResult> modules;
+    private final LruCache<TranslationKey, A4Solution> translations;
+
+    /**
+     * The key of a solved command. Modules and commands are compared by
+     * identity, which is sound because a cached module is the only instance
+     * parsed for its content while it stays in the cache.
+     */
+    private static class TranslationKey {
+        private final CompModule module;
+        private final Command command;
+        private final List<Object> options;
+
+        private TranslationKey(CompModule module, Command command, A4Options options) {
+            this.module = module;
+            this.command = command;
+            this.options = Arrays.asList(
+                options.solver.id(),
+                options.symmetry,
+                options.skolemDepth,
+                options.unrolls,
+                options.noOverflow,
+                options.coreMinimization,
+                options.coreGranularity,
+                options.decompose_mode,
+                options.decompose_threads,
+                options.inferPartialInstance
+            );
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TranslationKey)) {
+                return false;
+            }
+            TranslationKey other = (TranslationKey) o;
+            return module == other.module && command == other.command && options.equals(other.options);
+        }
+
+        @Override
+        public int hashCode() {
+            return (System.identityHashCode(module) * 31 + System.identityHashCode(command)) * 31 + options.hashCode();
+        }
+    }
+
+    /**
+     * Create a cache with the default sizes and age.
+     */
+    public SolverCache() {
+        this(DEFAULT_MODULES, DEFAULT_TRANSLATIONS, DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    /**
+     * Create a cache.
+     *
+     * @param modules the maximum number of parsed modules, 0 to disable
+     * @param translations the maximum number of solved commands, 0 to disable
+     * @param maxAgeMillis the time after which an unused entry is dropped, 0
+     *            for no limit
+     */
+    public SolverCache(int modules, int translations, long maxAgeMillis) {
+        this.modules = new LruCache<>(modules, maxAgeMillis);
+        this.translations = new LruCache<>(translations, maxAgeMillis);
+    }
+
+    /**
+     * Load a model, reusing the module parsed for the same content if it is
+     * still cached. Only models that load successfully are cached.
+     *
+     * @see ModelLoader#loadModel(String, A4Reporter)
+     */
+    public ModelLoader.ModelLoadResult loadModel(String modelContent, A4Reporter reporter) {
+        if (modelContent == null || modelContent.trim().isEmpty()) {
+            return ModelLoader.loadModel(modelContent, reporter);
+        }
+        String hash = hash(modelContent);
+        ModelLoader.ModelLoadResult result = modules.get(hash);
+        if (result == null) {
+            result = ModelLoader.loadModel(modelContent, reporter);
+            if (result.isSuccess()) {
+                modules.put(hash, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Execute a command of a module, reusing the solution found for the same
+     * command and options if it is still cached. Solutions are only cached
+     * when the solving completes.
+     *
+     * @see TranslateAlloyToKodkod#execute_command(A4Reporter, Iterable, Command,
+     *      A4Options)
+     */
+    public A4Solution execute(A4Reporter reporter, CompModule world, Command command, A4Options options) throws Err {
+        TranslationKey key = new TranslationKey(world, command, options);
+        A4Solution solution = translations.get(key);
+        if (solution == null) {
+            solution = TranslateAlloyToKodkod.execute_command(reporter, world.getAllReachableSigs(), command, options);
+            translations.put(key, solution);
+        }
+        return solution;
+    }
+
+    public LruCache<String, ModelLoader.ModelLoadResult> getModules() {
+        return modules;
+    }
+
+    public LruCache<?, A4Solution> getTranslations() {
+        return translations;
+    }
+
+    /**
+     * Return the hexadecimal SHA-256 hash of the given model content.
+     */
+    static String hash(String modelContent) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = digest.digest(modelContent.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -2,12 +2,20 @@ package org.alloytools.alloy.grpc.error;
 
 import static org.junit.Assert.*;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 import org.alloytools.alloy.grpc.impl.AlloySolverServiceImpl;
+import org.alloytools.alloy.grpc.impl.SolveScheduler;
 import org.alloytools.alloy.grpc.proto.*;
+import org.alloytools.alloy.grpc.util.SolverCache;
 import org.alloytools.alloy.grpc.util.TestStreamObserver;
 import org.junit.Before;
 import org.junit.Test;
 
+import io.grpc.Context;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 
@@ -35,6 +43,8 @@ public class GrpcErrorHandlingTest {
             .build();
 
         service.solve(invalidSyntaxRequest, responseObserver);
+
+        responseObserver.awaitClosed();
         
         // Verify error response
         assertTrue(responseObserver.hasError());
@@ -60,6 +70,8 @@ public class GrpcErrorHandlingTest {
             .build();
 
         service.solve(unavailableSolverRequest, responseObserver);
+
+        responseObserver.awaitClosed();
         
         // Verify error response
         assertTrue(responseObserver.hasError());
@@ -82,6 +94,8 @@ public class GrpcErrorHandlingTest {
             .build();
 
         service.solve(typeErrorRequest, responseObserver);
+
+        responseObserver.awaitClosed();
         
         // Verify error response
         assertTrue(responseObserver.hasError());
@@ -95,32 +109,76 @@ public class GrpcErrorHandlingTest {
 
     @Test
     public void testDeadlineExceededErrors() {
-        // Create a model that would likely timeout
-        StringBuilder largeModel = new StringBuilder();
-        largeModel.append("sig Node { edges: set Node }\n");
-        
-        // Add many constraints to make solving slow
-        largeModel.append("fact {\n");
-        for (int i = 0; i < 20; i++) {
-            largeModel.append("  all n1, n2: Node | n1->n2 in edges implies n2->n1 in edges\n");
-            largeModel.append("  all n1, n2, n3: Node | n1->n2 in edges and n2->n3 in edges implies n1->n3 in edges\n");
-        }
-        largeModel.append("}\n");
-        largeModel.append("run { #Node = 10 } for 10");
-        
-        // Create request with complex model that might be slow
+        // Pigeonhole without symmetry breaking takes far longer than the deadline
         SolveRequest timeoutRequest = SolveRequest.newBuilder()
-            .setModelContent(largeModel.toString())
+            .setModelContent(
+                "sig Pigeon { hole: one Hole }\n" +
+                "sig Hole {}\n" +
+                "fact { all disj p1, p2: Pigeon | p1.hole != p2.hole }\n" +
+                "run {} for exactly 11 Pigeon, exactly 10 Hole")
             .setOutputFormat(OutputFormat.OUTPUT_FORMAT_JSON)
             .setSolverType(SolverType.SOLVER_TYPE_SAT4J)
             .build();
 
-        service.solve(timeoutRequest, responseObserver);
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        try {
+            long start = System.currentTimeMillis();
+            Context.CancellableContext context = Context.current().withDeadlineAfter(500, TimeUnit.MILLISECONDS, timer);
+            context.run(() -> service.solve(timeoutRequest, responseObserver));
+            responseObserver.awaitClosed();
+
+            assertTrue("Should have gRPC error", responseObserver.hasError());
+            StatusRuntimeException statusError = (StatusRuntimeException) responseObserver.getError();
+            assertEquals(Status.Code.DEADLINE_EXCEEDED, statusError.getStatus().getCode());
+            assertTrue("The solver should be aborted soon after the deadline",
+                System.currentTimeMillis() - start < 10000);
+
+            TestStreamObserver<MetricsResponse> metricsObserver = new TestStreamObserver<>();
+            service.getMetrics(MetricsRequest.getDefaultInstance(), metricsObserver);
+            assertEquals(1, metricsObserver.getResponse().getScheduler().getAborted());
+        } finally {
+            timer.shutdownNow();
+        }
+    }
 
-        // For now, just verify we get some response (either success or error)
-        // TODO: Implement proper timeout handling in the service
-        assertTrue("Should get either response or error",
-                  responseObserver.hasResponse() || responseObserver.hasError());
+    @Test
+    public void testResourceExhaustedWhenQueueIsFull() throws Exception {
+        SolveScheduler scheduler = new SolveScheduler(1, 1);
+        service = new AlloySolverServiceImpl(new SolverCache(), scheduler);
+
+        // Occupy the only solving thread, then fill the queue
+        CountDownLatch release = new CountDownLatch(1);
+        assertTrue(scheduler.submit(Context.current(), () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        SolveRequest request = SolveRequest.newBuilder()
+            .setModelContent("sig A {} run {} for 3")
+            .setOutputFormat(OutputFormat.OUTPUT_FORMAT_JSON)
+            .setSolverType(SolverType.SOLVER_TYPE_SAT4J)
+            .build();
+        TestStreamObserver<SolveResponse> queued = new TestStreamObserver<>();
+        service.solve(request, queued);
+
+        service.solve(request, responseObserver);
+        assertTrue("A request beyond the queue should be rejected at once", responseObserver.hasError());
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED,
+            ((StatusRuntimeException) responseObserver.getError()).getStatus().getCode());
+
+        TestStreamObserver<MetricsResponse> metricsObserver = new TestStreamObserver<>();
+        service.getMetrics(MetricsRequest.getDefaultInstance(), metricsObserver);
+        SchedulerMetrics metrics = metricsObserver.getResponse().getScheduler();
+        assertEquals(1, metrics.getConcurrency());
+        assertEquals(1, metrics.getQueueDepth());
+        assertEquals(1, metrics.getRejected());
+
+        release.countDown();
+        queued.awaitClosed();
+        assertTrue("The queued request should be solved", queued.isCompleted());
+        scheduler.shutdown();
     }
 
     @Test
@@ -134,6 +192,8 @@ public class GrpcErrorHandlingTest {
             .build();
 
         service.solve(invalidCommandRequest, responseObserver);
+
+        responseObserver.awaitClosed();
         
         // Verify error response
         assertTrue(responseObserver.hasError());
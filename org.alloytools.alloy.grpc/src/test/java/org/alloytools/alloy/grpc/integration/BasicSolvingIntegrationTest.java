@@ -2,16 +2,17 @@ package org.alloytools.alloy.grpc.integration;
 
 import static org.junit.Assert.*;
 
+import org.alloytools.alloy.grpc.proto.MetricsRequest;
+import org.alloytools.alloy.grpc.proto.MetricsResponse;
 import org.alloytools.alloy.grpc.proto.OutputFormat;
 import org.alloytools.alloy.grpc.proto.SolveRequest;
 import org.alloytools.alloy.grpc.proto.SolveResponse;
 import org.alloytools.alloy.grpc.proto.SolverType;
 import org.alloytools.alloy.grpc.impl.AlloySolverServiceImpl;
+import org.alloytools.alloy.grpc.util.TestStreamObserver;
 import org.junit.Before;
 import org.junit.Test;
 
-import io.grpc.stub.StreamObserver;
-
 /**
  * Integration tests for basic model solving using real Alloy models.
  * These tests validate real functionality (not mocks) as preferred.
@@ -76,6 +77,8 @@ public class BasicSolvingIntegrationTest {
 
         service.solve(request, responseObserver);
 
+        responseObserver.awaitClosed();
+
         assertTrue("Response should be received", responseObserver.hasResponse());
         assertFalse("Should not have error", responseObserver.hasError());
 
@@ -102,6 +105,8 @@ public class BasicSolvingIntegrationTest {
 
         service.solve(request, responseObserver);
 
+        responseObserver.awaitClosed();
+
         assertTrue("Response should be received", responseObserver.hasResponse());
         assertFalse("Should not have error", responseObserver.hasError());
 
@@ -127,6 +132,8 @@ public class BasicSolvingIntegrationTest {
             .build();
 
         service.solve(request1, responseObserver);
+
+        responseObserver.awaitClosed();
         assertTrue("First response should be received", responseObserver.hasResponse());
         SolveResponse response1 = responseObserver.getResponse();
         assertTrue("First command should be satisfiable", response1.getSatisfiable());
@@ -143,6 +150,8 @@ public class BasicSolvingIntegrationTest {
             .build();
 
         service.solve(request2, responseObserver);
+
+        responseObserver.awaitClosed();
         assertTrue("Second response should be received", responseObserver.hasResponse());
         SolveResponse response2 = responseObserver.getResponse();
         assertTrue("Second command should be satisfiable", response2.getSatisfiable());
@@ -163,6 +172,8 @@ public class BasicSolvingIntegrationTest {
 
         service.solve(request, responseObserver);
 
+        responseObserver.awaitClosed();
+
         assertFalse("Should not have response", responseObserver.hasResponse());
         assertTrue("Should have gRPC error", responseObserver.hasError());
 
@@ -185,6 +196,8 @@ public class BasicSolvingIntegrationTest {
 
         service.solve(request, responseObserver);
 
+        responseObserver.awaitClosed();
+
         assertTrue("Response should be received", responseObserver.hasResponse());
         assertFalse("Should not have gRPC error", responseObserver.hasError());
 
@@ -206,6 +219,8 @@ public class BasicSolvingIntegrationTest {
 
         service.solve(request, responseObserver);
 
+        responseObserver.awaitClosed();
+
         assertFalse("Should not have response", responseObserver.hasResponse());
         assertTrue("Should have gRPC error", responseObserver.hasError());
 
@@ -218,43 +233,33 @@ public class BasicSolvingIntegrationTest {
             statusError.getMessage().toLowerCase().contains("command not found"));
     }
 
-    /**
-     * Helper class to capture gRPC responses in tests.
-     */
-    private static class TestStreamObserver<T> implements StreamObserver<T> {
-        private T response;
-        private Throwable error;
-        private boolean completed = false;
-
-        @Override
-        public void onNext(T value) {
-            this.response = value;
-        }
-
-        @Override
-        public void onError(Throwable t) {
-            this.error = t;
-        }
-
-        @Override
-        public void onCompleted() {
-            this.completed = true;
-        }
-
-        public boolean hasResponse() {
-            return response != null;
-        }
-
-        public boolean hasError() {
-            return error != null;
-        }
-
-        public T getResponse() {
-            return response;
-        }
-
-        public Throwable getError() {
-            return error;
-        }
+    @Test
+    public void testRepeatedRequestUsesCache() {
+        SolveRequest request = SolveRequest.newBuilder()
+            .setModelContent(SIMPLE_PERSON_MODEL)
+            .setOutputFormat(OutputFormat.OUTPUT_FORMAT_TEXT)
+            .setSolverType(SolverType.SOLVER_TYPE_SAT4J)
+            .setCommand("0")
+            .build();
+
+        service.solve(request, responseObserver);
+
+        responseObserver.awaitClosed();
+        SolveResponse first = responseObserver.getResponse();
+
+        responseObserver = new TestStreamObserver<>();
+        service.solve(request, responseObserver);
+        responseObserver.awaitClosed();
+        SolveResponse second = responseObserver.getResponse();
+
+        assertEquals("Cached solution should give the same response",
+            first.getSolutionData(), second.getSolutionData());
+
+        TestStreamObserver<MetricsResponse> metricsObserver = new TestStreamObserver<>();
+        service.getMetrics(MetricsRequest.getDefaultInstance(), metricsObserver);
+        MetricsResponse metrics = metricsObserver.getResponse();
+        assertEquals("Model should be parsed once", 1, metrics.getModuleCache().getHits());
+        assertEquals("Command should be translated once", 1, metrics.getTranslationCache().getHits());
+        assertEquals(1, metrics.getTranslationCache().getMisses());
     }
 }
@@ -56,6 +56,7 @@ public class OutputFormatIntegrationTest {
 
         // Execute request
         service.solve(request, responseObserver);
+        responseObserver.awaitClosed();
         
         // Verify response
         assertTrue(responseObserver.hasResponse());
@@ -94,6 +95,7 @@ public class OutputFormatIntegrationTest {
 
         // Execute request
         service.solve(request, responseObserver);
+        responseObserver.awaitClosed();
         
         // Verify response
         assertTrue(responseObserver.hasResponse());
@@ -134,6 +136,7 @@ public class OutputFormatIntegrationTest {
 
         // Execute request
         service.solve(request, responseObserver);
+        responseObserver.awaitClosed();
         
         // Verify response
         assertTrue(responseObserver.hasResponse());
@@ -164,6 +167,7 @@ public class OutputFormatIntegrationTest {
 
         // Execute request
         service.solve(request, responseObserver);
+        responseObserver.awaitClosed();
         
         // Verify response
         assertTrue(responseObserver.hasResponse());
@@ -224,6 +228,7 @@ public class OutputFormatIntegrationTest {
         
         // Execute request
         service.solve(request, responseObserver);
+        responseObserver.awaitClosed();
         
         // Return response
         assertTrue(responseObserver.hasResponse());
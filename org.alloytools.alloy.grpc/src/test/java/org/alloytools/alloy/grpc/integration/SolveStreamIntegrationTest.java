@@ -0,0 +1,241 @@
+package org.alloytools.alloy.grpc.integration;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.alloytools.alloy.grpc.impl.AlloySolverServiceImpl;
+import org.alloytools.alloy.grpc.proto.OutputFormat;
+import org.alloytools.alloy.grpc.proto.SolveRequest;
+import org.alloytools.alloy.grpc.proto.SolveResponse;
+import org.alloytools.alloy.grpc.proto.SolverType;
+import org.alloytools.alloy.grpc.util.TestStreamObserver;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+
+/**
+ * Integration tests for the server-streaming SolveStream RPC.
+ */
+public class SolveStreamIntegrationTest {
+
+    // The atoms are fixed, so r has exactly 4 instances regardless of symmetry breaking
+    private static final String FOUR_INSTANCES_MODEL =
+        "one sig S { r: set T }\n" +
+        "abstract sig T {}\n" +
+        "one sig T1, T2 extends T {}\n" +
+        "\n" +
+        "run {}\n" +
+        "run { no S }\n" +
+        "run { one S.r }\n";
+
+    private static final String MANY_INSTANCES_MODEL =
+        "sig Node { edges: set Node }\n" +
+        "run {} for 6\n";
+
+    private AlloySolverServiceImpl service;
+    private TestStreamObserver<SolveResponse> responseObserver;
+
+    @Before
+    public void setUp() {
+        service = new AlloySolverServiceImpl();
+        responseObserver = new TestStreamObserver<>();
+    }
+
+    private static SolveRequest request(String model, String command, int maxSolutions) {
+        return SolveRequest.newBuilder()
+            .setModelContent(model)
+            .setOutputFormat(OutputFormat.OUTPUT_FORMAT_TEXT)
+            .setSolverType(SolverType.SOLVER_TYPE_SAT4J)
+            .setCommand(command)
+            .setMaxSolutions(maxSolutions)
+            .build();
+    }
+
+    @Test
+    public void testEnumeratesAllSolutions() throws Exception {
+        service.solveStream(request(FOUR_INSTANCES_MODEL, "0", 0), responseObserver);
+
+        assertTrue("Stream should be closed", responseObserver.await(30, TimeUnit.SECONDS));
+        assertTrue("Stream should be completed", responseObserver.isCompleted());
+        assertFalse("Should not have error", responseObserver.hasError());
+
+        List<SolveResponse> responses = responseObserver.getResponses();
+        assertEquals("Should stream every instance", 4, responses.size());
+        for (int i = 0; i < responses.size(); i++) {
+            assertTrue("Every streamed solution should be satisfiable", responses.get(i).getSatisfiable());
+            assertEquals("Solutions should be numbered in order", i,
+                responses.get(i).getMetadata().getSolutionIndex());
+            assertFalse("Solution data should not be empty", responses.get(i).getSolutionData().isEmpty());
+        }
+    }
+
+    @Test
+    public void testMaxSolutions() throws Exception {
+        service.solveStream(request(FOUR_INSTANCES_MODEL, "0", 2), responseObserver);
+
+        assertTrue("Stream should be closed", responseObserver.await(30, TimeUnit.SECONDS));
+        assertTrue("Stream should be completed", responseObserver.isCompleted());
+        assertEquals("Should stop after max_solutions", 2, responseObserver.getResponses().size());
+    }
+
+    @Test
+    public void testUnsatisfiableCommandIsReportedOnce() throws Exception {
+        service.solveStream(request(FOUR_INSTANCES_MODEL, "1", 0), responseObserver);
+
+        assertTrue("Stream should be closed", responseObserver.await(30, TimeUnit.SECONDS));
+        assertTrue("Stream should be completed", responseObserver.isCompleted());
+
+        List<SolveResponse> responses = responseObserver.getResponses();
+        assertEquals("Should stream a single response", 1, responses.size());
+        assertFalse("Command should be unsatisfiable", responses.get(0).getSatisfiable());
+    }
+
+    @Test
+    public void testAllCommandsInOrder() throws Exception {
+        service.solveStream(request(FOUR_INSTANCES_MODEL, "*", 0), responseObserver);
+
+        assertTrue("Stream should be closed", responseObserver.await(30, TimeUnit.SECONDS));
+        assertTrue("Stream should be completed", responseObserver.isCompleted());
+
+        List<SolveResponse> responses = responseObserver.getResponses();
+        assertEquals("Should stream 4 + 1 + 2 responses", 7, responses.size());
+        String first = responses.get(0).getMetadata().getExecutedCommand();
+        String second = responses.get(4).getMetadata().getExecutedCommand();
+        String third = responses.get(5).getMetadata().getExecutedCommand();
+        for (int i = 0; i < 4; i++) {
+            assertEquals(first, responses.get(i).getMetadata().getExecutedCommand());
+        }
+        assertFalse("Second command should be unsatisfiable", responses.get(4).getSatisfiable());
+        assertNotEquals(first, second);
+        assertNotEquals(second, third);
+        assertEquals(third, responses.get(6).getMetadata().getExecutedCommand());
+    }
+
+    @Test
+    public void testInvalidModel() throws Exception {
+        service.solveStream(request("invalid alloy syntax {{{", "", 0), responseObserver);
+
+        assertTrue("Stream should be closed", responseObserver.await(30, TimeUnit.SECONDS));
+        assertTrue("Should have gRPC error", responseObserver.hasError());
+        assertEquals(Status.Code.INVALID_ARGUMENT,
+            ((StatusRuntimeException) responseObserver.getError()).getStatus().getCode());
+    }
+
+    @Test
+    public void testFlowControlAndCancellation() throws Exception {
+        FlowControlledObserver observer = new FlowControlledObserver();
+        service.solveStream(request(MANY_INSTANCES_MODEL, "0", 0), observer);
+
+        Thread.sleep(500);
+        assertEquals("Nothing should be sent while the client is not ready", 0, observer.getResponses().size());
+
+        observer.setReady(true);
+        long deadline = System.currentTimeMillis() + 30000;
+        while (observer.getResponses().size() < 10 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue("Solutions should be streamed once the client is ready", observer.getResponses().size() >= 10);
+
+        observer.cancel();
+        int sent = observer.getResponses().size();
+        Thread.sleep(500);
+        assertTrue("At most one solution should be sent after cancellation",
+            observer.getResponses().size() <= sent + 1);
+        assertFalse("A cancelled stream should not be completed", observer.isCompleted());
+        assertFalse("A cancelled stream should not fail", observer.hasError());
+    }
+
+    /**
+     * A server call observer whose readiness is controlled by the test, and
+     * that can be cancelled as if by the client.
+     */
+    private static class FlowControlledObserver extends ServerCallStreamObserver<SolveResponse> {
+        private final TestStreamObserver<SolveResponse> delegate = new TestStreamObserver<>();
+        private volatile boolean ready;
+        private volatile boolean cancelled;
+        private Runnable onReady;
+        private Runnable onCancel;
+
+        void setReady(boolean ready) {
+            this.ready = ready;
+            if (ready && onReady != null) {
+                onReady.run();
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (onCancel != null) {
+                onCancel.run();
+            }
+        }
+
+        List<SolveResponse> getResponses() {
+            return delegate.getResponses();
+        }
+
+        boolean isCompleted() {
+            return delegate.isCompleted();
+        }
+
+        boolean hasError() {
+            return delegate.hasError();
+        }
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+            this.onReady = onReadyHandler;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable onCancelHandler) {
+            this.onCancel = onCancelHandler;
+        }
+
+        @Override
+        public void setCompression(String compression) {
+        }
+
+        @Override
+        public void disableAutoInboundFlowControl() {
+        }
+
+        @Override
+        public void request(int count) {
+        }
+
+        @Override
+        public void setMessageCompression(boolean enable) {
+        }
+
+        @Override
+        public void onNext(SolveResponse value) {
+            delegate.onNext(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            delegate.onError(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            delegate.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.alloytools.alloy.grpc.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import kodkod.engine.satlab.SATAbortedException;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.engine.satlab.SATSolver;
+
+/**
+ * Unit tests for CancellableSATFactory.
+ */
+public class CancellableSATFactoryTest {
+
+    /**
+     * Add the clauses of the pigeonhole problem for the given number of holes
+     * and one more pigeon, which takes far longer to refute than the tests
+     * wait.
+     */
+    private static void pigeonhole(SATSolver solver, int holes) {
+        int pigeons = holes + 1;
+        solver.addVariables(pigeons * holes);
+        for (int p = 0; p < pigeons; p++) {
+            int[] somewhere = new int[holes];
+            for (int h = 0; h < holes; h++) {
+                somewhere[h] = p * holes + h + 1;
+            }
+            solver.addClause(somewhere);
+        }
+        for (int h = 0; h < holes; h++) {
+            for (int p = 0; p < pigeons; p++) {
+                for (int q = p + 1; q < pigeons; q++) {
+                    solver.addClause(new int[] { -(p * holes + h + 1), -(q * holes + h + 1) });
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCancelBeforeTheSearchStartsAbortsIt() throws Exception {
+        CancellableSATFactory factory = CancellableSATFactory.wrap(SATFactory.DEFAULT);
+        try {
+            SATSolver solver = factory.instance();
+            pigeonhole(solver, 12);
+
+            // the deadline fires while the formula is still being translated
+            factory.cancel();
+
+            long start = System.currentTimeMillis();
+            try {
+                solver.solve();
+                fail("The search should have been aborted");
+            } catch (SATAbortedException expected) {
+                // expected
+            }
+            assertTrue("The search should be aborted soon after it starts",
+                System.currentTimeMillis() - start < 10000);
+        } finally {
+            factory.close();
+        }
+    }
+
+    @Test
+    public void testNoSolverIsCreatedOnceCancelled() {
+        CancellableSATFactory factory = CancellableSATFactory.wrap(SATFactory.DEFAULT);
+        factory.cancel();
+        factory.close();
+
+        assertTrue(factory.isCancelled());
+        try {
+            factory.instance();
+            fail("A cancelled factory should not create solvers");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+    }
+}
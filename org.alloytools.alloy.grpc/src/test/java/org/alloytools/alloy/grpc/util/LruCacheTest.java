@@ -0,0 +1,69 @@
+package org.alloytools.alloy.grpc.util;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for LruCache.
+ */
+public class LruCacheTest {
+
+    @Test
+    public void testHitsAndMisses() {
+        LruCache<String, Integer> cache = new LruCache<>(4, 0);
+
+        assertNull(cache.get("a"));
+        cache.put("a", 1);
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        LruCache<String, Integer> cache = new LruCache<>(2, 0);
+
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a");
+        cache.put("c", 3);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNotNull("Recently used entry should be kept", cache.get("a"));
+        assertNull("Least recently used entry should be evicted", cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void testExpiresUnusedEntries() {
+        AtomicLong now = new AtomicLong(1000);
+        LruCache<String, Integer> cache = new LruCache<>(4, 100, now::get);
+
+        cache.put("a", 1);
+        cache.put("b", 2);
+        now.addAndGet(60);
+        assertNotNull(cache.get("a"));
+        now.addAndGet(60);
+
+        assertNotNull("Entry used recently should be kept", cache.get("a"));
+        assertNull("Entry unused for too long should be dropped", cache.get("b"));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void testDisabled() {
+        LruCache<String, Integer> cache = new LruCache<>(0, 0);
+
+        cache.put("a", 1);
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,100 @@
+package org.alloytools.alloy.grpc.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import edu.mit.csail.sdg.alloy4.A4Reporter;
+import edu.mit.csail.sdg.ast.Command;
+import edu.mit.csail.sdg.parser.CompModule;
+import edu.mit.csail.sdg.translator.A4Options;
+import edu.mit.csail.sdg.translator.A4Solution;
+
+/**
+ * Unit tests for SolverCache.
+ */
+public class SolverCacheTest {
+
+    private static final String MODEL =
+        "sig Node {\n" +
+        "    edges: set Node\n" +
+        "}\n" +
+        "run { some edges } for 3\n" +
+        "run { no edges } for 2\n";
+
+    @Test
+    public void testSameContentIsParsedOnce() {
+        SolverCache cache = new SolverCache();
+
+        ModelLoader.ModelLoadResult first = cache.loadModel(MODEL, A4Reporter.NOP);
+        ModelLoader.ModelLoadResult second = cache.loadModel(new String(MODEL), A4Reporter.NOP);
+
+        assertTrue(first.isSuccess());
+        assertSame("Same content should reuse the parsed module", first.getModule(), second.getModule());
+        assertEquals(1, cache.getModules().getHits());
+        assertEquals(1, cache.getModules().getMisses());
+    }
+
+    @Test
+    public void testDifferentContentIsParsedAgain() {
+        SolverCache cache = new SolverCache();
+
+        ModelLoader.ModelLoadResult first = cache.loadModel(MODEL, A4Reporter.NOP);
+        ModelLoader.ModelLoadResult second = cache.loadModel(MODEL + "\n", A4Reporter.NOP);
+
+        assertNotSame(first.getModule(), second.getModule());
+        assertEquals(2, cache.getModules().getMisses());
+    }
+
+    @Test
+    public void testInvalidModelsAreNotCached() {
+        SolverCache cache = new SolverCache();
+
+        assertFalse(cache.loadModel("sig {{{", A4Reporter.NOP).isSuccess());
+        assertFalse(cache.loadModel("sig {{{", A4Reporter.NOP).isSuccess());
+
+        assertEquals(0, cache.getModules().size());
+    }
+
+    @Test
+    public void testSolvedCommandsAreReused() throws Exception {
+        SolverCache cache = new SolverCache();
+        ModelLoader.ModelLoadResult result = cache.loadModel(MODEL, A4Reporter.NOP);
+        CompModule world = result.getModule();
+        Command command = result.getCommands().get(0);
+
+        A4Solution first = cache.execute(A4Reporter.NOP, world, command, new A4Options());
+        A4Solution second = cache.execute(A4Reporter.NOP, world, command, new A4Options());
+
+        assertTrue(first.satisfiable());
+        assertSame("Same command and options should reuse the solution", first, second);
+        assertEquals(1, cache.getTranslations().getHits());
+    }
+
+    @Test
+    public void testOptionsAndCommandsAreDistinguished() throws Exception {
+        SolverCache cache = new SolverCache();
+        ModelLoader.ModelLoadResult result = cache.loadModel(MODEL, A4Reporter.NOP);
+        CompModule world = result.getModule();
+
+        A4Options options = new A4Options();
+        A4Options noSymmetry = new A4Options();
+        noSymmetry.symmetry = 0;
+
+        A4Solution first = cache.execute(A4Reporter.NOP, world, result.getCommands().get(0), options);
+        A4Solution other = cache.execute(A4Reporter.NOP, world, result.getCommands().get(0), noSymmetry);
+        A4Solution second = cache.execute(A4Reporter.NOP, world, result.getCommands().get(1), options);
+
+        assertNotSame(first, other);
+        assertNotSame(first, second);
+        assertEquals(0, cache.getTranslations().getHits());
+        assertEquals(3, cache.getTranslations().size());
+    }
+
+    @Test
+    public void testHashIsStable() {
+        assertEquals(SolverCache.hash(MODEL), SolverCache.hash(new String(MODEL)));
+        assertNotEquals(SolverCache.hash(MODEL), SolverCache.hash(MODEL + " "));
+        assertEquals(64, SolverCache.hash(MODEL).length());
+    }
+}
@@ -1,5 +1,11 @@
 package org.alloytools.alloy.grpc.util;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import io.grpc.stub.StreamObserver;
 
 /**
@@ -7,23 +13,56 @@ import io.grpc.stub.StreamObserver;
  * This class implements StreamObserver to capture responses, errors, and completion status.
  */
 public class TestStreamObserver<T> implements StreamObserver<T> {
-    private T response;
-    private Throwable error;
-    private boolean completed = false;
+    private final List<T> responses = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private volatile T response;
+    private volatile Throwable error;
+    private volatile boolean completed = false;
 
     @Override
     public void onNext(T value) {
         this.response = value;
+        responses.add(value);
     }
 
     @Override
     public void onError(Throwable t) {
         this.error = t;
+        closed.countDown();
     }
 
     @Override
     public void onCompleted() {
         this.completed = true;
+        closed.countDown();
+    }
+
+    /**
+     * Wait until the call is completed or failed, for streaming calls that are
+     * answered asynchronously.
+     *
+     * @return true if the call was closed before the timeout
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return closed.await(timeout, unit);
+    }
+
+    /**
+     * Wait until the call is completed or failed, for unary calls that are
+     * answered on a thread of the solve scheduler.
+     *
+     * @return this observer
+     */
+    public TestStreamObserver<T> awaitClosed() {
+        try {
+            if (!closed.await(60, TimeUnit.SECONDS)) {
+                throw new AssertionError("The call was not closed within 60 seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError("Interrupted while waiting for the call", e);
+        }
+        return this;
     }
 
     public boolean hasResponse() {
@@ -42,6 +81,12 @@ public class TestStreamObserver<T> implements StreamObserver<T> {
         return response;
     }
 
+    public List<T> getResponses() {
+        synchronized (responses) {
+            return new ArrayList<>(responses);
+        }
+    }
+
     public Throwable getError() {
         return error;
     }
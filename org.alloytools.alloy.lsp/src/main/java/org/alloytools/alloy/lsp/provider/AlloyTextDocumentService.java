@@ -21,7 +21,6 @@ import static org.alloytools.alloy.lsp.provider.AlloyLanguageServerUtil.filePath
 import static org.alloytools.alloy.lsp.provider.AlloyLanguageServerUtil.filePathToUri;
 import static org.alloytools.alloy.lsp.provider.AlloyLanguageServerUtil.fileUriToPath;
 import static org.alloytools.alloy.lsp.provider.AlloyLanguageServerUtil.fs;
-import static org.alloytools.alloy.lsp.provider.AlloyLanguageServerUtil.getResult;
 import static org.alloytools.alloy.lsp.provider.AlloyLanguageServerUtil.posToLocation;
 import static org.alloytools.alloy.lsp.provider.AlloyLanguageServerUtil.posToPosition;
 import static org.alloytools.alloy.lsp.provider.AlloyLanguageServerUtil.positionToPos;
@@ -51,6 +50,11 @@ import java.util.Objects;
 import java.util.Scanner;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -176,20 +180,28 @@ class AlloyTextDocumentService implements TextDocumentService, WorkspaceService,
         return CompletableFuture.completedFuture(unresolved);
     }
 
-    Either<CompModule,Err> cachedCompModuleForFileUri     = null;
-
     /**
-     * the file uri of the cached module. If this is not null, the cached module is
-     * valid for the uri
+     * Time to wait after the last change of a document before parsing it again
+     * and publishing its diagnostics, so that a burst of keystrokes is parsed
+     * once.
      */
-    String                 cachedCompModuleForFileUri_Uri = null;
+    static final long DIAGNOSTICS_DELAY_MILLIS = 150;
 
-    CompModule getCompModuleForFileUri(String uri) {
+    /**
+     * the modules parsed so far, valid as long as the files they read are
+     * unchanged
+     */
+    private final ModuleCache                      modules       = new ModuleCache();
+    private final ScheduledExecutorService         parser        = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                                                                     Thread thread = new Thread(runnable, "alloy-lsp-parser");
+                                                                     thread.setDaemon(true);
+                                                                     return thread;
+                                                                 });
+    private final Map<String,ScheduledFuture< ? >> pendingParses = new HashMap<>();
+
+    synchronized CompModule getCompModuleForFileUri(String uri) {
         // log("getCompModuleForFileUri (" + uri + ")");
-        if (uri.equals(cachedCompModuleForFileUri_Uri)) {
-            return getResult(cachedCompModuleForFileUri);
-        }
-
+        CompModule module;
         try {
             String path = fileUriToPath(uri);
 
@@ -200,7 +212,7 @@ class AlloyTextDocumentService implements TextDocumentService, WorkspaceService,
                 return CompUtil.nullModule();
             }
 
-            cachedCompModuleForFileUri = Either.forLeft(CompUtil.parseEverything_fromFile(null, fileContentsPathBased(), path, 2));
+            module = modules.parse(path, fileContentsPathBased(), 2);
 
         } catch (Err err) {
             log("getCompModuleForFileUri(): error in parsing: " + err.toString());
@@ -211,7 +223,6 @@ class AlloyTextDocumentService implements TextDocumentService, WorkspaceService,
             if (err instanceof ErrorSyntax)
                 latestFileUrisWithSyntaxError.add(uri);
 
-            cachedCompModuleForFileUri = Either.forRight(err);
             throw err;
         }
 
@@ -219,8 +230,35 @@ class AlloyTextDocumentService implements TextDocumentService, WorkspaceService,
             client.publishDiagnostics(newPublishDiagnosticsParams(uri, Arrays.asList()));
             latestFileUrisWithSyntaxError.remove(uri);
         }
-        cachedCompModuleForFileUri_Uri = uri;
-        return getResult(cachedCompModuleForFileUri);
+        return module;
+    }
+
+    /**
+     * Parse the document again once it has not changed for
+     * {@link #DIAGNOSTICS_DELAY_MILLIS}, publishing its diagnostics and leaving
+     * the module in the cache for the requests that follow the edit.
+     */
+    private void scheduleParse(String uri) {
+        synchronized (pendingParses) {
+            ScheduledFuture< ? > pending = pendingParses.get(uri);
+            if (pending != null)
+                pending.cancel(false);
+            pendingParses.put(uri, parser.schedule(() -> {
+                try {
+                    getCompModuleForFileUri(uri);
+                } catch (Exception ex) {
+                    // the diagnostics were published
+                }
+            }, DIAGNOSTICS_DELAY_MILLIS, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private void cancelParse(String uri) {
+        synchronized (pendingParses) {
+            ScheduledFuture< ? > pending = pendingParses.remove(uri);
+            if (pending != null)
+                pending.cancel(false);
+        }
     }
 
     @Override
@@ -346,7 +384,7 @@ class AlloyTextDocumentService implements TextDocumentService, WorkspaceService,
             Expr expr = module.find(pos);
             Pos targetPos = expr.referenced() != null ? expr.referenced().pos() : expr.pos;
 
-            CompModule targetModule = CompUtil.parseEverything_fromFile(null, fileContentsPathBased(), filePathResolved(targetPos.filename));
+            CompModule targetModule = modules.parse(filePathResolved(targetPos.filename), fileContentsPathBased(), 1);
 
             Expr targetExpr = targetModule.find(targetPos);
 
@@ -441,7 +479,7 @@ class AlloyTextDocumentService implements TextDocumentService, WorkspaceService,
         for (File child : alloyFilesInDir(dir)) {
             String filePath = fileUriToPath(child.toURI().toString());
             try {
-                CompModule module = CompUtil.parseEverything_fromFile(null, fileContentsPathBased(), filePath);
+                CompModule module = modules.parse(filePath, fileContentsPathBased(), 1);
                 res.addAll(moduleSymbols(module));
             } catch (Exception ex) {
                 log("error parsing " + child);
@@ -506,9 +544,11 @@ class AlloyTextDocumentService implements TextDocumentService, WorkspaceService,
             res.add(new Pair<>(command, vsCommand));
         }
 
-        if (latestFileUrisWithSyntaxError.contains(uri)) {
-            client.publishDiagnostics(newPublishDiagnosticsParams(uri, Arrays.asList()));
-            latestFileUrisWithSyntaxError.remove(uri);
+        synchronized (this) {
+            if (latestFileUrisWithSyntaxError.contains(uri)) {
+                client.publishDiagnostics(newPublishDiagnosticsParams(uri, Arrays.asList()));
+                latestFileUrisWithSyntaxError.remove(uri);
+            }
         }
         return res;
     }
@@ -664,7 +704,7 @@ class AlloyTextDocumentService implements TextDocumentService, WorkspaceService,
         return res;
     }
 
-    private HashMap<String,String> fileContents = new HashMap<>();
+    private final Map<String,String> fileContents = new ConcurrentHashMap<>();
 
     @Override
     public void didOpen(DidOpenTextDocumentParams params) {
@@ -679,9 +719,7 @@ class AlloyTextDocumentService implements TextDocumentService, WorkspaceService,
         String text = params.getContentChanges().get(0).getText();
         String uri = params.getTextDocument().getUri();
         fileContents.put(uri, text);
-
-        cachedCompModuleForFileUri = null;
-        cachedCompModuleForFileUri_Uri = null;
+        scheduleParse(uri);
     }
 
     @Override
@@ -691,15 +729,14 @@ class AlloyTextDocumentService implements TextDocumentService, WorkspaceService,
         if (text != null) {
             String uri = params.getTextDocument().getUri();
             fileContents.put(uri, text);
-
-            cachedCompModuleForFileUri = null;
-            cachedCompModuleForFileUri_Uri = null;
+            scheduleParse(uri);
         }
     }
 
     // WorkspaceService methods
     @Override
     public void didClose(DidCloseTextDocumentParams params) {
+        cancelParse(params.getTextDocument().getUri());
         fileContents.remove(params.getTextDocument().getUri());
     }
 
@@ -722,6 +759,7 @@ class AlloyTextDocumentService implements TextDocumentService, WorkspaceService,
 
     @Override
     public void didChangeWatchedFiles(DidChangeWatchedFilesParams params) {
+        modules.clear();
     }
 
     private PublishDiagnosticsParams toPublishDiagnosticsParams(Err err) {
@@ -0,0 +1,207 @@
+package org.alloytools.alloy.lsp.provider;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edu.mit.csail.sdg.alloy4.Err;
+import edu.mit.csail.sdg.alloy4.Util;
+import edu.mit.csail.sdg.parser.CompModule;
+import edu.mit.csail.sdg.parser.CompUtil;
+
+/**
+ * Caches the modules parsed and resolved by the language server, so that the
+ * hover, definition, references and symbol requests sent between two edits do
+ * not parse the whole module graph again.
+ * <p>
+ * An entry remembers the content of every file read by its parse, including
+ * the imported and util modules. It stays valid as long as each of those files
+ * still has the same content, whether the file is open in the editor or not,
+ * so editing one document only invalidates the modules that depend on it. The
+ * content of the files read from disk is kept as well, with their modification
+ * time and length, and given back to the parser so that the util modules are
+ * not read again on every parse. A file whose modification time or length
+ * changed is read again, whether or not the client reports the change;
+ * {@link #clear()} drops all of them when it does.
+ * <p>
+ * Failed parses are cached too, with their error, so that a document with a
+ * syntax error is not parsed again by every request until it is edited.
+ */
+class ModuleCache {
+
+    /** Default number of parsed modules kept in the cache. */
+    static final int DEFAULT_CAPACITY = 32;
+
+    private final int                         capacity;
+    private final LinkedHashMap<String,Entry> entries      = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String,DiskFile>        diskContents = new HashMap<>();
+    private long                              hits;
+    private long                              misses;
+
+    private static class Entry {
+
+        private final Map<String,String> loaded;
+        private final CompModule         module;
+        private final Err                error;
+
+        private Entry(Map<String,String> loaded, CompModule module, Err error) {
+            this.loaded = loaded;
+            this.module = module;
+            this.error = error;
+        }
+    }
+
+    private static class DiskFile {
+
+        private final String content;
+        private final long   modified;
+        private final long   length;
+
+        private DiskFile(String content, File file) {
+            this.content = content;
+            this.modified = file.lastModified();
+            this.length = file.length();
+        }
+
+        private boolean isCurrent(File file) {
+            return file.lastModified() == modified && file.length() == length;
+        }
+    }
+
+    ModuleCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a cache.
+     *
+     * @param capacity the maximum number of parsed modules
+     */
+    ModuleCache(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+    }
+
+    /**
+     * Parse and resolve a module and everything it opens, or return the result
+     * of an earlier parse if none of the files it read have changed since.
+     *
+     * @param path the path of the main module
+     * @param openFiles the content of the documents open in the editor, by path
+     * @param initialResolutionMode the resolution mode given to
+     *            {@link CompUtil#parseEverything_fromFile(edu.mit.csail.sdg.alloy4.A4Reporter, Map, String, int)}
+     * @return the resolved module
+     * @throws Err if the module, or a module it opens, has an error
+     */
+    synchronized CompModule parse(String path, Map<String,String> openFiles, int initialResolutionMode) throws Err {
+        String key = initialResolutionMode + ":" + Util.canon(path);
+        Map<String,String> open = canonicalKeys(openFiles);
+        Entry entry = entries.get(key);
+        if (entry != null && isValid(entry, open)) {
+            hits++;
+            if (entry.error != null)
+                throw entry.error;
+            return entry.module;
+        }
+        misses++;
+
+        Map<String,String> prefetched = new LinkedHashMap<>();
+        for (String file : diskContents.keySet().toArray(new String[0])) {
+            String content = diskContent(file);
+            if (content != null)
+                prefetched.put(file, content);
+        }
+        prefetched.putAll(open);
+
+        // The parser takes the prefetched files out of loaded and puts back
+        // only the ones it reads, so that an entry does not depend on the
+        // open documents and cached files that its module does not open.
+        Map<String,String> loaded = new LinkedHashMap<>(prefetched);
+        CompModule module = null;
+        Err error = null;
+        try {
+            module = CompUtil.parseEverything_fromFile(null, loaded, path, initialResolutionMode);
+        } catch (Err err) {
+            error = err;
+        }
+
+        // If the main module itself could not be read there is nothing to
+        // check the entry against, so it is not cached.
+        for (Map.Entry<String,String> file : loaded.entrySet()) {
+            if (!open.containsKey(file.getKey()) && file.getValue() != null && !diskContents.containsKey(file.getKey()))
+                diskContents.put(file.getKey(), new DiskFile(file.getValue(), new File(file.getKey())));
+        }
+        if (loaded.containsKey(Util.canon(path))) {
+            entries.put(key, new Entry(loaded, module, error));
+            Iterator<String> eldest = entries.keySet().iterator();
+            while (entries.size() > capacity) {
+                eldest.next();
+                eldest.remove();
+            }
+        } else {
+            entries.remove(key);
+        }
+
+        if (error != null)
+            throw error;
+        return module;
+    }
+
+    /**
+     * Drop every parsed module and the content of the files read from disk.
+     */
+    synchronized void clear() {
+        entries.clear();
+        diskContents.clear();
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Check that every file read by the parse of an entry still has the
+     * content it had then.
+     */
+    private boolean isValid(Entry entry, Map<String,String> open) {
+        for (Map.Entry<String,String> file : entry.loaded.entrySet()) {
+            String now = open.containsKey(file.getKey()) ? open.get(file.getKey()) : diskContent(file.getKey());
+            if (now == null || !now.equals(file.getValue()))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Return the content of a file read from disk, or null if it was not read
+     * or was modified since.
+     */
+    private String diskContent(String path) {
+        DiskFile file = diskContents.get(path);
+        if (file == null)
+            return null;
+        if (!file.isCurrent(new File(path))) {
+            diskContents.remove(path);
+            return null;
+        }
+        return file.content;
+    }
+
+    /**
+     * Return the open documents keyed both by their path and by its canonical
+     * form, since the parser records the files it reads under either.
+     */
+    private static Map<String,String> canonicalKeys(Map<String,String> openFiles) {
+        Map<String,String> res = new HashMap<>(openFiles);
+        for (Map.Entry<String,String> file : openFiles.entrySet())
+            res.put(Util.canon(file.getKey()), file.getValue());
+        return res;
+    }
+}
@@ -0,0 +1,90 @@
+package org.alloytools.alloy.lsp.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.mit.csail.sdg.parser.CompModule;
+
+public class ModuleCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ModuleCache    cache;
+    private File           main;
+    private File           lib;
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new ModuleCache();
+        main = folder.newFile("main.als");
+        lib = folder.newFile("lib.als");
+        write(main, "open lib\nsig A {}\n");
+        write(lib, "module lib\nsig B {}\n");
+    }
+
+    @Test
+    public void importedFileChangedOnDiskIsReadAgain() throws Exception {
+        CompModule first = parse(Collections.emptyMap());
+        assertSame(first, parse(Collections.emptyMap()));
+
+        write(lib, "module lib\nsig B {}\nsig C {}\n");
+        CompModule second = parse(Collections.emptyMap());
+
+        assertNotSame(first, second);
+        assertEquals(3, second.getAllReachableUserDefinedSigs().size());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void closedDocumentIsReadFromDisk() throws Exception {
+        assertEquals(2, parse(Collections.emptyMap()).getAllReachableUserDefinedSigs().size());
+
+        Map<String,String> open = new HashMap<>();
+        open.put(main.getPath(), "open lib\nsig A {}\nsig D {}\n");
+        assertEquals(3, parse(open).getAllReachableUserDefinedSigs().size());
+
+        // the edit was saved before the document was closed
+        write(main, "open lib\nsig A {}\nsig D {}\nsig E {}\n");
+        assertEquals(4, parse(Collections.emptyMap()).getAllReachableUserDefinedSigs().size());
+    }
+
+    @Test
+    public void editingAnUnrelatedDocumentKeepsTheModule() throws Exception {
+        File other = folder.newFile("other.als");
+        Map<String,String> open = new HashMap<>();
+        open.put(other.getPath(), "sig X {}\n");
+        CompModule first = parse(open);
+
+        open.put(other.getPath(), "sig X {}\nsig Y {}\n");
+        assertSame(first, parse(open));
+        assertEquals(1, cache.getHits());
+    }
+
+    private CompModule parse(Map<String,String> open) throws Exception {
+        return cache.parse(main.getPath(), open, 1);
+    }
+
+    /**
+     * Write a file, and move its modification time forward so that the change
+     * is seen on file systems with a coarse timestamp resolution.
+     */
+    private static void write(File file, String content) throws Exception {
+        long modified = file.lastModified();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        file.setLastModified(Math.max(modified + 2000, file.lastModified()));
+    }
+}
@@ -37,9 +37,11 @@ import kodkod.ast.Relation;
 import kodkod.engine.config.Options;
 import kodkod.engine.fol2sat.HigherOrderDeclException;
 import kodkod.engine.fol2sat.Translation;
+import kodkod.engine.fol2sat.TranslationCache;
 import kodkod.engine.fol2sat.TranslationLog;
 import kodkod.engine.fol2sat.Translator;
 import kodkod.engine.fol2sat.UnboundLeafException;
+import kodkod.engine.satlab.ActivatedSATSolver;
 import kodkod.engine.satlab.SATAbortedException;
 import kodkod.engine.satlab.SATProver;
 import kodkod.engine.satlab.SATSolver;
@@ -106,8 +108,11 @@ public abstract class AbstractKodkodSolver<B extends Bounds, O extends Options>
 	 * completes normally, the result is a  {@linkplain Solution solution} containing either an 
 	 * {@linkplain Instance instance} of the given problem or, optionally, a {@linkplain Proof proof} of 
 	 * its unsatisfiability. An unsatisfiability
-	 * proof will be constructed iff {@code this.options.solver} specifies a {@linkplain SATProver} and 
-	 * {@code this.options.logTranslation > 0}.
+	 * proof will be constructed iff {@code this.options.solver} specifies a {@linkplain SATProver}, or
+	 * a solver that {@linkplain kodkod.engine.satlab.SATFactory#assumptions() accepts assumptions} 
+	 * and {@linkplain Options#assumptionCores() this.options.assumptionCores} is set, and 
+	 * {@code this.options.logTranslation > 0}.  In the latter case, the core is extracted by 
+	 * solving under the literals of the top-level formulas instead of from a resolution trace.
 	 * 
 	 * @return some sol:  {@link Solution} | 
 	 *           some sol.instance() => 
@@ -129,7 +134,7 @@ public abstract class AbstractKodkodSolver<B extends Bounds, O extends Options>
 		final long startTransl = System.currentTimeMillis();
 		
 		try {			
-			final Translation.Whole translation = Translator.translate(formula, bounds, options());
+			final Translation.Whole translation = translate(formula, bounds, options());
 			final long endTransl = System.currentTimeMillis();
 			
 			if (translation.trivial())
@@ -190,6 +195,17 @@ public abstract class AbstractKodkodSolver<B extends Bounds, O extends Options>
 		return options().toString();
 	}
 	
+	/**
+	 * Translates the given formula and bounds with respect to the given options, 
+	 * using options.translationCache if there is one.
+	 * @see Translator#translate(Formula, Bounds, Options)
+	 * @see TranslationCache#translate(Formula, Bounds, Options)
+	 */
+	private static Translation.Whole translate(Formula formula, Bounds bounds, Options options) {
+		final TranslationCache cache = options.translationCache();
+		return cache == null ? Translator.translate(formula, bounds, options) : cache.translate(formula, bounds, options);
+	}
+	
 	/**
 	 * Returns the result of solving a sat formula.
 	 * @param bounds Bounds with which  solve() was called
@@ -215,6 +231,8 @@ public abstract class AbstractKodkodSolver<B extends Bounds, O extends Options>
 		final TranslationLog log = translation.log();
 		if (cnf instanceof SATProver && log != null) {
 			return Solution.unsatisfiable(stats, new ResolutionBasedProof((SATProver) cnf, log));
+		} else if (cnf instanceof ActivatedSATSolver && log != null) {
+			return Solution.unsatisfiable(stats, new AssumptionBasedProof((ActivatedSATSolver) cnf, log));
 		} else { // can free memory
 			final Solution sol = Solution.unsatisfiable(stats, null);
 			cnf.free();
@@ -268,7 +286,7 @@ public abstract class AbstractKodkodSolver<B extends Bounds, O extends Options>
 		 */
 		SolutionIterator(Formula formula, Bounds bounds, Options options) {
 			this.translTime = System.currentTimeMillis();
-			this.translation = Translator.translate(formula, bounds, options);
+			this.translation = translate(formula, bounds, options);
 			this.translTime = System.currentTimeMillis() - translTime;
 			this.trivial = 0;
 		}
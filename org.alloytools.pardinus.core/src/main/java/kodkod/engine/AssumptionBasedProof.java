@@ -0,0 +1,248 @@
+/*
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import kodkod.ast.Formula;
+import kodkod.ast.Node;
+import kodkod.ast.Variable;
+import kodkod.ast.visitor.AbstractVoidVisitor;
+import kodkod.engine.fol2sat.RecordFilter;
+import kodkod.engine.fol2sat.TranslationLog;
+import kodkod.engine.fol2sat.TranslationRecord;
+import kodkod.engine.satlab.ActivatedSATSolver;
+import kodkod.engine.satlab.AssumptionSATSolver;
+import kodkod.engine.satlab.ReductionStrategy;
+import kodkod.instance.TupleSet;
+import kodkod.util.collections.IdentityHashSet;
+import kodkod.util.ints.IntSet;
+import kodkod.util.ints.IntTreeSet;
+
+/**
+ * A proof of unsatisfiability based on the activation literals of an 
+ * {@linkplain ActivatedSATSolver}.  Each top-level formula of the problem 
+ * is only enforced when its literal is assumed, so a set of top-level formulas 
+ * is an unsatisfiable core iff the solver is unsatisfiable under their literals.
+ * The core is found by solving the same incremental solver under subsets of
+ * the literals, without the resolution trace needed by a {@link ResolutionBasedProof}.  
+ * 
+ * @specfield solver: ActivatedSATSolver
+ * @specfield core: set int // activation literals of the current core
+ */
+final class AssumptionBasedProof extends Proof {
+	private static final int[] EMPTY = new int[0];
+	
+	private final ActivatedSATSolver solver;
+	private final IntSet core;
+	/* Translated roots with their nodes and literals, in the order of the log. */
+	private Map<Formula, Node> rootNodes;
+	private Map<Formula, Integer> rootLits;
+	private RecordFilter coreFilter;
+	private Map<Formula,Node> coreRoots;
+	/* The literals assumed by the current step of the minimization. */
+	private int[] assumed;
+	private int numAssumed;
+	
+	/**
+	 * Constructs a new proof that will extract the unsatisfiable core 
+	 * for log.formula from the given solver.  The initial core consists of the 
+	 * activation literals that the solver reports as responsible for its 
+	 * outcome, or of all of them if it cannot tell.
+	 * @requires solver.solve() has been called and it returned false.
+	 * @requires log.formula is the formula whose translation
+	 * resulted in the given solver
+	 * @ensures this.formula' = log.formula && this.solver' = solver
+	 */
+	AssumptionBasedProof(ActivatedSATSolver solver, TranslationLog log) {
+		super(log);
+		this.solver = solver;
+		this.core = new IntTreeSet();
+		final int[] activations = solver.activations();
+		final int[] failed = solver.failedAssumptions();
+		if (failed == null) {
+			for(int lit : activations) 
+				core.add(lit);
+		} else {
+			final IntSet all = new IntTreeSet();
+			for(int lit : activations) 
+				all.add(lit);
+			for(int lit : failed) 
+				if (all.contains(lit)) 
+					core.add(lit);
+		}
+		this.coreFilter = null;
+		this.coreRoots = null;
+	}
+	
+	/**
+	 * Records the last literal of every root in the log, which is the output 
+	 * of its translation since the log is replayed in the order of translation.
+	 * @ensures this.rootLits' = { f: log().roots(), i: int | i = literal of f's translation }
+	 */
+	private void recordRoots() { 
+		if (rootLits != null) return;
+		rootLits = new LinkedHashMap<Formula, Integer>();
+		rootNodes = new LinkedHashMap<Formula, Node>();
+		final Set<Formula> roots = log().roots();
+		final RecordFilter filter = new RecordFilter() {
+			public boolean accept(Node node, Formula translated, int literal, Map<Variable, TupleSet> env) {
+				return env.isEmpty() && roots.contains(translated);
+			}
+		};
+		for(Iterator<TranslationRecord> itr = log().replay(filter); itr.hasNext(); ) { 
+			final TranslationRecord rec = itr.next();
+			rootLits.put(rec.translated(), rec.literal());
+			rootNodes.put(rec.translated(), rec.node());
+		}
+	}
+	
+	/**
+	 * Returns the translated roots in the current core, keeping only one of 
+	 * the roots that share a literal.
+	 * @return { f: log().roots() | this.rootLits[f] in this.core }
+	 */
+	private Set<Formula> coreTranslatedRoots() { 
+		recordRoots();
+		final Set<Formula> ret = new IdentityHashSet<Formula>();
+		final IntSet seen = new IntTreeSet();
+		for(Map.Entry<Formula, Integer> entry : rootLits.entrySet()) { 
+			final int lit = entry.getValue();
+			if (core.contains(lit) && seen.add(lit))
+				ret.add(entry.getKey());
+		}
+		return ret;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.Proof#core()
+	 */
+	public final Iterator<TranslationRecord> core() { 
+		if (coreFilter == null) {
+			final Set<Node> coreNodes = new IdentityHashSet<Node>();
+			final AbstractVoidVisitor collector = new AbstractVoidVisitor() {
+				protected boolean visited(Node n) {
+					return !coreNodes.add(n);
+				}
+			};
+			for(Formula root : coreTranslatedRoots()) 
+				root.accept(collector);
+			coreFilter = new RecordFilter() {
+				public boolean accept(Node node, Formula translated, int literal, Map<Variable,TupleSet> env) {
+					return coreNodes.contains(translated);
+				}
+			};
+		}
+		return log().replay(coreFilter); 
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.Proof#highLevelCore()
+	 */
+	public final Map<Formula, Node> highLevelCore() {
+		if (coreRoots == null) { 
+			coreRoots = new LinkedHashMap<Formula, Node>();
+			for(Formula root : coreTranslatedRoots()) { 
+				 // [HASLab] get original temporal formula from temporal translation log
+				Formula rt =  (Formula) log().temporalTransLog(root);
+				Node rn = log().temporalTransLog(rootNodes.get(root));
+				coreRoots.put(rt, rn);
+			}
+			coreRoots = Collections.unmodifiableMap(coreRoots);
+		}
+		return coreRoots;
+	}
+	
+	/**
+	 * Minimizes the current core with the QuickXplain algorithm, 
+	 * which solves the solver under subsets of the core's activation literals 
+	 * until it finds a subset that is unsatisfiable but becomes satisfiable
+	 * if any of its literals is removed.  The resulting core is therefore 
+	 * minimal, as with the {@linkplain kodkod.engine.ucore.RCEStrategy RCE strategy}.
+	 * The strategy argument is ignored (it can be null), since it applies 
+	 * to resolution traces:  this proof is only produced when the 
+	 * {@linkplain kodkod.engine.config.Options#assumptionCores() assumptionCores} 
+	 * option asks for cores without a trace.
+	 * @ensures this.core' in this.core && !SAT(this.solver.clauses + this.core') &&
+	 *          all lit: this.core' | SAT(this.solver.clauses + this.core' - lit)
+	 * @see Proof#minimize(ReductionStrategy)
+	 */
+	public void minimize(ReductionStrategy strategy) {
+		if (core.size() > 1) { 
+			final int[] candidates = core.toArray();
+			assumed = new int[candidates.length];
+			numAssumed = 0;
+			final int[] minimal = quickXplain(false, candidates, 0, candidates.length);
+			core.clear();
+			for(int lit : minimal) 
+				core.add(lit);
+			assumed = null;
+		}
+		coreFilter = null;
+		coreRoots = null;
+	}
+	
+	/**
+	 * Returns a minimal subset of candidates[from..to) that is unsatisfiable 
+	 * together with the assumed literals.  If the last literals added to the 
+	 * assumed ones are already unsatisfiable by themselves, the empty subset is 
+	 * returned without looking at the candidates.
+	 * @requires from < to
+	 * @requires !SAT(this.solver.clauses + this.assumed[0..numAssumed) + candidates[from..to))
+	 * @return a minimal subset of candidates[from..to) that is unsatisfiable
+	 *         together with this.assumed[0..numAssumed)
+	 */
+	private int[] quickXplain(boolean added, int[] candidates, int from, int to) { 
+		final AssumptionSATSolver cnf = solver.solver();
+		if (added && !cnf.solve(Arrays.copyOf(assumed, numAssumed)))
+			return EMPTY;
+		if (to - from == 1) 
+			return new int[] { candidates[from] };
+		final int mid = (from + to) >>> 1;
+		final int mark = numAssumed;
+		assume(candidates, from, mid);
+		final int[] upper = quickXplain(true, candidates, mid, to);
+		numAssumed = mark;
+		assume(upper, 0, upper.length);
+		final int[] lower = quickXplain(upper.length > 0, candidates, from, mid);
+		numAssumed = mark;
+		final int[] ret = Arrays.copyOf(lower, lower.length + upper.length);
+		System.arraycopy(upper, 0, ret, lower.length, upper.length);
+		return ret;
+	}
+	
+	/**
+	 * Adds lits[from..to) to the assumed literals.
+	 */
+	private void assume(int[] lits, int from, int to) { 
+		System.arraycopy(lits, from, assumed, numAssumed, to - from);
+		numAssumed += to - from;
+	}
+}
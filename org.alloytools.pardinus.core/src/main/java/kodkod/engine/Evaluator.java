@@ -29,10 +29,9 @@ import java.util.List;
 import kodkod.ast.Expression;
 import kodkod.ast.Formula;
 import kodkod.ast.IntExpression;
-import kodkod.engine.bool.BooleanMatrix;
-import kodkod.engine.bool.Int;
+import kodkod.ast.Node;
 import kodkod.engine.config.Options;
-import kodkod.engine.fol2sat.Translator;
+import kodkod.engine.fol2sat.ConcreteInterpreter;
 import kodkod.engine.ltl2fol.LTL2FOLTranslator;
 import kodkod.engine.ltl2fol.TemporalBoundsExpander;
 import kodkod.engine.ltl2fol.TemporalTranslator;
@@ -63,6 +62,7 @@ public final class Evaluator {
 	private final Instance instance;
 	private final Options options;
 	private boolean wasOverflow; // [AM] was overflow detected during evaluation
+	private ConcreteInterpreter interpreter;
 
 	/**
 	 * Constructs a new Evaluator for the given instance, using a 
@@ -99,6 +99,38 @@ public final class Evaluator {
 	 */
 	public Instance instance() { return instance; }
 	
+	/**
+	 * Returns an interpreter for the given instance.  The interpreter of this.instance
+	 * is kept, so that the values it memoizes are shared by successive evaluations.
+	 * @return some i: ConcreteInterpreter | i.instance = inst && i.options = this.options
+	 */
+	private ConcreteInterpreter interpreter(Instance inst) {
+		if (inst != instance) 
+			return new ConcreteInterpreter(inst, options);
+		if (interpreter == null)
+			interpreter = new ConcreteInterpreter(instance, options);
+		return interpreter;
+	}
+	
+	/**
+	 * Returns the temporal instance over which nodes with the given past
+	 * height are evaluated: this.instance if the height is at most one,
+	 * otherwise this.instance unrolled that many times.
+	 * @requires this.instance instanceof TemporalInstance
+	 * @return this.instance unrolled dp times
+	 */
+	private TemporalInstance unroll(int dp) {
+		TemporalInstance tmp = (TemporalInstance) instance;
+		// must unroll the instance if the node to be evaluated has past ops
+		if (dp > 1) {
+			List<Instance> tempss = new ArrayList<Instance>();
+			for (int i = 0; i < tmp.prefixLength(); i++)
+				tempss.add(tmp.state(i));
+			tmp = new TemporalInstance(tempss, tmp.loop, dp);
+		}
+		return tmp;
+	}
+	
 	/**
 	 * Evaluates the specified formula with respect to the relation-tuple mappings
 	 * given by this.instance and using this.options. If temporal expression, 
@@ -118,7 +150,7 @@ public final class Evaluator {
 		// relations may however be evaluated statically for non temporal instances
 		if (TemporalTranslator.hasTemporalOps(formula) || instance instanceof TemporalInstance)
 			return evaluate(formula,0);
-		return (Translator.evaluate(formula, instance, options)).booleanValue();
+		return interpreter(instance).evaluate(formula);
 	}
 	
 	/**
@@ -141,18 +173,10 @@ public final class Evaluator {
 		if (formula == null) throw new NullPointerException("formula");
 		if (!(instance instanceof TemporalInstance))
 			throw new IllegalArgumentException("Can't evaluate static instance at particular step.");
-		// must unroll the instance if the formula to be evaluated has past ops
-		TemporalInstance tmp = (TemporalInstance) instance;
-		int dp = TemporalTranslator.countHeight(formula);
-		if (dp > 1) {
-			List<Instance> tempss = new ArrayList<Instance>();
-			for (int i = 0; i < ((TemporalInstance) instance).prefixLength(); i++)
-				tempss.add(((TemporalInstance) instance).state(i));
-			tmp = new TemporalInstance(tempss,tmp.loop, dp);
-		}
+		TemporalInstance tmp = unroll(TemporalTranslator.countHeight(formula));
 		// temporal instances are evaluated using the static expansion
 		formula = LTL2FOLTranslator.translate(formula, instant, tmp.contains(TemporalTranslator.UNROLL_MAP), new HashMap<Formula,Formula>());
-		return (Translator.evaluate(formula, tmp, options)).booleanValue();
+		return interpreter(tmp).evaluate(formula);
 	}
 	
 	/**
@@ -175,8 +199,7 @@ public final class Evaluator {
 		// relations may however be evaluated statically for non temporal instances
 		if (TemporalTranslator.hasTemporalOps(expression) || instance instanceof TemporalInstance)
 			return evaluate(expression,0);
-		final BooleanMatrix sol = Translator.evaluate(expression,instance,options);
-		return instance.universe().factory().setOf(expression.arity(), sol.denseIndices());
+		return interpreter(instance).evaluate(expression);
 	}
 
 	/**
@@ -202,19 +225,10 @@ public final class Evaluator {
 		if (expression == null) throw new NullPointerException("Null expression.");
 		if (!(instance instanceof TemporalInstance))
 			throw new IllegalArgumentException("Can't evaluate static instance at particular step.");
-		// must unroll the instance if the formula to be evaluated has past ops
-		TemporalInstance tmp = (TemporalInstance) instance;
-		int dp = TemporalTranslator.countHeight(expression);
-		if (dp > 1) {
-			List<Instance> tempss = new ArrayList<Instance>();
-			for (int i = 0; i < ((TemporalInstance) instance).prefixLength(); i++)
-				tempss.add(((TemporalInstance) instance).state(i));
-			tmp = new TemporalInstance(tempss,tmp.loop, dp);
-		}
+		TemporalInstance tmp = unroll(TemporalTranslator.countHeight(expression));
 		// temporal instances are always evaluated using the static expansion
 		Expression e1 = LTL2FOLTranslator.translate(expression, instant, tmp.contains(TemporalTranslator.UNROLL_MAP)); 
-		final BooleanMatrix sol = Translator.evaluate(e1,tmp,options);
-		TupleSet exttuple = tmp.universe().factory().setOf(e1.arity(), sol.denseIndices());
+		TupleSet exttuple = interpreter(tmp).evaluate(e1);
 		// convert back into static universe, if available; will fail for initializing temporal instances
 		if (((TemporalInstance) instance).staticUniverse() != null)
 			exttuple = TemporalBoundsExpander.convertToUniv(exttuple, ((TemporalInstance) instance).staticUniverse());
@@ -240,9 +254,8 @@ public final class Evaluator {
 		// relations may however be evaluated statically for non temporal instances
 		if (TemporalTranslator.hasTemporalOps(intExpr) || instance instanceof TemporalInstance)
 			return evaluate(intExpr,0);
-		final Int sol = Translator.evaluate(intExpr, instance, options);
-		this.wasOverflow = sol.defCond().isOverflowFlag(); // [AM]
-		return sol.value();
+		this.wasOverflow = false; // [AM]
+		return interpreter(instance).evaluate(intExpr);
 	}
 	
 	/**
@@ -264,23 +277,73 @@ public final class Evaluator {
 		if (intExpr == null) throw new NullPointerException("intexpression");
 		if (!(instance instanceof TemporalInstance))
 			throw new IllegalArgumentException("Can't evaluate static instance at particular step.");
-		// must unroll the instance if the formula to be evaluated has past ops
-		TemporalInstance tmp = (TemporalInstance) instance;
-		int dp = TemporalTranslator.countHeight(intExpr);
-		if (dp > 1) {
-			List<Instance> tempss = new ArrayList<Instance>();
-			for (int i = 0; i < ((TemporalInstance) instance).prefixLength(); i++)
-				tempss.add(((TemporalInstance) instance).state(i));
-			tmp = new TemporalInstance(tempss,tmp.loop, dp);
-		}
+		TemporalInstance tmp = unroll(TemporalTranslator.countHeight(intExpr));
 		// temporal instances are always evaluated using the static expansion
 		IntExpression e1 = LTL2FOLTranslator.translate(intExpr, instant, false); 
-		final Int sol = Translator.evaluate(e1, tmp, options);
-		this.wasOverflow = sol.defCond().isOverflowFlag(); // [AM]
-		return sol.value();
+		this.wasOverflow = false; // [AM]
+		return interpreter(tmp).evaluate(e1);
 	}
 
 
+	/**
+	 * Evaluates the specified formulas, expressions and int expressions at the 
+	 * given instants with respect to the relation-tuple mappings given by 
+	 * this.instance and using this.options.  The value of each node at each 
+	 * instant is the one computed by {@link #evaluate(Formula, int)}, 
+	 * {@link #evaluate(Expression, int)} or {@link #evaluate(IntExpression, int)}, 
+	 * but the nodes are converted to their static form once per instant and 
+	 * evaluated over the same unrolled instance, so the subnodes they share and 
+	 * the subnodes that do not depend on the instant are evaluated once.
+	 * 
+	 * @assumes this.instance instanceof TemporalInstance
+	 * @return an array v such that v[i][j] is the Boolean, TupleSet or Integer to
+	 *         which nodes[j] evaluates at instants[i]
+	 * @throws NullPointerException
+	 *             nodes = null || instants = null
+	 * @throws IllegalArgumentException
+	 *             this.instance is not temporal || some n: nodes[int] | n is not a 
+	 *             formula, expression or int expression
+	 * @throws kodkod.engine.fol2sat.HigherOrderDeclException
+	 *             some node contains a higher order declaration
+	 * @throws kodkod.engine.fol2sat.UnboundLeafException
+	 *             some node contains an undeclared variable or a relation not
+	 *             mapped by this.instance
+	 */
+	public Object[][] evaluate(List<? extends Node> nodes, int[] instants) {
+		if (nodes == null || instants == null) throw new NullPointerException();
+		if (!(instance instanceof TemporalInstance))
+			throw new IllegalArgumentException("Can't evaluate static instance at particular step.");
+		int dp = 1;
+		for (Node node : nodes) {
+			if (node == null) throw new NullPointerException("node");
+			dp = Math.max(dp, TemporalTranslator.countHeight(node));
+		}
+		final TemporalInstance tmp = unroll(dp);
+		final ConcreteInterpreter interpreter = interpreter(tmp);
+		final boolean has_past = tmp.contains(TemporalTranslator.UNROLL_MAP);
+		final Object[][] values = new Object[instants.length][];
+		for (int i = 0; i < instants.length; i++) {
+			final List<Node> translated = LTL2FOLTranslator.translate(nodes, instants[i], has_past);
+			values[i] = new Object[translated.size()];
+			for (int j = 0; j < values[i].length; j++) {
+				final Node node = translated.get(j);
+				if (node instanceof IntExpression) 
+					values[i][j] = interpreter.evaluate((IntExpression) node);
+				else if (node instanceof Formula)
+					values[i][j] = interpreter.evaluate((Formula) node);
+				else {
+					TupleSet exttuple = interpreter.evaluate((Expression) node);
+					// convert back into static universe, if available
+					if (((TemporalInstance) instance).staticUniverse() != null)
+						exttuple = TemporalBoundsExpander.convertToUniv(exttuple, ((TemporalInstance) instance).staticUniverse());
+					values[i][j] = exttuple;
+				}
+			}
+		}
+		this.wasOverflow = false; // [AM]
+		return values;
+	}
+
 	/** Returns whether overflow was detected during evaluation */ // [AM]
 	public boolean wasOverflow() { 
 	    return wasOverflow; 
@@ -49,6 +49,8 @@ import kodkod.engine.fol2sat.Translator;
 import kodkod.engine.fol2sat.UnboundLeafException;
 import kodkod.engine.ltl2fol.TemporalBoundsExpander;
 import kodkod.engine.ltl2fol.TemporalTranslator;
+import kodkod.engine.satlab.ActivatedSATSolver;
+import kodkod.engine.satlab.AssumptionSATSolver;
 import kodkod.engine.satlab.SATAbortedException;
 import kodkod.engine.satlab.SATProver;
 import kodkod.engine.satlab.SATSolver;
@@ -131,6 +133,8 @@ implements KodkodSolver<PardinusBounds, ExtendedOptions>, TemporalSolver<Extende
 			Formula extformula = tmptrans.translate();
 			long endTransl = System.currentTimeMillis();
 			long transTime = endTransl - startTransl;
+			if (incrementalTraces(tmptrans))
+				return solveIncremental(tmptrans, extformula, bounds, transTime);
 			boolean isSat = false;
 			long solveTime = 0;
 			Translation.Whole translation = null;
@@ -140,7 +144,7 @@ implements KodkodSolver<PardinusBounds, ExtendedOptions>, TemporalSolver<Extende
 			// increase while UNSAT and below max
 			do {
 				traceLength++;
-				extbounds = tmptrans.expand(traceLength);
+				extbounds = expand(tmptrans, traceLength);
 				translation = Translator.translate(extformula, extbounds, options);
 				if (options.logTranslation() > 0)
 					translation.log().logTempTranslation(tmptrans.tempTransLog);
@@ -164,10 +168,10 @@ implements KodkodSolver<PardinusBounds, ExtendedOptions>, TemporalSolver<Extende
 
 			while (!isSat && traceLength < options.maxTraceLength()) {
 				traceLength++;
-				extbounds = tmptrans.expand(traceLength);
-				Formula exp_reforms = tmptrans.translate();
 				startTransl = System.currentTimeMillis();
-				translation = Translator.translate(exp_reforms, extbounds, options);
+				extbounds = expand(tmptrans, traceLength);
+				// the temporal translation does not depend on the trace length
+				translation = Translator.translate(extformula, extbounds, options);
 				if (options.logTranslation() > 0)
 					translation.log().logTempTranslation(tmptrans.tempTransLog);
 				endTransl = System.currentTimeMillis();
@@ -190,6 +194,102 @@ implements KodkodSolver<PardinusBounds, ExtendedOptions>, TemporalSolver<Extende
 		}
 	}
 
+	/**
+	 * Expands the bounds of a problem for a trace length. When trace lengths are to
+	 * be explored incrementally, but cannot be under assumptions, the bounds of
+	 * every length share the universe of the maximum one, so that the conversion
+	 * of the original bounds is done once and tuples are not renumbered between
+	 * lengths.
+	 */
+	private PardinusBounds expand(TemporalTranslator tmptrans, int traceLength) {
+		if (options.incrementalTraces())
+			return tmptrans.expand(traceLength, options.maxTraceLength());
+		return tmptrans.expand(traceLength);
+	}
+
+	/**
+	 * Whether the trace lengths of a problem can be explored incrementally, which
+	 * requires the option to be set, a solver supporting assumptions and no past
+	 * operators.
+	 */
+	private boolean incrementalTraces(TemporalTranslator tmptrans) {
+		return options.incrementalTraces() && options.solver().assumptions() && tmptrans.past_depth == 1
+				&& !options.decomposed() && !options.targetoriented();
+	}
+
+	/**
+	 * Solves a temporal problem by translating it once for the maximum trace
+	 * length, with the length of the trace left open, and then calling the same
+	 * SAT solver for each trace length from the minimum to the maximum, assuming
+	 * the corresponding last state. Learned clauses are thus kept between steps,
+	 * and lengths proven unsatisfiable are excluded for the following ones,
+	 * unless the unsatisfiable core is to be read from the failed assumptions.
+	 */
+	// [HASLab]
+	private Solution solveIncremental(TemporalTranslator tmptrans, Formula extformula, PardinusBounds bounds,
+			long transTime) {
+		long startTransl = System.currentTimeMillis();
+		final PardinusBounds extbounds = tmptrans.expandVariableLength(options.maxTraceLength());
+		final Translation.Whole translation = Translator
+				.translate(extformula.and(tmptrans.variableLengthConstraints()), extbounds, options);
+		if (options.logTranslation() > 0)
+			translation.log().logTempTranslation(tmptrans.tempTransLog);
+		transTime += System.currentTimeMillis() - startTransl;
+
+		// the last state is always open, so trivial translations are unsatisfiable
+		if (translation.trivial())
+			return trivial(translation, transTime, bounds);
+
+		final AssumptionSATSolver cnf = (AssumptionSATSolver) translation.cnf();
+		final boolean activated = cnf instanceof ActivatedSATSolver;
+		final int[] lasts = lastLiterals(translation);
+		// shorter traces than the minimum are never of interest
+		for (int i = 0; i < options.minTraceLength() - 1 && i < lasts.length; i++)
+			if (lasts[i] != 0)
+				cnf.addClause(new int[] { -lasts[i] });
+
+		boolean isSat = false;
+		long solveTime = 0;
+		for (int traceLength = options.minTraceLength(); !isSat
+				&& traceLength <= options.maxTraceLength(); traceLength++) {
+			final int last = lasts[traceLength - 1];
+			options.reporter().solvingCNF(traceLength, translation.numPrimaryVariables(), cnf.numberOfVariables(),
+					cnf.numberOfClauses());
+			long startSolve = System.currentTimeMillis();
+			isSat = last == 0 ? cnf.solve() : cnf.solve(new int[] { last });
+			// a length ruled out by the formulas is only excluded by a unit clause
+			// when the core does not come from the failed assumptions, since that
+			// clause would hide the formulas that rule it out
+			if (!isSat && last != 0 && !activated)
+				cnf.addClause(new int[] { -last });
+			solveTime += System.currentTimeMillis() - startSolve;
+		}
+		// make sure the solver itself is unsatisfiable so that proofs refer to all lengths
+		if (!isSat && (cnf instanceof SATProver || activated))
+			cnf.solve();
+
+		final Statistics stats = new Statistics(translation, transTime, solveTime);
+		return isSat ? sat(translation, stats, bounds) : unsat(translation, stats);
+	}
+
+	/**
+	 * Returns, for each trace length, the literal that selects that length by
+	 * fixing its last state, or 0 if that is already fixed by the bounds.
+	 */
+	private static int[] lastLiterals(Translation translation) {
+		final Bounds bounds = translation.bounds();
+		final TupleSet lower = bounds.lowerBound(TemporalTranslator.LAST);
+		final TupleSet upper = bounds.upperBound(TemporalTranslator.LAST);
+		final int[] lasts = new int[upper.size()];
+		int lit = translation.primaryVariables(TemporalTranslator.LAST).min();
+		int i = 0;
+		for (IntIterator iter = upper.indexView().iterator(); iter.hasNext(); i++) {
+			if (!lower.indexView().contains(iter.next()))
+				lasts[i] = lit++;
+		}
+		return lasts;
+	}
+
 	public Explorer<Solution> solveAll(Formula formula, PardinusBounds bounds) throws HigherOrderDeclException,
 			UnboundLeafException, AbortedException {
 		if (Options.isDebug())
@@ -240,6 +340,8 @@ implements KodkodSolver<PardinusBounds, ExtendedOptions>, TemporalSolver<Extende
 		final TranslationLog log = translation.log();
 		if (cnf instanceof SATProver && log != null) {
 			return Solution.unsatisfiable(stats, new ResolutionBasedProof((SATProver) cnf, log));
+		} else if (cnf instanceof ActivatedSATSolver && log != null) {
+			return Solution.unsatisfiable(stats, new AssumptionBasedProof((ActivatedSATSolver) cnf, log));
 		} else { // can free memory
 			final Solution sol = Solution.unsatisfiable(stats, null);
 			cnf.free();
@@ -0,0 +1,427 @@
+/*
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.bool;
+
+import static kodkod.engine.bool.BooleanConstant.TRUE;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import kodkod.util.ints.HomogenousSequence;
+import kodkod.util.ints.IndexedEntry;
+import kodkod.util.ints.IntBitSet;
+import kodkod.util.ints.IntSet;
+import kodkod.util.ints.SparseSequence;
+
+/**
+ * Word-level operations on the TRUE cells of {@link BooleanMatrix boolean
+ * matrices}. The TRUE cells of a matrix, such as those of an exactly bounded
+ * relation or of a partial instance, form a plain relation over its indices,
+ * so their products, transposes and closures can be computed 64 cells at a
+ * time over <code>long[]</code> words instead of cell by cell through the
+ * circuit factory.
+ *
+ * <p>
+ * A matrix is viewed either as a flat bit set over [0..capacity), or as a
+ * <code>rows x cols</code> bit matrix in which row r holds the cells
+ * [r*cols..(r+1)*cols), with cell r*cols+j stored at bit j of the row. Empty
+ * rows are represented by null.
+ * </p>
+ */
+final class BooleanBits {
+
+	private BooleanBits() {}
+
+	/**
+	 * Returns the number of words needed to store the bits [0..bits).
+	 */
+	static int words(int bits) {
+		return (bits >>> 6) + 1;
+	}
+
+	/**
+	 * Returns true if the given bit is set in the given words.
+	 *
+	 * @requires 0 <= bit < words.length * 64
+	 */
+	static boolean get(long[] words, int bit) {
+		return (words[bit >>> 6] & (1L << bit)) != 0;
+	}
+
+	/**
+	 * Returns the number of TRUE values in the given sequence.
+	 *
+	 * @return #cells.TRUE
+	 */
+	static int trueCount(SparseSequence<BooleanValue> cells) {
+		if (cells instanceof HomogenousSequence)
+			return cells.size();
+		int count = 0;
+		for (IndexedEntry<BooleanValue> e : cells) {
+			if (e.value() == TRUE)
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the TRUE cells of the given sequence as a <code>rows x cols</code>
+	 * bit matrix.
+	 *
+	 * @requires cells.indices() in [0..rows*cols)
+	 */
+	static long[][] rows(SparseSequence<BooleanValue> cells, int rows, int cols) {
+		final long[][] ret = new long[rows][];
+		final int words = words(cols);
+		for (IndexedEntry<BooleanValue> e : cells) {
+			if (e.value() == TRUE) {
+				final int r = e.index() / cols, j = e.index() % cols;
+				if (ret[r] == null)
+					ret[r] = new long[words];
+				ret[r][j >>> 6] |= 1L << j;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the non-FALSE cells of the given sequence as a
+	 * <code>rows x cols</code> bit matrix.
+	 *
+	 * @requires cells.indices() in [0..rows*cols)
+	 */
+	static long[][] support(SparseSequence<BooleanValue> cells, int rows, int cols) {
+		final long[][] ret = new long[rows][];
+		final int words = words(cols);
+		for (IndexedEntry<BooleanValue> e : cells) {
+			final int r = e.index() / cols, j = e.index() % cols;
+			if (ret[r] == null)
+				ret[r] = new long[words];
+			ret[r][j >>> 6] |= 1L << j;
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the number of bits set in the given row.
+	 */
+	private static int count(long[] row) {
+		int count = 0;
+		if (row != null) {
+			for (long word : row)
+				count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * Ors the first len bits of the given source row into the destination
+	 * words, starting at the given destination bit.
+	 *
+	 * @requires src has no bits set at or after len
+	 * @requires from + len <= dst.length * 64
+	 */
+	static void or(long[] dst, int from, long[] src, int len) {
+		final int shift = from & 63;
+		int w = from >>> 6;
+		if (shift == 0) {
+			for (int i = 0, max = words(len - 1); i < max; i++)
+				dst[w + i] |= src[i];
+		} else {
+			for (int i = 0, max = words(len - 1); i < max; i++, w++) {
+				final long word = src[i];
+				if (word != 0) {
+					dst[w] |= word << shift;
+					final long carry = word >>> (64 - shift);
+					if (carry != 0)
+						dst[w + 1] |= carry;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the boolean product of the given <code>m x b</code> and
+	 * <code>b x c</code> bit matrices as a flat bit set over [0..m*c).
+	 *
+	 * @requires right.length = b && left[int].length = words(b) && right[int].length = words(c)
+	 */
+	static long[] dot(long[][] left, long[][] right, int c) {
+		final long[] ret = new long[words(left.length * c)];
+		final long[] acc = new long[words(c)];
+		for (int r = 0; r < left.length; r++) {
+			final long[] row = left[r];
+			if (row == null)
+				continue;
+			boolean empty = true;
+			for (int w = 0; w < row.length; w++) {
+				for (long word = row[w]; word != 0; word &= word - 1) {
+					final long[] other = right[(w << 6) + Long.numberOfTrailingZeros(word)];
+					if (other != null) {
+						for (int i = 0; i < acc.length; i++)
+							acc[i] |= other[i];
+						empty = false;
+					}
+				}
+			}
+			if (!empty) {
+				or(ret, r * c, acc, c);
+				Arrays.fill(acc, 0L);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the cross product of the given flat bit sets over [0..m) and
+	 * [0..n) as a flat bit set over [0..m*n).
+	 *
+	 * @requires left.length = words(m) && right.length = words(n)
+	 */
+	static long[] cross(long[] left, int m, long[] right, int n) {
+		final long[] ret = new long[words(m * n)];
+		for (int w = 0; w < left.length; w++) {
+			for (long word = left[w]; word != 0; word &= word - 1)
+				or(ret, ((w << 6) + Long.numberOfTrailingZeros(word)) * n, right, n);
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the transpose of the given <code>rows x cols</code> bit matrix as
+	 * a flat bit set over [0..cols*rows).
+	 */
+	static long[] transpose(long[][] rows, int cols) {
+		final int n = rows.length;
+		final long[] ret = new long[words(n * cols)];
+		for (int r = 0; r < n; r++) {
+			final long[] row = rows[r];
+			if (row == null)
+				continue;
+			for (int w = 0; w < row.length; w++) {
+				for (long word = row[w]; word != 0; word &= word - 1) {
+					final int bit = ((w << 6) + Long.numberOfTrailingZeros(word)) * n + r;
+					ret[bit >>> 6] |= 1L << bit;
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Replaces the given <code>n x n</code> bit matrix with its transitive
+	 * closure, using Warshall's algorithm over words, and returns it as a flat
+	 * bit set over [0..n*n).
+	 */
+	static long[] closure(long[][] rows) {
+		final int n = rows.length;
+		for (int k = 0; k < n; k++) {
+			final long[] rowK = rows[k];
+			if (rowK == null)
+				continue;
+			final int w = k >>> 6;
+			final long mask = 1L << k;
+			for (int i = 0; i < n; i++) {
+				final long[] rowI = rows[i];
+				if (rowI != null && (rowI[w] & mask) != 0) {
+					for (int j = 0; j < rowI.length; j++)
+						rowI[j] |= rowK[j];
+				}
+			}
+		}
+		final long[] ret = new long[words(n * n)];
+		for (int r = 0; r < n; r++) {
+			if (rows[r] != null)
+				or(ret, r * n, rows[r], n);
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the strongly connected components of the graph whose adjacency
+	 * matrix is the given <code>n x n</code> bit matrix, in reverse topological
+	 * order: no component has an edge to a component that follows it. The
+	 * atoms of each component are listed in ascending order.
+	 */
+	static int[][] components(long[][] rows) {
+		// iterative version of Tarjan's algorithm
+		final int n = rows.length;
+		final int[] index = new int[n], low = new int[n], stack = new int[n], path = new int[n], next = new int[n];
+		final boolean[] onStack = new boolean[n];
+		Arrays.fill(index, -1);
+		final List<int[]> components = new ArrayList<int[]>();
+		int counter = 0, top = 0;
+		for (int root = 0; root < n; root++) {
+			if (index[root] >= 0)
+				continue;
+			int depth = 0;
+			path[0] = root;
+			next[root] = 0;
+			index[root] = low[root] = counter++;
+			stack[top++] = root;
+			onStack[root] = true;
+			while (depth >= 0) {
+				final int v = path[depth];
+				final int w = nextBit(rows[v], next[v], n);
+				if (w >= 0) {
+					next[v] = w + 1;
+					if (index[w] < 0) {
+						index[w] = low[w] = counter++;
+						stack[top++] = w;
+						onStack[w] = true;
+						next[w] = 0;
+						path[++depth] = w;
+					} else if (onStack[w] && index[w] < low[v]) {
+						low[v] = index[w];
+					}
+				} else {
+					if (low[v] == index[v]) {
+						int size = 0;
+						while (stack[top - 1 - size] != v)
+							size++;
+						final int[] component = new int[size + 1];
+						for (int i = 0; i <= size; i++) {
+							component[i] = stack[--top];
+							onStack[component[i]] = false;
+						}
+						Arrays.sort(component);
+						components.add(component);
+					}
+					if (--depth >= 0) {
+						final int u = path[depth];
+						if (low[v] < low[u])
+							low[u] = low[v];
+					}
+				}
+			}
+		}
+		return components.toArray(new int[components.size()][]);
+	}
+
+	/**
+	 * Returns the first bit at or after from that is set in the given row, or
+	 * -1 if there is none before max.
+	 */
+	private static int nextBit(long[] row, int from, int max) {
+		if (row == null || from >= max)
+			return -1;
+		int w = from >>> 6;
+		long word = row[w] & (-1L << from);
+		while (word == 0) {
+			if (++w == row.length)
+				return -1;
+			word = row[w];
+		}
+		final int bit = (w << 6) + Long.numberOfTrailingZeros(word);
+		return bit < max ? bit : -1;
+	}
+
+	/**
+	 * Returns an estimate of the number of gates created by closing a matrix
+	 * with the given <code>n x n</code> support through iterative squaring:
+	 * every round joins each cell with the row of its column, and then adds
+	 * the result to the matrix.
+	 */
+	static long squaringCost(long[][] rows) {
+		final int n = rows.length;
+		int rowNum = 0;
+		for (long[] row : rows) {
+			if (row != null)
+				rowNum++;
+		}
+		long cost = 0;
+		long[][] current = rows;
+		for (int round = 1; round < rowNum; round *= 2) {
+			final long[][] squared = new long[n][];
+			for (int i = 0; i < n; i++) {
+				final long[] row = current[i];
+				if (row == null)
+					continue;
+				final long[] acc = row.clone();
+				for (int j = nextBit(row, 0, n); j >= 0; j = nextBit(row, j + 1, n)) {
+					final long[] other = current[j];
+					if (other != null) {
+						cost += count(other);
+						for (int w = 0; w < acc.length; w++)
+							acc[w] |= other[w];
+					}
+				}
+				squared[i] = acc;
+			}
+			current = squared;
+		}
+		return cost;
+	}
+
+	/**
+	 * Returns an estimate of the number of gates created by closing a matrix
+	 * with the given <code>n x n</code> support through Warshall's algorithm,
+	 * stopping as soon as it exceeds the given bound: eliminating atom k joins
+	 * every cell [i][k] with the row of k.
+	 */
+	static long warshallCost(long[][] rows, long bound) {
+		final int n = rows.length;
+		final long[][] current = new long[n][];
+		for (int i = 0; i < n; i++)
+			current[i] = rows[i] == null ? null : rows[i].clone();
+		long cost = 0;
+		for (int k = 0; k < n && cost <= bound; k++) {
+			final long[] rowK = current[k];
+			if (rowK == null)
+				continue;
+			final int size = count(rowK) - (get(rowK, k) ? 1 : 0);
+			for (int i = 0; i < n; i++) {
+				final long[] rowI = current[i];
+				if (i != k && rowI != null && get(rowI, k)) {
+					cost += size;
+					for (int w = 0; w < rowI.length; w++)
+						rowI[w] |= rowK[w];
+				}
+			}
+		}
+		return cost;
+	}
+
+	/**
+	 * Maps every index whose bit is set in the given words to TRUE in the given
+	 * sequence. If the sequence is a homogenous sequence backed by a bit set,
+	 * the words are or-ed into it directly.
+	 *
+	 * @requires capacity <= words.length * 64 && no bits are set at or after capacity
+	 * @ensures cells.entries' = cells.entries ++ { i: int, v: TRUE | get(words, i) }
+	 */
+	static void fill(SparseSequence<BooleanValue> cells, int capacity, long[] words) {
+		if (cells instanceof HomogenousSequence) {
+			final IntSet indices = cells.indices();
+			if (indices instanceof IntBitSet && ((IntBitSet) indices).capacity() == capacity) {
+				indices.addAll(new IntBitSet(capacity, words));
+				return;
+			}
+		}
+		for (int w = 0; w < words.length; w++) {
+			for (long word = words[w]; word != 0; word &= word - 1)
+				cells.put((w << 6) + Long.numberOfTrailingZeros(word), TRUE);
+		}
+	}
+}
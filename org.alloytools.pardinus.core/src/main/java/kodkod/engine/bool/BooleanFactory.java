@@ -26,6 +26,7 @@ import static kodkod.engine.bool.Operator.OR;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Map;
 
 import kodkod.engine.config.Options;
 import kodkod.engine.config.Options.IntEncoding;
@@ -39,6 +40,8 @@ import kodkod.util.ints.IntSet;
  * @specfield comparisonDepth: int // the depth to which circuits should be checked for equality 
  * @specfield intEncoding: {@link IntEncoding} // the encoding used for generating integers ({@link #integer(int)}
  * @specfield bitwidth: int // the bitwidth used for integer computations
+ * @specfield closureEncoding: {@link Options.ClosureEncoding} // the encoding used for {@link BooleanMatrix#closure() closures}
+ * @specfield cardinalityEncoding: {@link Options.CardinalityEncoding} // the encoding used for {@link BooleanMatrix#cardinalityWithin(int, int, kodkod.engine.fol2sat.Environment) cardinality comparisons}
  * @specfield components: set {@link BooleanValue}
  * @invariant {@link BooleanConstant} in components
  * @invariant no f1, f2: BooleanFactory | f1 != f2 => f1.components & f2.components = {@link BooleanConstant}
@@ -64,6 +67,12 @@ public abstract class BooleanFactory {
 	
 	/** Whether or not it should forbid overflows */ // [AM]
 	final boolean noOverflow; 
+	
+	/** The encoding used for transitive closures */
+	final Options.ClosureEncoding closureEncoding;
+	
+	/** The encoding used for comparisons of cardinalities with constants */
+	final Options.CardinalityEncoding cardinalityEncoding;
 		
 	/**
 	 * Constructs a boolean factory with the given number of input variables.  Gates are
@@ -76,9 +85,11 @@ public abstract class BooleanFactory {
 	 * @ensures #this.components' = numInputVariables && this.components' in BooleanVariable 
 	 * @ensures this.bitwidth' = bitwidth
 	 * @ensures this.comparisonDepth' = comparisonDepth
+	 * @ensures this.closureEncoding' = closureEncoding
+	 * @ensures this.cardinalityEncoding' = cardinalityEncoding
 	 */
 	 // [AM]
-	private BooleanFactory(int numVars, int comparisonDepth, int bitwidth, boolean noOverflow) {
+	private BooleanFactory(int numVars, int comparisonDepth, int bitwidth, boolean noOverflow, Options.ClosureEncoding closureEncoding, Options.CardinalityEncoding cardinalityEncoding) {
 		if (numVars==0) {
 			if (CONSTANT_FACTORY==null)
 				CONSTANT_FACTORY = new CBCFactory(0, 1);
@@ -88,6 +99,8 @@ public abstract class BooleanFactory {
 		}
 		this.bitwidth = bitwidth;
 		this.noOverflow = noOverflow;
+		this.closureEncoding = closureEncoding;
+		this.cardinalityEncoding = cardinalityEncoding;
 	}
 	
 	/**
@@ -103,6 +116,8 @@ public abstract class BooleanFactory {
 	 *                              BooleanConstant in f.components && f.components in BooleanVariable + BooleanConstant &&
 	 *                              f.comparisonDepth = options.sharing && 
 	 *                              f.bitwidth = options.bitwidth && f.intEncoding = options.intEncoding && 
+	 *                              f.closureEncoding = options.closureEncoding && 
+	 *                              f.cardinalityEncoding = options.cardinalityEncoding && 
 	 *                              (all i: [1..numVars] | one f.components.label & i }}
 	 * @throws IllegalArgumentException  numVars < 0 || numVars = Integer.MAX_VALUE
 	 * @throws NullPointerException  options = null
@@ -111,7 +126,7 @@ public abstract class BooleanFactory {
 	public static BooleanFactory factory(int numVars, Options options) {
 		switch(options.intEncoding()) {
 		case TWOSCOMPLEMENT : 
-			return new TwosComplementFactory(numVars, options.sharing(), options.bitwidth(), options.noOverflow()); 
+			return new TwosComplementFactory(numVars, options.sharing(), options.bitwidth(), options.noOverflow(), options.closureEncoding(), options.cardinalityEncoding()); 
 		default :
 			throw new IllegalArgumentException("unknown encoding: " + options.intEncoding());
 		}
@@ -159,6 +174,18 @@ public abstract class BooleanFactory {
 	/** Returns the noOverflow flag */ //[AM]
 	public final boolean noOverflow() { return noOverflow; }
 	
+	/**
+	 * Returns the encoding used by this factory to translate transitive closures.
+	 * @return this.closureEncoding
+	 */
+	public final Options.ClosureEncoding closureEncoding() { return closureEncoding; }
+	
+	/**
+	 * Returns the encoding used by this factory to translate comparisons of cardinalities with constants.
+	 * @return this.cardinalityEncoding
+	 */
+	public final Options.CardinalityEncoding cardinalityEncoding() { return cardinalityEncoding; }
+	
 	/**
 	 * Returns the encoding used by this factory to represent integers.
 	 * @return this.intEncoding
@@ -220,6 +247,51 @@ public abstract class BooleanFactory {
 		return numVars;
 	}
 	
+	/**
+	 * Returns a value of this factory that has the same structure as the given value 
+	 * of another factory, in which the variables are replaced with the variables of this
+	 * factory that have the same labels.  The gates of the value are rebuilt in depth-first 
+	 * order of their inputs, so the labels of the new gates depend only on the structure of 
+	 * the value and on the gates already in this factory.  The given map caches the copies 
+	 * of the gates of the other factory, so that gates shared by several values are copied once.
+	 * @requires value.*inputs & BooleanVariable in (this.components & BooleanVariable).label
+	 * @return { v: BooleanValue | [[v]] = [[value]] with every variable replaced by 
+	 *            this.variable(variable.label) }
+	 */
+	public final BooleanValue copy(BooleanValue value, Map<BooleanFormula, BooleanValue> copies) {
+		if (value instanceof BooleanConstant)
+			return value;
+		return ((BooleanFormula) value).accept(new BooleanVisitor<BooleanValue, Object>() {
+			public BooleanValue visit(MultiGate gate, Object arg) {
+				BooleanValue ret = copies.get(gate);
+				if (ret==null) {
+					final BooleanAccumulator acc = BooleanAccumulator.treeGate(gate.op());
+					for(BooleanFormula input : gate) {
+						if (acc.add(input.accept(this, arg))==gate.op().shortCircuit())
+							break;
+					}
+					ret = accumulate(acc);
+					copies.put(gate, ret);
+				}
+				return ret;
+			}
+			public BooleanValue visit(ITEGate ite, Object arg) {
+				BooleanValue ret = copies.get(ite);
+				if (ret==null) {
+					ret = ite(ite.input(0).accept(this, arg), ite.input(1).accept(this, arg), ite.input(2).accept(this, arg));
+					copies.put(ite, ret);
+				}
+				return ret;
+			}
+			public BooleanValue visit(NotGate negation, Object arg) {
+				return negation.input(0).accept(this, arg).negation();
+			}
+			public BooleanValue visit(BooleanVariable variable, Object arg) {
+				return variable(variable.label());
+			}
+		}, null);
+	}
+	
 	/**
 	 * Returns the negation of the given boolean value.
 	 * @return {n: BooleanValue | n.label = -v.label && [[n]] = ![[v]] }
@@ -457,10 +529,12 @@ public abstract class BooleanFactory {
 		 * @ensures this.bitwidth' = bitwidth
 		 * @ensures this.comparisonDepth' = comparisonDepth
 		 * @ensures this.intEncoding' = BINARY
+		 * @ensures this.closureEncoding' = closureEncoding
+		 * @ensures this.cardinalityEncoding' = cardinalityEncoding
 		 */
 		 // [AM]
-		TwosComplementFactory(int numVars, int comparisonDepth, int bitwidth, boolean noOverflow) {
-			super(numVars, comparisonDepth, bitwidth, noOverflow);
+		TwosComplementFactory(int numVars, int comparisonDepth, int bitwidth, boolean noOverflow, Options.ClosureEncoding closureEncoding, Options.CardinalityEncoding cardinalityEncoding) {
+			super(numVars, comparisonDepth, bitwidth, noOverflow, closureEncoding, cardinalityEncoding);
 		}
 		/**
 		 * Returns TWOSCOMPLEMENT.
@@ -26,6 +26,7 @@ import static kodkod.engine.bool.BooleanConstant.TRUE;
 import static kodkod.engine.bool.Operator.AND;
 import static kodkod.engine.bool.Operator.OR;
 
+import java.util.Arrays;
 import java.util.Iterator;
 
 import kodkod.engine.fol2sat.Environment;
@@ -35,6 +36,7 @@ import kodkod.util.ints.HomogenousSequence;
 import kodkod.util.ints.IndexedEntry;
 import kodkod.util.ints.IntIterator;
 import kodkod.util.ints.IntSet;
+import kodkod.util.ints.IntTreeSet;
 import kodkod.util.ints.Ints;
 import kodkod.util.ints.RangeSequence;
 import kodkod.util.ints.SparseSequence;
@@ -461,6 +463,12 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
         if (cells.isEmpty() || other.cells.isEmpty()) return ret;
         
         final int ocap = other.dims.capacity();
+        if (BooleanBits.trueCount(cells) == cells.size() && BooleanBits.trueCount(other.cells) == other.cells.size()) {
+            final int cap = dims.capacity();
+            BooleanBits.fill(ret.cells, ret.dims.capacity(), 
+                    BooleanBits.cross(BooleanBits.rows(cells, 1, cap)[0], cap, BooleanBits.rows(other.cells, 1, ocap)[0], ocap));
+            return ret;
+        }
         for(IndexedEntry<BooleanValue> e0 : cells) {
             int i = ocap * e0.index();
             for(IndexedEntry<BooleanValue> e1: other.cells) {
@@ -591,19 +599,44 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
         
         if (cells.isEmpty() || other.cells.isEmpty()) return ret;
         
-        final SparseSequence<BooleanValue> mutableCells = ret.clone().cells;
         final int b = other.dims.dimension(0); 
         final int c = other.dims.capacity() / b; 
         
+        // the product of the TRUE cells is computed a word at a time, and
+        // gates are built only for the pairs of cells that involve a variable
+        final int true0 = BooleanBits.trueCount(cells), true1 = BooleanBits.trueCount(other.cells);
+        final long[] trueCells;
+        if (true0 > 0 && true1 > 0) { 
+            trueCells = BooleanBits.dot(BooleanBits.rows(cells, dims.capacity() / b, b), BooleanBits.rows(other.cells, b, c), c);
+            if (true0 == cells.size() && true1 == other.cells.size()) { 
+                BooleanBits.fill(ret.cells, ret.dims.capacity(), trueCells);
+                return ret;
+            }
+        } else {
+            trueCells = null;
+        }
+        final SparseSequence<BooleanValue> otherVars;
+        if (true1 == 0) { 
+            otherVars = other.cells;
+        } else { 
+            otherVars = new TreeSequence<BooleanValue>();
+            for(IndexedEntry<BooleanValue> e1 : other.cells) { 
+                if (e1.value() != TRUE) otherVars.put(e1.index(), e1.value());
+            }
+        }
+        
+        final SparseSequence<BooleanValue> mutableCells = ret.clone().cells;
         for(IndexedEntry<BooleanValue> e0 : cells) {
             int i = e0.index();
             BooleanValue iVal = e0.value();
             int rowHead = (i % b)*c, rowTail = rowHead + c - 1;
-            for(Iterator<IndexedEntry<BooleanValue>> iter1 = other.cells.iterator(rowHead, rowTail); iter1.hasNext();) {
+            final SparseSequence<BooleanValue> row1 = iVal==TRUE ? otherVars : other.cells;
+            for(Iterator<IndexedEntry<BooleanValue>> iter1 = row1.iterator(rowHead, rowTail); iter1.hasNext();) {
                 IndexedEntry<BooleanValue> e1 = iter1.next();
+                int k = (i / b)*c + e1.index()%c;
+                if (trueCells != null && BooleanBits.get(trueCells, k)) continue;
                 BooleanValue retVal = factory.and(iVal, e1.value());
                 if (retVal != FALSE) {
-                    int k = (i / b)*c + e1.index()%c;
                     if (retVal==TRUE) mutableCells.put(k, TRUE);
                     else {
                         BooleanValue kVal = mutableCells.get(k);
@@ -619,6 +652,7 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
             }       
         }
         
+        if (trueCells != null) BooleanBits.fill(ret.cells, ret.dims.capacity(), trueCells);
         // make mutable gates immutable
         for(IndexedEntry<BooleanValue> e : mutableCells) {
             if (e.value()!=TRUE) {
@@ -693,7 +727,8 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
     }
     
     /**
-     * Returns the transitive closure of this matrix.
+     * Returns the transitive closure of this matrix, using the 
+     * {@link BooleanFactory#closureEncoding() closure encoding} of this.factory.
      * 
      * @return { m: BooleanMatrix | m = ^this }
      * @throws UnsupportedOperationException  #this.diensions != 2 || !this.dimensions.square()
@@ -705,6 +740,29 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
         if (cells.isEmpty())
             return clone();
         
+        if (BooleanBits.trueCount(cells) == cells.size()) {
+            // the closure of a constant matrix is computed a word at a time
+            final BooleanMatrix ret = new BooleanMatrix(dims, factory, cells, cells);
+            ret.mergeDefConds(this);
+            final int n = dims.dimension(0);
+            BooleanBits.fill(ret.cells, dims.capacity(), BooleanBits.closure(BooleanBits.rows(cells, n, n)));
+            return ret;
+        }
+        
+        switch(factory.closureEncoding()) {
+        case SQUARING : return squaringClosure();
+        case WARSHALL : return warshallClosure();
+        case SCC      : return decomposedClosure(false);
+        default       : return decomposedClosure(true);
+        }
+    }
+    
+    /**
+     * Returns the transitive closure of this matrix, computed using iterative squaring.
+     * @requires #this.dimensions = 2 && this.dimensions.square()
+     * @return { m: BooleanMatrix | m = ^this }
+     */
+    private BooleanMatrix squaringClosure() { 
 //      System.out.println("closure of " + this);
         BooleanMatrix ret = this;
     
@@ -724,6 +782,232 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
         return ret==this ? clone() : ret;
     }
     
+    /**
+     * Returns the transitive closure of this matrix, computed using Warshall's algorithm:  
+     * each atom k is eliminated in turn by adding this[i][k] && this[k][j] to every this[i][j].
+     * @requires #this.dimensions = 2 && this.dimensions.square()
+     * @return { m: BooleanMatrix | m = ^this }
+     */
+    private BooleanMatrix warshallClosure() { 
+        final int n = dims.dimension(0);
+        final SparseSequence<BooleanValue>[] rows = rows();
+        // columns[k] holds the rows i != k such that rows[i][k] != FALSE
+        final IntSet[] columns = new IntSet[n];
+        for(int i = 0; i < n; i++) { 
+            for(IndexedEntry<BooleanValue> e : rows[i]) { 
+                if (e.index() != i) column(columns, e.index()).add(i);
+            }
+        }
+        for(int k = 0; k < n; k++) { 
+            final SparseSequence<BooleanValue> rowK = rows[k];
+            if (columns[k] == null || rowK.isEmpty()) continue;
+            // the disjunctions accumulated in row k are turned into gates before they are 
+            // used as inputs, so that updated cells do not become long chains of binary gates 
+            immutable(rowK);
+            // rows[i][k] && rows[k][k] && rows[k][j] is absorbed by rows[i][k] && rows[k][j], 
+            // and rows[k][k] && rows[k][j] by rows[k][j], so row k and column k are unchanged
+            for(IntIterator itr = columns[k].iterator(); itr.hasNext(); ) { 
+                final int i = itr.next();
+                final SparseSequence<BooleanValue> rowI = rows[i];
+                BooleanValue ik = rowI.get(k);
+                if (ik instanceof BooleanAccumulator) { 
+                    ik = factory.accumulate((BooleanAccumulator) ik);
+                    rowI.put(k, ik);
+                }
+                for(IndexedEntry<BooleanValue> kj : rowK) { 
+                    final int j = kj.index();
+                    if (j == k) continue;
+                    final boolean absent = !rowI.containsIndex(j);
+                    accumulate(rowI, j, factory.and(ik, kj.value()));
+                    if (absent && j != i && rowI.containsIndex(j)) column(columns, j).add(i);
+                }
+            }
+        }
+        for(SparseSequence<BooleanValue> row : rows) 
+            immutable(row);
+        return fromRows(rows);
+    }
+    
+    /**
+     * Returns columns[j], creating it if needed.
+     */
+    private static IntSet column(IntSet[] columns, int j) { 
+        if (columns[j] == null) columns[j] = new IntTreeSet();
+        return columns[j];
+    }
+    
+    /**
+     * Returns the transitive closure of this matrix, computed by decomposing the graph 
+     * of its non-FALSE cells into strongly connected components.  Each component is 
+     * closed on its own, and the rows of its atoms are then extended, in reverse topological 
+     * order, with the rows of the atoms that they reach through the edges leaving the component. 
+     * The components are closed with the cheaper of iterative squaring and Warshall's algorithm
+     * if cheapest is true, and with iterative squaring otherwise.
+     * @requires #this.dimensions = 2 && this.dimensions.square()
+     * @return { m: BooleanMatrix | m = ^this }
+     */
+    private BooleanMatrix decomposedClosure(boolean cheapest) { 
+        final int n = dims.dimension(0);
+        final int[][] components = BooleanBits.components(BooleanBits.support(cells, n, n));
+        final int[] component = new int[n], local = new int[n];
+        for(int c = 0; c < components.length; c++) { 
+            for(int i = 0; i < components[c].length; i++) { 
+                component[components[c][i]] = c;
+                local[components[c][i]] = i;
+            }
+        }
+        
+        // if one component holds every non-empty row, there is nothing to decompose
+        final int first = component[cells.first().index() / n];
+        boolean single = true;
+        for(IndexedEntry<BooleanValue> e : cells) { 
+            if (component[e.index() / n] != first) { 
+                single = false;
+                break;
+            }
+        }
+        if (single) 
+            return cheapest ? cheapestClosure() : squaringClosure();
+        
+        final SparseSequence<BooleanValue>[] rows = rows();
+        final SparseSequence<BooleanValue>[] reach = sequences(n);
+        final SparseSequence<BooleanValue>[] exits = sequences(n);
+        for(int c = 0; c < components.length; c++) { 
+            final int[] atoms = components[c];
+            final int m = atoms.length;
+            
+            // close the edges within the component
+            final BooleanMatrix inner = new BooleanMatrix(Dimensions.square(m, 2), factory);
+            for(int x : atoms) { 
+                for(IndexedEntry<BooleanValue> e : rows[x]) { 
+                    if (component[e.index()] == c) inner.fastSet(local[x]*m + local[e.index()], e.value());
+                }
+            }
+            final BooleanMatrix closed = inner.cells.isEmpty() ? inner : 
+                                         cheapest ? inner.cheapestClosure() : inner.squaringClosure();
+            
+            // exits[x] = OR { y: atoms outside c | rows[x][y] && (y + reach[y]) }
+            for(int x : atoms) { 
+                final SparseSequence<BooleanValue> acc = new TreeSequence<BooleanValue>();
+                for(IndexedEntry<BooleanValue> e : rows[x]) { 
+                    final int y = e.index();
+                    if (component[y] == c) continue;
+                    accumulate(acc, y, e.value());
+                    for(IndexedEntry<BooleanValue> yv : reach[y]) { 
+                        accumulate(acc, yv.index(), factory.and(e.value(), yv.value()));
+                    }
+                }
+                exits[x] = immutable(acc);
+            }
+            
+            // reach[u] = closed[u] + exits[u] + OR { x: atoms | closed[u][x] && exits[x] }
+            for(int u : atoms) { 
+                final SparseSequence<BooleanValue> acc = new TreeSequence<BooleanValue>();
+                final int base = local[u]*m;
+                for(Iterator<IndexedEntry<BooleanValue>> itr = closed.cells.iterator(base, base + m - 1); itr.hasNext(); ) { 
+                    final IndexedEntry<BooleanValue> e = itr.next();
+                    acc.put(atoms[e.index() - base], e.value());
+                }
+                for(IndexedEntry<BooleanValue> e : exits[u]) { 
+                    accumulate(acc, e.index(), e.value());
+                }
+                for(Iterator<IndexedEntry<BooleanValue>> itr = closed.cells.iterator(base, base + m - 1); itr.hasNext(); ) { 
+                    final IndexedEntry<BooleanValue> ux = itr.next();
+                    final int x = atoms[ux.index() - base];
+                    if (x == u) continue;
+                    for(IndexedEntry<BooleanValue> e : exits[x]) { 
+                        accumulate(acc, e.index(), factory.and(ux.value(), e.value()));
+                    }
+                }
+                reach[u] = immutable(acc);
+            }
+        }
+        return fromRows(reach);
+    }
+    
+    /**
+     * Returns the transitive closure of this matrix, computed with the encoding
+     * that is estimated to produce the fewest gates.
+     * @requires #this.dimensions = 2 && this.dimensions.square()
+     * @return { m: BooleanMatrix | m = ^this }
+     */
+    private BooleanMatrix cheapestClosure() { 
+        final long[][] support = BooleanBits.support(cells, dims.dimension(0), dims.dimension(1));
+        final long squaring = BooleanBits.squaringCost(support);
+        return BooleanBits.warshallCost(support, squaring) < squaring ? warshallClosure() : squaringClosure();
+    }
+    
+    /**
+     * Adds the given value to the disjunction at the given index of the specified 
+     * sequence of accumulators.
+     */
+    private static void accumulate(SparseSequence<BooleanValue> acc, int index, BooleanValue value) { 
+        if (value == FALSE) return;
+        final BooleanValue old = acc.get(index);
+        if (old == TRUE) return;
+        if (value == TRUE || old == null) { 
+            acc.put(index, value);
+            return;
+        } 
+        final BooleanAccumulator gate;
+        if (old instanceof BooleanAccumulator) { 
+            gate = (BooleanAccumulator) old;
+        } else { 
+            gate = BooleanAccumulator.treeGate(OR, old);
+            acc.put(index, gate);
+        }
+        gate.add(value);
+    }
+    
+    /**
+     * Replaces the accumulators in the given sequence with the gates that they represent,
+     * and returns it.
+     */
+    private SparseSequence<BooleanValue> immutable(SparseSequence<BooleanValue> acc) { 
+        for(IndexedEntry<BooleanValue> e : acc) { 
+            if (e.value() instanceof BooleanAccumulator) 
+                acc.put(e.index(), factory.accumulate((BooleanAccumulator) e.value()));
+        }
+        return acc;
+    }
+    
+    /**
+     * Returns a new array of n sparse sequences, all null.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static SparseSequence<BooleanValue>[] sequences(int n) {
+        return new SparseSequence[n];
+    }
+
+    /**
+     * Returns the rows of this n x n matrix as sequences indexed by column.
+     * @requires #this.dimensions = 2 && this.dimensions.square()
+     */
+    private SparseSequence<BooleanValue>[] rows() { 
+        final int n = dims.dimension(0);
+        final SparseSequence<BooleanValue>[] rows = sequences(n);
+        for(int i = 0; i < n; i++) 
+            rows[i] = new TreeSequence<BooleanValue>();
+        for(IndexedEntry<BooleanValue> e : cells) 
+            rows[e.index() / n].put(e.index() % n, e.value());
+        return rows;
+    }
+    
+    /**
+     * Returns a matrix with the dimensions of this n x n matrix whose rows are given by the 
+     * specified sequences.
+     */
+    private BooleanMatrix fromRows(SparseSequence<BooleanValue>[] rows) { 
+        final BooleanMatrix ret = new BooleanMatrix(dims, factory, cells, cells);
+        ret.mergeDefConds(this);
+        final int n = rows.length;
+        for(int i = 0; i < n; i++) { 
+            for(IndexedEntry<BooleanValue> e : rows[i]) 
+                ret.fastSet(i*n + e.index(), e.value());
+        }
+        return ret;
+    }
+    
     /**
      * Returns the transpose of this matrix.
      * 
@@ -735,6 +1019,10 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
         ret.mergeDefConds(this);
         
         final int rows = dims.dimension(0), cols = dims.dimension(1);
+        if (!cells.isEmpty() && BooleanBits.trueCount(cells) == cells.size()) {
+            BooleanBits.fill(ret.cells, dims.capacity(), BooleanBits.transpose(BooleanBits.rows(cells, rows, cols), cols));
+            return ret;
+        }
         for (IndexedEntry<BooleanValue> e0 : cells) {
             ret.cells.put((e0.index()%cols)*rows + (e0.index()/cols), e0.value());
         }
@@ -944,6 +1232,26 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
         return ret;
     }
     
+    /**
+     * Returns a BooleanValue that constrains the number of non-FALSE entries of this matrix 
+     * to lie between the given bounds, inclusive.  Unlike {@link #cardinality()}, the entries 
+     * are counted in unary, with the {@link BooleanFactory#cardinalityEncoding() cardinality encoding} 
+     * of this.factory, or with the unary encoding estimated to produce the fewest gates if that is 
+     * ADDER or AUTO.  TRUE entries are not counted, but subtracted from the bounds.
+     * @return { f: BooleanValue | f <=> min <= #this.elements[int] <= max }
+     */
+    public final BooleanValue cardinalityWithin(int min, int max, Environment<?, ?> env) {
+        final BooleanValue[] inputs = new BooleanValue[cells.size()];
+        int trues = 0, size = 0;
+        for(IndexedEntry<BooleanValue> e : cells) {
+            if (e.value()==TRUE) trues++;
+            else inputs[size++] = e.value();
+        }
+        final BooleanValue val = CardinalityEncoder.within(factory, Arrays.copyOf(inputs, size), 
+                StrictMath.max(min, 0) - trues, max < trues ? -1 : max - trues, factory.cardinalityEncoding());
+        return DefCond.ensureDef(factory, env, val, this.defCond());
+    }
+    
     /**
      * Returns a BooleanValue that constrains at least one value in this.elements to be true.  The
      * effect of this method is the same as calling this.orFold().
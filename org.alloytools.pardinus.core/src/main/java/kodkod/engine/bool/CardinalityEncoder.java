@@ -0,0 +1,226 @@
+/*
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.bool;
+
+import static kodkod.engine.bool.BooleanConstant.FALSE;
+import static kodkod.engine.bool.BooleanConstant.TRUE;
+import static kodkod.engine.bool.Operator.OR;
+
+import java.util.Arrays;
+
+import kodkod.engine.config.Options.CardinalityEncoding;
+
+/**
+ * Unary encodings of cardinality constraints over boolean values. A unary
+ * counter of n values up to m is a sequence u of min(n, m) values such that
+ * u[j] holds iff at least j+1 of the counted values hold. Comparing such a
+ * counter with a constant needs no arithmetic, and unit propagation through
+ * it is stronger than through the binary adders built by
+ * {@link BooleanFactory#sum(java.util.Collection)}.
+ *
+ * <p>
+ * The counters are built with one of three encodings:
+ * </p>
+ * <ul>
+ * <li>a sequential counter, which adds the values one at a time;</li>
+ * <li>a totalizer, which merges the counts of the two halves of the values;</li>
+ * <li>an odd-even merge sorting network, whose size does not depend on m.</li>
+ * </ul>
+ */
+final class CardinalityEncoder {
+
+	private CardinalityEncoder() {}
+
+	/**
+	 * Returns a value that constrains the number of the given values that hold to
+	 * lie between min and max, inclusive. If that needs a shorter counter, the
+	 * values that do not hold are counted instead.
+	 *
+	 * @return { f: BooleanValue | f <=> min <= #{i: [0..inputs.length) | [[inputs[i]]]} <= max }
+	 */
+	static BooleanValue within(BooleanFactory factory, BooleanValue[] inputs, int min, int max,
+			CardinalityEncoding encoding) {
+		final int n = inputs.length;
+		final int lo = StrictMath.max(min, 0), hi = StrictMath.min(max, n);
+		if (lo > hi)
+			return FALSE;
+		if (lo == 0 && hi == n)
+			return TRUE;
+
+		final int length = hi < n ? hi + 1 : lo;
+		final int negatedLength = lo > 0 ? n - lo + 1 : n - hi;
+		if (negatedLength < length) {
+			final BooleanValue[] negated = new BooleanValue[n];
+			for (int i = 0; i < n; i++)
+				negated[i] = inputs[i].negation();
+			return within(factory, negated, n - hi, n - lo, encoding);
+		}
+
+		final BooleanValue[] counter = count(factory, inputs, length, encoding);
+		final BooleanValue atLeast = lo > 0 ? counter[lo - 1] : TRUE;
+		return hi < n ? factory.and(atLeast, counter[hi].negation()) : atLeast;
+	}
+
+	/**
+	 * Returns a unary counter of the given values up to m, built with the given
+	 * encoding, or with the one estimated to produce the fewest gates if the
+	 * encoding is AUTO or ADDER.
+	 *
+	 * @requires 0 < m <= inputs.length
+	 * @return u: BooleanValue[] | #u = m && all j: [0..m) | u[j] <=> j+1 <= #{i | [[inputs[i]]]}
+	 */
+	static BooleanValue[] count(BooleanFactory factory, BooleanValue[] inputs, int m, CardinalityEncoding encoding) {
+		if (m == 1) {
+			final BooleanAccumulator or = BooleanAccumulator.treeGate(OR);
+			for (BooleanValue v : inputs) {
+				if (or.add(v) == TRUE)
+					break;
+			}
+			return new BooleanValue[] { factory.accumulate(or) };
+		}
+		switch (encoding) {
+		case SEQUENTIAL :
+			return sequential(factory, inputs, m);
+		case TOTALIZER :
+			return totalizer(factory, inputs, 0, inputs.length, m);
+		case SORTING_NETWORK :
+			return Arrays.copyOf(sort(factory, inputs), m);
+		default :
+			return count(factory, inputs, m, cheapest(inputs.length, m));
+		}
+	}
+
+	/**
+	 * Returns the unary encoding that is estimated to produce the fewest gates for
+	 * a counter of n values up to m.
+	 */
+	static CardinalityEncoding cheapest(int n, int m) {
+		final long sequential = sequentialCost(n, m);
+		final long totalizer = totalizerCost(n, m);
+		final long sorting = sortingCost(n);
+		if (sequential <= totalizer && sequential <= sorting)
+			return CardinalityEncoding.SEQUENTIAL;
+		return totalizer <= sorting ? CardinalityEncoding.TOTALIZER : CardinalityEncoding.SORTING_NETWORK;
+	}
+
+	/**
+	 * Returns a sequential counter of the given values up to m. After the i-th
+	 * value, counter[j] holds iff at least j+1 of the first i values hold.
+	 */
+	private static BooleanValue[] sequential(BooleanFactory factory, BooleanValue[] inputs, int m) {
+		final BooleanValue[] counter = new BooleanValue[m];
+		Arrays.fill(counter, FALSE);
+		for (int i = 0; i < inputs.length; i++) {
+			final BooleanValue v = inputs[i];
+			for (int j = StrictMath.min(i, m - 1); j > 0; j--) {
+				counter[j] = factory.or(counter[j], factory.and(v, counter[j - 1]));
+			}
+			counter[0] = factory.or(counter[0], v);
+		}
+		return counter;
+	}
+
+	/**
+	 * Returns the estimated number of gates of a sequential counter of n values up
+	 * to m: an AND and an OR gate per value and output.
+	 */
+	private static long sequentialCost(int n, int m) {
+		return 2L * n * m;
+	}
+
+	/**
+	 * Returns a totalizer of the values inputs[lo..hi) up to m. Output j of a node
+	 * holds iff, for some a + b = j+1, at least a values of the left half and at
+	 * least b values of the right half hold.
+	 *
+	 * @requires lo < hi
+	 */
+	private static BooleanValue[] totalizer(BooleanFactory factory, BooleanValue[] inputs, int lo, int hi, int m) {
+		if (hi - lo == 1)
+			return new BooleanValue[] { inputs[lo] };
+		final int mid = (lo + hi) >>> 1;
+		final BooleanValue[] left = totalizer(factory, inputs, lo, mid, m);
+		final BooleanValue[] right = totalizer(factory, inputs, mid, hi, m);
+		final BooleanValue[] ret = new BooleanValue[StrictMath.min(left.length + right.length, m)];
+		for (int j = 1; j <= ret.length; j++) {
+			final BooleanAccumulator or = BooleanAccumulator.treeGate(OR);
+			for (int a = StrictMath.max(0, j - right.length), max = StrictMath.min(j, left.length); a <= max; a++) {
+				final BooleanValue l = a == 0 ? TRUE : left[a - 1];
+				final BooleanValue r = a == j ? TRUE : right[j - a - 1];
+				if (or.add(factory.and(l, r)) == TRUE)
+					break;
+			}
+			ret[j - 1] = factory.accumulate(or);
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the estimated number of gates of a totalizer of n values up to m:
+	 * an AND gate per pair of merged outputs, and an OR gate per output, at every
+	 * node.
+	 */
+	private static long totalizerCost(int n, int m) {
+		if (n <= 1)
+			return 0;
+		final int left = n >>> 1, right = n - left;
+		final long l = StrictMath.min(left, m), r = StrictMath.min(right, m);
+		return totalizerCost(left, m) + totalizerCost(right, m) + l * r + l + r + StrictMath.min(l + r, m);
+	}
+
+	/**
+	 * Returns the given values sorted in decreasing order by Batcher's odd-even
+	 * merge sort, as an array whose length is the smallest power of two that is
+	 * at least inputs.length. Each comparator puts the OR of its values before
+	 * their AND, so output j holds iff at least j+1 values hold.
+	 */
+	private static BooleanValue[] sort(BooleanFactory factory, BooleanValue[] inputs) {
+		final int n = Integer.highestOneBit(StrictMath.max(inputs.length - 1, 1)) << 1;
+		final BooleanValue[] values = Arrays.copyOf(inputs, n);
+		Arrays.fill(values, inputs.length, n, FALSE);
+		for (int p = 1; p < n; p <<= 1) {
+			for (int k = p; k > 0; k >>= 1) {
+				for (int j = k % p; j + k < n; j += k << 1) {
+					for (int i = 0, max = StrictMath.min(k, n - j - k); i < max; i++) {
+						if ((i + j) / (p << 1) == (i + j + k) / (p << 1)) {
+							final BooleanValue a = values[i + j], b = values[i + j + k];
+							values[i + j] = factory.or(a, b);
+							values[i + j + k] = factory.and(a, b);
+						}
+					}
+				}
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Returns the number of gates of an odd-even merge sorting network of n
+	 * values, padded to 2^t values: two gates per each of its
+	 * (t^2 - t + 4) 2^(t-2) - 1 comparators.
+	 */
+	private static long sortingCost(int n) {
+		final int t = 32 - Integer.numberOfLeadingZeros(StrictMath.max(n - 1, 1));
+		return t < 2 ? 2 : 2 * (((long) (t * t - t + 4) << (t - 2)) - 1);
+	}
+}
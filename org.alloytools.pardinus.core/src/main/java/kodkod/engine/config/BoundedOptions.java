@@ -22,7 +22,10 @@
  */
 package kodkod.engine.config;
 
+import kodkod.engine.config.Options.CardinalityEncoding;
+import kodkod.engine.config.Options.ClosureEncoding;
 import kodkod.engine.config.Options.IntEncoding;
+import kodkod.engine.fol2sat.TranslationCache;
 import kodkod.engine.satlab.SATFactory;
 
 /**
@@ -140,4 +143,81 @@ public interface BoundedOptions extends PardinusOptions {
 	/** Sets the core granularity level. */
 	public void setCoreGranularity(int coreGranularity);
 
+	/**
+	 * Returns whether the unsat cores of logged translations are extracted
+	 * from the failed assumptions of the solver instead of from a resolution
+	 * trace (the default is false). If so, and the solver accepts assumptions
+	 * but is not a prover, each top-level formula is enforced by an activation
+	 * literal and the core is minimized by solving under subsets of these
+	 * literals, which needs no trace but ignores the
+	 * {@link kodkod.engine.satlab.ReductionStrategy reduction strategy} given
+	 * to {@link kodkod.engine.Proof#minimize(kodkod.engine.satlab.ReductionStrategy)}.
+	 */
+	public boolean assumptionCores();
+
+	/** Sets the assumptionCores option to the given value. */
+	public void setAssumptionCores(boolean assumptionCores);
+
+	/**
+	 * Returns the encoding that will be used for translating transitive
+	 * closures. The default is AUTO, which decomposes the upper bound of the
+	 * closed expression into strongly connected components and picks the
+	 * cheapest encoding for each.
+	 */
+	public ClosureEncoding closureEncoding();
+
+	/** Sets the closureEncoding option to the given value. */
+	public void setClosureEncoding(ClosureEncoding encoding);
+
+	/**
+	 * Returns the encoding that will be used for translating comparisons
+	 * between cardinalities and constants. The default is AUTO, which counts in
+	 * unary with the cheapest encoding whenever the cardinality cannot overflow.
+	 */
+	public CardinalityEncoding cardinalityEncoding();
+
+	/** Sets the cardinalityEncoding option to the given value. */
+	public void setCardinalityEncoding(CardinalityEncoding encoding);
+
+	/**
+	 * Returns the number of threads that will be used to translate the
+	 * top-level conjuncts of a formula to a boolean circuit. The default is 1.
+	 * With more threads, the conjuncts are translated concurrently into
+	 * separate factories whose circuits are then copied into the factory of
+	 * the translation, in the order of the conjuncts, so the circuit and its
+	 * variable numbering do not depend on the scheduling of the threads.
+	 * Translations that are logged for core extraction always use one thread.
+	 */
+	public int translationThreads();
+
+	/** Sets the translationThreads option to the given value. */
+	public void setTranslationThreads(int threads);
+
+	/**
+	 * Returns the cache in which translations to CNF and the outcome of
+	 * solving them are stored across runs, or null if translations are not
+	 * cached (the default). Problems that are logged for core extraction, and
+	 * problems with symbolic, temporal, target-oriented or decomposed bounds,
+	 * are never cached.
+	 */
+	public TranslationCache translationCache();
+
+	/** Sets the translationCache option to the given value. */
+	public void setTranslationCache(TranslationCache cache);
+
+	/**
+	 * Returns whether the symmetries of the bounds that are not interchanges
+	 * of equivalent atoms are also broken (the default is false). If so, the
+	 * automorphisms of the bounds are searched for, and a lex-leader predicate
+	 * is generated for each generator that is found, which helps problems with
+	 * partial instances or irregular bounds. The search is cut off after an
+	 * effort proportional to the {@link #symmetryBreaking() symmetry breaking}
+	 * option, and is not run when that option is 0 or when the problem is
+	 * solved incrementally.
+	 */
+	public boolean automorphisms();
+
+	/** Sets the automorphisms option to the given value. */
+	public void setAutomorphisms(boolean automorphisms);
+
 }
@@ -60,6 +60,7 @@ public class ExtendedOptions extends Options implements BoundedOptions,
 		this.config_options = options.config_options!=null?options.config_options.clone():null;
 		this.trace_length = options.trace_length;
 		this.min_trace_length = options.min_trace_length;
+		this.incremental_traces = options.incremental_traces;
 		this.name = options.name;
 		this.retargeter = options.retargeter;
 	}
@@ -184,6 +185,7 @@ public class ExtendedOptions extends Options implements BoundedOptions,
 	private boolean run_temporal = false;
 	private int trace_length = 2;
 	private int min_trace_length = 1;
+	private boolean incremental_traces = false;
 
 	/**
 	 * {@inheritDoc}
@@ -228,6 +230,20 @@ public class ExtendedOptions extends Options implements BoundedOptions,
 		this.min_trace_length = trace_length;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean incrementalTraces() {
+		return incremental_traces;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void setIncrementalTraces(boolean incremental) {
+		this.incremental_traces = incremental;
+	}
+
 
 	// unbounded solving
 	private boolean run_unbounded = false;
@@ -266,7 +282,13 @@ public class ExtendedOptions extends Options implements BoundedOptions,
 		c.setSkolemDepth(skolemDepth());
 		c.setLogTranslation(logTranslation());
 		c.setCoreGranularity(coreGranularity());
+		c.setAssumptionCores(assumptionCores());
 		c.setNoOverflow(noOverflow()); // [AM]
+		c.setClosureEncoding(closureEncoding());
+		c.setCardinalityEncoding(cardinalityEncoding());
+		c.setTranslationThreads(translationThreads());
+		c.setTranslationCache(translationCache());
+		c.setAutomorphisms(automorphisms());
 		c.run_decomposed = run_decomposed;
 		c.run_temporal = run_temporal;
 		c.run_target = run_target;
@@ -275,6 +297,7 @@ public class ExtendedOptions extends Options implements BoundedOptions,
 		c.setConfigOptions(config_options);
 		c.setMaxTraceLength(trace_length);
 		c.setMinTraceLength(min_trace_length);
+		c.setIncrementalTraces(incremental_traces);
 		c.name = name;
 		c.setRetargeter(retargeter);
 		return c;
@@ -302,6 +325,8 @@ public class ExtendedOptions extends Options implements BoundedOptions,
 		b.append(min_trace_length);
 		b.append("\n max trace length: ");
 		b.append(trace_length);
+		b.append("\n incremental traces: ");
+		b.append(incremental_traces);
 		b.append("\n run unbounded: ");
 		b.append(run_unbounded);
 		b.append("\n custom retargeter?: ");
@@ -22,6 +22,7 @@
  */
 package kodkod.engine.config;
 
+import kodkod.engine.fol2sat.TranslationCache;
 import kodkod.engine.satlab.SATFactory;
 import kodkod.util.ints.IntRange;
 import kodkod.util.ints.Ints;
@@ -45,6 +46,18 @@ import kodkod.util.ints.Ints;
  *            logging)
  * @specfield coreGranularity: [0..3] // unsat core granularity, default is 0
  *            (only top-level conjuncts are considered)
+ * @specfield assumptionCores: boolean // extract unsat cores from failed
+ *            assumptions instead of resolution traces, default is false
+ * @specfield closureEncoding: ClosureEncoding // encoding to use for translating
+ *            transitive closures
+ * @specfield cardinalityEncoding: CardinalityEncoding // encoding to use for
+ *            translating comparisons of cardinalities with constants
+ * @specfield translationThreads: int // number of threads used to translate
+ *            the top-level conjuncts of a formula to a circuit, default is 1
+ * @specfield translationCache: lone TranslationCache // persistent cache of
+ *            translations and their outcomes, default is none
+ * @specfield automorphisms: boolean // break the symmetries found by an
+ *            automorphism search over the bounds, default is false
  * @author Emina Torlak
  * @modified Nuno Macedo // [HASLab] model finding hierarchy
  */
@@ -60,6 +73,12 @@ public class Options implements Cloneable, BoundedOptions {
 	private int skolemDepth = 0;
 	private int logTranslation = 0;
 	private int coreGranularity = 0;
+	private boolean assumptionCores = false;
+	private ClosureEncoding closureEncoding = ClosureEncoding.AUTO;
+	private CardinalityEncoding cardinalityEncoding = CardinalityEncoding.AUTO;
+	private int translationThreads = 1;
+	private TranslationCache translationCache = null;
+	private boolean automorphisms = false;
 
 	public static boolean isDebug() {
 		return System.getProperty("debug","no").equals("yes");
@@ -94,6 +113,12 @@ public class Options implements Cloneable, BoundedOptions {
 		this.setSkolemDepth(options.skolemDepth());
 		this.setLogTranslation(options.logTranslation());
 		this.setCoreGranularity(options.coreGranularity());		
+		this.setAssumptionCores(options.assumptionCores());
+		this.setClosureEncoding(options.closureEncoding());
+		this.setCardinalityEncoding(options.cardinalityEncoding());
+		this.setTranslationThreads(options.translationThreads());
+		this.setTranslationCache(options.translationCache());
+		this.setAutomorphisms(options.automorphisms());
 	}
 	
 	/**
@@ -296,10 +321,115 @@ public class Options implements Cloneable, BoundedOptions {
 		this.coreGranularity = coreGranularity;
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * @return this.assumptionCores
+	 */
+	public boolean assumptionCores() { 
+		return assumptionCores;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @ensures this.assumptionCores' = assumptionCores
+	 */
+	public void setAssumptionCores(boolean assumptionCores) { 
+		this.assumptionCores = assumptionCores;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @return this.closureEncoding
+	 */
+	public ClosureEncoding closureEncoding() { 
+		return closureEncoding;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @ensures this.closureEncoding' = encoding
+	 * @throws NullPointerException  encoding = null
+	 */
+	public void setClosureEncoding(ClosureEncoding encoding) { 
+		if (encoding==null)
+			throw new NullPointerException();
+		this.closureEncoding = encoding;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @return this.cardinalityEncoding
+	 */
+	public CardinalityEncoding cardinalityEncoding() { 
+		return cardinalityEncoding;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @ensures this.cardinalityEncoding' = encoding
+	 * @throws NullPointerException  encoding = null
+	 */
+	public void setCardinalityEncoding(CardinalityEncoding encoding) { 
+		if (encoding==null)
+			throw new NullPointerException();
+		this.cardinalityEncoding = encoding;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @return this.translationThreads
+	 */
+	public int translationThreads() { 
+		return translationThreads;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @ensures this.translationThreads' = threads
+	 * @throws IllegalArgumentException  threads < 1
+	 */
+	public void setTranslationThreads(int threads) { 
+		checkRange(threads, 1, Integer.MAX_VALUE);
+		this.translationThreads = threads;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @return this.translationCache
+	 */
+	public TranslationCache translationCache() { 
+		return translationCache;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @ensures this.translationCache' = cache
+	 */
+	public void setTranslationCache(TranslationCache cache) { 
+		this.translationCache = cache;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @return this.automorphisms
+	 */
+	public boolean automorphisms() { 
+		return automorphisms;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @ensures this.automorphisms' = automorphisms
+	 */
+	public void setAutomorphisms(boolean automorphisms) { 
+		this.automorphisms = automorphisms;
+	}
+	
 	/**
 	 * Returns a shallow copy of this Options object.  In particular, 
-	 * the returned options shares the same {@linkplain #reporter()} 
-	 * and {@linkplain #solver()} factory objects as this Options. 
+	 * the returned options shares the same {@linkplain #reporter()}, 
+	 * {@linkplain #solver()} factory and {@linkplain #translationCache()} 
+	 * objects as this Options. 
 	 * @return a shallow copy of this Options object.
 	 */
 	public Options clone() {
@@ -314,7 +444,13 @@ public class Options implements Cloneable, BoundedOptions {
 		c.setSkolemDepth(skolemDepth);
 		c.setLogTranslation(logTranslation);
 		c.setCoreGranularity(coreGranularity);
+		c.setAssumptionCores(assumptionCores);
 		c.setNoOverflow(noOverflow); // [AM]
+		c.setClosureEncoding(closureEncoding);
+		c.setCardinalityEncoding(cardinalityEncoding);
+		c.setTranslationThreads(translationThreads);
+		c.setTranslationCache(translationCache);
+		c.setAutomorphisms(automorphisms);
 		return c;
 	}
 	
@@ -343,8 +479,20 @@ public class Options implements Cloneable, BoundedOptions {
 		b.append(logTranslation);
 		b.append("\n coreGranularity: ");
 		b.append(coreGranularity);
+		b.append("\n assumptionCores: ");
+		b.append(assumptionCores);
 		b.append("\n noOverflow: "); // [AM]
         b.append(noOverflow);
+		b.append("\n closureEncoding: ");
+		b.append(closureEncoding);
+		b.append("\n cardinalityEncoding: ");
+		b.append(cardinalityEncoding);
+		b.append("\n translationThreads: ");
+		b.append(translationThreads);
+		b.append("\n translationCache: ");
+		b.append(translationCache);
+		b.append("\n automorphisms: ");
+		b.append(automorphisms);
         return b.toString();
 	}
 	
@@ -386,6 +534,79 @@ public class Options implements Cloneable, BoundedOptions {
 		abstract IntRange range(int bitwidth) ;
 	}
 
+	/**
+	 * Encoding options for the translation of 
+	 * {@link kodkod.ast.operator.ExprOperator#CLOSURE transitive closures}.
+	 * The encodings differ only in the number and shape of the gates
+	 * they produce; the translated closure is the same under all of them.
+	 */
+	public static enum ClosureEncoding {
+		/**
+		 * Iterative squaring: the closure of an n x n matrix m is 
+		 * computed as m + m.m + ... by squaring m log2(n) times.
+		 * It produces shallow circuits of O(n^3 log n) gates.
+		 */
+		SQUARING,
+		/**
+		 * Warshall's algorithm: each atom k is eliminated in turn
+		 * by adding m[i][k] && m[k][j] to every m[i][j].  It produces
+		 * O(n^3) gates, but circuits of depth O(n).
+		 */
+		WARSHALL,
+		/**
+		 * Decomposition of the graph of the upper bound into strongly
+		 * connected components, which are closed by squaring and then 
+		 * combined in reverse topological order.  If the upper bound is 
+		 * acyclic, every component is a single atom and this is the 
+		 * direct acyclic encoding, in which the row of each atom is the 
+		 * disjunction of its successors and their rows.
+		 */
+		SCC,
+		/**
+		 * Decomposes the upper bound into strongly connected components, 
+		 * and closes each component with the encoding that is estimated 
+		 * to produce the fewest gates for it.
+		 */
+		AUTO
+	}
+
+	/**
+	 * Encoding options for comparisons between the 
+	 * {@link kodkod.ast.operator.ExprCastOperator#CARDINALITY cardinality} 
+	 * of an expression and a constant, such as <code>#r <= 3</code>.  
+	 * All encodings except ADDER count the entries of the expression in unary, 
+	 * and are only used when the cardinality of the expression cannot overflow; 
+	 * the translated comparison is the same under all of them.
+	 */
+	public static enum CardinalityEncoding {
+		/**
+		 * Binary adder tree: the cardinality is computed as an integer of 
+		 * the factory's bitwidth and compared with the constant.
+		 */
+		ADDER,
+		/**
+		 * Sequential counter: the entries are counted one at a time up to 
+		 * k+1, where k is the constant.  It produces O(n k) gates.
+		 */
+		SEQUENTIAL,
+		/**
+		 * Totalizer: the counts of the two halves of the entries are merged 
+		 * recursively, up to k+1.  It produces O(n k) gates in circuits of 
+		 * depth O(log n).
+		 */
+		TOTALIZER,
+		/**
+		 * Sorting network: the entries are sorted with Batcher's odd-even 
+		 * merge sort.  It produces O(n log^2 n) gates, regardless of k.
+		 */
+		SORTING_NETWORK,
+		/**
+		 * Uses the unary encoding that is estimated to produce the fewest 
+		 * gates for each comparison, and ADDER when the cardinality may overflow.
+		 */
+		AUTO
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -70,5 +70,28 @@ public interface TemporalOptions extends PardinusOptions {
 	
 	public void setMinTraceLength(int traceLength);
 
+	/**
+	 * Whether the bounded temporal model finder explores the trace lengths
+	 * incrementally, i.e., translating the problem once for the maximum trace
+	 * length and then selecting each particular length under assumptions, so
+	 * that the SAT solver and its learned clauses are reused between steps.
+	 * Requires a solver that {@link kodkod.engine.satlab.SATFactory#assumptions()
+	 * supports assumptions}, otherwise each trace length is translated from
+	 * scratch.
+	 * 
+	 * @return whether trace lengths are explored incrementally.
+	 */
+	public boolean incrementalTraces();
+
+	/**
+	 * Instructs the bounded temporal model finder whether to explore trace
+	 * lengths incrementally.
+	 * 
+	 * @see #incrementalTraces()
+	 * @param incremental
+	 *            whether to explore trace lengths incrementally.
+	 */
+	public void setIncrementalTraces(boolean incremental);
+
 
 }
@@ -0,0 +1,381 @@
+/*
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package kodkod.engine.fol2sat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import kodkod.ast.Relation;
+import kodkod.instance.Bounds;
+import kodkod.instance.PardinusBounds;
+import kodkod.instance.TupleSet;
+import kodkod.util.ints.IntIterator;
+import kodkod.util.ints.IntSet;
+
+/**
+ * Searches for the automorphisms of a Bounds object:  the permutations of the atoms of its 
+ * universe that map the lower and upper bound of every relation, and the bound of every integer, 
+ * onto themselves.  The {@linkplain SymmetryDetector symmetry classes} only capture the automorphisms 
+ * that interchange equivalent atoms, so bounds that are not fully symmetric, such as those of partial 
+ * instances, may have many more automorphisms than the classes reveal.
+ * 
+ * <p>The search follows the individualization-refinement scheme of tools like saucy and bliss.  The 
+ * atoms are colored so that atoms of different colors cannot be mapped onto each other, and the coloring 
+ * is refined by counting, for each atom, the colors of the tuples it takes part in.  The leftmost path 
+ * of the search tree individualizes the least atom of the first non-singleton cell until the coloring is 
+ * discrete.  Then, from the deepest level up, every other atom of the individualized cell that is not yet 
+ * known to be in the orbit of the chosen atom is individualized instead, looking for a leaf whose coloring
+ * matches the leftmost leaf.  The permutation between the two leaves is kept as a generator if it is an 
+ * automorphism.  Atoms that are in the same symmetry class are in the same orbit, which prunes the search 
+ * on the symmetric parts of the bounds.</p>
+ * 
+ * <p>The refinement and the checks of candidate permutations visit the tuples of the bounds, and the 
+ * search gives up once it has visited a given number of tuples, returning the generators found so far.  
+ * All returned permutations are automorphisms of the bounds, even if the search was cut.</p>
+ * 
+ * @specfield bounds: Bounds
+ * @specfield symmetries: set IntSet // the symmetry classes of bounds
+ * @specfield generators: set [0..bounds.universe.size()) -> one [0..bounds.universe.size())
+ */
+final class AutomorphismDetector {
+	private final int usize;
+	private final int[][] sets;
+	private final int[] arities;
+	private final IntSet[] views;
+	private final int[] classOf;
+	private long budget;
+	/* the leftmost path of the search tree:  the coloring at each level, the color of the cell 
+	 * whose least atom is individualized at each level, and the sizes of the cells of each coloring */
+	private final List<int[]> path = new ArrayList<int[]>();
+	private final List<int[]> sizes = new ArrayList<int[]>();
+	private final List<Integer> targets = new ArrayList<Integer>();
+	private final List<int[]> generators = new ArrayList<int[]>();
+	
+	/**
+	 * Constructs a new AutomorphismDetector for the given bounds and symmetry classes.
+	 * @ensures this.bounds' = bounds && this.symmetries' = symmetries
+	 */
+	private AutomorphismDetector(Bounds bounds, Set<IntSet> symmetries, long effort) {
+		this.usize = bounds.universe().size();
+		this.budget = effort;
+		final List<TupleSet> tuplesets = new ArrayList<TupleSet>();
+		for(Relation r : bounds.relations()) {
+			if (r.isAtom()) continue; // [HASLab] ignored reified atoms, as in SymmetryDetector
+			tuplesets.add(bounds.lowerBound(r));
+			tuplesets.add(bounds.upperBound(r));
+			if (bounds instanceof PardinusBounds) {
+				final TupleSet target = ((PardinusBounds) bounds).target(r);
+				if (target != null) tuplesets.add(target);
+			}
+		}
+		for(IntIterator iter = bounds.ints().iterator(); iter.hasNext(); ) {
+			tuplesets.add(bounds.exactBound(iter.next()));
+		}
+		this.sets = new int[tuplesets.size()][];
+		this.arities = new int[tuplesets.size()];
+		this.views = new IntSet[tuplesets.size()];
+		for(int s = 0; s < sets.length; s++) {
+			final TupleSet tuples = tuplesets.get(s);
+			views[s] = tuples.indexView();
+			arities[s] = tuples.arity();
+			sets[s] = new int[views[s].size()];
+			int i = 0;
+			for(IntIterator iter = views[s].iterator(); iter.hasNext(); ) { sets[s][i++] = iter.next(); }
+		}
+		this.classOf = new int[usize];
+		Arrays.fill(classOf, -1);
+		int c = 0;
+		for(IntSet sym : symmetries) {
+			for(IntIterator iter = sym.iterator(); iter.hasNext(); ) { classOf[iter.next()] = c; }
+			c++;
+		}
+	}
+	
+	/**
+	 * Returns generators of the automorphisms of the given bounds that are found after 
+	 * visiting at most the given number of tuples, leaving out those that only interchange 
+	 * atoms of the same class in the given symmetries.  Each generator maps every atom 
+	 * to its image.
+	 * @requires symmetries = SymmetryDetector.partition(bounds) or a subset of it
+	 * @return some generators: list [0..bounds.universe.size()) -> one [0..bounds.universe.size()) | 
+	 *          all g: generators[int] | all s: bounds.(lowerBound + upperBound + intBound)[Relation] |
+	 *           g.(s.tuples) = s.tuples
+	 */
+	static List<int[]> generators(Bounds bounds, Set<IntSet> symmetries, long effort) {
+		final AutomorphismDetector detector = new AutomorphismDetector(bounds, symmetries, effort);
+		if (detector.usize > 1) 
+			detector.search();
+		final List<int[]> generators = new ArrayList<int[]>();
+		for(int[] generator : detector.generators) {
+			for(int atom = 0; atom < detector.usize; atom++) {
+				final int image = generator[atom];
+				if (detector.classOf[atom] != detector.classOf[image] || detector.classOf[atom] < 0 && atom != image) {
+					generators.add(generator);
+					break;
+				}
+			}
+		}
+		return generators;
+	}
+	
+	/**
+	 * Builds the leftmost path of the search tree, and then looks for the automorphisms 
+	 * that fix the atoms individualized above each level, from the deepest level up.
+	 * @ensures this.generators' contains the automorphisms that were found
+	 */
+	private void search() {
+		int[] color = refine(new int[usize]);
+		final List<Integer> chosen = new ArrayList<Integer>();
+		while(color != null) {
+			path.add(color);
+			sizes.add(cellSizes(color));
+			final int target = firstNonSingleton(color);
+			if (target < 0) break;
+			final int atom = firstAtom(color, target);
+			targets.add(target);
+			chosen.add(atom);
+			color = refine(individualize(color, atom));
+		}
+		if (color == null) return; // out of budget
+		
+		final int[] leaf = atomsOf(color);
+		final int[] orbits = new int[usize];
+		for(int level = targets.size()-1; level >= 0 && budget >= 0; level--) {
+			// the orbits of the automorphisms that fix the atoms chosen above this level
+			for(int atom = 0; atom < usize; atom++) { orbits[atom] = atom; }
+			final int[] first = new int[usize];
+			Arrays.fill(first, -1);
+			for(int atom = 0; atom < usize; atom++) {
+				if (classOf[atom] < 0 || chosen.subList(0, level).contains(atom)) continue;
+				if (first[classOf[atom]] < 0) first[classOf[atom]] = atom;
+				else union(orbits, first[classOf[atom]], atom);
+			}
+			for(int[] generator : generators) {
+				for(int atom = 0; atom < usize; atom++) { union(orbits, atom, generator[atom]); }
+			}
+			
+			final int[] color0 = path.get(level);
+			final int target = targets.get(level), atom0 = chosen.get(level);
+			final List<Integer> tried = new ArrayList<Integer>();
+			tried.add(atom0);
+			for(int atom = 0; atom < usize && budget >= 0; atom++) {
+				if (color0[atom] != target || inOrbits(orbits, atom, tried)) continue;
+				tried.add(atom);
+				final int[] image = search(color0, atom, level, leaf);
+				if (image != null) {
+					generators.add(image);
+					for(int a = 0; a < usize; a++) { union(orbits, a, image[a]); }
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Looks for a leaf below the node that individualizes the given atom in the given coloring
+	 * at the given level, such that the permutation that maps the given leftmost leaf to it is 
+	 * an automorphism, and returns that permutation.  Returns null if there is none, or if the 
+	 * search ran out of budget.
+	 */
+	private int[] search(int[] color, int atom, int level, int[] leaf) {
+		final int[] next = refine(individualize(color, atom));
+		if (next == null || !Arrays.equals(cellSizes(next), sizes.get(level+1))) 
+			return null;
+		if (level+1 == targets.size()) {
+			final int[] image = new int[usize];
+			final int[] atoms = atomsOf(next);
+			for(int c = 0; c < usize; c++) { image[leaf[c]] = atoms[c]; }
+			return isAutomorphism(image) ? image : null;
+		}
+		final int target = targets.get(level+1);
+		for(int a = 0; a < usize && budget >= 0; a++) {
+			if (next[a] != target) continue;
+			final int[] image = search(next, a, level+1, leaf);
+			if (image != null) return image;
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the coarsest coloring that refines the given one and in which all atoms of the
+	 * same color have the same number of tuples of each set, position and colors of the other 
+	 * atoms.  The colors are numbered so that an automorphism that maps the given coloring onto 
+	 * itself also maps the returned one onto itself.  Returns null if the budget runs out. 
+	 */
+	private int[] refine(int[] color) {
+		int cells = cellCount(color);
+		final long[] signature = new long[usize];
+		while(true) {
+			Arrays.fill(signature, 0);
+			for(int s = 0; s < sets.length; s++) {
+				final int arity = arities[s];
+				budget -= sets[s].length;
+				if (budget < 0) return null;
+				for(int tuple : sets[s]) {
+					long hash = s + 1;
+					for(int i = arity, t = tuple; i > 0; i--, t /= usize) {
+						hash = mix(hash * 31 + color[t % usize]);
+					}
+					for(int i = arity, t = tuple; i > 0; i--, t /= usize) {
+						signature[t % usize] += mix(hash + i);
+					}
+				}
+			}
+			color = rank(color, signature);
+			final int refined = cellCount(color);
+			if (refined == cells) return color;
+			cells = refined;
+		}
+	}
+	
+	/**
+	 * Returns the coloring that gives the given atom a color of its own, just before 
+	 * the other atoms of its color.
+	 */
+	private int[] individualize(int[] color, int atom) {
+		final long[] key = new long[usize];
+		key[atom] = -1;
+		return rank(color, key);
+	}
+	
+	/**
+	 * Returns the coloring that orders the atoms by their colors and then by the given keys.
+	 */
+	private int[] rank(final int[] color, final long[] key) {
+		final Integer[] atoms = new Integer[usize];
+		for(int a = 0; a < usize; a++) { atoms[a] = a; }
+		Arrays.sort(atoms, (a0, a1) -> color[a0] != color[a1] ? Integer.compare(color[a0], color[a1]) : Long.compare(key[a0], key[a1]));
+		final int[] ranked = new int[usize];
+		for(int i = 1, c = 0; i < usize; i++) {
+			final int prev = atoms[i-1], cur = atoms[i];
+			if (color[prev] != color[cur] || key[prev] != key[cur]) c++;
+			ranked[cur] = c;
+		}
+		return ranked;
+	}
+	
+	/**
+	 * Returns true if the given permutation maps every set of tuples onto itself.
+	 */
+	private boolean isAutomorphism(int[] image) {
+		for(int s = 0; s < sets.length; s++) {
+			budget -= sets[s].length;
+			for(int tuple : sets[s]) {
+				int permuted = 0;
+				for(int i = arities[s], t = tuple, u = 1; i > 0; i--, t /= usize, u *= usize) {
+					permuted += image[t % usize] * u;
+				}
+				if (!views[s].contains(permuted)) return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns the number of colors of the given coloring, whose colors are numbered from 0.
+	 */
+	private int cellCount(int[] color) {
+		int max = -1;
+		for(int c : color) { max = Math.max(max, c); }
+		return max + 1;
+	}
+	
+	/**
+	 * Returns the number of atoms of each color of the given coloring.
+	 */
+	private int[] cellSizes(int[] color) {
+		final int[] sizes = new int[cellCount(color)];
+		for(int c : color) { sizes[c]++; }
+		return sizes;
+	}
+	
+	/**
+	 * Returns the first color of the given coloring that has more than one atom, or -1 if there is none.
+	 */
+	private int firstNonSingleton(int[] color) {
+		final int[] sizes = cellSizes(color);
+		for(int c = 0; c < sizes.length; c++) {
+			if (sizes[c] > 1) return c;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Returns the least atom of the given color.
+	 */
+	private int firstAtom(int[] color, int c) {
+		int atom = 0;
+		while(color[atom] != c) atom++;
+		return atom;
+	}
+	
+	/**
+	 * Returns the atom of each color of the given discrete coloring.
+	 */
+	private int[] atomsOf(int[] color) {
+		final int[] atoms = new int[usize];
+		for(int a = 0; a < usize; a++) { atoms[color[a]] = a; }
+		return atoms;
+	}
+	
+	/**
+	 * Returns true if the given atom is in the orbit of one of the given atoms.
+	 */
+	private static boolean inOrbits(int[] orbits, int atom, List<Integer> atoms) {
+		final int root = find(orbits, atom);
+		for(int other : atoms) {
+			if (find(orbits, other) == root) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns the representative of the orbit of the given atom.
+	 */
+	private static int find(int[] orbits, int atom) {
+		while(orbits[atom] != atom) {
+			orbits[atom] = orbits[orbits[atom]];
+			atom = orbits[atom];
+		}
+		return atom;
+	}
+	
+	/**
+	 * Merges the orbits of the given atoms.
+	 */
+	private static void union(int[] orbits, int atom0, int atom1) {
+		final int root0 = find(orbits, atom0), root1 = find(orbits, atom1);
+		if (root0 < root1) orbits[root1] = root0;
+		else if (root1 < root0) orbits[root0] = root1;
+	}
+	
+	/**
+	 * Scrambles the bits of the given value (the finalizer of the SplitMix64 generator).
+	 */
+	private static long mix(long h) {
+		h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+		h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+		return h ^ (h >>> 31);
+	}
+}
@@ -22,15 +22,21 @@
 package kodkod.engine.fol2sat;
 
 import static kodkod.engine.bool.Operator.AND;
+
+import java.util.Arrays;
+
+import kodkod.engine.bool.BooleanAccumulator;
 import kodkod.engine.bool.BooleanConstant;
 import kodkod.engine.bool.BooleanFactory;
 import kodkod.engine.bool.BooleanFormula;
+import kodkod.engine.bool.BooleanValue;
 import kodkod.engine.bool.BooleanVariable;
 import kodkod.engine.bool.BooleanVisitor;
 import kodkod.engine.bool.ITEGate;
 import kodkod.engine.bool.MultiGate;
 import kodkod.engine.bool.NotGate;
 import kodkod.engine.bool.Operator;
+import kodkod.engine.satlab.ClauseBuffer;
 import kodkod.engine.satlab.SATFactory;
 import kodkod.engine.satlab.SATSolver;
 import kodkod.util.ints.IntSet;
@@ -72,6 +78,46 @@ abstract class Bool2CNFTranslator implements BooleanVisitor<int[], Object> {
 		return translator.translate(circuit, maxPrimaryVar).solver;
 	}
 	
+	/**
+	 * Creates a new instance of SATSolver using the provided factory
+	 * and uses it to translate the given roots and hard circuit into conjunctive 
+	 * normal form using the <i>definitional translation algorithm</i>.  
+	 * The hard circuit is asserted, but the roots are not:  the clauses only 
+	 * define the literal of each root, so that a root is enforced exactly 
+	 * when its literal is assumed (or set) to be true.
+	 * The {@code maxPrimaryVar} parameter is required to contain the maximum label of any primary variable
+	 * allocated during translation from FOL to boolean.  This method assumes that 
+	 * all variables allocated during translation have contiguous labels.
+	 * @requires roots.op = AND && some roots.inputs && roots.inputs in BooleanFormula
+	 * @requires hard != BooleanConstant.FALSE
+	 * @return some cnf: SATSolver | cnf in factory.instance() && 
+	 *          max(cnf.variables) = max(abs((roots.inputs + hard - BooleanConstant).label), maxPrimaryVar) && 
+	 *          meaning(hard && (all r: roots.inputs | r.label => r)) = meaning(cnf.clauses)
+	 */
+	static SATSolver translate(final BooleanAccumulator roots, final BooleanValue hard, final int maxPrimaryVar, final SATFactory factory) {
+		final PolarityDetector pdetector = new PolarityDetector(maxPrimaryVar, maxLabel(roots, hard));
+		for(BooleanValue root : roots) 
+			pdetector.apply((BooleanFormula) root);
+		if (hard instanceof BooleanFormula)
+			pdetector.apply((BooleanFormula) hard);
+		final Bool2CNFTranslator translator = new Bool2CNFTranslator(factory.instance()) {
+			boolean positive(int label) { return pdetector.positive(label); }
+			boolean negative(int label) { return pdetector.negative(label); }
+		};
+		return translator.translate(roots, hard, maxPrimaryVar).solver;
+	}
+	
+	/**
+	 * Returns the largest absolute label of the given roots and hard circuit, ignoring constants.
+	 * @return max(abs((roots.inputs + hard - BooleanConstant).label))
+	 */
+	private static int maxLabel(BooleanAccumulator roots, BooleanValue hard) {
+		int max = hard instanceof BooleanFormula ? StrictMath.abs(hard.label()) : 0;
+		for(BooleanValue root : roots) 
+			max = StrictMath.max(max, StrictMath.abs(root.label()));
+		return max;
+	}
+	
 	/**
 	 * Creates a new instance of SATSolver using the provided factory
 	 * and initializes it with the trivial translation of the given boolean value.  
@@ -138,11 +184,17 @@ abstract class Bool2CNFTranslator implements BooleanVisitor<int[], Object> {
 		return translator.translate(circuit, maxPrimaryVar);
 	}
 
+	/** Number of literals after which the buffered clauses are handed to the solver. */
+	private static final int FLUSH_THRESHOLD = 1 << 16;
+
 	private final SATSolver solver;
 	private final IntSet visited;
 	private final int[] unaryClause = new int[1];
-	private final int[] binaryClause = new int[2];
-	private final int[] ternaryClause = new int[3];
+	/** Clauses generated but not yet added to this.solver. */
+	private final ClauseBuffer clauses;
+	/** Stack holding the long clauses of the gates being visited. */
+	private int[] gateClauses;
+	private int gateClausesTop;
 	
 	/**
 	 * Constructs a translator for the given circuit.
@@ -152,6 +204,9 @@ abstract class Bool2CNFTranslator implements BooleanVisitor<int[], Object> {
 	private Bool2CNFTranslator(SATSolver solver) {
 		this.solver = solver;
 		this.visited = new IntTreeSet();
+		this.clauses = new ClauseBuffer(FLUSH_THRESHOLD + (FLUSH_THRESHOLD >> 2));
+		this.gateClauses = new int[64];
+		this.gateClausesTop = 0;
 	}
 
 	/**
@@ -177,15 +232,59 @@ abstract class Bool2CNFTranslator implements BooleanVisitor<int[], Object> {
 				input.accept(this, null);
 			}
 			for(BooleanFormula input : circuit) { 
-				unaryClause[0] = input.label();
-				solver.addClause(unaryClause);
+				clauses.add(input.label());
 			}
 		} else {
-			solver.addClause(circuit.accept(this, null));
+			clauses.add(circuit.accept(this, null)[0]);
 		}
+		flush();
 		return this;
 	}
 	
+	/**
+	 * Applies this translator to the given roots and hard circuit, adding the 
+	 * definitions of the roots and the translation of the hard circuit to this.solver, 
+	 * and returns the translator.
+	 * @requires roots.inputs + hard in this.factory.components + BooleanConstant.TRUE
+	 * @requires maxPrimaryVar = this.factory.maxPrimaryVariable()
+	 * @ensures this.solver.variables' = this.solver.variables + 
+	 *   { i: int | solver.numberOfVariables() < i <= max(abs((roots.inputs + hard - BooleanConstant).label), maxPrimaryVar) }
+	 * @effects this.solver.clauses' = this.solver.clauses + CNF(hard && (all r: roots.inputs | r.label => r))
+	 * @return this
+	 */
+	private Bool2CNFTranslator translate(BooleanAccumulator roots, BooleanValue hard, int maxPrimaryVar) {
+		final int newVars = Math.max(maxLabel(roots, hard), maxPrimaryVar) - solver.numberOfVariables();
+		if (newVars > 0)
+			solver.addVariables(newVars);
+		for(BooleanValue root : roots) { 
+			((BooleanFormula) root).accept(this, null);
+		}
+		if (hard instanceof BooleanFormula) { 
+			clauses.add(((BooleanFormula) hard).accept(this, null)[0]);
+		}
+		flush();
+		return this;
+	}
+	
+	/**
+	 * Adds the buffered clauses to this.solver.
+	 * @ensures this.solver.clauses' = this.solver.clauses + this.clauses.clauses.elems && no this.clauses.clauses'
+	 */
+	private void flush() {
+		if (clauses.size() > 0) {
+			solver.addClauses(clauses);
+			clauses.clear();
+		}
+	}
+	
+	/**
+	 * Hands the buffered clauses to this.solver if they take up more than {@link #FLUSH_THRESHOLD} literals.
+	 */
+	private void flushIfFull() {
+		if (clauses.length() > FLUSH_THRESHOLD)
+			flush();
+	}
+	
 	/**
 	 * Returns this.solver.
 	 * @return this.solver
@@ -211,15 +310,15 @@ abstract class Bool2CNFTranslator implements BooleanVisitor<int[], Object> {
 		unaryClause[0] = lit;
 		return unaryClause;
 	}
-	/** @return 0->lit0 + 1->lit1 */
-	private final int[] clause(int lit0, int lit1) { 
-		binaryClause[0] = lit0; binaryClause[1] = lit1;
-		return binaryClause;
+	/** @ensures adds the clause lit0 + lit1 to this.clauses */
+	private final void addClause(int lit0, int lit1) { 
+		clauses.add(lit0, lit1);
+		flushIfFull();
 	}
-	/** @return 0->lit0 + 1->lit1 + 2->lit2 */
-	private final int[] clause(int lit0, int lit1, int lit2) { 
-		ternaryClause[0] = lit0; ternaryClause[1] = lit1; ternaryClause[2] = lit2;
-		return ternaryClause;
+	/** @ensures adds the clause lit0 + lit1 + lit2 to this.clauses */
+	private final void addClause(int lit0, int lit1, int lit2) { 
+		clauses.add(lit0, lit1, lit2);
+		flushIfFull();
 	}
 	
 	/**
@@ -241,21 +340,29 @@ abstract class Bool2CNFTranslator implements BooleanVisitor<int[], Object> {
 			} else { // multigate.op()==OR
 				sgn = -1; n = positive(oLit); p = negative(oLit);
 			}
-			final int[] lastClause = n ? new int[multigate.size()+1] : null;
+			// the last clause is assembled on top of the stack, above which the inputs push their own
+			final int from = gateClausesTop;
+			if (n) {
+				if (gateClauses.length < from + multigate.size() + 1)
+					gateClauses = Arrays.copyOf(gateClauses, Math.max(gateClauses.length * 2, from + multigate.size() + 1));
+				gateClausesTop = from + multigate.size() + 1;
+			}
 			final int output = oLit * -sgn;
-			int i = 0;
+			int i = from;
 			for(BooleanFormula input : multigate) {
 				int iLit = input.accept(this, arg)[0];
 				if (p) {
-					solver.addClause(clause(iLit * sgn, output));
+					addClause(iLit * sgn, output);
 				}
 				if (n) { 
-					lastClause[i++] = iLit * -sgn;
+					gateClauses[i++] = iLit * -sgn;
 				}
 			}
 			if (n) {
-				lastClause[i] = oLit * sgn;
-				solver.addClause(lastClause);
+				gateClauses[i++] = oLit * sgn;
+				clauses.add(gateClauses, from, i);
+				gateClausesTop = from;
+				flushIfFull();
 			}
 		}
 		return clause(oLit);        
@@ -278,16 +385,16 @@ abstract class Bool2CNFTranslator implements BooleanVisitor<int[], Object> {
 			final int e = itegate.input(2).accept(this, arg)[0];
 			final boolean p = positive(oLit), n = negative(oLit);
 			if (p) {
-				solver.addClause(clause(-i, t, -oLit));
-				solver.addClause(clause(i, e, -oLit));
+				addClause(-i, t, -oLit);
+				addClause(i, e, -oLit);
 				// redundant clause that strengthens unit propagation
-				solver.addClause(clause(t, e, -oLit));
+				addClause(t, e, -oLit);
 			}
 			if (n) {
-				solver.addClause(clause(-i, -t, oLit));	
-				solver.addClause(clause(i, -e, oLit));
+				addClause(-i, -t, oLit);	
+				addClause(i, -e, oLit);
 				// redundant clause that strengthens unit propagation
-				solver.addClause(clause(-t, -e, oLit));
+				addClause(-t, -e, oLit);
 			}	
 		}
 		return clause(oLit);
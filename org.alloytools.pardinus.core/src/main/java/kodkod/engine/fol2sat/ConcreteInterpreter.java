@@ -0,0 +1,1077 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.fol2sat;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import kodkod.ast.BinaryExpression;
+import kodkod.ast.BinaryFormula;
+import kodkod.ast.BinaryIntExpression;
+import kodkod.ast.BinaryTempFormula;
+import kodkod.ast.ComparisonFormula;
+import kodkod.ast.Comprehension;
+import kodkod.ast.ConstantExpression;
+import kodkod.ast.ConstantFormula;
+import kodkod.ast.Decl;
+import kodkod.ast.Decls;
+import kodkod.ast.ExprToIntCast;
+import kodkod.ast.Expression;
+import kodkod.ast.Formula;
+import kodkod.ast.IfExpression;
+import kodkod.ast.IfIntExpression;
+import kodkod.ast.IntComparisonFormula;
+import kodkod.ast.IntConstant;
+import kodkod.ast.IntExpression;
+import kodkod.ast.IntToExprCast;
+import kodkod.ast.MultiplicityFormula;
+import kodkod.ast.NaryExpression;
+import kodkod.ast.NaryFormula;
+import kodkod.ast.NaryIntExpression;
+import kodkod.ast.Node;
+import kodkod.ast.NotFormula;
+import kodkod.ast.ProjectExpression;
+import kodkod.ast.QuantifiedFormula;
+import kodkod.ast.Relation;
+import kodkod.ast.RelationPredicate;
+import kodkod.ast.SumExpression;
+import kodkod.ast.TempExpression;
+import kodkod.ast.UnaryExpression;
+import kodkod.ast.UnaryIntExpression;
+import kodkod.ast.UnaryTempFormula;
+import kodkod.ast.Variable;
+import kodkod.ast.operator.Multiplicity;
+import kodkod.ast.operator.TemporalOperator;
+import kodkod.ast.visitor.ReturnVisitor;
+import kodkod.engine.bool.BooleanConstant;
+import kodkod.engine.bool.BooleanFactory;
+import kodkod.engine.bool.Int;
+import kodkod.engine.config.Options;
+import kodkod.instance.Instance;
+import kodkod.instance.TupleSet;
+import kodkod.util.ints.IndexedEntry;
+import kodkod.util.ints.IntIterator;
+import kodkod.util.ints.IntSet;
+import kodkod.util.ints.Ints;
+
+/**
+ * Evaluates formulas and expressions directly over the tuples of an instance,
+ * without translating them to boolean circuits.  Relational values are sets of 
+ * tuple indices and integer values are primitive ints, so the result of an 
+ * evaluation is computed without building the matrices of a 
+ * {@link FOL2BoolTranslator}.  The results are the same as those of 
+ * {@link Translator#evaluate(Formula, Instance, Options)} and its variants: 
+ * integer expressions are evaluated in two's complement over options.bitwidth bits,
+ * and casts, sums and projections follow the translation of the same nodes. 
+ * Subformulas and subexpressions whose value cannot affect the result are not 
+ * evaluated.
+ * 
+ * <p>The value of every subformula and subexpression that does not depend on the 
+ * variables bound around it is memoized, so shared subexpressions and closed 
+ * subexpressions of quantified formulas are evaluated once per instance.  The 
+ * memoized values are discarded as soon as a relation or integer of the instance 
+ * is mapped to a different tuple set.</p>
+ * 
+ * <p>If options.noOverflow is set, formulas whose arithmetic may overflow are 
+ * evaluated by the translator, since the meaning of a comparison between 
+ * overflowing integers depends on the quantifiers around it.</p>
+ * 
+ * @specfield instance: Instance
+ * @specfield options: Options
+ * @specfield cache: Node -> lone Object
+ */
+public final class ConcreteInterpreter implements ReturnVisitor<IntSet, Boolean, IntSet, Integer> {
+	private final Instance instance;
+	private final Options options;
+	private final int univSize, bitwidth;
+	private final Map<Node, Object> cache;
+	/* the relation and int tuple sets for which the cache was computed */
+	private final List<TupleSet> snapshot;
+	/* integers of the instance, with the atoms that represent them */
+	private int[] intValues, intAtoms;
+	private IntSet univ, iden, ints;
+	/* constant factory used for the operations whose semantics are defined by their circuits */
+	private BooleanFactory factory;
+	/* variables in scope and the indices of the tuples they are bound to */
+	private Variable[] vars;
+	private int[] values;
+	private int depth;
+	/* the lowest position in vars of a variable read since the last call to enter() */
+	private int reads;
+	
+	/**
+	 * Constructs a new interpreter for the given instance and options.
+	 * @ensures this.instance' = instance && this.options' = options && no this.cache'
+	 * @throws NullPointerException  instance = null || options = null
+	 */
+	public ConcreteInterpreter(Instance instance, Options options) {
+		if (instance==null || options==null) throw new NullPointerException();
+		this.instance = instance;
+		this.options = options;
+		this.univSize = instance.universe().size();
+		this.bitwidth = options.bitwidth();
+		this.cache = new WeakHashMap<Node, Object>();
+		this.snapshot = new ArrayList<TupleSet>();
+		this.vars = new Variable[8];
+		this.values = new int[8];
+	}
+	
+	/**
+	 * Returns the instance interpreted by this interpreter.
+	 * @return this.instance
+	 */
+	public Instance instance() { return instance; }
+	
+	/**
+	 * Evaluates the given formula with respect to this.instance and this.options.
+	 * @return the value of the formula
+	 * @throws NullPointerException  formula = null
+	 * @throws UnboundLeafException  the formula refers to an undeclared variable or a relation not mapped by the instance
+	 * @throws HigherOrderDeclException  the formula contains a higher order declaration
+	 */
+	public boolean evaluate(Formula formula) {
+		if (formula==null) throw new NullPointerException("formula");
+		reset();
+		try {
+			return formula.accept(this);
+		} catch (Overflow of) {
+			return Translator.evaluate(formula, instance, options).booleanValue();
+		}
+	}
+	
+	/**
+	 * Evaluates the given expression with respect to this.instance and this.options.
+	 * @return the set of tuples to which the expression evaluates
+	 * @throws NullPointerException  expression = null
+	 * @throws UnboundLeafException  the expression refers to an undeclared variable or a relation not mapped by the instance
+	 * @throws HigherOrderDeclException  the expression contains a higher order declaration
+	 */
+	public TupleSet evaluate(Expression expression) {
+		if (expression==null) throw new NullPointerException("expression");
+		reset();
+		IntSet ret;
+		try {
+			ret = expression.accept(this);
+		} catch (Overflow of) {
+			ret = Translator.evaluate(expression, instance, options).denseIndices();
+		}
+		return instance.universe().factory().setOf(expression.arity(), ret);
+	}
+	
+	/**
+	 * Evaluates the given integer expression with respect to this.instance and this.options.
+	 * @return the integer to which the expression evaluates
+	 * @throws NullPointerException  intExpr = null
+	 * @throws UnboundLeafException  the expression refers to an undeclared variable or a relation not mapped by the instance
+	 * @throws HigherOrderDeclException  the expression contains a higher order declaration
+	 */
+	public int evaluate(IntExpression intExpr) {
+		if (intExpr==null) throw new NullPointerException("intExpr");
+		reset();
+		try {
+			return intExpr.accept(this);
+		} catch (Overflow of) {
+			return Translator.evaluate(intExpr, instance, options).value();
+		}
+	}
+	
+	/**
+	 * Clears the variable bindings left by an interrupted evaluation, and 
+	 * this.cache if a relation or an integer of this.instance has been remapped
+	 * since it was filled.
+	 */
+	private void reset() {
+		depth = 0;
+		reads = Integer.MAX_VALUE;
+		final Iterator<TupleSet> old = snapshot.iterator();
+		boolean valid = univ != null;
+		for(TupleSet s : instance.relationTuples().values()) {
+			valid = valid && old.hasNext() && old.next()==s;
+		}
+		for(IndexedEntry<TupleSet> e : instance.intTuples()) {
+			valid = valid && old.hasNext() && old.next()==e.value();
+		}
+		if (valid && !old.hasNext()) return;
+		
+		cache.clear();
+		snapshot.clear();
+		snapshot.addAll(instance.relationTuples().values());
+		for(IndexedEntry<TupleSet> e : instance.intTuples()) {
+			snapshot.add(e.value());
+		}
+		
+		univ = Ints.rangeSet(Ints.range(0, univSize-1));
+		iden = newSet(2);
+		for(int i = 0; i < univSize; i++) {
+			iden.add(i*univSize + i);
+		}
+		ints = newSet(1);
+		final IntSet indices = instance.ints();
+		intValues = indices.toArray();
+		intAtoms = new int[intValues.length];
+		for(int i = 0; i < intValues.length; i++) {
+			intAtoms[i] = instance.tuples(intValues[i]).indexView().min();
+			ints.add(intAtoms[i]);
+		}
+	}
+	
+	/*--------------------- memoization ---------------------*/
+	
+	/**
+	 * Starts the evaluation of a node.
+	 * @ensures this.reads' = Integer.MAX_VALUE
+	 * @return this.reads
+	 */
+	private int enter() {
+		final int outer = reads;
+		reads = Integer.MAX_VALUE;
+		return outer;
+	}
+	
+	/**
+	 * Ends the evaluation of the given node, caching its value if it did not 
+	 * read any of the variables bound around it.
+	 * @requires outer is the value returned by the matching call to enter()
+	 * @ensures this.reads >= this.depth => this.cache' = this.cache ++ node->value
+	 * @ensures this.reads' = min(outer, this.reads)
+	 * @return value
+	 */
+	private <T> T cache(Node node, T value, int outer) {
+		if (reads >= depth) 
+			cache.put(node, value);
+		reads = StrictMath.min(outer, reads);
+		return value;
+	}
+	
+	/**
+	 * Binds the given variable to the tuple with the given index, in a new scope.
+	 */
+	private void bind(Variable variable) {
+		if (depth==vars.length) {
+			final Variable[] v = new Variable[depth*2];
+			final int[] i = new int[depth*2];
+			System.arraycopy(vars, 0, v, 0, depth);
+			System.arraycopy(values, 0, i, 0, depth);
+			vars = v; values = i;
+		}
+		vars[depth++] = variable;
+	}
+	
+	/*--------------------- relational values ---------------------*/
+	
+	/**
+	 * Returns an empty set that can hold the indices of tuples of the given arity.
+	 * @return an empty set that can hold the indices of tuples of the given arity
+	 */
+	private IntSet newSet(int arity) {
+		return Ints.bestSet(capacity(arity));
+	}
+	
+	/**
+	 * Returns univSize^arity.
+	 * @return univSize^arity
+	 * @throws IllegalArgumentException  univSize^arity > Integer.MAX_VALUE
+	 */
+	private int capacity(int arity) {
+		long ret = 1;
+		for(int i = 0; i < arity; i++) {
+			ret *= univSize;
+			if (ret > Integer.MAX_VALUE) 
+				throw new IllegalArgumentException("Arity too large (" + arity + ") for a universe of size " + univSize);
+		}
+		return (int) ret;
+	}
+	
+	/**
+	 * Returns a copy of the given set.
+	 */
+	private IntSet copy(IntSet s, int arity) {
+		final IntSet ret = newSet(arity);
+		ret.addAll(s);
+		return ret;
+	}
+	
+	/**
+	 * @return left.right 
+	 */
+	private IntSet join(IntSet left, int larity, IntSet right, int rarity) {
+		final IntSet ret = newSet(larity + rarity - 2);
+		if (left.isEmpty() || right.isEmpty()) return ret;
+		final int rowLength = capacity(rarity - 1);
+		for(IntIterator l = left.iterator(); l.hasNext(); ) {
+			final int tuple = l.next();
+			final int first = (tuple % univSize) * rowLength;
+			final int prefix = (tuple / univSize) * rowLength;
+			for(IntIterator r = right.iterator(first, first + rowLength - 1); r.hasNext(); ) {
+				ret.add(prefix + r.next() - first);
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * @return left->right
+	 */
+	private IntSet product(IntSet left, int larity, IntSet right, int rarity) {
+		final IntSet ret = newSet(larity + rarity);
+		if (left.isEmpty() || right.isEmpty()) return ret;
+		final int rowLength = capacity(rarity);
+		for(IntIterator l = left.iterator(); l.hasNext(); ) {
+			final int prefix = l.next() * rowLength;
+			for(IntIterator r = right.iterator(); r.hasNext(); ) {
+				ret.add(prefix + r.next());
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * @return left ++ right
+	 */
+	private IntSet override(IntSet left, IntSet right, int arity) {
+		if (right.isEmpty()) return left;
+		final IntSet ret = copy(right, arity);
+		final int rowLength = capacity(arity - 1);
+		for(IntIterator l = left.iterator(); l.hasNext(); ) {
+			final int tuple = l.next(), first = tuple - tuple % rowLength;
+			if (!right.iterator(first, first + rowLength - 1).hasNext())
+				ret.add(tuple);
+		}
+		return ret;
+	}
+	
+	/**
+	 * @return ~s
+	 */
+	private IntSet transpose(IntSet s) {
+		final IntSet ret = newSet(2);
+		for(IntIterator t = s.iterator(); t.hasNext(); ) {
+			final int tuple = t.next();
+			ret.add((tuple % univSize) * univSize + tuple / univSize);
+		}
+		return ret;
+	}
+	
+	/**
+	 * @return ^s
+	 */
+	private IntSet closure(IntSet s) {
+		final IntSet ret = newSet(2);
+		if (s.isEmpty()) return ret;
+		final int[] queue = new int[univSize+1];
+		final int[] visited = new int[univSize];
+		int source = -1;
+		for(IntIterator t = s.iterator(); t.hasNext(); ) {
+			final int tuple = t.next();
+			if (tuple / univSize == source) continue;
+			source = tuple / univSize;
+			// breadth-first search of the atoms reachable from source
+			int head = 0, tail = 0;
+			queue[tail++] = source;
+			while (head < tail) {
+				final int atom = queue[head++];
+				for(IntIterator r = s.iterator(atom*univSize, atom*univSize + univSize - 1); r.hasNext(); ) {
+					final int next = r.next() % univSize;
+					if (visited[next] != source + 1) {
+						visited[next] = source + 1;
+						ret.add(source*univSize + next);
+						queue[tail++] = next;
+					}
+				}
+			}
+		}
+		return ret;
+	}
+	
+	/*--------------------- integer values ---------------------*/
+	
+	/**
+	 * Returns the given value truncated to this.bitwidth bits.
+	 * @return the two's complement int represented by the this.bitwidth low order bits of value
+	 */
+	private int wrap(long value) {
+		return (int) ((value << (64 - bitwidth)) >> (64 - bitwidth));
+	}
+	
+	/**
+	 * Returns the given value, or throws an Overflow exception if 
+	 * this.options.noOverflow is set and the value cannot be represented
+	 * in this.bitwidth bits.
+	 * @return value
+	 * @throws Overflow  options.noOverflow && value != wrap(value)
+	 */
+	private long checked(long value) {
+		if (options.noOverflow() && value != wrap(value))
+			throw new Overflow();
+		return value;
+	}
+	
+	/**
+	 * Returns the given integer, or throws an Overflow exception if 
+	 * this.options.noOverflow is set and the given circuit signals an overflow.
+	 * @return value
+	 */
+	private int checked(int value, Int circuit) {
+		if (options.noOverflow() && circuit.defCond().getAccumOverflow()==BooleanConstant.TRUE)
+			throw new Overflow();
+		return value;
+	}
+	
+	/**
+	 * Returns the value of the given operation over the given integers, as
+	 * computed by the circuits of a constant factory.
+	 * @return left op right
+	 */
+	private int circuit(BinaryIntExpression intExpr, int left, int right) {
+		if (factory==null) 
+			factory = BooleanFactory.constantFactory(options);
+		final Int l = factory.integer(left), r = factory.integer(right), ret;
+		switch(intExpr.op()) {
+		case DIVIDE 	: ret = l.divide(r); break;
+		case MODULO		: ret = l.modulo(r); break;
+		case SHL		: ret = l.shl(r); break;
+		case SHR		: ret = l.shr(r); break;
+		case SHA		: ret = l.sha(r); break;
+		default    :
+			throw new IllegalArgumentException("Unknown operator: " + intExpr.op());
+		}
+		return checked(ret.value(), ret);
+	}
+	
+	/*--------------------- declarations and leaves ---------------------*/
+	
+	/**
+	 * Declarations are evaluated by the quantified formulas, comprehensions and 
+	 * sums that declare them.
+	 * @throws UnsupportedOperationException
+	 */
+	public IntSet visit(Decls decls) {
+		throw new UnsupportedOperationException("Cannot evaluate declarations: " + decls);
+	}
+	
+	/**
+	 * Returns the value of decl.expression.
+	 * @return decl.expression.accept(this)
+	 * @throws HigherOrderDeclException  decl.multiplicity != ONE
+	 */
+	public IntSet visit(Decl decl) {
+		if (decl.multiplicity()!=Multiplicity.ONE)
+			throw new HigherOrderDeclException(decl);
+		return decl.expression().accept(this);
+	}
+	
+	/**
+	 * Returns the tuple to which the given variable is bound.
+	 * @return { this.values[i] } where i is the position of the innermost binding of the variable
+	 * @throws UnboundLeafException  the variable is not bound
+	 */
+	public IntSet visit(Variable variable) {
+		for(int i = depth-1; i >= 0; i--) {
+			if (vars[i]==variable) {
+				reads = StrictMath.min(reads, i);
+				return Ints.singleton(values[i]);
+			}
+		}
+		throw new UnboundLeafException("Unbound variable", variable);
+	}
+	
+	/**
+	 * Returns the tuples of the given relation in this.instance.
+	 * @return this.instance.tuples(relation).indexView()
+	 * @throws UnboundLeafException  relation !in this.instance.relations
+	 */
+	public IntSet visit(Relation relation) {
+		final TupleSet ret = instance.tuples(relation);
+		if (ret==null)
+			throw new UnboundLeafException("Unbound relation: ", relation);
+		return ret.indexView();
+	}
+	
+	/**
+	 * Returns the tuples of the given constant expression.
+	 * @return the tuples of the given constant expression
+	 */
+	public IntSet visit(ConstantExpression constExpr) {
+		if (constExpr==Expression.UNIV) return univ;
+		else if (constExpr==Expression.IDEN) return iden;
+		else if (constExpr==Expression.NONE) return Ints.EMPTY_SET;
+		else if (constExpr==Expression.INTS) return ints;
+		else throw new IllegalArgumentException("unknown constant expression: " + constExpr);
+	}
+	
+	/*--------------------- expressions ---------------------*/
+	
+	/**
+	 * @return binExpr.left.accept(this) binExpr.op binExpr.right.accept(this)
+	 */
+	public IntSet visit(BinaryExpression binExpr) {
+		IntSet ret = (IntSet) cache.get(binExpr);
+		if (ret!=null) return ret;
+		final int outer = enter();
+		final Expression l = binExpr.left(), r = binExpr.right();
+		final IntSet left = l.accept(this), right = r.accept(this);
+		switch(binExpr.op()) {
+		case UNION        	: ret = copy(left, l.arity()); ret.addAll(right); break;
+		case INTERSECTION	: ret = copy(left, l.arity()); ret.retainAll(right); break;
+		case DIFFERENCE 	: ret = copy(left, l.arity()); ret.removeAll(right); break;
+		case OVERRIDE 		: ret = override(left, right, l.arity()); break;
+		case JOIN 			: ret = join(left, l.arity(), right, r.arity()); break;
+		case PRODUCT		: ret = product(left, l.arity(), right, r.arity()); break;
+		default : 
+			throw new IllegalArgumentException("Unknown operator: " + binExpr.op());
+		}
+		return cache(binExpr, ret, outer);
+	}
+	
+	/**
+	 * @return expr.child(0).accept(this) expr.op ... expr.op expr.child(expr.size-1).accept(this)
+	 */
+	public IntSet visit(NaryExpression expr) {
+		IntSet ret = (IntSet) cache.get(expr);
+		if (ret!=null) return ret;
+		final int outer = enter();
+		ret = expr.child(0).accept(this);
+		int arity = expr.child(0).arity();
+		switch(expr.op()) {
+		case UNION : 
+			ret = copy(ret, arity);
+			for(int i = 1; i < expr.size(); i++) { ret.addAll(expr.child(i).accept(this)); }
+			break;
+		case INTERSECTION : 
+			ret = copy(ret, arity);
+			for(int i = 1; i < expr.size(); i++) { ret.retainAll(expr.child(i).accept(this)); }
+			break;
+		case OVERRIDE : 
+			for(int i = 1; i < expr.size(); i++) { ret = override(ret, expr.child(i).accept(this), arity); }
+			break;
+		case PRODUCT : 
+			for(int i = 1; i < expr.size(); i++) { 
+				final Expression child = expr.child(i);
+				ret = product(ret, arity, child.accept(this), child.arity()); 
+				arity += child.arity();
+			}
+			break;
+		default : 
+			throw new IllegalArgumentException("Unknown associative operator: " + expr.op());
+		}
+		return cache(expr, ret, outer);
+	}
+	
+	/**
+	 * @return unaryExpr.op(unaryExpr.expression.accept(this))
+	 */
+	public IntSet visit(UnaryExpression unaryExpr) {
+		IntSet ret = (IntSet) cache.get(unaryExpr);
+		if (ret!=null) return ret;
+		final int outer = enter();
+		final IntSet child = unaryExpr.expression().accept(this);
+		switch(unaryExpr.op()) {
+		case TRANSPOSE         	: ret = transpose(child); break;
+		case CLOSURE           	: ret = closure(child); break;
+		case REFLEXIVE_CLOSURE	: ret = closure(child); ret.addAll(iden); break;
+		default : 
+			throw new IllegalArgumentException("Unknown operator: " + unaryExpr.op());
+		}
+		return cache(unaryExpr, ret, outer);
+	}
+	
+	/**
+	 * Adds to the given set the tuples a_0->...->a_n such that each a_i is in the 
+	 * value of the ith declaration, and the formula holds when each variable is 
+	 * bound to its a_i.
+	 */
+	private void comprehension(Decls decls, Formula formula, int currentDecl, int partialIndex, IntSet ret) {
+		if (currentDecl==decls.size()) {
+			if (formula.accept(this)) 
+				ret.add(partialIndex);
+			return;
+		}
+		final Decl decl = decls.get(currentDecl);
+		final IntSet declValue = visit(decl);
+		final int position = capacity(decls.size()-currentDecl-1);
+		bind(decl.variable());
+		for(IntIterator iter = declValue.iterator(); iter.hasNext(); ) {
+			final int tuple = iter.next();
+			values[depth-1] = tuple;
+			comprehension(decls, formula, currentDecl+1, partialIndex + tuple*position, ret);
+		}
+		depth--;
+	}
+	
+	/**
+	 * @return { cexpr.decls | cexpr.formula }
+	 */
+	public IntSet visit(Comprehension cexpr) {
+		IntSet ret = (IntSet) cache.get(cexpr);
+		if (ret!=null) return ret;
+		final int outer = enter();
+		ret = newSet(cexpr.arity());
+		comprehension(cexpr.decls(), cexpr.formula(), 0, 0, ret);
+		return cache(cexpr, ret, outer);
+	}
+	
+	/**
+	 * @return ifExpr.condition.accept(this) ? ifExpr.thenExpr.accept(this) : ifExpr.elseExpr.accept(this)
+	 */
+	public IntSet visit(IfExpression ifExpr) {
+		IntSet ret = (IntSet) cache.get(ifExpr);
+		if (ret!=null) return ret;
+		final int outer = enter();
+		ret = ifExpr.condition().accept(this) ? ifExpr.thenExpr().accept(this) : ifExpr.elseExpr().accept(this);
+		return cache(ifExpr, ret, outer);
+	}
+	
+	/**
+	 * Returns the projection of project.expression onto the columns given by the
+	 * values of project.columns, or the empty set if one of them is not a column
+	 * of project.expression.
+	 * @return project.expression.accept(this) projected onto the values of project.columns
+	 */
+	public IntSet visit(ProjectExpression project) {
+		IntSet ret = (IntSet) cache.get(project);
+		if (ret!=null) return ret;
+		final int outer = enter();
+		final int arity = project.arity(), exprArity = project.expression().arity();
+		final int[] cols = new int[arity];
+		boolean valid = true;
+		for(int i = 0; i < arity; i++) {
+			cols[i] = project.column(i).accept(this);
+			valid = valid && cols[i] >= 0 && cols[i] < exprArity;
+		}
+		final IntSet expr = project.expression().accept(this);
+		ret = newSet(arity);
+		if (valid) {
+			final int[] tuple = new int[exprArity];
+			for(IntIterator iter = expr.iterator(); iter.hasNext(); ) {
+				int index = iter.next();
+				for(int i = exprArity-1; i >= 0; i--) {
+					tuple[i] = index % univSize;
+					index /= univSize;
+				}
+				int projected = 0;
+				for(int i = 0; i < arity; i++) {
+					projected = projected*univSize + tuple[cols[i]];
+				}
+				ret.add(projected);
+			}
+		}
+		return cache(project, ret, outer);
+	}
+	
+	/**
+	 * Returns the atoms that represent the integers with the value of castExpr.intExpr,
+	 * if castExpr.op is INTCAST, or the atoms that represent the powers of two in the
+	 * two's complement representation of that value, if castExpr.op is BITSETCAST.
+	 * @return castExpr.intExpr.accept(this) cast to a set of atoms
+	 */
+	public IntSet visit(IntToExprCast castExpr) {
+		IntSet ret = (IntSet) cache.get(castExpr);
+		if (ret!=null) return ret;
+		final int outer = enter();
+		final int child = castExpr.intExpr().accept(this);
+		ret = newSet(1);
+		switch(castExpr.op()) {
+		case INTCAST : 
+			for(int i = 0; i < intValues.length; i++) {
+				if (wrap(checked(intValues[i]))==child)
+					ret.add(intAtoms[i]);
+			}
+			break;
+		case BITSETCAST : 
+			final int msb = bitwidth-1;
+			for(int i = 0; i < intValues.length; i++) {
+				final int value = intValues[i];
+				if (value==(-1<<msb) ? child < 0 : 
+					(value > 0 && value == (1<<Integer.numberOfTrailingZeros(value)) && 
+					 Integer.numberOfTrailingZeros(value) < msb && (child & value) != 0))
+					ret.add(intAtoms[i]);
+			}
+			break;
+		default : 
+			throw new IllegalArgumentException("Unknown cast operator: " + castExpr.op());
+		}
+		return cache(castExpr, ret, outer);
+	}
+	
+	/*--------------------- integer expressions ---------------------*/
+	
+	/**
+	 * @return intConst.value truncated to this.bitwidth bits
+	 */
+	public Integer visit(IntConstant intConst) {
+		return wrap(checked(intConst.value()));
+	}
+	
+	/**
+	 * @return intExpr.condition.accept(this) ? intExpr.thenExpr.accept(this) : intExpr.elseExpr.accept(this)
+	 */
+	public Integer visit(IfIntExpression intExpr) {
+		Integer ret = (Integer) cache.get(intExpr);
+		if (ret!=null) return ret;
+		final int outer = enter();
+		ret = intExpr.condition().accept(this) ? intExpr.thenExpr().accept(this) : intExpr.elseExpr().accept(this);
+		return cache(intExpr, ret, outer);
+	}
+	
+	/**
+	 * Returns the cardinality of intExpr.expression, if intExpr.op is CARDINALITY, or
+	 * the sum of the integers represented by the atoms in intExpr.expression, if 
+	 * intExpr.op is SUM, truncated to this.bitwidth bits.  If this.options.noOverflow 
+	 * is set, an Overflow is thrown if the cardinality, an integer of this.instance, or 
+	 * the sum of the absolute values of the summed integers, is not representable in 
+	 * this.bitwidth bits.
+	 * @return #intExpr.expression or sum(intExpr.expression)
+	 */
+	public Integer visit(ExprToIntCast intExpr) {
+		Integer ret = (Integer) cache.get(intExpr);
+		if (ret!=null) return ret;
+		final int outer = enter();
+		final IntSet expr = intExpr.expression().accept(this);
+		switch(intExpr.op()) {
+		case CARDINALITY : 
+			ret = wrap(checked(expr.size())); 
+			break;
+		case SUM :
+			long sum = 0, abs = 0;
+			for(int i = 0; i < intValues.length; i++) {
+				// the circuit of every integer of the instance is summed, so any of them may overflow
+				final int value = wrap(checked(intValues[i]));
+				if (expr.contains(intAtoms[i])) {
+					sum += value;
+					abs += StrictMath.abs((long)value);
+				}
+			}
+			checked(abs);
+			ret = wrap(sum);
+			break;
+		default: 
+			throw new IllegalArgumentException("unknown operator: " + intExpr.op());
+		}
+		return cache(intExpr, ret, outer);
+	}
+	
+	/**
+	 * @return intExpr.left.accept(this) intExpr.op intExpr.right.accept(this)
+	 */
+	public Integer visit(BinaryIntExpression intExpr) {
+		Integer ret = (Integer) cache.get(intExpr);
+		if (ret!=null) return ret;
+		final int outer = enter();
+		final long left = intExpr.left().accept(this), right = intExpr.right().accept(this);
+		switch(intExpr.op()) {
+		case PLUS  		: ret = wrap(checked(left + right)); break;
+		case MINUS 		: ret = wrap(checked(left - right)); break;
+		case MULTIPLY 	: ret = wrap(checked(left * right)); break;
+		case AND		: ret = (int) (left & right); break;
+		case OR			: ret = (int) (left | right); break;
+		case XOR		: ret = (int) (left ^ right); break;
+		default    		: ret = circuit(intExpr, (int) left, (int) right); 
+		}
+		return cache(intExpr, ret, outer);
+	}
+	
+	/**
+	 * If this.options.noOverflow is set and intExpr.op is PLUS or MULTIPLY, an 
+	 * Overflow is thrown if the sum or the product of the absolute values of the 
+	 * children is not representable in this.bitwidth bits, since the circuit 
+	 * flags the overflows of its partial results.
+	 * @return intExpr.child(0).accept(this) intExpr.op ... intExpr.op intExpr.child(intExpr.size-1).accept(this)
+	 */
+	public Integer visit(NaryIntExpression intExpr) {
+		Integer ret = (Integer) cache.get(intExpr);
+		if (ret!=null) return ret;
+		final int outer = enter();
+		long value = intExpr.child(0).accept(this), abs = StrictMath.abs(value);
+		for(int i = 1; i < intExpr.size(); i++) { 
+			final long child = intExpr.child(i).accept(this);
+			switch(intExpr.op()) { 
+			case PLUS  		: value += child; abs = checked(abs + StrictMath.abs(child)); break;
+			case MULTIPLY 	: value = wrap(value * child); abs = checked(abs * StrictMath.abs(child)); break;
+			case AND		: value &= child; break;
+			case OR			: value |= child; break;
+			default    :
+				throw new IllegalArgumentException("Unknown nary operator: " + intExpr.op());
+			}
+		}
+		return cache(intExpr, wrap(value), outer);
+	}
+	
+	/**
+	 * @return intExpr.op(intExpr.intExpr.accept(this))
+	 */
+	public Integer visit(UnaryIntExpression intExpr) {
+		Integer ret = (Integer) cache.get(intExpr);
+		if (ret!=null) return ret;
+		final int outer = enter();
+		final long child = intExpr.intExpr().accept(this);
+		switch(intExpr.op()) {
+		case NEG 	: ret = wrap(checked(-child)); break;
+		case NOT 	: ret = (int) ~child; break;
+		case ABS 	: ret = wrap(checked(StrictMath.abs(child))); break;
+		case SGN 	: ret = Long.signum(child); break;
+		default : 
+			throw new IllegalArgumentException("Unknown operator: " + intExpr.op());
+		}
+		return cache(intExpr, ret, outer);
+	}
+	
+	/**
+	 * Adds to sum[0] the values of the given expression for all bindings of the
+	 * declared variables, and to sum[1] their absolute values.
+	 */
+	private void sum(Decls decls, IntExpression expr, int currentDecl, long[] sum) {
+		if (currentDecl==decls.size()) {
+			final int value = expr.accept(this);
+			sum[0] += value;
+			sum[1] = checked(sum[1] + StrictMath.abs((long)value));
+			return;
+		}
+		final Decl decl = decls.get(currentDecl);
+		final IntSet declValue = visit(decl);
+		bind(decl.variable());
+		for(IntIterator iter = declValue.iterator(); iter.hasNext(); ) {
+			values[depth-1] = iter.next();
+			sum(decls, expr, currentDecl+1, sum);
+		}
+		depth--;
+	}
+	
+	/**
+	 * If this.options.noOverflow is set, an Overflow is thrown if the sum of the 
+	 * absolute values of the summed integers is not representable in this.bitwidth bits.
+	 * @return sum intExpr.decls | intExpr.intExpr
+	 */
+	public Integer visit(SumExpression intExpr) {
+		Integer ret = (Integer) cache.get(intExpr);
+		if (ret!=null) return ret;
+		final int outer = enter();
+		final long[] sum = new long[2];
+		sum(intExpr.decls(), intExpr.intExpr(), 0, sum);
+		return cache(intExpr, wrap(sum[0]), outer);
+	}
+	
+	/*--------------------- formulas ---------------------*/
+	
+	/**
+	 * @return intComp.left.accept(this) intComp.op intComp.right.accept(this)
+	 */
+	public Boolean visit(IntComparisonFormula intComp) {
+		Boolean ret = (Boolean) cache.get(intComp);
+		if (ret!=null) return ret;
+		final int outer = enter();
+		final int left = intComp.left().accept(this), right = intComp.right().accept(this);
+		switch(intComp.op()) {
+		case EQ  : ret = left == right; break;
+		case NEQ : ret = left != right; break;
+		case LT  : ret = left < right; break;
+		case LTE : ret = left <= right; break;
+		case GT  : ret = left > right; break;
+		case GTE : ret = left >= right; break;
+		default: 
+			throw new IllegalArgumentException("Unknown operator: " + intComp.op());
+		}
+		return cache(intComp, ret, outer);
+	}
+	
+	/**
+	 * Returns true if the given formula holds for all bindings of the declared
+	 * variables, if all is true, or for some binding, if all is false.
+	 */
+	private boolean quantify(Decls decls, Formula formula, int currentDecl, boolean all) {
+		if (currentDecl==decls.size()) 
+			return formula.accept(this);
+		final Decl decl = decls.get(currentDecl);
+		final IntSet declValue = visit(decl);
+		bind(decl.variable());
+		boolean ret = all;
+		for(IntIterator iter = declValue.iterator(); ret==all && iter.hasNext(); ) {
+			values[depth-1] = iter.next();
+			ret = quantify(decls, formula, currentDecl+1, all);
+		}
+		depth--;
+		return ret;
+	}
+	
+	/**
+	 * @return quantFormula.quantifier quantFormula.decls | quantFormula.formula
+	 */
+	public Boolean visit(QuantifiedFormula quantFormula) {
+		Boolean ret = (Boolean) cache.get(quantFormula);
+		if (ret!=null) return ret;
+		final int outer = enter();
+		switch(quantFormula.quantifier()) {
+		case ALL	: ret = quantify(quantFormula.decls(), quantFormula.formula(), 0, true); break;
+		case SOME	: ret = quantify(quantFormula.decls(), quantFormula.formula(), 0, false); break;
+		default :
+			throw new IllegalArgumentException("Unknown quantifier: " + quantFormula.quantifier());
+		}
+		return cache(quantFormula, ret, outer);
+	}
+	
+	/**
+	 * @return formula.child(0).accept(this) formula.op ... formula.op formula.child(formula.size-1).accept(this)
+	 */
+	public Boolean visit(NaryFormula formula) {
+		Boolean ret = (Boolean) cache.get(formula);
+		if (ret!=null) return ret;
+		final int outer = enter();
+		final boolean shortCircuit;
+		switch(formula.op()) { 
+		case AND : shortCircuit = false; break;
+		case OR  : shortCircuit = true;  break;
+		default	 : throw new IllegalArgumentException("Unknown nary operator: " + formula.op());
+		}
+		ret = !shortCircuit;
+		for(Formula child : formula) { 
+			if (child.accept(this)==shortCircuit) {
+				ret = shortCircuit;
+				break;
+			}
+		}
+		return cache(formula, ret, outer);
+	}
+	
+	/**
+	 * @return binFormula.left.accept(this) binFormula.op binFormula.right.accept(this)
+	 */
+	public Boolean visit(BinaryFormula binFormula) {
+		Boolean ret = (Boolean) cache.get(binFormula);
+		if (ret!=null) return ret;
+		final int outer = enter();
+		final boolean left = binFormula.left().accept(this);
+		switch(binFormula.op()) {
+		case AND		: ret = left && binFormula.right().accept(this); break;
+		case OR			: ret = left || binFormula.right().accept(this); break;
+		case IMPLIES	: ret = !left || binFormula.right().accept(this); break;
+		case IFF		: ret = left == binFormula.right().accept(this); break;
+		default : 
+			throw new IllegalArgumentException("Unknown operator: " + binFormula.op());
+		}
+		return cache(binFormula, ret, outer);
+	}
+	
+	/**
+	 * @return !not.formula.accept(this)
+	 */
+	public Boolean visit(NotFormula not) {
+		Boolean ret = (Boolean) cache.get(not);
+		if (ret!=null) return ret;
+		final int outer = enter();
+		return cache(not, !not.formula().accept(this), outer);
+	}
+	
+	/**
+	 * @return constant.booleanValue
+	 */
+	public Boolean visit(ConstantFormula constant) {
+		return constant.booleanValue();
+	}
+	
+	/**
+	 * @return compFormula.left.accept(this) compFormula.op compFormula.right.accept(this)
+	 */
+	public Boolean visit(ComparisonFormula compFormula) {
+		Boolean ret = (Boolean) cache.get(compFormula);
+		if (ret!=null) return ret;
+		final int outer = enter();
+		final IntSet left = compFormula.left().accept(this), right = compFormula.right().accept(this);
+		switch(compFormula.op()) {
+		case SUBSET	: ret = right.containsAll(left); break;
+		case EQUALS	: ret = left.size()==right.size() && right.containsAll(left); break;
+		default : 
+			throw new IllegalArgumentException("Unknown operator: " + compFormula.op());
+		}
+		return cache(compFormula, ret, outer);
+	}
+	
+	/**
+	 * @return multFormula.multiplicity multFormula.expression
+	 */
+	public Boolean visit(MultiplicityFormula multFormula) {
+		Boolean ret = (Boolean) cache.get(multFormula);
+		if (ret!=null) return ret;
+		final int outer = enter();
+		final int size = multFormula.expression().accept(this).size();
+		switch(multFormula.multiplicity()) {
+		case NO 	: ret = size==0; break;
+		case SOME	: ret = size > 0; break;
+		case ONE 	: ret = size==1; break;
+		case LONE 	: ret = size <= 1; break;
+		default : 
+			throw new IllegalArgumentException("Unknown multiplicity: " + multFormula.multiplicity());
+		}
+		return cache(multFormula, ret, outer);
+	}
+	
+	/**
+	 * @return pred.toConstraints().accept(this)
+	 */
+	public Boolean visit(RelationPredicate pred) {
+		Boolean ret = (Boolean) cache.get(pred);
+		if (ret!=null) return ret;
+		final int outer = enter();
+		return cache(pred, pred.toConstraints().accept(this), outer);
+	}
+	
+	/*--------------------- temporal nodes ---------------------*/
+	
+	/**
+	 * Evaluates the static version of the formula, as does the translator.
+	 * @return temporalFormula.formula.accept(this)
+	 */
+	public Boolean visit(UnaryTempFormula temporalFormula) {
+		return temporalFormula.formula().accept(this);
+	}
+	
+	/**
+	 * Evaluates the static version of the formula, as does the translator.
+	 * @return the static version of temporalFormula.accept(this)
+	 */
+	public Boolean visit(BinaryTempFormula temporalFormula) {
+		if (temporalFormula.op() == TemporalOperator.UNTIL)
+			return temporalFormula.right().accept(this);
+		else if (temporalFormula.op() == TemporalOperator.RELEASES)
+			return temporalFormula.left().accept(this) || temporalFormula.right().accept(this);
+		else
+			return temporalFormula.left().accept(this);
+	}
+	
+	/**
+	 * Evaluates the static version of the expression, as does the translator.
+	 * @return temporalExpr.expression.accept(this)
+	 */
+	public IntSet visit(TempExpression temporalExpr) {
+		return temporalExpr.expression().accept(this);
+	}
+	
+	/**
+	 * Signals that an evaluation under options.noOverflow met an integer 
+	 * operation that may overflow.
+	 */
+	@SuppressWarnings("serial")
+	private static final class Overflow extends RuntimeException {
+		Overflow() { super(null, null, false, false); }
+	}
+}
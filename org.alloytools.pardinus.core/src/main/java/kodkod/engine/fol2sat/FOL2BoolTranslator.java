@@ -24,8 +24,15 @@ package kodkod.engine.fol2sat;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import kodkod.ast.BinaryExpression;
 import kodkod.ast.BinaryFormula;
@@ -63,9 +70,11 @@ import kodkod.ast.UnaryExpression;
 import kodkod.ast.UnaryIntExpression;
 import kodkod.ast.UnaryTempFormula;
 import kodkod.ast.Variable;
+import kodkod.ast.operator.ExprCastOperator;
 import kodkod.ast.operator.ExprCompOperator;
 import kodkod.ast.operator.ExprOperator;
 import kodkod.ast.operator.FormulaOperator;
+import kodkod.ast.operator.IntCompOperator;
 import kodkod.ast.operator.Multiplicity;
 import kodkod.ast.operator.Quantifier;
 import kodkod.ast.operator.TemporalOperator;
@@ -73,11 +82,14 @@ import kodkod.ast.visitor.ReturnVisitor;
 import kodkod.engine.bool.BooleanAccumulator;
 import kodkod.engine.bool.BooleanConstant;
 import kodkod.engine.bool.BooleanFactory;
+import kodkod.engine.bool.BooleanFormula;
 import kodkod.engine.bool.BooleanMatrix;
 import kodkod.engine.bool.BooleanValue;
 import kodkod.engine.bool.Dimensions;
 import kodkod.engine.bool.Int;
 import kodkod.engine.bool.Operator;
+import kodkod.engine.config.Options;
+import kodkod.engine.config.Options.CardinalityEncoding;
 import kodkod.util.ints.IndexedEntry;
 import kodkod.util.ints.IntIterator;
 import kodkod.util.ints.IntSet;
@@ -112,6 +124,81 @@ abstract class FOL2BoolTranslator implements ReturnVisitor<BooleanMatrix, Boolea
 		return (T) annotated.node().accept(translator);
 	}
 
+	/**
+	 * Translates the given annotated formula into a boolean value, using the provided 
+	 * interpreter and up to options.translationThreads threads.  The {@linkplain Nodes#roots(Formula) roots}
+	 * of the formula are split into contiguous groups, and each group is translated by its own 
+	 * thread into a {@linkplain LeafInterpreter#fork(Options) fork} of the interpreter.  The circuits of the 
+	 * groups are then {@linkplain BooleanFactory#copy(BooleanValue, Map) copied} into interpreter.factory 
+	 * in the order of the roots.  The groups depend only on the formula and on the number of threads, 
+	 * so the labels of the resulting gates do not depend on the order in which the threads finish.  
+	 * Nodes shared by the roots of different groups are translated once per group.
+	 * @requires interpreter.relations = AnnotatedNode.relations(annotated)
+	 * @requires interpreter.factory.components & BooleanVariable = 
+	 *           { v: BooleanVariable | 0 < v.label <= interpreter.factory.numberOfVariables() }
+	 * @return a boolean value that is the meaning of the given annotated formula with respect to the given interpreter
+	 * @throws HigherOrderDeclException  annotated.node contains a higher order declaration
+	 * @throws UnboundLeafException  annotated.node refers to an undeclared variable 
+	 **/
+	static final BooleanValue translate(final AnnotatedNode<Formula> annotated, LeafInterpreter interpreter, final Options options) {
+		final BooleanFactory factory = interpreter.factory();
+		if (options.translationThreads() < 2 || factory.numberOfVariables() == 0) {
+			return translate(annotated, interpreter);
+		}
+		final List<Formula> roots = new ArrayList<Formula>(Nodes.roots(annotated.node()));
+		final int groups = StrictMath.min(roots.size(), options.translationThreads() * GROUPS_PER_THREAD);
+		if (groups < 2) {
+			return translate(annotated, interpreter);
+		}
+		
+		final ExecutorService executor = Executors.newFixedThreadPool(StrictMath.min(groups, options.translationThreads()), new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				final Thread thread = new Thread(r, "kodkod-translation");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			final List<Future<BooleanValue>> parts = new ArrayList<Future<BooleanValue>>(groups);
+			for(int i = 0; i < groups; i++) {
+				final List<Formula> group = roots.subList(i * roots.size() / groups, (i + 1) * roots.size() / groups);
+				final LeafInterpreter fork = interpreter.fork(options);
+				parts.add(executor.submit(new Callable<BooleanValue>() {
+					public BooleanValue call() {
+						final FOL2BoolTranslator translator = new FOL2BoolTranslator(new FOL2BoolCache(annotated), fork) {};
+						final BooleanAccumulator acc = BooleanAccumulator.treeGate(Operator.AND);
+						for(Formula root : group) {
+							if (acc.add(root.accept(translator))==BooleanConstant.FALSE)
+								break;
+						}
+						return fork.factory().accumulate(acc);
+					}
+				}));
+			}
+			
+			final BooleanAccumulator acc = BooleanAccumulator.treeGate(Operator.AND);
+			for(Future<BooleanValue> part : parts) {
+				final BooleanValue value = part.get();
+				if (acc.add(factory.copy(value, new IdentityHashMap<BooleanFormula, BooleanValue>()))==BooleanConstant.FALSE)
+					break;
+			}
+			return factory.accumulate(acc);
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new IllegalStateException(cause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while translating", e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/** The number of groups of roots created per translation thread, so that threads that finish early can take more work. */
+	private static final int GROUPS_PER_THREAD = 4;
+
 	/**
 	 * Translates the given annotated formula into a boolean
 	 * accumulator with respect to the given interpreter and logs the translation events to the given logger.  
@@ -1067,27 +1154,114 @@ abstract class FOL2BoolTranslator implements ReturnVisitor<BooleanMatrix, Boolea
 	 * formulas, so that's where the overflow circuits of individual 
 	 * <code>Int</code>s are built into the translated formula.  
 	 * 
+	 * Comparisons between the cardinality of an expression and a constant
+	 * are translated by {@link #compareCardinality(ExprToIntCast, IntCompOperator, IntConstant)}.
+	 * 
 	 * @return let t = lookup(intComp) | some t => t, 
 	 * 	cache(intComp, intComp.left.accept(this) intComp.op intComp.right.accept(this))
 	 */
 	public final BooleanValue visit(IntComparisonFormula intComp) {
 		BooleanValue ret = lookup(intComp);
 		if (ret!=null) return ret;
-		final Int left = intComp.left().accept(this);
-		final Int right = intComp.right().accept(this);
-		switch(intComp.op()) {
-		case EQ  : ret = left.eq(right, env); break;
-		case NEQ : ret = left.neq(right, env); break;
-		case LT  : ret = left.lt(right, env); break;
-		case LTE : ret = left.lte(right, env); break;
-		case GT  : ret = left.gt(right, env); break;
-		case GTE : ret = left.gte(right, env); break;
-		default: 
-			throw new IllegalArgumentException("Unknown operator: " + intComp.op());
+		final IntExpression left = intComp.left(), right = intComp.right();
+		if (isCardinality(left) && right instanceof IntConstant) {
+			ret = compareCardinality((ExprToIntCast) left, intComp.op(), (IntConstant) right);
+		} else if (isCardinality(right) && left instanceof IntConstant) {
+			ret = compareCardinality((ExprToIntCast) right, converse(intComp.op()), (IntConstant) left);
+		} else {
+			ret = compare(left.accept(this), intComp.op(), right.accept(this));
 		}
 		return cache(intComp, ret);
 	}
 	
+	/**
+	 * Returns the translation of left op right.
+	 * @return left op right
+	 */
+	private BooleanValue compare(Int left, IntCompOperator op, Int right) {
+		switch(op) {
+		case EQ  : return left.eq(right, env);
+		case NEQ : return left.neq(right, env);
+		case LT  : return left.lt(right, env);
+		case LTE : return left.lte(right, env);
+		case GT  : return left.gt(right, env);
+		case GTE : return left.gte(right, env);
+		default: 
+			throw new IllegalArgumentException("Unknown operator: " + op);
+		}
+	}
+	
+	/**
+	 * Returns true if the given expression is the cardinality of a relational expression.
+	 */
+	private static boolean isCardinality(IntExpression intExpr) { 
+		return intExpr instanceof ExprToIntCast && ((ExprToIntCast) intExpr).op()==ExprCastOperator.CARDINALITY;
+	}
+	
+	/**
+	 * Returns the operator op' such that a op b iff b op' a.
+	 */
+	private static IntCompOperator converse(IntCompOperator op) { 
+		switch(op) {
+		case LT  : return IntCompOperator.GT;
+		case LTE : return IntCompOperator.GTE;
+		case GT  : return IntCompOperator.LT;
+		case GTE : return IntCompOperator.LTE;
+		default  : return op;
+		}
+	}
+	
+	/**
+	 * Translates the comparison of the cardinality of an expression with a constant.  
+	 * Unless the cardinality encoding of the factory is ADDER, the entries of the 
+	 * expression's matrix are counted in unary by {@link BooleanMatrix#cardinalityWithin(int, int, Environment)}, 
+	 * instead of being summed by adders into an Int that is compared with the constant.  
+	 * This is only done when both translations have the same meaning: the constant must 
+	 * be representable in the bitwidth, the matrix must have no more entries than the largest 
+	 * integer, and, if overflows are forbidden, the expression must not contain integer 
+	 * expressions that may overflow.  Otherwise the cardinality is translated as by 
+	 * {@link #visit(ExprToIntCast)}.
+	 * @return card op bound
+	 */
+	private BooleanValue compareCardinality(ExprToIntCast card, IntCompOperator op, IntConstant bound) {
+		final BooleanFactory factory = interpreter.factory();
+		Int ret = lookup(card);
+		if (ret==null) {
+			vars = vars.createNested();
+			final BooleanMatrix expr = card.expression().accept(this);
+			final Int k = bound.accept(this);
+			final long maxInt = (1L << (factory.bitwidth() - 1)) - 1;
+			if (factory.cardinalityEncoding()!=CardinalityEncoding.ADDER && expr.density() <= maxInt && 
+				k.defCond().getAccumOverflow()==BooleanConstant.FALSE && 
+				(!factory.noOverflow() || expr.defCond().getAccumOverflow()==BooleanConstant.FALSE)) {
+				vars = vars.parent();
+				final int value = k.value();
+				switch(op) {
+				case EQ  : return expr.cardinalityWithin(value, value, env);
+				case NEQ : return factory.not(expr.cardinalityWithin(value, value, env));
+				case LT  : return expr.cardinalityWithin(0, clamp(value - 1L), env);
+				case LTE : return expr.cardinalityWithin(0, value, env);
+				case GT  : return expr.cardinalityWithin(clamp(value + 1L), Integer.MAX_VALUE, env);
+				case GTE : return expr.cardinalityWithin(value, Integer.MAX_VALUE, env);
+				default: 
+					throw new IllegalArgumentException("Unknown operator: " + op);
+				}
+			}
+			ret = expr.cardinality();
+			for (Variable v : vars) ret.defCond().addVar(v); 
+			vars = vars.parent();
+			ret = cache(card, ret);
+		}
+		return compare(ret, op, bound.accept(this));
+	}
+	
+	/**
+	 * Returns the int closest to the given value.
+	 */
+	private static int clamp(long value) { 
+		return (int) StrictMath.max(Integer.MIN_VALUE, StrictMath.min(Integer.MAX_VALUE, value));
+	}
+	
 	// [HASLab] will ignore the temporal operator and assume static version
 	// Guarantees that the process terminates and is sound for static relations
 	public final BooleanValue visit(UnaryTempFormula temporalFormula) {
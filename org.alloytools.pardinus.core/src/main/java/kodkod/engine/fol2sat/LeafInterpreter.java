@@ -29,6 +29,7 @@ import java.util.Set;
 import kodkod.ast.ConstantExpression;
 import kodkod.ast.Expression;
 import kodkod.ast.Relation;
+import kodkod.engine.CapacityExceededException;
 import kodkod.engine.bool.BooleanFactory;
 import kodkod.engine.bool.BooleanMatrix;
 import kodkod.engine.bool.Dimensions;
@@ -165,6 +166,32 @@ final class LeafInterpreter {
 	 * @ensures min(vars.map'[rels]) = minVar && max(vars.map'[rels]) = minVar + (sum r: rels | vars.map'[r].size()) - 1
 	 * @return sum r: rels | vars.map'[r].size()
 	 */
+	/**
+	 * Throws a CapacityExceededException that names the offending relation if the 
+	 * matrix of some relation in the given bounds would have more than Integer.MAX_VALUE 
+	 * entries.  Tuple sets index such wide relations by longs, so their bounds can be 
+	 * built, but the matrices of the translation are indexed by ints.
+	 * @throws CapacityExceededException  some r: bounds.relations | bounds.universe.size()^r.arity > Integer.MAX_VALUE
+	 */
+	static void checkCapacity(Bounds bounds) {
+		final int size = bounds.universe().size();
+		for(Relation r : bounds.relations()) {
+			checkCapacity(r, size);
+		}
+	}
+	
+	/**
+	 * Throws a CapacityExceededException that names r if its matrix over a universe
+	 * of the given size would have more than Integer.MAX_VALUE entries.
+	 * @throws CapacityExceededException  size^r.arity > Integer.MAX_VALUE
+	 */
+	private static void checkCapacity(Relation r, int size) {
+		if (StrictMath.pow(size, r.arity()) > Integer.MAX_VALUE) {
+			throw new CapacityExceededException("Matrix too large for relation " + r + " of arity " + r.arity() + 
+					" over a universe of size " + size, Ints.nCopies(r.arity(), size));
+		}
+	}
+	
 	private static int allocateVars(int minVar, Map<Relation, IntRange> vars, Set<Relation> rels, Map<Relation, TupleSet> lowers, Map<Relation, TupleSet> uppers) {
 		int maxLit = minVar;
 		for(Relation r : rels) {
@@ -177,6 +204,20 @@ final class LeafInterpreter {
 		return maxLit - minVar;
 	}
 	
+	/**
+	 * Returns an interpreter with the same bindings as this one, but whose factory is a 
+	 * new factory for the given options, with the same variables as this.factory and no gates.
+	 * The two interpreters can be used by different threads.
+	 * @requires this.factory.components & BooleanVariable = { v: BooleanVariable | 0 < v.label <= this.factory.numberOfVariables() }
+	 * @return some l: LeafInterpreter | l.universe = this.universe && l.relations = this.relations && 
+	 *           l.ints = this.ints && l.lbounds = this.lbounds && l.ubounds = this.ubounds && 
+	 *           l.ibounds = this.ibounds && l.vars = this.vars && 
+	 *           l.factory = BooleanFactory.factory(this.factory.numberOfVariables(), options)
+	 */
+	final LeafInterpreter fork(Options options) {
+		return new LeafInterpreter(universe, lowers, uppers, ints, BooleanFactory.factory(factory.numberOfVariables(), options), vars);
+	}
+	
 	/**
 	 * Returns this.factory.
 	 * @return this.factory.
@@ -253,10 +294,12 @@ final class LeafInterpreter {
 	 *           all disj i, j: hset-lset | m.elements[i]+m.elements[j] in this.vars[r] && 
 	 *            m.elements[i].label < m.elements[j].label <=> i < j }
 	 * @throws UnboundLeafException  r !in this.relations
+	 * @throws CapacityExceededException  this.universe.size()^r.arity > Integer.MAX_VALUE
 	 */
 	public final BooleanMatrix interpret(Relation r) {
 		if (!lowers.containsKey(r))
 			throw new UnboundLeafException("Unbound relation: ", r);
+		checkCapacity(r, universe().size());
 		final IntSet lowerBound = lowers.get(r).indexView();
 		final IntSet upperBound = uppers.get(r).indexView();
 		
@@ -72,6 +72,8 @@ import kodkod.util.ints.Ints;
  * @modified Nuno Macedo // [HASLab] decomposed model finding
  */
 final class SymmetryBreaker {
+	/* number of tuples that the automorphism search may visit per unit of options.symmetryBreaking */
+	private static final long AUTOMORPHISM_EFFORT = 1 << 16;
 	private final Bounds stage_bounds; // [HASLab]
 	private final Bounds bounds;
 	private final Set<IntSet> symmetries;
@@ -183,15 +185,20 @@ final class SymmetryBreaker {
 	/**
 	 * Generates a lex leader symmetry breaking predicate for this.symmetries 
 	 * (if any), using the specified leaf interpreter and options.symmetryBreaking.
+	 * If the automorphisms flag is set, the predicate also breaks the 
+	 * {@linkplain AutomorphismDetector automorphisms} of this.bounds that are found 
+	 * with an effort of options.symmetryBreaking. 
 	 * It also invokes options.reporter().generatingSBP() if a non-constant predicate
 	 * is generated.
 	 * @requires interpreter.relations in this.bounds.relations
 	 * @ensures options.reporter().generatingSBP() if a non-constant predicate is generated.
 	 * @return a symmetry breaking predicate for this.symmetries
 	 */
-	final BooleanValue generateSBP(LeafInterpreter interpreter, Options options) {
+	final BooleanValue generateSBP(LeafInterpreter interpreter, Options options, boolean automorphisms) {
 		final int predLength = options.symmetryBreaking();
-		if (symmetries.isEmpty() || predLength==0) return BooleanConstant.TRUE;
+		if (predLength==0) return BooleanConstant.TRUE;
+		final List<int[]> generators = automorphisms ? generators(options) : Collections.<int[]>emptyList();
+		if (symmetries.isEmpty() && generators.isEmpty()) return BooleanConstant.TRUE;
 		options.reporter().generatingSBP();
 		
 		final List<RelationParts> relParts = relParts();
@@ -269,11 +276,56 @@ final class SymmetryBreaker {
 				prevIndex = curIndex;
 			}
 		}
+		
+		for(int[] generator : generators) {
+			for(Iterator<RelationParts> rIter = relParts.iterator(); rIter.hasNext() && original.size() < predLength;) {
+				Relation r = rIter.next().relation;
+				if (!stage_bounds.relations().contains(r))
+					continue;
+				BooleanMatrix m = interpreter.interpret(r);
+				for(IndexedEntry<BooleanValue> entry : m) {
+					int permIndex = permutation(r.arity(), entry.index(), generator);
+					BooleanValue permValue = m.get(permIndex);
+					if (permIndex==entry.index() || atSameIndex(original, permValue, permuted, entry.value()))
+						continue;
+					_original.add(new AbstractMap.SimpleEntry<Relation, Tuple>(r, interpreter.universe().factory().tuple(r.arity(), entry.index()))); // [HASLab]
+					_permuted.add(new AbstractMap.SimpleEntry<Relation, Tuple>(r, interpreter.universe().factory().tuple(r.arity(), permIndex))); // [HASLab]
+					original.add(entry.value());
+					permuted.add(permValue);
+				}
+			}
+			reporter.reportLex(_original,_permuted); // [HASLab]
+			
+			sbp.add(leq(factory, original, permuted));
+			original.clear();
+			permuted.clear();
+			_original.clear(); // [HASLab]
+			_permuted.clear(); // [HASLab]
+		}
 		symmetries.clear(); // no symmetries left to break (this is conservative)
 		
 		return factory.accumulate(sbp);
 	}
 	
+	/**
+	 * Returns the generators of the automorphisms of this.bounds that move atoms across 
+	 * this.symmetries, found with an effort proportional to options.symmetryBreaking.  
+	 * No automorphisms are searched for in decomposed or temporal problems, whose symmetry 
+	 * breaking predicates must also be sound for bounds other than this.bounds.
+	 * @return some generators: list [0..this.usize) -> one [0..this.usize) | 
+	 *          all g: generators[int] | all r: this.bounds.relations | 
+	 *           g.(this.bounds.lowerBound[r]) = this.bounds.lowerBound[r] &&
+	 *           g.(this.bounds.upperBound[r]) = this.bounds.upperBound[r]
+	 */
+	private List<int[]> generators(Options options) {
+		if (stage_bounds != bounds || options.temporal() || bounds.relations().contains(TemporalTranslator.STATE))
+			return Collections.<int[]>emptyList();
+		final List<int[]> generators = AutomorphismDetector.generators(bounds, symmetries, 
+				(long) options.symmetryBreaking() * AUTOMORPHISM_EFFORT);
+		reporter.debug("Automorphism generators: " + generators.size());
+		return generators;
+	}
+	
 	/**
 	 * Returns a list of RelationParts that map each non-constant r in this.bounds.relations to
 	 * the representatives of the sets from this.symmetries contained in the upper bound of r.  
@@ -380,6 +432,21 @@ final class SymmetryBreaker {
 		return permIndex;
 	}
 	
+	/**
+	 * Let t be the tuple represent by the given arity and tupleIndex.
+	 * This method returns the tuple index of the tuple t' such t'
+	 * is equal to t with each atom replaced by its image.
+	 * @return the index of the tuple to which the given permutation
+	 * maps the tuple specified by arity and tupleIndex
+	 */
+	private final int permutation(int arity, int tupleIndex, int[] image) {
+		int permIndex = 0;
+		for(int u = 1; arity > 0; arity--, tupleIndex /= usize, u *= usize ) {
+			permIndex += image[tupleIndex%usize] * u;
+		}
+		return permIndex;
+	}
+	
 	/**
 	 * Returns true if there is some index i such that l0[i] = v0 and l1[i] = v1.
 	 * @requires l0.size()=l1.size()
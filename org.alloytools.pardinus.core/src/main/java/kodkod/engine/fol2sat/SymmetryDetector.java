@@ -27,9 +27,7 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
 
@@ -50,14 +48,25 @@ import kodkod.util.ints.Ints;
  * <code>b.intBound</code> can be expressed as a union of cross-products of sets drawn from 
  * <code>{ s0, ..., sn }</code>. 
  * 
+ * <p>The partition is refined in place, in the style of Paige and Tarjan: the atoms 
+ * of the universe are stored in an array in which every class occupies a contiguous 
+ * segment, so a class is split by moving the atoms that are marked to the front of 
+ * its segment, in time proportional to the number of marked atoms rather than to the 
+ * size of the universe.</p>
+ * 
  * @author Emina Torlak
  * @modified Tiago Guimarães, Nuno Macedo // [HASLab] target-oriented model finding
  */
 public final class SymmetryDetector {
 	private final Bounds bounds;
-	/* invariant: representatives always holds a sequence of IntSets that partition bounds.universe */
-	private final List<IntSet> parts;
 	private final int usize;
+	/* invariant: the classes partition bounds.universe.  The atoms of class c are stored
+	 * in atoms[start[c]..end[c]), and pos is the inverse of atoms.  The classes are 
+	 * ordered by next, starting with class 0, so that a class split from another one 
+	 * follows it; -1 marks the last class. */
+	private final int[] atoms, pos, cls;
+	private final int[] start, end, next, marks;
+	private int classes;
 	
 	/**
 	 * Constructs a new SymmetryDetector for the given bounds.
@@ -66,11 +75,19 @@ public final class SymmetryDetector {
 	private SymmetryDetector(Bounds bounds) {
 		this.bounds = bounds;
 		this.usize = bounds.universe().size();
+		this.atoms = new int[usize];
+		this.pos = new int[usize];
+		this.cls = new int[usize];
+		this.start = new int[usize];
+		this.end = new int[usize];
+		this.next = new int[usize];
+		this.marks = new int[usize];
 		//	start with the maximum partition -- the whole universe.
-		this.parts = new LinkedList<IntSet>();
-		final IntSet set = Ints.bestSet(usize);
-		for(int i = 0; i < usize; i++) { set.add(i); }
-		this.parts.add(set);
+		for(int i = 0; i < usize; i++) { atoms[i] = i; pos[i] = i; }
+		this.start[0] = 0;
+		this.end[0] = usize;
+		this.next[0] = -1;
+		this.classes = usize==0 ? 0 : 1;
 	}
 	
 	/**
@@ -93,8 +110,13 @@ public final class SymmetryDetector {
 	public static Set<IntSet> partition(Bounds bounds) {		
 		final SymmetryDetector detector = new SymmetryDetector(bounds);
 		detector.computePartitions();
-		final Set<IntSet> parts = new LinkedHashSet<IntSet>(detector.parts);
-		assert parts.size()==detector.parts.size(); // sanity check
+		final Set<IntSet> parts = new LinkedHashSet<IntSet>();
+		for(int c = detector.classes==0 ? -1 : 0; c >= 0; c = detector.next[c]) {
+			final IntSet part = Ints.bestSet(detector.usize);
+			for(int i = detector.start[c]; i < detector.end[c]; i++) { part.add(detector.atoms[i]); }
+			parts.add(part);
+		}
+		assert parts.size()==detector.classes; // sanity check
 		return parts;
 	}
 	
@@ -110,24 +132,33 @@ public final class SymmetryDetector {
 	 *                t1.atoms[1..ts.arity) = a1 && t1.atoms[1..ts.arity) = a2)
 	 */
 	private final void computePartitions() {
-		if (usize==1) return; // nothing more to do 
-	
-		final Map<IntSet, IntSet> range2domain = new HashMap<IntSet, IntSet>((usize*2) / 3);
+		if (usize<=1) return; // nothing more to do 
 		
 		// refine the partitions based on the bounds for each integer
 		for(IntIterator iter = bounds.ints().iterator(); iter.hasNext();) {
 			TupleSet exact = bounds.exactBound(iter.next());
-			refinePartitions(exact.indexView(), 1, range2domain);
+			refinePartitions(toArray(exact.indexView()), 1);
 		}
 		
 		// refine the partitions based on the upper/lower bounds for each relation
 		for(TupleSet s : sort(bounds)) {
-			if (parts.size()==usize) return;
-			refinePartitions(s.indexView(), s.arity(), range2domain);			
+			if (classes==usize) return;
+			refinePartitions(toArray(s.indexView()), s.arity());			
 		}
 		
 	}
 	
+	/**
+	 * Returns the elements of the given set in increasing order.
+	 * @return an array with the elements of the given set in increasing order
+	 */
+	private static int[] toArray(IntSet set) {
+		final int[] elts = new int[set.size()];
+		int i = 0;
+		for(IntIterator iter = set.iterator(); iter.hasNext(); ) { elts[i++] = iter.next(); }
+		return elts;
+	}
+	
 	/**
 	 * Returns an array that contains unique non-empty tuplesets in the given bounds,
 	 * sorted in the order of increasing size.
@@ -160,9 +191,12 @@ public final class SymmetryDetector {
 	}
 	
 	/**
-	 * Refines the atomic partitions in this.parts based on the contents of the given tupleset, 
-	 * decomposed into its constituent IntSet and arity.  The range2domain map is used for 
-	 * intermediate computations for efficiency (to avoid allocating it in each recursive call). 
+	 * Refines the atomic partitions in this.parts based on the given tuples of the given 
+	 * arity, sorted in increasing order.  The atoms of each class whose atoms appear in 
+	 * the first column of the tuples are grouped by the tuples that they are mapped to, 
+	 * except that the atoms mapped only to the tuple made of themselves are kept together.  
+	 * Each class is then replaced by its groups, and the partition is refined with respect 
+	 * to the remaining columns of each group. 
 	 * @requires all disj s, q: this.parts[int] | 
 	 *            some s.ints && some q.ints && (no s.ints & q.ints) &&
 	 *            this.parts[int].ints = [0..this.bounds.universe.size())
@@ -176,60 +210,140 @@ public final class SymmetryDetector {
 	 *                 t1 = a1*((1 - firstColFactor) / (1 - usize)) && 
 	 *                 t2 = a2*((1 - firstColFactor) / (1 - usize)))
 	 */
-	private void refinePartitions(IntSet set, int arity, Map<IntSet, IntSet> range2domain) {
+	private void refinePartitions(int[] tuples, int arity) {
 		if (arity==1) {
-			refinePartitions(set);
+			refinePartitions(tuples);
 			return;
 		}
 		
-		final List<IntSet> otherColumns = new LinkedList<IntSet>();
-		int firstColFactor = (int) StrictMath.pow(usize, arity-1);
-		IntSet firstCol = Ints.bestSet(usize);
-		for(IntIterator rbIter = set.iterator(); rbIter.hasNext(); ) {
-			firstCol.add(rbIter.next() / firstColFactor);
+		// the first column, and the range of tuples that starts with each of its atoms
+		final int firstColFactor = (int) StrictMath.pow(usize, arity-1);
+		final int idenFactor = (1 - firstColFactor) / (1 - usize);
+		final int[] firstCol = new int[tuples.length];
+		final int[] from = new int[tuples.length + 1];
+		int size = 0;
+		for(int i = 0; i < tuples.length; i++) {
+			final int atom = tuples[i] / firstColFactor;
+			if (size==0 || firstCol[size-1] != atom) {
+				firstCol[size] = atom;
+				from[size++] = i;
+			}
 		}
-		refinePartitions(firstCol);
+		from[size] = tuples.length;
+		final int[] firstAtoms = Arrays.copyOf(firstCol, size);
+		refinePartitions(firstAtoms);
 		
-		int idenFactor = (1 - firstColFactor) / (1 - usize);
-		for(ListIterator<IntSet> partsIter = parts.listIterator(); partsIter.hasNext(); ) {
-			IntSet part = partsIter.next();
-			if (firstCol.contains(part.min())) { // contains one, contains them all
-				range2domain.clear();
-				for(IntIterator atoms = part.iterator(); atoms.hasNext(); ) {
-					int atom = atoms.next();
-					IntSet atomRange = Ints.bestSet(firstColFactor);
-					for(IntIterator rbIter = set.iterator(atom*firstColFactor, (atom+1)*firstColFactor - 1); 
-					rbIter.hasNext(); ) {
-						atomRange.add(rbIter.next() % firstColFactor);
-					}
-					IntSet atomDomain = range2domain.get(atomRange);
-					if (atomDomain != null) atomDomain.add(atom);
-					else range2domain.put(atomRange, oneOf(usize, atom));
-				}
-				partsIter.remove();
-				IntSet idenPartition = Ints.bestSet(usize);
-				for(Map.Entry<IntSet, IntSet> entry : range2domain.entrySet()) {
-					if (entry.getValue().size()==1 && entry.getKey().size()==1 &&
-						entry.getKey().min() == entry.getValue().min() * idenFactor) {
-						idenPartition.add(entry.getValue().min());
-					} else {
-						partsIter.add(entry.getValue());
-						otherColumns.add(entry.getKey());
-					}
+		// the classes of the first column are now contained in it 
+		final int[] slice = new int[usize];
+		for(int i = 0; i < size; i++) { slice[firstAtoms[i]] = i; }
+		final List<int[]> otherColumns = new ArrayList<int[]>();
+		final Map<Range, int[]> range2domain = new HashMap<Range, int[]>();
+		for(int i = 0; i < size; i++) {
+			final int c = cls[firstAtoms[i]];
+			if (marks[c] != 0 || end[c]-start[c]==1 && idenOnly(tuples, from[i], from[i+1], firstAtoms[i], firstColFactor, idenFactor)) 
+				continue; // already regrouped, or an identity singleton that stays as it is
+			marks[c] = 1;
+			if (end[c]-start[c]==1) {
+				otherColumns.add(column(tuples, from[i], from[i+1], firstColFactor));
+				continue;
+			}
+			
+			// group the atoms of c by their ranges, in increasing order of their smallest atoms
+			final int csize = end[c] - start[c];
+			final int[] members = Arrays.copyOfRange(atoms, start[c], end[c]);
+			Arrays.sort(members);
+			range2domain.clear();
+			final List<Range> ranges = new ArrayList<Range>();
+			final int[] sizes = new int[csize], firsts = new int[csize];
+			final int[] groupOf = new int[csize];
+			for(int j = 0; j < csize; j++) {
+				final int k = slice[members[j]];
+				final Range range = new Range(tuples, from[k], from[k+1], firstColFactor);
+				int[] group = range2domain.get(range);
+				if (group == null) {
+					group = new int[]{ ranges.size() };
+					firsts[group[0]] = members[j];
+					range2domain.put(range, group);
+					ranges.add(range);
 				}
-				if (!idenPartition.isEmpty())
-					partsIter.add(idenPartition);			
+				groupOf[j] = group[0];
+				sizes[group[0]]++;
+			}
+			
+			// lay out the groups in order, followed by the atoms that are mapped only to themselves
+			final int groups = ranges.size();
+			final boolean[] iden = new boolean[groups];
+			final int[] offset = new int[groups];
+			for(int g = 0; g < groups; g++) {
+				final Range range = ranges.get(g);
+				iden[g] = sizes[g]==1 && range.to - range.from == 1 && range.column(range.from) == firsts[g] * idenFactor;
+				if (!iden[g]) otherColumns.add(range.column());
+			}
+			int next = start[c];
+			for(int g = 0; g < groups; g++) {
+				if (!iden[g]) { offset[g] = next; next += sizes[g]; }
+			}
+			final int idenStart = next;
+			for(int j = 0; j < csize; j++) {
+				final int g = groupOf[j], at = iden[g] ? next++ : offset[g]++;
+				atoms[at] = members[j];
+				pos[members[j]] = at;
+			}
+			
+			// the first group keeps the class c, and the others become new classes after it
+			final int last = end[c];
+			int prev = -1, first = start[c];
+			for(int g = 0; g <= groups; g++) {
+				if (g < groups && iden[g] || g == groups && idenStart == last) continue;
+				final int to = g < groups ? offset[g] : last;
+				final int d = prev < 0 ? c : newClass(prev);
+				start[d] = first;
+				end[d] = to;
+				for(int j = first; j < to; j++) { cls[atoms[j]] = d; }
+				marks[d] = 1;
+				prev = d;
+				first = to;
 			}
 		}
+		for(int i = 0; i < size; i++) { marks[cls[firstAtoms[i]]] = 0; }
 		
 		// refine based on the remaining columns
-		for(IntSet otherCol : otherColumns) {
-			refinePartitions(otherCol, arity-1, range2domain);
+		for(int[] otherCol : otherColumns) {
+			refinePartitions(otherCol, arity-1);
 		}
 	}
 	
 	/**
-	 * Refines the atomic partitions this.parts based on the contents of the given set.
+	 * Returns true if the given range of tuples consists of the tuple made of the given atom only.
+	 */
+	private static boolean idenOnly(int[] tuples, int from, int to, int atom, int firstColFactor, int idenFactor) {
+		return to - from == 1 && tuples[from] % firstColFactor == atom * idenFactor;
+	}
+	
+	/**
+	 * Returns the given range of tuples without their first column.
+	 */
+	private static int[] column(int[] tuples, int from, int to, int firstColFactor) {
+		final int[] column = new int[to - from];
+		for(int i = from; i < to; i++) { column[i - from] = tuples[i] % firstColFactor; }
+		return column;
+	}
+	
+	/**
+	 * Creates a new, empty class that follows the given class, and returns it.
+	 */
+	private int newClass(int prev) {
+		final int c = classes++;
+		next[c] = next[prev];
+		next[prev] = c;
+		return c;
+	}
+	
+	/**
+	 * Refines the atomic partitions this.parts based on the contents of the given set, 
+	 * given as an array of distinct atoms.  The atoms of each class that are in the set 
+	 * are moved to the front of its segment and, if they are not the whole class, they 
+	 * become a new class that follows it.
 	 * @requires all disj s, q: this.parts[int] | 
 	 *            some s.ints && some q.ints && (no s.ints & q.ints) &&
 	 *            this.parts[int].ints = [0..this.bounds.universe.size())
@@ -239,29 +353,63 @@ public final class SymmetryDetector {
 	 *            (all i: [0..this.parts'.size()) | 
 	 *             this.parts'[i].ints in set.ints || no this.parts'[i].ints & set.ints)
 	 */
-	private void refinePartitions(IntSet set) {
-		for(ListIterator<IntSet> partsIter = parts.listIterator(); partsIter.hasNext(); ) {
-			IntSet part = partsIter.next();
-			IntSet intersection = Ints.bestSet(part.min(), part.max());
-			intersection.addAll(part);
-			intersection.retainAll(set);
-			if (!intersection.isEmpty() && intersection.size() < part.size()) {
-				part.removeAll(intersection);
-				partsIter.add(intersection);
+	private void refinePartitions(int[] set) {
+		if (classes==usize) return;
+		int touched = 0;
+		final int[] split = new int[set.length];
+		for(int atom : set) {
+			final int c = cls[atom];
+			if (marks[c]==0) split[touched++] = c;
+			final int to = start[c] + marks[c]++, other = atoms[to];
+			atoms[pos[atom]] = other;
+			pos[other] = pos[atom];
+			atoms[to] = atom;
+			pos[atom] = to;
+		}
+		for(int i = 0; i < touched; i++) {
+			final int c = split[i], marked = marks[c];
+			marks[c] = 0;
+			if (marked < end[c] - start[c]) {
+				final int d = newClass(c);
+				start[d] = start[c];
+				end[d] = start[c] + marked;
+				start[c] = end[d];
+				for(int j = start[d]; j < end[d]; j++) { cls[atoms[j]] = d; }
 			}
 		}
 	}
 	
 	/**
-	 * Returns an IntSet that can store elements
-	 * in the range [0..size), and that holds
-	 * the given number.
-	 * @requries 0 <= num < size
-	 * @return {s: IntSet | s.ints = num } 
+	 * A range of tuples without their first column, compared by content.
 	 */
-	private static final IntSet oneOf(int size, int num) {
-		final IntSet set = Ints.bestSet(size);
-		set.add(num);
-		return set;
+	private static final class Range {
+		final int[] tuples;
+		final int from, to, firstColFactor, hash;
+		
+		Range(int[] tuples, int from, int to, int firstColFactor) {
+			this.tuples = tuples;
+			this.from = from;
+			this.to = to;
+			this.firstColFactor = firstColFactor;
+			int hash = to - from;
+			for(int i = from; i < to; i++) { hash = 31*hash + column(i); }
+			this.hash = hash;
+		}
+		
+		int column(int i) { return tuples[i] % firstColFactor; }
+		
+		int[] column() { return SymmetryDetector.column(tuples, from, to, firstColFactor); }
+		
+		public int hashCode() { return hash; }
+		
+		public boolean equals(Object o) {
+			if (!(o instanceof Range)) return false;
+			final Range r = (Range) o;
+			if (hash != r.hash || to - from != r.to - r.from) return false;
+			for(int i = from, j = r.from; i < to; i++, j++) {
+				if (column(i) != r.column(j)) return false;
+			}
+			return true;
+		}
 	}
 }
@@ -168,17 +168,20 @@ public abstract class Translation {
 		}
 		for(Relation r : bounds.relations()) {
 			TupleSet lower = bounds.lowerBound(r);
+			IntSet vars = primaryVariables(r);
+			if (vars.isEmpty()) {
+				// untranslated relations, which may be too wide for an index view, take their lower bounds
+				instance.add(r, lower.clone());
+				continue;
+			}
 			IntSet indices = Ints.bestSet(lower.capacity());
 			indices.addAll(lower.indexView());
-			IntSet vars = primaryVariables(r);
-			if (!vars.isEmpty()) {
-				//System.out.println(r + ": [" + vars.min() + ", " + vars.max() + "]");
-				int lit = vars.min();
-				for(IntIterator iter = bounds.upperBound(r).indexView().iterator(); iter.hasNext();) {
-					final int index = iter.next();
-					if (!indices.contains(index) && solver.valueOf(lit++))
-						indices.add(index);
-				}
+			//System.out.println(r + ": [" + vars.min() + ", " + vars.max() + "]");
+			int lit = vars.min();
+			for(IntIterator iter = bounds.upperBound(r).indexView().iterator(); iter.hasNext();) {
+				final int index = iter.next();
+				if (!indices.contains(index) && solver.valueOf(lit++))
+					indices.add(index);
 			}
 			instance.add(r, f.setOf(r.arity(), indices));
 		}
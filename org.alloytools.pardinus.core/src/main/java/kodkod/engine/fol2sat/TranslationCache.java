@@ -0,0 +1,1073 @@
+/*
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package kodkod.engine.fol2sat;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import kodkod.ast.BinaryExpression;
+import kodkod.ast.BinaryFormula;
+import kodkod.ast.BinaryIntExpression;
+import kodkod.ast.BinaryTempFormula;
+import kodkod.ast.ComparisonFormula;
+import kodkod.ast.ConstantExpression;
+import kodkod.ast.ConstantFormula;
+import kodkod.ast.Decl;
+import kodkod.ast.Decls;
+import kodkod.ast.ExprToIntCast;
+import kodkod.ast.Formula;
+import kodkod.ast.IntComparisonFormula;
+import kodkod.ast.IntConstant;
+import kodkod.ast.IntToExprCast;
+import kodkod.ast.MultiplicityFormula;
+import kodkod.ast.NaryExpression;
+import kodkod.ast.NaryFormula;
+import kodkod.ast.NaryIntExpression;
+import kodkod.ast.Node;
+import kodkod.ast.ProjectExpression;
+import kodkod.ast.QuantifiedFormula;
+import kodkod.ast.Relation;
+import kodkod.ast.RelationPredicate;
+import kodkod.ast.TempExpression;
+import kodkod.ast.UnaryExpression;
+import kodkod.ast.UnaryIntExpression;
+import kodkod.ast.UnaryTempFormula;
+import kodkod.ast.Variable;
+import kodkod.ast.operator.Quantifier;
+import kodkod.ast.visitor.AbstractVoidVisitor;
+import kodkod.engine.bool.BooleanFormula;
+import kodkod.engine.config.Options;
+import kodkod.engine.config.Reporter;
+import kodkod.engine.satlab.AssumptionSATSolver;
+import kodkod.engine.satlab.ClauseBuffer;
+import kodkod.engine.satlab.InterruptibleSATSolver;
+import kodkod.engine.satlab.SATAbortedException;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.engine.satlab.SATSolver;
+import kodkod.instance.Bounds;
+import kodkod.instance.PardinusBounds;
+import kodkod.instance.Tuple;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.TupleSet;
+import kodkod.util.ints.IndexedEntry;
+import kodkod.util.ints.IntIterator;
+import kodkod.util.ints.IntSet;
+import kodkod.util.ints.Ints;
+
+/**
+ * Stores {@linkplain Translation.Whole translations} on disk so that problems that 
+ * were already translated, by this or by an earlier run, are not translated again.
+ * 
+ * <p>
+ * A problem is identified by a {@linkplain #fingerprint(Formula, Bounds, Options) fingerprint}: 
+ * a SHA-256 hash of the structure of its formula, of its bounds and of the options that 
+ * affect translation.  The fingerprint does not depend on the identity of the nodes 
+ * and relations of the problem, so a problem that is rebuilt from scratch, for instance 
+ * by parsing the same model again, has the same fingerprint.  For each fingerprint, the 
+ * cache stores the CNF of the translation in a compact binary format, the bounds and 
+ * primary variables of the translation, and the skolem relations it introduced.  Once 
+ * a cached translation has been solved, the cache also stores the outcome and, if 
+ * the problem is satisfiable, the values of the primary variables of the solution.  
+ * Solving the same problem again then returns that outcome and instance without 
+ * calling the SAT solver at all.  The CNF is only read from disk when the solver 
+ * of a cached translation is used for more than its first call to solve, for 
+ * instance to enumerate further solutions.
+ * </p>
+ * <p>
+ * Translations that are {@linkplain Options#logTranslation() logged} or solved by a 
+ * {@linkplain SATFactory#prover() prover}, and problems 
+ * whose {@linkplain PardinusBounds Pardinus bounds} have symbolic bounds, targets, 
+ * variable relations or a decomposition, are not cached.  The cache is 
+ * a best-effort mechanism: entries that cannot be written or read are reported as 
+ * {@linkplain Reporter#warning(String) warnings} and the problem is translated as 
+ * if there were no cache.  Entries are written to temporary files that are then 
+ * moved into place, so several processes can share the same directory.
+ * </p>
+ * 
+ * @specfield directory: File // the directory in which the translations are stored
+ * @author Emina Torlak
+ */
+public final class TranslationCache {
+	
+	/** Identifies the files of the cache, and their version. */
+	private static final int MAGIC = 0x4b4b5443, VERSION = 1;
+	
+	private final File directory;
+	private long hits, misses;
+	
+	/**
+	 * Creates a cache that stores translations in the given directory, 
+	 * creating the directory if needed.
+	 * @ensures this.directory' = directory
+	 * @throws NullPointerException  directory = null
+	 * @throws IllegalArgumentException  directory is not, and cannot be made, a directory
+	 */
+	public TranslationCache(File directory) {
+		if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+			throw new IllegalArgumentException("cannot create translation cache directory " + directory);
+		this.directory = directory;
+	}
+	
+	/**
+	 * Returns the directory in which this cache stores translations.
+	 * @return this.directory
+	 */
+	public File directory() { return directory; }
+	
+	/**
+	 * Returns the number of translations that were read from this cache.
+	 * @return number of translations that were read from this cache
+	 */
+	public synchronized long hits() { return hits; }
+	
+	/**
+	 * Returns the number of cacheable translations that were not found in this cache.
+	 * @return number of cacheable translations that were not found in this cache
+	 */
+	public synchronized long misses() { return misses; }
+	
+	/**
+	 * Returns the hexadecimal fingerprint of the given problem.  Two problems have the 
+	 * same fingerprint if their formulas have the same structure, with relations 
+	 * compared by their position in the bounds and variables by their position in the 
+	 * formula; if their bounds have the same universe size, relations, lower and upper 
+	 * bounds and integer bounds, compared by index; and if the options that affect 
+	 * translation are the same.  Atoms, and the options that only affect solving, 
+	 * are not part of the fingerprint.
+	 * @return the hexadecimal fingerprint of the given problem
+	 * @throws NullPointerException  any of the arguments are null
+	 */
+	public static String fingerprint(Formula formula, Bounds bounds, Options options) {
+		return new Fingerprint(formula, bounds, options).hex;
+	}
+	
+	/**
+	 * Returns the translation of the given problem, reading it from this cache if 
+	 * it was stored there, and storing it otherwise.  The first call to solve on the 
+	 * {@linkplain Translation#cnf() cnf} of the returned translation returns the 
+	 * cached outcome, if there is one, and records the outcome otherwise.  
+	 * @return some t: Translation.Whole |  t.originalFormula = formula && t.originalBounds = bounds && t.options = options
+	 * @throws NullPointerException  any of the arguments are null
+	 * @throws UnboundLeafException  the formula refers to an undeclared variable or a relation not mapped by the given bounds.
+	 * @throws HigherOrderDeclException  the formula contains a higher order declaration that cannot
+	 * be skolemized, or it can be skolemized but options.skolemize is false.
+	 * @see Translator#translate(Formula, Bounds, Options)
+	 */
+	public Translation.Whole translate(Formula formula, Bounds bounds, Options options) {
+		if (!cacheable(bounds, options)) 
+			return Translator.translate(formula, bounds, options);
+		
+		final Fingerprint fingerprint = new Fingerprint(formula, bounds, options);
+		final File translation = file(fingerprint, "trans");
+		if (translation.isFile()) {
+			try {
+				final Translation.Whole cached = read(translation, fingerprint, bounds, options);
+				synchronized(this) { hits++; }
+				options.reporter().debug("translation cache hit: " + fingerprint.hex);
+				return cached;
+			} catch (IOException | RuntimeException e) {
+				options.reporter().warning("ignoring unreadable translation cache entry " + translation + ": " + e);
+			}
+		}
+		synchronized(this) { misses++; }
+		return write(fingerprint, formula, bounds, options);
+	}
+	
+	/**
+	 * Returns true if problems with the given bounds and options can be cached: their 
+	 * translation is not logged, their solver is not a prover, and their bounds are not Pardinus bounds that carry 
+	 * symbolic bounds, targets, variable relations or a decomposition.
+	 * @return options.logTranslation = 0 && !options.solver.prover() && (bounds in PardinusBounds => bounds is plain)
+	 */
+	private static boolean cacheable(Bounds bounds, Options options) {
+		if (options.logTranslation() > 0 || options.solver().prover()) 
+			return false;
+		if (bounds instanceof PardinusBounds) {
+			final PardinusBounds pbounds = (PardinusBounds) bounds;
+			return pbounds.resolved() && pbounds.targets().isEmpty() && pbounds.amalgamated() == null && !pbounds.hasVarRelations();
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns the file of this cache with the given fingerprint and extension.
+	 */
+	private File file(Fingerprint fingerprint, String extension) {
+		return new File(directory, fingerprint.hex + "." + extension);
+	}
+	
+	/**
+	 * Translates the given problem, stores its translation in this cache, and returns 
+	 * the translation.  The translation uses a copy of the given options whose 
+	 * solver records the clauses of the CNF and whose reporter records the skolems.  
+	 */
+	private Translation.Whole write(Fingerprint fingerprint, Formula formula, Bounds bounds, Options options) {
+		final Options recording = options.clone();
+		final Skolems skolems = new Skolems(options.reporter());
+		recording.setSolver(new Recorder(options.solver()));
+		recording.setReporter(skolems);
+		
+		final Translation.Whole translation = Translator.translate(formula, bounds, recording);
+		final CachedSolver cnf = (CachedSolver) translation.cnf();
+		final ClauseBuffer clauses = cnf.recorded(file(fingerprint, "sol"), translation.numPrimaryVariables());
+		
+		final Map<Relation, IntSet> vars = new LinkedHashMap<Relation, IntSet>();
+		for(Relation r : translation.bounds().relations()) {
+			final IntSet rvars = translation.primaryVariables(r);
+			if (!rvars.isEmpty()) vars.put(r, rvars);
+		}
+		
+		try {
+			writeCNF(file(fingerprint, "cnf"), cnf.numberOfVariables(), clauses);
+			writeTranslation(file(fingerprint, "trans"), fingerprint, bounds, translation, skolems.events);
+		} catch (IOException | RuntimeException e) {
+			options.reporter().warning("could not write translation cache entry " + fingerprint.hex + ": " + e);
+		}
+		return new Translation.Whole(translation.bounds(), options, cnf, vars, translation.numPrimaryVariables(), null);
+	}
+	
+	/**
+	 * Reads the translation of the problem with the given fingerprint and original 
+	 * bounds from the given file, and returns it.  The skolems of the translation are 
+	 * reported to options.reporter, as if the problem had been translated.
+	 */
+	private Translation.Whole read(File file, Fingerprint fingerprint, Bounds bounds, Options options) throws IOException {
+		final List<Relation> originals = new ArrayList<Relation>(bounds.relations());
+		final Bounds tbounds = bounds instanceof PardinusBounds ? new PardinusBounds(bounds.universe()) : new Bounds(bounds.universe());
+		final TupleFactory factory = bounds.universe().factory();
+		final Map<Relation, IntSet> vars = new LinkedHashMap<Relation, IntSet>();
+		final List<Relation> skolems = new ArrayList<Relation>();
+		final List<Decl> skolemDecls = new ArrayList<Decl>();
+		final List<List<Decl>> skolemContexts = new ArrayList<List<Decl>>();
+		final int maxPrimaryVar, numVars, numClauses;
+		
+		try (DataInputStream in = open(file)) {
+			maxPrimaryVar = readVarInt(in);
+			numVars = readVarInt(in);
+			numClauses = readVarInt(in);
+			for(int i = 0, n = readVarInt(in); i < n; i++) {
+				final String name = in.readUTF();
+				final int arity = readVarInt(in);
+				final Variable variable = fingerprint.variables.get(readVarInt(in));
+				final Quantifier quant = Quantifier.valueOf(in.readUTF());
+				final List<Decl> context = new ArrayList<Decl>();
+				for(int j = 0, m = readVarInt(in); j < m; j++) {
+					context.add(fingerprint.decls.get(fingerprint.variables.get(readVarInt(in))));
+				}
+				final Decl decl = fingerprint.decls.get(variable);
+				skolems.add(Relation.skolem(name, arity, variable, decl, quant));
+				skolemDecls.add(decl);
+				skolemContexts.add(context);
+			}
+			for(int i = 0, n = readVarInt(in); i < n; i++) {
+				final Relation r;
+				final int kind = in.readByte();
+				if (kind==0) 		r = originals.get(readVarInt(in));
+				else if (kind==1) 	r = skolems.get(readVarInt(in));
+				else 				r = Relation.nary(in.readUTF(), readVarInt(in));
+				final TupleSet lower = factory.setOf(r.arity(), readIntSet(in));
+				final TupleSet upper = factory.setOf(r.arity(), readIntSet(in));
+				tbounds.bound(r, lower, upper);
+				final int min = readVarInt(in), size = readVarInt(in);
+				if (size > 0) vars.put(r, Ints.rangeSet(Ints.range(min, min + size - 1)));
+			}
+			for(int i = 0, n = readVarInt(in); i < n; i++) {
+				final int value = readZigZag(in);
+				tbounds.boundExactly(value, factory.setOf(1, readIntSet(in)));
+			}
+		}
+		
+		for(int i = 0; i < skolems.size(); i++) {
+			options.reporter().skolemizing(skolemDecls.get(i), skolems.get(i), skolemContexts.get(i));
+		}
+		final CachedSolver cnf = CachedSolver.wrap(options.solver().instance());
+		cnf.defer(file(fingerprint, "cnf"), numVars, numClauses);
+		cnf.memoise(file(fingerprint, "sol"), maxPrimaryVar);
+		return new Translation.Whole(tbounds, options, cnf, vars, maxPrimaryVar, null);
+	}
+	
+	/**
+	 * Writes the bounds, primary variables and skolems of the given translation to the given file.
+	 */
+	private static void writeTranslation(File file, Fingerprint fingerprint, Bounds bounds, Translation.Whole translation, List<SkolemEvent> events) throws IOException {
+		final Map<Relation, Integer> originals = new IdentityHashMap<Relation, Integer>();
+		for(Relation r : bounds.relations()) {
+			originals.put(r, originals.size());
+		}
+		final Map<Relation, Integer> skolems = new IdentityHashMap<Relation, Integer>();
+		for(SkolemEvent event : events) {
+			skolems.put(event.skolem, skolems.size());
+		}
+		final Bounds tbounds = translation.bounds();
+		
+		final File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+		try (DataOutputStream out = create(tmp)) {
+			writeVarInt(out, translation.numPrimaryVariables());
+			writeVarInt(out, translation.cnf().numberOfVariables());
+			writeVarInt(out, translation.cnf().numberOfClauses());
+			writeVarInt(out, events.size());
+			for(SkolemEvent event : events) {
+				out.writeUTF(event.skolem.name());
+				writeVarInt(out, event.skolem.arity());
+				writeVarInt(out, fingerprint.variable(event.decl.variable()));
+				out.writeUTF(event.skolem.getSkolemVarQuant().name());
+				writeVarInt(out, event.context.size());
+				for(Decl decl : event.context) {
+					writeVarInt(out, fingerprint.variable(decl.variable()));
+				}
+			}
+			writeVarInt(out, tbounds.relations().size());
+			for(Relation r : tbounds.relations()) {
+				if (originals.containsKey(r)) {
+					out.writeByte(0);
+					writeVarInt(out, originals.get(r));
+				} else if (skolems.containsKey(r)) {
+					out.writeByte(1);
+					writeVarInt(out, skolems.get(r));
+				} else {
+					out.writeByte(2);
+					out.writeUTF(r.name());
+					writeVarInt(out, r.arity());
+				}
+				writeIntSet(out, tbounds.lowerBound(r).indexView());
+				writeIntSet(out, tbounds.upperBound(r).indexView());
+				final IntSet vars = translation.primaryVariables(r);
+				writeVarInt(out, vars.isEmpty() ? 0 : vars.min());
+				writeVarInt(out, vars.size());
+			}
+			writeVarInt(out, tbounds.ints().size());
+			for(IndexedEntry<TupleSet> entry : tbounds.intBounds()) {
+				writeZigZag(out, entry.index());
+				writeIntSet(out, entry.value().indexView());
+			}
+		}
+		move(tmp, file);
+	}
+	
+	/**
+	 * Writes the given clauses over the given number of variables to the given file.  
+	 * Each clause is stored as its length followed by its literals, all as variable-length 
+	 * integers, so most literals of a CNF generated by the translator take one to three bytes.
+	 */
+	private static void writeCNF(File file, int numVars, ClauseBuffer clauses) throws IOException {
+		final File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+		try (DataOutputStream out = create(tmp)) {
+			writeVarInt(out, numVars);
+			writeVarInt(out, clauses.size());
+			final int[] lits = clauses.literals();
+			for(int i = 0, size = clauses.size(); i < size; i++) {
+				final int start = clauses.start(i), end = clauses.end(i);
+				writeVarInt(out, end - start);
+				for(int j = start; j < end; j++) {
+					writeZigZag(out, lits[j]);
+				}
+			}
+		}
+		move(tmp, file);
+	}
+	
+	/**
+	 * Reads the clauses stored in the given file into a new buffer.
+	 * @throws IOException  the file cannot be read or does not have the given numbers of variables and clauses
+	 */
+	private static ClauseBuffer readCNF(File file, int numVars, int numClauses) throws IOException {
+		try (DataInputStream in = open(file)) {
+			if (readVarInt(in) != numVars || readVarInt(in) != numClauses)
+				throw new IOException("mismatched CNF in " + file);
+			final ClauseBuffer clauses = new ClauseBuffer(numClauses * 3);
+			int[] lits = new int[16];
+			for(int i = 0; i < numClauses; i++) {
+				final int length = readVarInt(in);
+				if (lits.length < length) lits = new int[Math.max(length, lits.length * 2)];
+				for(int j = 0; j < length; j++) {
+					lits[j] = readZigZag(in);
+				}
+				clauses.add(lits, 0, length);
+			}
+			return clauses;
+		}
+	}
+	
+	/**
+	 * Writes the outcome of solving a cached translation, and the given values of its primary variables, to the given file.
+	 */
+	private static void writeOutcome(File file, boolean sat, BitSet model) throws IOException {
+		final File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+		try (DataOutputStream out = create(tmp)) {
+			out.writeBoolean(sat);
+			final byte[] bytes = model.toByteArray();
+			writeVarInt(out, bytes.length);
+			out.write(bytes);
+		}
+		move(tmp, file);
+	}
+	
+	/**
+	 * Reads the outcome stored in the given file, returning null if there is none. 
+	 * If the outcome is satisfiable, the values of the primary variables are stored in model.
+	 */
+	private static Boolean readOutcome(File file, BitSet model) throws IOException {
+		if (!file.isFile()) return null;
+		try (DataInputStream in = open(file)) {
+			final boolean sat = in.readBoolean();
+			final byte[] bytes = new byte[readVarInt(in)];
+			in.readFully(bytes);
+			model.or(BitSet.valueOf(bytes));
+			return sat;
+		}
+	}
+	
+	/**
+	 * Returns a stream that writes to the given file, after writing the header of the cache files.
+	 */
+	private static DataOutputStream create(File file) throws IOException {
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		return out;
+	}
+	
+	/**
+	 * Returns a stream that reads from the given file, after checking the header of the cache files.
+	 */
+	private static DataInputStream open(File file) throws IOException {
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+			in.close();
+			throw new IOException("not a translation cache file of version " + VERSION + ": " + file);
+		}
+		return in;
+	}
+	
+	/**
+	 * Moves the given temporary file to the given target, atomically if possible.
+	 */
+	private static void move(File tmp, File target) throws IOException {
+		try {
+			Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(tmp.toPath());
+		}
+	}
+	
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7f) != 0) {
+			out.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+	
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for(int shift = 0; shift < 32; shift += 7) {
+			final int b = in.readUnsignedByte();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) return value;
+		}
+		throw new IOException("malformed variable-length integer");
+	}
+	
+	private static void writeZigZag(DataOutputStream out, int value) throws IOException {
+		writeVarInt(out, (value << 1) ^ (value >> 31));
+	}
+	
+	private static int readZigZag(DataInputStream in) throws IOException {
+		final int value = readVarInt(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+	
+	/**
+	 * Writes the given set as its size followed by the differences between its consecutive elements.
+	 */
+	private static void writeIntSet(DataOutputStream out, IntSet set) throws IOException {
+		writeVarInt(out, set.size());
+		int last = 0;
+		for(IntIterator itr = set.iterator(); itr.hasNext(); ) {
+			final int next = itr.next();
+			writeVarInt(out, next - last);
+			last = next;
+		}
+	}
+	
+	private static IntSet readIntSet(DataInputStream in) throws IOException {
+		final int size = readVarInt(in);
+		final int[] elts = new int[size];
+		for(int i = 0, last = 0; i < size; i++) {
+			elts[i] = last += readVarInt(in);
+		}
+		final IntSet set = Ints.bestSet(size == 0 ? 1 : elts[size - 1] + 1);
+		for(int elt : elts) {
+			set.add(elt);
+		}
+		return set;
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return "TranslationCache(" + directory + ")";
+	}
+	
+	/**
+	 * Computes the fingerprint of a problem by hashing a traversal of its formula, its 
+	 * bounds and its options.  Every node is hashed the first time it is reached; shared 
+	 * nodes are hashed as references to the position of their first occurrence, so the 
+	 * fingerprint of a DAG is computed in time linear in its size and it distinguishes 
+	 * shared nodes from equal copies.  
+	 * 
+	 * @specfield variables: seq Variable // the variables of the formula, in the order in which they were reached
+	 * @specfield decls: Variable -> lone Decl // the first declaration of each variable
+	 */
+	private static final class Fingerprint extends AbstractVoidVisitor {
+		private final MessageDigest digest;
+		private final Map<Node, Integer> ids = new IdentityHashMap<Node, Integer>();
+		private final Map<Relation, Integer> relations = new IdentityHashMap<Relation, Integer>();
+		private final Map<Variable, Integer> varIds = new IdentityHashMap<Variable, Integer>();
+		final List<Variable> variables = new ArrayList<Variable>();
+		final Map<Variable, Decl> decls = new IdentityHashMap<Variable, Decl>();
+		final String hex;
+		
+		Fingerprint(Formula formula, Bounds bounds, Options options) {
+			try {
+				this.digest = MessageDigest.getInstance("SHA-256");
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException("SHA-256 is not available", e);
+			}
+			write(MAGIC);
+			write(VERSION);
+			write(options.bitwidth());
+			write(options.intEncoding().name());
+			write(options.symmetryBreaking());
+			write(options.sharing());
+			write(options.skolemDepth());
+			write(options.noOverflow() ? 1 : 0);
+			write(options.closureEncoding().name());
+			write(options.cardinalityEncoding().name());
+			write(options.automorphisms() ? 1 : 0);
+			
+			write(bounds.universe().size());
+			write(bounds.relations().size());
+			for(Relation r : bounds.relations()) {
+				relations.put(r, relations.size());
+				write(r.getClass().getName());
+				write(r.name());
+				write(r.arity());
+				write(bounds.lowerBound(r).indexView());
+				write(bounds.upperBound(r).indexView());
+			}
+			write(bounds.ints().size());
+			for(IndexedEntry<TupleSet> entry : bounds.intBounds()) {
+				write(entry.index());
+				write(entry.value().indexView());
+			}
+			
+			formula.accept(this);
+			
+			final StringBuilder hex = new StringBuilder(64);
+			for(byte b : digest.digest()) {
+				hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			this.hex = hex.toString();
+		}
+		
+		/**
+		 * Returns the position of the given variable in this.variables.
+		 * @throws IllegalArgumentException  variable !in this.variables.elems
+		 */
+		int variable(Variable variable) {
+			final Integer id = varIds.get(variable);
+			if (id==null) throw new IllegalArgumentException("unknown variable " + variable);
+			return id;
+		}
+		
+		private void write(int value) {
+			digest.update((byte) (value >>> 24));
+			digest.update((byte) (value >>> 16));
+			digest.update((byte) (value >>> 8));
+			digest.update((byte) value);
+		}
+		
+		private void write(String value) {
+			final byte[] bytes = value.getBytes(UTF_8);
+			write(bytes.length);
+			digest.update(bytes);
+		}
+		
+		private void write(IntSet set) {
+			write(set.size());
+			for(IntIterator itr = set.iterator(); itr.hasNext(); ) {
+				write(itr.next());
+			}
+		}
+		
+		/**
+		 * Hashes a reference to n if it was already visited.  Otherwise, hashes the 
+		 * kind and the attributes of n, that is everything but its children.
+		 * @return true if n was already visited
+		 */
+		protected boolean visited(Node n) {
+			final Integer id = ids.get(n);
+			if (id != null) {
+				write("ref");
+				write(id);
+				return true;
+			}
+			ids.put(n, ids.size());
+			write(n.getClass().getName());
+			if (n instanceof Decl) {
+				final Decl decl = (Decl) n;
+				if (!decls.containsKey(decl.variable())) decls.put(decl.variable(), decl);
+				write(decl.multiplicity().name());
+			} else if (n instanceof Decls) {
+				write(((Decls) n).size());
+			} else if (n instanceof NaryFormula) {
+				write(((NaryFormula) n).op().name());
+				write(((NaryFormula) n).size());
+			} else if (n instanceof BinaryFormula) {
+				write(((BinaryFormula) n).op().name());
+			} else if (n instanceof QuantifiedFormula) {
+				write(((QuantifiedFormula) n).quantifier().name());
+			} else if (n instanceof ComparisonFormula) {
+				write(((ComparisonFormula) n).op().name());
+			} else if (n instanceof IntComparisonFormula) {
+				write(((IntComparisonFormula) n).op().name());
+			} else if (n instanceof MultiplicityFormula) {
+				write(((MultiplicityFormula) n).multiplicity().name());
+			} else if (n instanceof RelationPredicate) {
+				write(((RelationPredicate) n).name().name());
+				if (n instanceof RelationPredicate.Function) 
+					write(((RelationPredicate.Function) n).targetMult().name());
+			} else if (n instanceof UnaryTempFormula) {
+				write(((UnaryTempFormula) n).op().name());
+			} else if (n instanceof BinaryTempFormula) {
+				write(((BinaryTempFormula) n).op().name());
+			} else if (n instanceof TempExpression) {
+				write(((TempExpression) n).op().name());
+			} else if (n instanceof NaryExpression) {
+				write(((NaryExpression) n).op().name());
+				write(((NaryExpression) n).size());
+			} else if (n instanceof BinaryExpression) {
+				write(((BinaryExpression) n).op().name());
+			} else if (n instanceof UnaryExpression) {
+				write(((UnaryExpression) n).op().name());
+			} else if (n instanceof ProjectExpression) {
+				write(((ProjectExpression) n).arity());
+			} else if (n instanceof IntToExprCast) {
+				write(((IntToExprCast) n).op().name());
+			} else if (n instanceof ExprToIntCast) {
+				write(((ExprToIntCast) n).op().name());
+			} else if (n instanceof NaryIntExpression) {
+				write(((NaryIntExpression) n).op().name());
+				write(((NaryIntExpression) n).size());
+			} else if (n instanceof BinaryIntExpression) {
+				write(((BinaryIntExpression) n).op().name());
+			} else if (n instanceof UnaryIntExpression) {
+				write(((UnaryIntExpression) n).op().name());
+			} 
+			return false;
+		}
+		
+		/**
+		 * Hashes the position of the relation in the bounds, or its name if it is not bound.
+		 */
+		public void visit(Relation relation) {
+			final Integer id = relations.get(relation);
+			write("relation");
+			write(id == null ? -1 : id);
+			if (id == null) {
+				write(relation.name());
+				write(relation.arity());
+			}
+		}
+		
+		/**
+		 * Hashes the position of the variable in the formula, and its name and arity when it is first reached.
+		 */
+		public void visit(Variable variable) {
+			final Integer id = varIds.get(variable);
+			write("variable");
+			if (id == null) {
+				varIds.put(variable, variables.size());
+				variables.add(variable);
+				write(-1);
+				write(variable.name());
+				write(variable.arity());
+			} else {
+				write(id);
+			}
+		}
+		
+		public void visit(ConstantExpression constExpr) {
+			write("constant");
+			write(constExpr.name());
+			write(constExpr.arity());
+		}
+		
+		public void visit(IntConstant intConst) {
+			write("int");
+			write(intConst.value());
+		}
+		
+		public void visit(ConstantFormula constant) {
+			write(constant.booleanValue() ? "true" : "false");
+		}
+	}
+	
+	/**
+	 * The arguments of a call to {@link Reporter#skolemizing(Decl, Relation, List)}.
+	 */
+	private static final class SkolemEvent {
+		final Decl decl;
+		final Relation skolem;
+		final List<Decl> context;
+		SkolemEvent(Decl decl, Relation skolem, List<Decl> context) {
+			this.decl = decl;
+			this.skolem = skolem;
+			this.context = context;
+		}
+	}
+	
+	/**
+	 * A reporter that records the skolems created during a translation, and 
+	 * forwards all events to another reporter.
+	 */
+	private static final class Skolems implements Reporter {
+		private final Reporter reporter;
+		final List<SkolemEvent> events = new ArrayList<SkolemEvent>();
+		
+		Skolems(Reporter reporter) { this.reporter = reporter; }
+		
+		public void skolemizing(Decl decl, Relation skolem, List<Decl> context) {
+			events.add(new SkolemEvent(decl, skolem, new ArrayList<Decl>(context)));
+			reporter.skolemizing(decl, skolem, context);
+		}
+		
+		public void detectingSymmetries(Bounds bounds) { reporter.detectingSymmetries(bounds); }
+		public void detectedSymmetries(Set<IntSet> parts) { reporter.detectedSymmetries(parts); }
+		public void optimizingBoundsAndFormula() { reporter.optimizingBoundsAndFormula(); }
+		public void translatingToBoolean(Formula formula, Bounds bounds) { reporter.translatingToBoolean(formula, bounds); }
+		public void generatingSBP() { reporter.generatingSBP(); }
+		public void translatingToCNF(BooleanFormula circuit) { reporter.translatingToCNF(circuit); }
+		public void solvingCNF(int step, int primaryVars, int vars, int clauses) { reporter.solvingCNF(step, primaryVars, vars, clauses); }
+		public void reportLex(List<Entry<Relation, Tuple>> original, List<Entry<Relation, Tuple>> permuted) { reporter.reportLex(original, permuted); }
+		public void debug(String debug) { reporter.debug(debug); }
+		public void warning(String warning) { reporter.warning(warning); }
+		public void reportConfigs(int configs, int primaryVars, int vars, int clauses) { reporter.reportConfigs(configs, primaryVars, vars, clauses); }
+	}
+	
+	/**
+	 * A factory of {@link CachedSolver cached solvers} that record the clauses they are given.
+	 */
+	private static final class Recorder extends SATFactory {
+		private static final long serialVersionUID = 1L;
+		private final SATFactory factory;
+		
+		Recorder(SATFactory factory) { this.factory = factory; }
+		
+		protected SATSolver createSolver() { return CachedSolver.wrap(factory.instance()); }
+		public String id() { return factory.id(); }
+		public String type() { return factory.type(); }
+		public String name() { return factory.name(); }
+		public boolean prover() { return false; }
+		public boolean incremental() { return factory.incremental(); }
+		public boolean assumptions() { return factory.assumptions(); }
+	}
+	
+	/**
+	 * The solver of a cached translation.  While a translation is being stored, the solver 
+	 * records the clauses it is given.  When a translation is read from the cache, the 
+	 * solver is only given the clauses of the cached CNF when it is first needed.  In both 
+	 * cases, the first call to solve returns the cached outcome, if there is one, and 
+	 * otherwise stores the outcome it computes.  Once clauses or variables are added to 
+	 * the solver, it no longer solves the cached problem, and it behaves like the solver 
+	 * it wraps.
+	 * 
+	 * <p>A cached solver is an {@link AssumptionSATSolver} or an {@link InterruptibleSATSolver} 
+	 * if the solver it wraps is one; see {@link #wrap(SATSolver)}.  Solving under 
+	 * assumptions is never cached.  Provers are not wrapped, since their translations 
+	 * are not {@linkplain TranslationCache#cacheable(Bounds, Options) cacheable}.</p>
+	 * 
+	 * @specfield primaryVars: int // the number of primary variables of the translation
+	 * @specfield outcome: lone boolean // the cached outcome
+	 * @specfield model: set [1..primaryVars] // the primary variables that are true in the cached solution
+	 */
+	private static class CachedSolver implements SATSolver {
+		private final SATSolver solver;
+		/** the clauses given to the solver, while recording */
+		private ClauseBuffer recorded;
+		/** the file from which to read the clauses of the solver, if they have not been read yet */
+		private File cnf;
+		private int numVars, numClauses;
+		
+		/** the file to which the outcome is written, or null if this no longer solves the cached problem */
+		private File outcomeFile;
+		private int primaryVars;
+		private Boolean outcome;
+		private BitSet model;
+		private boolean memoised;
+		
+		/**
+		 * Creates a solver that wraps the given solver and records the clauses that are given to it.
+		 */
+		CachedSolver(SATSolver solver) {
+			this.solver = solver;
+			this.recorded = new ClauseBuffer();
+		}
+		
+		/**
+		 * Returns a cached solver that wraps the given solver, records the clauses that 
+		 * are given to it, and implements the same {@link AssumptionSATSolver} and 
+		 * {@link InterruptibleSATSolver} interfaces as the given solver.
+		 */
+		static CachedSolver wrap(SATSolver solver) {
+			final boolean assumptions = solver instanceof AssumptionSATSolver;
+			final boolean interruptible = solver instanceof InterruptibleSATSolver;
+			if (assumptions && interruptible)
+				return new InterruptibleAssumptionSolver(solver);
+			else if (assumptions)
+				return new AssumptionSolver(solver);
+			else if (interruptible)
+				return new InterruptibleSolver(solver);
+			else
+				return new CachedSolver(solver);
+		}
+		
+		/**
+		 * Stops recording clauses, and returns the recorded clauses.  The first 
+		 * outcome of this solver will be written to the given file.
+		 */
+		ClauseBuffer recorded(File outcomeFile, int primaryVars) {
+			final ClauseBuffer clauses = recorded;
+			this.recorded = null;
+			this.outcomeFile = outcomeFile;
+			this.primaryVars = primaryVars;
+			return clauses;
+		}
+		
+		/**
+		 * Stops recording clauses, and gives the wrapped solver the clauses of the 
+		 * given file when they are first needed.
+		 */
+		void defer(File cnf, int numVars, int numClauses) {
+			this.recorded = null;
+			this.cnf = cnf;
+			this.numVars = numVars;
+			this.numClauses = numClauses;
+		}
+		
+		/**
+		 * Reads the outcome stored in the given file, if any.  Otherwise, the first 
+		 * outcome of this solver will be written to that file.
+		 */
+		void memoise(File outcomeFile, int primaryVars) {
+			this.outcomeFile = outcomeFile;
+			this.primaryVars = primaryVars;
+			try {
+				final BitSet model = new BitSet(primaryVars + 1);
+				this.outcome = readOutcome(outcomeFile, model);
+				this.model = model;
+			} catch (IOException e) {
+				this.outcome = null;
+			}
+		}
+		
+		/**
+		 * Gives the wrapped solver the clauses of the cached CNF if it does not 
+		 * have them yet, and returns it.
+		 */
+		final SATSolver solver() {
+			if (cnf != null) {
+				final ClauseBuffer clauses;
+				try {
+					clauses = readCNF(cnf, numVars, numClauses);
+				} catch (IOException e) {
+					throw new IllegalStateException("cannot read cached CNF " + cnf, e);
+				}
+				cnf = null;
+				solver.addVariables(numVars);
+				solver.addClauses(clauses);
+			}
+			return solver;
+		}
+		
+		/**
+		 * Marks this solver as no longer solving the cached problem.
+		 */
+		private void modified() {
+			outcomeFile = null;
+			outcome = null;
+			model = null;
+			memoised = false;
+		}
+		
+		public int numberOfVariables() { return cnf != null ? numVars : solver.numberOfVariables(); }
+		
+		public int numberOfClauses() { return cnf != null ? numClauses : solver.numberOfClauses(); }
+		
+		public void addVariables(int numVars) {
+			if (recorded != null) {
+				this.numVars += numVars;
+			} else {
+				modified();
+			}
+			solver().addVariables(numVars);
+		}
+		
+		public boolean addClause(int[] lits) {
+			if (recorded != null) {
+				recorded.add(lits, 0, lits.length);
+			} else {
+				modified();
+			}
+			return solver().addClause(lits);
+		}
+		
+		public boolean addClauses(ClauseBuffer clauses) {
+			if (recorded != null) {
+				for(int i = 0, size = clauses.size(); i < size; i++) {
+					recorded.add(clauses.literals(), clauses.start(i), clauses.end(i));
+				}
+			} else {
+				modified();
+			}
+			return solver().addClauses(clauses);
+		}
+		
+		public boolean solve() throws SATAbortedException {
+			if (outcome != null) {
+				memoised = true;
+				return outcome;
+			}
+			memoised = false;
+			final SATSolver solver = solver();
+			final boolean sat = solver.solve();
+			if (outcomeFile != null) {
+				final BitSet model = new BitSet(primaryVars + 1);
+				if (sat) {
+					for(int i = 1; i <= primaryVars; i++) {
+						if (solver.valueOf(i)) model.set(i);
+					}
+				}
+				try {
+					writeOutcome(outcomeFile, sat, model);
+				} catch (IOException e) { /* the outcome is simply not cached */ }
+				outcomeFile = null;
+			}
+			return sat;
+		}
+		
+		/**
+		 * Solves the wrapped solver under the given assumptions, bypassing the cached outcome.
+		 * @requires this.solver in AssumptionSATSolver
+		 */
+		final boolean solveAssuming(int[] assumptions) throws SATAbortedException {
+			memoised = false;
+			return ((AssumptionSATSolver) solver()).solve(assumptions);
+		}
+		
+		/**
+		 * Returns the failed assumptions of the wrapped solver.
+		 * @requires this.solver in AssumptionSATSolver
+		 */
+		final int[] failed() {
+			return ((AssumptionSATSolver) solver).failedAssumptions();
+		}
+		
+		/**
+		 * Interrupts the wrapped solver.
+		 * @requires this.solver in InterruptibleSATSolver
+		 */
+		final void interruptSolver() {
+			((InterruptibleSATSolver) solver).interrupt();
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 * <p>When the last outcome was cached, only the values of the primary variables are known.</p>
+		 */
+		public boolean valueOf(int variable) {
+			if (memoised) {
+				if (!outcome || variable < 1 || variable > primaryVars)
+					throw new IllegalStateException("no cached value for variable " + variable);
+				return model.get(variable);
+			}
+			return solver().valueOf(variable);
+		}
+		
+		public void free() {
+			solver.free();
+			recorded = null;
+		}
+	}
+	
+	/**
+	 * A {@link CachedSolver} that wraps an {@link InterruptibleSATSolver}.
+	 */
+	private static final class InterruptibleSolver extends CachedSolver implements InterruptibleSATSolver {
+		InterruptibleSolver(SATSolver solver) { super(solver); }
+		public void interrupt() { interruptSolver(); }
+	}
+	
+	/**
+	 * A {@link CachedSolver} that wraps an {@link AssumptionSATSolver}.
+	 */
+	private static class AssumptionSolver extends CachedSolver implements AssumptionSATSolver {
+		AssumptionSolver(SATSolver solver) { super(solver); }
+		public boolean solve(int[] assumptions) throws SATAbortedException { return solveAssuming(assumptions); }
+		public int[] failedAssumptions() { return failed(); }
+	}
+	
+	/**
+	 * A {@link CachedSolver} that wraps a solver that is both an {@link AssumptionSATSolver} 
+	 * and an {@link InterruptibleSATSolver}.
+	 */
+	private static final class InterruptibleAssumptionSolver extends AssumptionSolver implements InterruptibleSATSolver {
+		InterruptibleAssumptionSolver(SATSolver solver) { super(solver); }
+		public void interrupt() { interruptSolver(); }
+	}
+}
@@ -54,6 +54,8 @@ import kodkod.engine.bool.Operator;
 import kodkod.engine.config.Options;
 import kodkod.engine.decomp.DecompFormulaSlicer;
 import kodkod.engine.ltl2fol.TemporalTranslator;
+import kodkod.engine.satlab.ActivatedSATSolver;
+import kodkod.engine.satlab.AssumptionSATSolver;
 import kodkod.engine.satlab.SATSolver;
 import kodkod.engine.satlab.TargetSATSolver;
 import kodkod.engine.satlab.WTargetSATSolver;
@@ -432,6 +434,7 @@ public final class Translator {
 	 * @throws UnboundLeafException  this.originalFormula refers to an undeclared variable or a relation not mapped by this.bounds.
 	 * @throws HigherOrderDeclException  this.originalFormula contains a higher order declaration that cannot
 	 * be skolemized, or it can be skolemized but this.options.skolemDepth < 0
+	 * @throws kodkod.engine.CapacityExceededException  some r: this.bounds.relations | this.bounds.universe.size()^r.arity > Integer.MAX_VALUE
 	 */
 	private Translation translate() {
 
@@ -458,6 +461,9 @@ public final class Translator {
 			if (!actualAnnotated.usesInts()) bounds.ints().clear();
 		}
 
+		// Fail before any work is done if a remaining relation is too wide for a matrix.
+		LeafInterpreter.checkCapacity(bounds);
+
 		// Detect symmetries.
 		final SymmetryBreaker breaker = new SymmetryBreaker(bounds, options.reporter());
 		// Optimize formula and bounds by using symmetry information to tighten bounds and 
@@ -611,11 +617,15 @@ public final class Translator {
 			} else if (circuit.size()==0) { 
 				return trivial(circuit.op().identity(), log, annotated.relations());
 			}
-			circuit.add(breaker.generateSBP(interpreter, options));
+			final BooleanValue sbp = breaker.generateSBP(interpreter, options, options.automorphisms());
+			if (options.assumptionCores() && options.solver().assumptions() && !options.solver().prover())
+				return toActivatedCNF(circuit, sbp, interpreter, log);
+			circuit.add(sbp);
 			return toCNF((BooleanFormula)factory.accumulate(circuit), interpreter, log);
 		} else {
-			final BooleanValue circuit = (BooleanValue)FOL2BoolTranslator.translate(annotated, interpreter);
-			BooleanValue sbp = breaker.generateSBP(interpreter, options); // [HASLab] for Electrod we need symmetries even when trivial
+			final BooleanValue circuit = incremental ? (BooleanValue)FOL2BoolTranslator.translate(annotated, interpreter) : 
+				FOL2BoolTranslator.translate(annotated, interpreter, options);
+			BooleanValue sbp = breaker.generateSBP(interpreter, options, options.automorphisms() && !incremental); // [HASLab] for Electrod we need symmetries even when trivial
 			if (circuit.op()==Operator.CONST) { 
 				options.reporter().debug("trivial boolean circuit: "+circuit);
 				return trivial((BooleanConstant)circuit, null, bounds.relations());
@@ -662,6 +672,39 @@ public final class Translator {
 		}
 	}
 
+	/**
+	 * Translates the given roots and SBP to CNF, adds the clauses to an
+	 * {@linkplain AssumptionSATSolver} returned by options.solver(), and returns 
+	 * a Translation object constructed from the solver and the provided arguments.
+	 * Unlike {@link #toCNF(BooleanFormula, LeafInterpreter, TranslationLog)}, the 
+	 * roots are not asserted:  their literals become the activation literals of an 
+	 * {@linkplain ActivatedSATSolver}, so that the unsatisfiable core of the formula
+	 * can be extracted by solving under subsets of the roots, without the resolution 
+	 * trace of a {@linkplain kodkod.engine.satlab.SATProver}. 
+	 * @requires options.assumptionCores && options.solver.assumptions()
+	 * @requires roots.op = AND && some roots.inputs && !roots.isShortCircuited()
+	 * @requires log.roots are the formulas whose translations are roots.inputs
+	 * @see #toCNF(BooleanFormula, LeafInterpreter, TranslationLog)
+	 */
+	private Translation toActivatedCNF(BooleanAccumulator roots, BooleanValue sbp, LeafInterpreter interpreter, TranslationLog log) {
+		options.reporter().translatingToCNF((BooleanFormula) interpreter.factory().accumulate(roots));
+		final int maxPrimaryVar = interpreter.factory().maxVariable();
+		final Map<Relation, IntSet> varUsage = interpreter.vars();
+		final int[] activations = new int[roots.size()];
+		int i = 0;
+		for(BooleanValue root : roots) { 
+			activations[i++] = root.label();
+		}
+		final SATSolver cnf = Bool2CNFTranslator.translate(roots, sbp, maxPrimaryVar, options.solver());
+		if (bounds instanceof PardinusBounds) 
+			doTargets((PardinusBounds) bounds, interpreter, cnf);
+		
+		interpreter = null; // enable gc
+		
+		return new Translation.Whole(completeBounds(), options, new ActivatedSATSolver((AssumptionSATSolver) cnf, activations), 
+				varUsage, maxPrimaryVar, log);
+	}
+
 	/**
 	 * Add the targets defined in the bounds to the SAT problem. Note that this
 	 * process will only be performed once, as the iteration does not involve
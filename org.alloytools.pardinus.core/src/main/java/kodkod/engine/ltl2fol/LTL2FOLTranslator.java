@@ -42,6 +42,7 @@ import kodkod.ast.UnaryTempFormula;
 import kodkod.ast.Variable;
 import kodkod.ast.operator.TemporalOperator;
 import kodkod.ast.visitor.AbstractReplacer;
+import kodkod.engine.fol2sat.RelationCollector;
 
 import static kodkod.engine.ltl2fol.TemporalTranslator.L_FIRST;
 import static kodkod.engine.ltl2fol.TemporalTranslator.L_LAST;
@@ -78,6 +79,13 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 	/** Pre-computed information about the formula, allows optimizations. */
 	private boolean has_past;
 
+	/**
+	 * Whether the translations of the nodes visited outside temporal operators
+	 * are cached, so that nodes shared by the translated nodes are translated
+	 * once.
+	 */
+	private boolean shared = false;
+
 	/**
 	 * Translates an LTL temporal formula into its standard Kodkod FOL
 	 * representation, given the extension of the variable relations.
@@ -93,9 +101,20 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 		this.vars_found = new HashSet<Relation>();
 	}
 	
+	/**
+	 * Returns the cached translation of the given node, if this translator
+	 * shares translations and the node is visited outside temporal operators.
+	 * Inside temporal operators the translation of a node depends on the time
+	 * variables in scope, so it cannot be reused.
+	 */
+	@Override
+	protected <N extends Node> N lookup(N node) {
+		return shared && variables.size() == 1 ? super.lookup(node) : null;
+	}
+
 	@Override
 	protected <N extends Node> N cache(N node, N replacement) {
-		if (cached.contains(node)) {
+		if (cached.contains(node) || (shared && variables.size() == 1)) {
 			cache.put(node, replacement);
 		}
 		if (node instanceof Formula)
@@ -124,8 +143,34 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 	public static Formula translate(Formula form, int state, boolean has_past, Map<Formula,Formula> tempTransLog) {
 		LTL2FOLTranslator translator = new LTL2FOLTranslator(has_past);
 
-		Formula f;
+		Formula f = traceConstraints(has_past);
+		
+		translator.pushLevel();
+		translator.pushVariable(state);
+
+		// log translation of formulas
+		Formula tfrm =form.accept(translator);
+		tempTransLog.putAll(translator.inv_cache);
+		
+		Formula hack = Formula.TRUE;
+		if (!TemporalTranslator.ExplicitUnrolls) {
+			for (Relation r : translator.vars_found)
+				// r.(loop.prev) = r.last
+				hack = hack.and(r.join(LOOP.join(PREFIX.transpose())).eq(r.join(LAST)));
+		}
 		
+		return Formula.and(f,tfrm,hack);
+	}
+
+	/**
+	 * The constraints on the structure of the time relation constants that
+	 * {@link #translate(Formula, int, boolean, Map)} adds to every formula.
+	 * 
+	 * @param has_past
+	 *            whether the formula has past operators.
+	 * @return the constraints on the time relation constants.
+	 */
+	private static Formula traceConstraints(boolean has_past) {
 		if (TemporalTranslator.ExplicitUnrolls) {
 
 			Variable v = Variable.unary("v");
@@ -142,7 +187,7 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 
 			Formula loopDecl_unr = LOOP.one();
 			
-			f = Formula.and(order_unr_trace1, order_unr_trace2, order_unr_trace3, order_unr_trace4, loopDecl_unr);
+			return Formula.and(order_unr_trace1, order_unr_trace2, order_unr_trace3, order_unr_trace4, loopDecl_unr);
 		} else {
 			// TotalOrder(S/Next,State,S/First,S/Last)
 			Formula st = PREFIX.totalOrder(STATE, FIRST, LAST);
@@ -151,24 +196,8 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 			
 			Formula loopDecl_unr = LOOP.one();
 			
-			f = Formula.and(st,lv,loopDecl_unr);
+			return Formula.and(st,lv,loopDecl_unr);
 		}
-		
-		translator.pushLevel();
-		translator.pushVariable(state);
-
-		// log translation of formulas
-		Formula tfrm =form.accept(translator);
-		tempTransLog.putAll(translator.inv_cache);
-		
-		Formula hack = Formula.TRUE;
-		if (!TemporalTranslator.ExplicitUnrolls) {
-			for (Relation r : translator.vars_found)
-				// r.(loop.prev) = r.last
-				hack = hack.and(r.join(LOOP.join(PREFIX.transpose())).eq(r.join(LAST)));
-		}
-		
-		return Formula.and(f,tfrm,hack);
 	}
 
 	/**
@@ -223,6 +252,66 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 		return result;
 	}
 
+	/**
+	 * Converts LTL temporal nodes into regular Kodkod FOL nodes in a concrete time
+	 * step, counting from the {@link TemporalTranslator#FIRST initial} time. The
+	 * i-th node of the result is equivalent to the translation of the i-th given
+	 * node by {@link #translate(Formula, int, boolean, Map)},
+	 * {@link #translate(Expression, int, boolean)} or
+	 * {@link #translate(IntExpression, int, boolean)}, but the nodes are converted
+	 * by the same visitor, so that the subnodes that they share outside temporal
+	 * operators are converted once and remain shared by the resulting nodes. This
+	 * is the method that should be called to evaluate several nodes at the same
+	 * time step.
+	 * 
+	 * @param nodes
+	 *            the LTL formulas, expressions and int expressions to be converted.
+	 * @param state
+	 *            the concrete state on which to evaluate the nodes.
+	 * @param has_past
+	 *            whether the nodes have past operators.
+	 * @return the resulting static nodes.
+	 */
+	public static List<Node> translate(List<? extends Node> nodes, int state, boolean has_past) {
+		// formulas are converted with a time level in scope, expressions without
+		final LTL2FOLTranslator formulas = new LTL2FOLTranslator(has_past);
+		formulas.shared = true;
+		formulas.pushLevel();
+		formulas.pushVariable(state);
+		final LTL2FOLTranslator expressions = new LTL2FOLTranslator(has_past);
+		expressions.shared = true;
+		expressions.pushVariable(state);
+
+		final Formula f = traceConstraints(has_past);
+		final Map<Relation, Formula> hacks = new HashMap<Relation, Formula>();
+		final List<Node> result = new ArrayList<Node>(nodes.size());
+		for (Node node : nodes) {
+			if (node instanceof Formula) {
+				Formula hack = Formula.TRUE;
+				if (has_past && !TemporalTranslator.ExplicitUnrolls) {
+					// the same constraints that translate(Formula,...) adds for the variable relations 
+					for (Relation r : ((Formula) node).accept(new RelationCollector(new HashSet<Node>()))) {
+						if (!r.isVariable())
+							continue;
+						Formula h = hacks.get(r);
+						if (h == null) {
+							h = r.getExpansion().join(LOOP.join(PREFIX.transpose())).eq(r.getExpansion().join(LAST));
+							hacks.put(r, h);
+						}
+						hack = hack.and(h);
+					}
+				}
+				result.add(Formula.and(f, ((Formula) node).accept(formulas), hack));
+			} else if (node instanceof Expression)
+				result.add(((Expression) node).accept(expressions));
+			else if (node instanceof IntExpression)
+				result.add(((IntExpression) node).accept(expressions));
+			else
+				throw new IllegalArgumentException("Not a formula, expression or int expression: " + node);
+		}
+		return result;
+	}
+
 	@Override
 	public Expression visit(ConstantExpression constant) {
 		Expression eu = STATE;
@@ -264,6 +353,8 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 
 	@Override
 	public Formula visit(UnaryTempFormula unaryTempFormula) {
+		Formula ret = lookup(unaryTempFormula);
+		if (ret != null) return ret;
 		pushOperator(unaryTempFormula.op());
 		pushLevel();
 		pushVariable();
@@ -277,6 +368,8 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 
 	@Override
 	public Formula visit(BinaryTempFormula binaryTempFormula) {
+		Formula ret = lookup(binaryTempFormula);
+		if (ret != null) return ret;
 		pushOperator(binaryTempFormula.op());
 		pushLevel();
 		pushVariable();
@@ -331,6 +424,8 @@ public class LTL2FOLTranslator extends AbstractReplacer {
 
 	@Override
 	public Expression visit(TempExpression tempExpression) {
+		Expression ret = lookup(tempExpression);
+		if (ret != null) return ret;
 		pushOperator(tempExpression.op());
 		pushVariable();
 		Expression rt = tempExpression.expression().accept(this);
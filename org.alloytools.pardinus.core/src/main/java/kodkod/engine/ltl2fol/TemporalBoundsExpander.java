@@ -82,7 +82,83 @@ public class TemporalBoundsExpander {
 		if (!bounds.resolved())
 			throw new IllegalArgumentException("Symbolic bounds must be resolved at this stage.");
 		Universe u = expandUniverse(bounds.universe(), steps, unrolls);
-		return expand(bounds, u, steps, unrolls);
+		return expandBounds(bounds, u, steps, unrolls, null);
+	}
+
+	/**
+	 * Expands the old bounds as {@link #expand(PardinusBounds, int, int)}, but over
+	 * a given universe, which may have been
+	 * {@link #expandUniverse(Universe, int, int) expanded} for longer traces. The
+	 * state atoms beyond <code>steps</code> are then left out of every bound.
+	 * Expanding the same bounds for successive trace lengths over the same
+	 * universe keeps the index of every tuple, and the conversions of the
+	 * original bounds into the universe recorded in <code>converted</code> are
+	 * reused from one length to the next.
+	 * 
+	 * @assumes unrolls > 0
+	 * @assumes states > 0
+	 * @assumes bounds.resolved()
+	 * @param bounds
+	 *            the bounds with variable relations to be expanded.
+	 * @param uni
+	 *            a universe expanded for at least <code>steps</code> states
+	 *            and <code>unrolls</code> unrolls.
+	 * @param steps
+	 *            the number of distinguished states in the trace.
+	 * @param unrolls
+	 *            the number of trace unrolls.
+	 * @param converted
+	 *            the tuple sets of the old bounds already converted into
+	 *            <code>uni</code>, to which the new conversions are added.
+	 * @return the expanded bounds.
+	 * @throws IllegalArgumentException
+	 *             unrolls < 1 || states < 1 || !bounds.resolved() || uni lacks
+	 *             the required state atoms.
+	 */
+	public static PardinusBounds expand(PardinusBounds bounds, Universe uni, int steps, int unrolls,
+			Map<TupleSet, TupleSet> converted) {
+		if (unrolls < 1 || steps < 1)
+			throw new IllegalArgumentException("Number of unrolls or steps <1.");
+		if (!bounds.resolved())
+			throw new IllegalArgumentException("Symbolic bounds must be resolved at this stage.");
+		final boolean states = TemporalTranslator.ExplicitUnrolls
+				? uni.contains(TemporalTranslator.STATEATOM + (steps - 1) + TemporalTranslator.STATE_SEP + (unrolls - 1))
+				: uni.contains(TemporalTranslator.STATEATOM + steps) && uni.contains(TemporalTranslator.LEVEL + "" + (unrolls - 1));
+		if (!states)
+			throw new IllegalArgumentException("Universe not expanded for " + steps + " steps and " + unrolls + " unrolls.");
+		return expandBounds(bounds, uni, steps, unrolls, converted);
+	}
+
+	/**
+	 * Expands temporal bounds into their static representation for traces of
+	 * any length up to <code>steps</code>. The universe and the bounds of the
+	 * variable relations are those of {@link #expand(PardinusBounds, int, int)},
+	 * but the {@link TemporalTranslator#STATE state}, {@link TemporalTranslator#LAST last}
+	 * and {@link TemporalTranslator#PREFIX prefix} relations are left open, so
+	 * that the actual trace length is selected by the last state. Only
+	 * supported without unrolls, i.e., for formulas without past operators.
+	 *
+	 * @assumes steps > 0
+	 * @assumes bounds.resolved()
+	 * @param bounds
+	 *            the bounds with variable relations to be expanded.
+	 * @param steps
+	 *            the maximum number of distinguished states in the trace.
+	 * @return the expanded bounds.
+	 * @throws IllegalArgumentException
+	 *             steps < 1 || !bounds.resolved().
+	 * @throws UnsupportedOperationException
+	 *             if unrolls are not explicit.
+	 */
+	public static PardinusBounds expandVariableLength(PardinusBounds bounds, int steps) {
+		if (!TemporalTranslator.ExplicitUnrolls)
+			throw new UnsupportedOperationException();
+		PardinusBounds newBounds = expand(bounds, steps, 1);
+		TupleSet states = newBounds.upperBound(TemporalTranslator.STATE);
+		newBounds.bound(TemporalTranslator.STATE, newBounds.lowerBound(TemporalTranslator.FIRST), states);
+		newBounds.bound(TemporalTranslator.LAST, states);
+		newBounds.bound(TemporalTranslator.PREFIX, newBounds.upperBound(TemporalTranslator.PREFIX));
+		return newBounds;
 	}
 
 	/**
@@ -104,11 +180,13 @@ public class TemporalBoundsExpander {
 	 *            the number of distinguished states in the trace.
 	 * @param unrolls
 	 *            the number of trace unrolls.
-	 * @param force_loop
-	 *            whether the trace will necessarily loop.
+	 * @param converted
+	 *            the tuple sets already converted into the new universe, or null
+	 *            if conversions are not to be reused.
 	 * @return the expanded bounds with the new universe.
 	 */
-	private static PardinusBounds expand(PardinusBounds bounds, Universe uni, int steps, int unrolls) {
+	private static PardinusBounds expandBounds(PardinusBounds bounds, Universe uni, int steps, int unrolls,
+			Map<TupleSet, TupleSet> converted) {
 		assert(unrolls > 0);
 		assert(steps > 0);
 		assert(bounds.resolved());
@@ -124,20 +202,18 @@ public class TemporalBoundsExpander {
 			newBounds.boundExactly(TemporalTranslator.LAST, uni.factory().setOf(uni.factory().tuple(TemporalTranslator.STATEATOM + (steps - 1) + sp + (unrolls - 1))));
 			newBounds.boundExactly(TemporalTranslator.LAST_,uni.factory().setOf(uni.factory().tuple(TemporalTranslator.STATEATOM + (steps - 1) + sp + 0)));
 
-			TupleSet tupleSetTime_unr = uni.factory().range(
-					uni.factory().tuple(TemporalTranslator.STATEATOM + "0" + sp + "0"),
-					uni.factory().tuple(TemporalTranslator.STATEATOM + (steps - 1) + sp + (unrolls - 1)));
-			tupleSetTime_unr_first = uni.factory().range(
-					uni.factory().tuple(TemporalTranslator.STATEATOM + "0" + sp + "0"),
-					uni.factory().tuple(TemporalTranslator.STATEATOM + (steps - 1) + sp + "0"));
+			// the universe may have state atoms for longer traces, so the states of
+			// each unroll are not necessarily contiguous
+			TupleSet tupleSetTime_unr = uni.factory().noneOf(1);
+			for (int j = 0; j < unrolls; j++)
+				tupleSetTime_unr.addAll(states(uni, steps, j));
+			tupleSetTime_unr_first = states(uni, steps, 0);
 			TupleSet tupleSetTime_unr_first_lasts = uni.factory().setOf(tupleSetTime_unr_first);
 			for (int j = 0; j < unrolls; j++)
 				tupleSetTime_unr_first_lasts.add(uni.factory().tuple(TemporalTranslator.STATEATOM + (steps - 1) + sp + j));
 			newBounds.bound(TemporalTranslator.STATE, tupleSetTime_unr_first_lasts, tupleSetTime_unr);
 
-			TupleSet tupleSetTime_unr_last = uni.factory().range(
-					uni.factory().tuple(TemporalTranslator.STATEATOM + "0" + sp + (unrolls - 1)),
-					uni.factory().tuple(TemporalTranslator.STATEATOM + (steps - 1) + sp + (unrolls - 1)));
+			TupleSet tupleSetTime_unr_last = states(uni, steps, unrolls - 1);
 			newBounds.bound(TemporalTranslator.LOOP, tupleSetTime_unr_last);
 
 			TupleSet trace_unr_u = uni.factory().noneOf(2);
@@ -206,13 +282,13 @@ public class TemporalBoundsExpander {
 		}
 
 		for (Relation r : bounds.relations()) {
-			TupleSet tupleSetL = convertToUniv(bounds.lowerBound(r), uni);
-			TupleSet tupleSetU = convertToUniv(bounds.upperBound(r), uni);
+			TupleSet tupleSetL = convertToUniv(bounds.lowerBound(r), uni, converted);
+			TupleSet tupleSetU = convertToUniv(bounds.upperBound(r), uni, converted);
 			if (r.isVariable()) {
 				newBounds.bound(r.getExpansion(), tupleSetL.product(tupleSetTime_unr_first),
 						tupleSetU.product(tupleSetTime_unr_first));
 				if (bounds.target(r) != null) {
-					TupleSet tupleSetT = convertToUniv(bounds.target(r), uni);
+					TupleSet tupleSetT = convertToUniv(bounds.target(r), uni, converted);
 					newBounds.setTarget(r.getExpansion(), tupleSetT.product(tupleSetTime_unr_first));
 				}
 				if (bounds.weight(r) != null)
@@ -220,7 +296,7 @@ public class TemporalBoundsExpander {
 			} else {
 				newBounds.bound(r, tupleSetL, tupleSetU);
 				if (bounds.target(r) != null) {
-					TupleSet tupleSetT = convertToUniv(bounds.target(r), uni);
+					TupleSet tupleSetT = convertToUniv(bounds.target(r), uni, converted);
 					newBounds.setTarget(r, tupleSetT);
 				}
 				if (bounds.weight(r) != null)
@@ -237,7 +313,7 @@ public class TemporalBoundsExpander {
 		newBounds.integration = bounds.integration;
 
 		if (bounds.amalgamated() != null) {
-			PardinusBounds newAmalg = expand(bounds.amalgamated(), uni, steps, unrolls);
+			PardinusBounds newAmalg = expandBounds(bounds.amalgamated(), uni, steps, unrolls, converted);
 			newBounds = new PardinusBounds(newBounds, newAmalg);
 		}
 
@@ -417,6 +493,34 @@ public class TemporalBoundsExpander {
 		return new Universe(newAtoms);
 	}
 
+	/**
+	 * Returns the {@link TemporalTranslator#STATE state} atoms of the first
+	 * <code>steps</code> states of the given unroll, when unrolls are
+	 * {@link TemporalTranslator#ExplicitUnrolls explicit}.
+	 */
+	private static TupleSet states(Universe uni, int steps, int unroll) {
+		TupleSet states = uni.factory().noneOf(1);
+		for (int i = 0; i < steps; i++)
+			states.add(uni.factory().tuple(TemporalTranslator.STATEATOM + i + TemporalTranslator.STATE_SEP + unroll));
+		return states;
+	}
+
+	/**
+	 * Converts an existing tuple set into a different universe, reusing the
+	 * conversion recorded in <code>converted</code> if any, and recording it
+	 * otherwise.
+	 */
+	private static TupleSet convertToUniv(TupleSet tset, Universe universe, Map<TupleSet, TupleSet> converted) {
+		if (converted == null)
+			return convertToUniv(tset, universe);
+		TupleSet tupleSet = converted.get(tset);
+		if (tupleSet == null) {
+			tupleSet = convertToUniv(tset, universe).unmodifiableView();
+			converted.put(tset, tupleSet);
+		}
+		return tupleSet;
+	}
+
 	/**
 	 * Converts an existing tuple set into an identical tuple set with a different
 	 * universe.
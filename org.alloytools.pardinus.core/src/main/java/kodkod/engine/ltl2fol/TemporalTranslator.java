@@ -24,6 +24,7 @@ package kodkod.engine.ltl2fol;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -69,6 +70,8 @@ import kodkod.ast.visitor.ReturnVisitor;
 import kodkod.engine.config.Options;
 import kodkod.instance.PardinusBounds;
 import kodkod.instance.Tuple;
+import kodkod.instance.TupleSet;
+import kodkod.instance.Universe;
 
 /**
  * Expands temporal problems into plain problems, i.e., formulas with
@@ -122,6 +125,10 @@ public class TemporalTranslator {
 	public final int past_depth;
 	/** Map logging the translation of temporal formulas, from resulting formula to original one. **/
 	public final Map<Formula,Formula> tempTransLog = new HashMap<Formula,Formula>();
+	/** The universe shared by the bounds {@link #expand(int, int) expanded} for every trace length. */
+	private Universe expandedUniverse;
+	/** The bounds of the original relations converted into the shared universe. */
+	private final Map<TupleSet,TupleSet> convertedBounds = new IdentityHashMap<TupleSet,TupleSet>();
 	
 	/**
 	 * Constructs a new temporal translator to expand temporal formulas and variable
@@ -174,6 +181,70 @@ public class TemporalTranslator {
 		return TemporalBoundsExpander.expand(bounds, traceLength, past_depth);
 	}
 
+	/**
+	 * Translates {@link PardinusBounds temporal bound} into standard bounds as
+	 * {@link #expand(int)}, but over a universe with the state atoms of the
+	 * longest trace, shared by every trace length up to it. The tuples of the
+	 * bounds for a trace length thus keep their indices in the bounds for longer
+	 * ones, and the bounds of the original relations are converted into that
+	 * universe only once.
+	 * 
+	 * @see TemporalBoundsExpander#expand(PardinusBounds, Universe, int, int, Map)
+	 * 
+	 * @param traceLength
+	 *            the current trace length.
+	 * @param maxTraceLength
+	 *            the maximum trace length, which must be the same for every call.
+	 * @return the temporal bounds expanded into standard bounds.
+	 * @throws IllegalArgumentException
+	 *             traceLength > maxTraceLength
+	 */
+	public PardinusBounds expand(int traceLength, int maxTraceLength) {
+		if (traceLength > maxTraceLength)
+			throw new IllegalArgumentException("Trace length above the maximum.");
+		if (expandedUniverse == null)
+			expandedUniverse = TemporalBoundsExpander.expandUniverse(bounds.universe(), maxTraceLength, past_depth);
+		return TemporalBoundsExpander.expand(bounds, expandedUniverse, traceLength, past_depth, convertedBounds);
+	}
+
+	/**
+	 * Translates {@link PardinusBounds temporal bound} into standard bounds
+	 * admitting every trace length up to the one passed. The actual length of a
+	 * solution is determined by its {@link #LAST last} state, which must be
+	 * further restricted by {@link #variableLengthConstraints()}. Only available
+	 * if there are no past operators.
+	 *
+	 * @see TemporalBoundsExpander#expandVariableLength(PardinusBounds, int)
+	 *
+	 * @param maxTraceLength
+	 *            the maximum trace length.
+	 * @return the temporal bounds expanded into standard bounds.
+	 * @throws UnsupportedOperationException
+	 *             past_depth > 1
+	 */
+	public PardinusBounds expandVariableLength(int maxTraceLength) {
+		if (past_depth > 1)
+			throw new UnsupportedOperationException("Variable length traces do not support past operators.");
+		return TemporalBoundsExpander.expandVariableLength(bounds, maxTraceLength);
+	}
+
+	/**
+	 * The additional constraints required when the bounds are
+	 * {@link #expandVariableLength(int) expanded for variable trace lengths}:
+	 * there is a single last state, the loop lies within the trace, and
+	 * variable relations are empty in the states beyond the last one.
+	 *
+	 * @return the constraints over the trace relations.
+	 */
+	public Formula variableLengthConstraints() {
+		Formula f = Formula.and(LAST.one(), LAST.in(STATE), LOOP.in(STATE));
+		Expression outside = Expression.UNIV.difference(STATE);
+		for (Relation r : bounds.relations())
+			if (r.isVariable())
+				f = f.and(r.getExpansion().join(outside).no());
+		return f;
+	}
+
 	/**
 	 * Converts an LTL temporal formula into its FOL static representation. The
 	 * formula is previously converted into negative normal form (NNF) to guarantee
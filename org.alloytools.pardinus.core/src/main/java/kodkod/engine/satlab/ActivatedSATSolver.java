@@ -0,0 +1,174 @@
+/*
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.satlab;
+
+import java.util.Arrays;
+
+/**
+ * An {@link AssumptionSATSolver} whose top-level constraints are guarded by 
+ * activation literals.  The clauses of the wrapped solver only define these 
+ * literals, and every call to {@link #solve()} or {@link #solve(int[])} 
+ * assumes them, so this solver behaves like one in which the constraints are 
+ * asserted.  Solving the {@linkplain #solver() wrapped solver} under a subset 
+ * of the {@linkplain #activations() activation literals} instead checks the 
+ * satisfiability of the corresponding subset of the constraints, which is how 
+ * unsatisfiable cores are extracted from solvers that cannot log resolution 
+ * proofs.
+ * 
+ * @specfield solver: AssumptionSATSolver
+ * @specfield activations: set int
+ * @invariant this.variables = solver.variables && this.clauses = solver.clauses + activations
+ */
+public final class ActivatedSATSolver implements AssumptionSATSolver, InterruptibleSATSolver {
+	private final AssumptionSATSolver solver;
+	private final int[] activations;
+	
+	/**
+	 * Constructs a solver that assumes the given activation literals 
+	 * on top of the clauses of the given solver.
+	 * @requires all i: [0..activations.length) | abs(activations[i]) in solver.variables
+	 * @ensures this.solver' = solver && this.activations' = activations[int]
+	 */
+	public ActivatedSATSolver(AssumptionSATSolver solver, int[] activations) {
+		this.solver = solver;
+		this.activations = activations.clone();
+	}
+	
+	/**
+	 * Returns the wrapped solver, whose clauses do not include the activation 
+	 * literals.  Clauses added to the returned solver are added to this one.
+	 * @return this.solver
+	 */
+	public AssumptionSATSolver solver() { 
+		return solver;
+	}
+	
+	/**
+	 * Returns a fresh array containing the activation literals of this solver.
+	 * @return some a: int[] | a[int] = this.activations
+	 */
+	public int[] activations() { 
+		return activations.clone();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#numberOfVariables()
+	 */
+	public int numberOfVariables() {
+		return solver.numberOfVariables();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#numberOfClauses()
+	 */
+	public int numberOfClauses() {
+		return solver.numberOfClauses();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#addVariables(int)
+	 */
+	public void addVariables(int numVars) {
+		solver.addVariables(numVars);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#addClause(int[])
+	 */
+	public boolean addClause(int[] lits) {
+		return solver.addClause(lits);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#addClauses(kodkod.engine.satlab.ClauseBuffer)
+	 */
+	public boolean addClauses(ClauseBuffer clauses) {
+		return solver.addClauses(clauses);
+	}
+
+	/**
+	 * Returns true if there is a satisfying assignment for this.solver.clauses 
+	 * that sets all activation literals to true.
+	 * @see kodkod.engine.satlab.SATSolver#solve()
+	 */
+	public boolean solve() throws SATAbortedException {
+		return solver.solve(activations);
+	}
+
+	/**
+	 * Returns true if there is a satisfying assignment for this.solver.clauses 
+	 * that sets all activation literals and all given literals to true.
+	 * @see kodkod.engine.satlab.AssumptionSATSolver#solve(int[])
+	 */
+	public boolean solve(int[] assumptions) throws SATAbortedException {
+		final int[] all = Arrays.copyOf(activations, activations.length + assumptions.length);
+		System.arraycopy(assumptions, 0, all, activations.length, assumptions.length);
+		return solver.solve(all);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.AssumptionSATSolver#failedAssumptions()
+	 */
+	public int[] failedAssumptions() {
+		return solver.failedAssumptions();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#valueOf(int)
+	 */
+	public boolean valueOf(int variable) {
+		return solver.valueOf(variable);
+	}
+
+	/**
+	 * Interrupts the wrapped solver, if it can be interrupted.
+	 * @see kodkod.engine.satlab.InterruptibleSATSolver#interrupt()
+	 */
+	public void interrupt() {
+		if (solver instanceof InterruptibleSATSolver)
+			((InterruptibleSATSolver) solver).interrupt();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#free()
+	 */
+	public void free() {
+		solver.free();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() { 
+		return solver + " under " + activations.length + " activation literals";
+	}
+}
@@ -0,0 +1,68 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.satlab;
+
+/**
+ * Provides an interface to an incremental SAT solver that can decide the
+ * satisfiability of its clauses under a set of assumptions, i.e., unit literals
+ * that hold for a single call to {@link #solve(int[])} and are retracted
+ * afterwards. Clauses learned while solving under assumptions remain valid for
+ * subsequent calls, which is what makes this interface useful for bounded model
+ * checking and core extraction.
+ * 
+ * @specfield variables: set [1..)
+ * @specfield clauses: set Clause
+ */
+public interface AssumptionSATSolver extends SATSolver {
+
+	/**
+	 * Returns true if there is a satisfying assignment for this.clauses that
+	 * also sets every literal in the given array to true. Otherwise returns
+	 * false. Unlike {@link #solve()}, an unsatisfiable outcome does not prevent
+	 * further clauses from being added nor the solver from being called again
+	 * under different assumptions. No reference to the specified array is kept.
+	 * 
+	 * @requires all i: [0..assumptions.length) | abs(assumptions[i]) in this.variables
+	 * @return true if this.clauses and assumptions are satisfiable; otherwise false.
+	 * @throws SATAbortedException - the call to solve was cancelled or could not
+	 *             terminate normally.
+	 */
+	public abstract boolean solve(int[] assumptions) throws SATAbortedException;
+
+	/**
+	 * Returns a subset of the assumptions given to the last call to
+	 * {@link #solve(int[])} that is already unsatisfiable with this.clauses,
+	 * provided that the call returned false. The returned array is empty if
+	 * this.clauses are unsatisfiable by themselves. The default implementation
+	 * returns null, which means that this solver cannot tell which of the
+	 * assumptions it used.
+	 * 
+	 * @requires the last call to solve(int[]) returned false
+	 * @return some a: int[] | a[int] in assumptions[int] && 
+	 *         !SAT(this.clauses + a[int]) or null
+	 */
+	public default int[] failedAssumptions() {
+		return null;
+	}
+
+}
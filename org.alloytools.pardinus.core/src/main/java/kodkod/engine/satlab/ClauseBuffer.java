@@ -0,0 +1,209 @@
+/*
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.satlab;
+
+import java.util.Arrays;
+
+/**
+ * A packed store of clauses. The literals of all clauses are kept back to back
+ * in a single growable int array, and the end of each clause is recorded in a
+ * second one, so adding a clause allocates nothing once the arrays have grown to
+ * their working size. Solvers read the clauses in place through
+ * {@link #literals()}, {@link #start(int)} and {@link #end(int)}.
+ *
+ * @specfield clauses: seq Clause
+ */
+public final class ClauseBuffer {
+
+	private int[] literals;
+	private int[] ends;
+	private int size;
+
+	/**
+	 * Constructs an empty buffer with room for the given number of literals.
+	 *
+	 * @requires capacity >= 0
+	 * @ensures no this.clauses'
+	 */
+	public ClauseBuffer(int capacity) {
+		this.literals = new int[Math.max(capacity, 16)];
+		this.ends = new int[Math.max(capacity / 3, 16)];
+		this.size = 0;
+	}
+
+	/**
+	 * Constructs an empty buffer.
+	 *
+	 * @ensures no this.clauses'
+	 */
+	public ClauseBuffer() {
+		this(1 << 12);
+	}
+
+	/**
+	 * Returns the number of clauses in this buffer.
+	 *
+	 * @return #this.clauses
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the total number of literals in this buffer.
+	 *
+	 * @return sum c: this.clauses.elems | #c.literals
+	 */
+	public int length() {
+		return size == 0 ? 0 : ends[size - 1];
+	}
+
+	/**
+	 * Returns the array that holds the literals of this buffer. The literals of
+	 * the ith clause are stored in [start(i)..end(i)). The array must not be
+	 * modified, and it is only valid until the next clause is added.
+	 *
+	 * @return the array that holds the literals of this buffer
+	 */
+	public int[] literals() {
+		return literals;
+	}
+
+	/**
+	 * Returns the index of the first literal of the ith clause in
+	 * {@link #literals()}.
+	 *
+	 * @requires 0 <= i < #this.clauses
+	 * @return the index of the first literal of the ith clause
+	 */
+	public int start(int i) {
+		return i == 0 ? 0 : ends[i - 1];
+	}
+
+	/**
+	 * Returns the index following the last literal of the ith clause in
+	 * {@link #literals()}.
+	 *
+	 * @requires 0 <= i < #this.clauses
+	 * @return the index following the last literal of the ith clause
+	 */
+	public int end(int i) {
+		return ends[i];
+	}
+
+	/**
+	 * Copies the literals of the ith clause into the given array, if it is big
+	 * enough, or into a new one otherwise, and returns it.
+	 *
+	 * @requires 0 <= i < #this.clauses
+	 * @return an array whose first end(i)-start(i) elements are the literals of
+	 *         the ith clause
+	 */
+	public int[] clause(int i, int[] into) {
+		final int from = start(i), length = ends[i] - from;
+		final int[] clause = into != null && into.length == length ? into : new int[length];
+		System.arraycopy(literals, from, clause, 0, length);
+		return clause;
+	}
+
+	/**
+	 * Makes room for a clause with the given number of literals, and returns the
+	 * index at which they should be stored.
+	 */
+	private int reserve(int length) {
+		final int from = length();
+		if (literals.length - from < length)
+			literals = Arrays.copyOf(literals, Math.max(literals.length * 2, from + length));
+		if (ends.length == size)
+			ends = Arrays.copyOf(ends, ends.length * 2);
+		ends[size++] = from + length;
+		return from;
+	}
+
+	/**
+	 * Adds the unit clause with the given literal to this buffer.
+	 *
+	 * @ensures this.clauses' = this.clauses.add(lit)
+	 */
+	public void add(int lit) {
+		final int from = reserve(1);
+		literals[from] = lit;
+	}
+
+	/**
+	 * Adds the binary clause with the given literals to this buffer.
+	 *
+	 * @ensures this.clauses' = this.clauses.add(lit0 + lit1)
+	 */
+	public void add(int lit0, int lit1) {
+		final int from = reserve(2);
+		literals[from] = lit0;
+		literals[from + 1] = lit1;
+	}
+
+	/**
+	 * Adds the ternary clause with the given literals to this buffer.
+	 *
+	 * @ensures this.clauses' = this.clauses.add(lit0 + lit1 + lit2)
+	 */
+	public void add(int lit0, int lit1, int lit2) {
+		final int from = reserve(3);
+		literals[from] = lit0;
+		literals[from + 1] = lit1;
+		literals[from + 2] = lit2;
+	}
+
+	/**
+	 * Adds the clause made of the literals in the range [from..to) of the given
+	 * array to this buffer. No reference to the array is kept.
+	 *
+	 * @requires 0 <= from <= to <= lits.length
+	 * @ensures this.clauses' = this.clauses.add(lits[from..to))
+	 */
+	public void add(int[] lits, int from, int to) {
+		final int start = reserve(to - from);
+		System.arraycopy(lits, from, literals, start, to - from);
+	}
+
+	/**
+	 * Removes all clauses from this buffer, keeping the memory allocated for them.
+	 *
+	 * @ensures no this.clauses'
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		final StringBuilder b = new StringBuilder();
+		for (int i = 0; i < size; i++) {
+			for (int j = start(i), end = ends[i]; j < end; j++)
+				b.append(literals[j]).append(' ');
+			b.append("0\n");
+		}
+		return b.toString();
+	}
+}
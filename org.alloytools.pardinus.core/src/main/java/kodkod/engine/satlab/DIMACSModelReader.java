@@ -0,0 +1,217 @@
+/*
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.satlab;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.BitSet;
+
+/**
+ * Reads the outcome and model reported by a SAT solver in the SAT competition
+ * output format. The stream is tokenized byte by byte, so the model is read
+ * without creating a string per line or per literal. Only the <code>s</code>
+ * and <code>v</code> lines are interpreted, all others are ignored.
+ *
+ * @specfield input: InputStream
+ * @specfield source: String // name of the solver, used in error messages
+ */
+public final class DIMACSModelReader {
+
+	private static final int EOF = -1;
+
+	private final InputStream input;
+	private final String source;
+	private final byte[] buffer;
+	private int position, limit;
+
+	/**
+	 * Constructs a reader for the output of the given solver.
+	 *
+	 * @ensures this.input' = input && this.source' = source
+	 */
+	public DIMACSModelReader(InputStream input, String source) {
+		this.input = input;
+		this.source = source;
+		this.buffer = new byte[1 << 16];
+		this.position = 0;
+		this.limit = 0;
+	}
+
+	/**
+	 * Returns the next byte of the input, or EOF if there are none left.
+	 */
+	private int read() throws IOException {
+		if (position == limit) {
+			limit = input.read(buffer, 0, buffer.length);
+			position = 0;
+			if (limit <= 0) {
+				limit = 0;
+				return EOF;
+			}
+		}
+		return buffer[position++] & 0xff;
+	}
+
+	private static boolean isBlank(int c) {
+		return c == ' ' || c == '\t';
+	}
+
+	private static boolean isEndOfLine(int c) {
+		return c == '\n' || c == '\r' || c == EOF;
+	}
+
+	/**
+	 * Skips the remainder of the current line, and returns the character that
+	 * ended it.
+	 */
+	private int skipLine(int c) throws IOException {
+		while (!isEndOfLine(c))
+			c = read();
+		return c;
+	}
+
+	/**
+	 * Reads the outcome and model from this.input, storing the value of every
+	 * variable listed in a <code>v</code> line in the given solution. Reading
+	 * stops at the end of the input or at the <code>0</code> terminating the
+	 * model, if an outcome has already been read.
+	 *
+	 * @ensures all lit: int | lit is listed in a v line of this.input =>
+	 *          solution'.get(|lit|-1) = lit > 0
+	 * @return true if the outcome is SATISFIABLE, false if it is UNSATISFIABLE.
+	 * @throws SATAbortedException
+	 *             the input is not well-formed, it specifies no outcome, or it
+	 *             lists a literal whose variable is not in [1..vars]
+	 * @throws IOException
+	 *             the input could not be read
+	 */
+	public boolean read(BitSet solution, int vars) throws IOException {
+		Boolean sat = null;
+		int c = read();
+		while (c != EOF) {
+			if (c == 's' || c == 'S') {
+				c = read();
+				if (isBlank(c)) {
+					c = readOutcome();
+					sat = c == 'S' ? Boolean.TRUE : Boolean.FALSE;
+					c = read();
+					continue;
+				}
+				if (isEndOfLine(c))
+					throw new SATAbortedException("Invalid " + source + " output. Line: s");
+			} else if (c == 'v' || c == 'V') {
+				c = read();
+				if (isBlank(c) || isEndOfLine(c)) {
+					if (readModel(c, solution, vars) && sat != null)
+						break;
+					c = read();
+					continue;
+				}
+			}
+			// not a solution line or a variable line, so ignore it
+			if (skipLine(c) == EOF)
+				break;
+			c = read();
+		}
+		if (sat == null)
+			throw new SATAbortedException("Invalid " + source + " output: no line specifying the outcome.");
+		return sat;
+	}
+
+	/**
+	 * Reads the remainder of an <code>s</code> line, and returns 'S' if it
+	 * specifies SATISFIABLE or 'U' if it specifies UNSATISFIABLE.
+	 *
+	 * @throws SATAbortedException
+	 *             the line specifies neither outcome
+	 */
+	private int readOutcome() throws IOException {
+		final StringBuilder token = new StringBuilder();
+		int c = read();
+		while (isBlank(c))
+			c = read();
+		while (!isBlank(c) && !isEndOfLine(c) && token.length() <= 16) {
+			token.append((char) c);
+			c = read();
+		}
+		while (isBlank(c))
+			c = read();
+		final String outcome = token.toString();
+		if (isEndOfLine(c)) {
+			if (outcome.equalsIgnoreCase("SATISFIABLE"))
+				return 'S';
+			if (outcome.equalsIgnoreCase("UNSATISFIABLE"))
+				return 'U';
+		}
+		final StringBuilder line = new StringBuilder("s ").append(outcome);
+		while (!isEndOfLine(c)) {
+			line.append((char) c);
+			c = read();
+		}
+		throw new SATAbortedException("Invalid " + source + " output. Line: " + line);
+	}
+
+	/**
+	 * Reads the literals in the remainder of a <code>v</code> line, starting
+	 * after the given separator, into the given solution, and returns true if
+	 * the line ends with a <code>0</code>.
+	 *
+	 * @throws SATAbortedException
+	 *             the line contains a non-integer token or a literal whose
+	 *             variable is not in [1..vars]
+	 */
+	private boolean readModel(int c, BitSet solution, int vars) throws IOException {
+		boolean terminated = false;
+		while (!isEndOfLine(c)) {
+			c = read();
+			if (isBlank(c) || isEndOfLine(c))
+				continue;
+			final boolean negative = c == '-';
+			if (negative)
+				c = read();
+			long abs = 0;
+			int digits = 0;
+			while (c >= '0' && c <= '9') {
+				abs = abs * 10 + (c - '0');
+				if (abs > Integer.MAX_VALUE)
+					throw new SATAbortedException("Invalid variable value: |" + (negative ? "-" : "") + abs
+							+ "| !in [1.." + vars + "]");
+				digits++;
+				c = read();
+			}
+			if (digits == 0 || !(isBlank(c) || isEndOfLine(c)))
+				throw new SATAbortedException(
+						"Invalid " + source + " output: encountered a non-integer variable token.");
+			if (abs == 0) {
+				terminated = true;
+				continue;
+			}
+			if (terminated || abs > vars)
+				throw new SATAbortedException(
+						"Invalid variable value: |" + (negative ? "-" : "") + abs + "| !in [1.." + vars + "]");
+			solution.set((int) abs - 1, !negative);
+		}
+		return terminated;
+	}
+
+}
@@ -0,0 +1,221 @@
+/*
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.satlab;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes clauses to a file in the DIMACS cnf format. Literals are encoded
+ * directly as ASCII digits into a byte array, which is copied in bulk into a
+ * direct buffer and handed to the file channel whenever it fills up, so no
+ * intermediate strings are created. Space for the <code>p cnf</code> header is
+ * reserved at the start of the file and patched in place when the writer is
+ * {@link #close(int) closed}, once the number of variables and clauses is
+ * known.
+ *
+ * @specfield file: File
+ * @specfield clauses: int
+ */
+public final class DIMACSWriter implements Closeable {
+
+	/** Length of the longest possible header: p cnf Integer.MAX_VALUE Integer.MAX_VALUE */
+	static final int HEADER_LENGTH = String.valueOf(Integer.MAX_VALUE).length() * 2 + 8;
+	/** The maximum number of bytes taken by a literal and its separator. */
+	private static final int LIT_LENGTH = 12;
+
+	private final FileChannel channel;
+	private final ByteBuffer direct;
+	private final byte[] buffer;
+	private int position;
+	private int clauses;
+	private long written;
+
+	/**
+	 * Constructs a writer to the given file, truncating it, with the given
+	 * buffer capacity.
+	 *
+	 * @requires capacity >= HEADER_LENGTH + 1
+	 * @ensures this.file' = file && this.clauses' = 0
+	 * @throws IOException
+	 *             the file could not be opened
+	 */
+	public DIMACSWriter(File file, int capacity) throws IOException {
+		if (capacity <= HEADER_LENGTH)
+			throw new IllegalArgumentException("capacity <= " + HEADER_LENGTH + ": " + capacity);
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		this.direct = ByteBuffer.allocateDirect(capacity);
+		this.buffer = new byte[capacity];
+		for (int i = 0; i < HEADER_LENGTH; i++)
+			buffer[i] = ' ';
+		buffer[HEADER_LENGTH] = '\n';
+		this.position = HEADER_LENGTH + 1;
+		this.clauses = 0;
+		this.written = 0;
+	}
+
+	/**
+	 * Constructs a writer to the given file, truncating it, with a 64KB
+	 * buffer.
+	 *
+	 * @ensures this.file' = file && this.clauses' = 0
+	 * @throws IOException
+	 *             the file could not be opened
+	 */
+	public DIMACSWriter(File file) throws IOException {
+		this(file, 1 << 16);
+	}
+
+	/**
+	 * Appends the given clause to the file.
+	 *
+	 * @ensures this.clauses' = this.clauses + 1
+	 * @throws IOException
+	 *             the clause could not be written
+	 */
+	public void addClause(int[] lits) throws IOException {
+		addClause(lits, 0, lits.length);
+	}
+
+	/**
+	 * Appends the clause made of the literals in the range [from..to) of the
+	 * given array to the file.
+	 *
+	 * @requires 0 <= from <= to <= lits.length
+	 * @ensures this.clauses' = this.clauses + 1
+	 * @throws IOException
+	 *             the clause could not be written
+	 */
+	public void addClause(int[] lits, int from, int to) throws IOException {
+		final byte[] buf = buffer;
+		int pos = position;
+		for (int i = from; i < to; i++) {
+			final int lit = lits[i];
+			if (buf.length - pos < LIT_LENGTH) {
+				position = pos;
+				flush();
+				pos = 0;
+			}
+			pos = putInt(buf, pos, lit);
+			buf[pos++] = ' ';
+		}
+		if (buf.length - pos < 2) {
+			position = pos;
+			flush();
+			pos = 0;
+		}
+		buf[pos++] = '0';
+		buf[pos++] = '\n';
+		position = pos;
+		clauses++;
+	}
+
+	/**
+	 * Encodes the given integer in decimal into the buffer at the given position,
+	 * and returns the position after its last digit.
+	 *
+	 * @requires buf.length - pos >= LIT_LENGTH - 1 && lit != Integer.MIN_VALUE
+	 */
+	private static int putInt(byte[] buf, int pos, int lit) {
+		if (lit < 0) {
+			buf[pos++] = '-';
+			lit = -lit;
+		}
+		int end = pos;
+		for (int rest = lit; rest >= 10; rest /= 10)
+			end++;
+		final int next = end + 1;
+		do {
+			buf[end--] = (byte) ('0' + lit % 10);
+			lit /= 10;
+		} while (lit != 0);
+		return next;
+	}
+
+	/**
+	 * Writes the contents of the buffer to the file.
+	 */
+	private void flush() throws IOException {
+		direct.clear();
+		direct.put(buffer, 0, position);
+		direct.flip();
+		while (direct.hasRemaining())
+			written += channel.write(direct);
+		position = 0;
+	}
+
+	/**
+	 * Returns the number of clauses written so far.
+	 *
+	 * @return this.clauses
+	 */
+	public int numberOfClauses() {
+		return clauses;
+	}
+
+	/**
+	 * Returns the number of bytes taken by the clauses written so far,
+	 * including the space reserved for the header.
+	 *
+	 * @return the number of bytes written so far.
+	 */
+	public long size() {
+		return written + position;
+	}
+
+	/**
+	 * Flushes the remaining clauses, patches the header with the given number of
+	 * variables and this.clauses, and closes the file.
+	 *
+	 * @throws IOException
+	 *             the file could not be written
+	 */
+	public void close(int vars) throws IOException {
+		try {
+			flush();
+			final byte[] header = ("p cnf " + vars + " " + clauses).getBytes(StandardCharsets.US_ASCII);
+			final ByteBuffer patch = ByteBuffer.wrap(header);
+			long position = 0;
+			while (patch.hasRemaining())
+				position += channel.write(patch, position);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Closes the file without patching the header.
+	 *
+	 * @see java.io.Closeable#close()
+	 */
+	public void close() throws IOException {
+		channel.close();
+	}
+
+}
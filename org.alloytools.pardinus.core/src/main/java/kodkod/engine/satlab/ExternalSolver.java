@@ -21,14 +21,10 @@
  */
 package kodkod.engine.satlab;
 
-import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.RandomAccessFile;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.BitSet;
@@ -42,16 +38,16 @@ import kodkod.solvers.api.NativeCode;
  * 
  * @author Emina Torlak
  */
-final public class ExternalSolver implements SATSolver {
-	private final StringBuilder		buffer;
-	private final int				capacity	= 8192;
+final public class ExternalSolver implements InterruptibleSATSolver {
 	private final boolean			deleteTemp;
 	private final String			inTemp;
 	public final String				executable;			// [HASLab]
 	public final String[]			options;			// [HASLab]
-	private final RandomAccessFile	cnf;
+	private final DIMACSWriter		cnf;
 	private final BitSet			solution;
 	private volatile Boolean		sat;
+	private volatile Process		process;
+	private volatile boolean		interrupted;
 	private volatile int			vars, clauses;
 
 	/**
@@ -78,31 +74,17 @@ final public class ExternalSolver implements SATSolver {
 		}
 		assert exe != null && exe.isFile();
 		
-		RandomAccessFile file = null;
 		try {
 			if (inTemp == null) {
 				File f = Files.createTempFile("alloy-" + exe.getName(), ".cnf").toFile();
-				file = new RandomAccessFile(f, "rw");
 				inTemp = f.getAbsolutePath();
-			} else {
-				file = new RandomAccessFile(inTemp, "rw");
-				file.setLength(0);
 			}
-		} catch (FileNotFoundException e) {
-			throw new SATAbortedException(e);
+			// the writer reserves space for the cnf header, which is written last
+			this.cnf = new DIMACSWriter(new File(inTemp));
 		} catch (IOException e) {
-			close(file);
 			throw new SATAbortedException(e);
 		}
 		this.deleteTemp = deleteTemp;
-		this.cnf = file;
-		// get enough space into the buffer for the cnf header, which will be
-		// written last
-		this.buffer = new StringBuilder();
-		for (int i = headerLength(); i > 0; i--) {
-			buffer.append(" ");
-		}
-		buffer.append("\n");
 		this.sat = null;
 		this.solution = new BitSet();
 		this.vars = 0;
@@ -130,45 +112,38 @@ final public class ExternalSolver implements SATSolver {
 	}
 
 	/**
-	 * Returns the length, in characters, of the longest possible header for a
-	 * cnf file: p cnf Integer.MAX_VALUE Integer.MAX_VALUE
+	 * {@inheritDoc}
 	 * 
-	 * @return the length, in characters, of the longest possible header for a
-	 *         cnf file: p cnf Integer.MAX_VALUE Integer.MAX_VALUE
-	 */
-	private static final int headerLength() {
-		return String.valueOf(Integer.MAX_VALUE).length() * 2 + 8;
-	}
-
-	/**
-	 * Flushes the contents of the string buffer to the cnf file.
+	 * @see kodkod.engine.satlab.SATSolver#addClause(int[])
 	 */
-	private final void flush() {
+	public boolean addClause(int[] lits) {
 		try {
-			cnf.writeBytes(buffer.toString());
+			cnf.addClause(lits);
 		} catch (IOException e) {
 			close(cnf);
 			throw new SATAbortedException(e);
-		} finally {
-			buffer.setLength(0);
 		}
+		clauses++;
+		return true;
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * {@inheritDoc} The literals are written to the cnf file straight from the
+	 * buffer.
 	 * 
-	 * @see kodkod.engine.satlab.SATSolver#addClause(int[])
+	 * @see kodkod.engine.satlab.SATSolver#addClauses(kodkod.engine.satlab.ClauseBuffer)
 	 */
-	public boolean addClause(int[] lits) {
-		clauses++;
-		if (buffer.length() > capacity)
-			flush();
-		for (int lit : lits) {
-			buffer.append(lit);
-			buffer.append(" ");
+	public boolean addClauses(ClauseBuffer buffer) {
+		final int[] literals = buffer.literals();
+		try {
+			for (int i = 0, size = buffer.size(); i < size; i++)
+				cnf.addClause(literals, buffer.start(i), buffer.end(i));
+		} catch (IOException e) {
+			close(cnf);
+			throw new SATAbortedException(e);
 		}
-		buffer.append("0\n");
-		return true;
+		clauses += buffer.size();
+		return buffer.size() > 0;
 	}
 
 	/**
@@ -212,83 +187,33 @@ final public class ExternalSolver implements SATSolver {
 		return vars;
 	}
 
-	/**
-	 * @ensures |lit| <= this.vars && lit != 0 => this.solution'.set(|lit|,
-	 *          lit>0)
-	 * @throws SATAbortedException
-	 *             lit=0 || |lit|>this.vars
-	 */
-	private final void updateSolution(int lit) {
-		int abs = StrictMath.abs(lit);
-		if (abs <= vars && abs > 0)
-			solution.set(abs - 1, lit > 0);
-		else
-			throw new SATAbortedException("Invalid variable value: |" + lit + "| !in [1.." + vars + "]");
-	}
-
 	/**
 	 * @see kodkod.engine.satlab.SATSolver#solve()
 	 */
 	public boolean solve() throws SATAbortedException {
 		if (sat == null) {
-			flush();
 			Process p = null;
-			BufferedReader out = null;
+			InputStream out = null;
 			try {
-				cnf.seek(0);
-				cnf.writeBytes("p cnf " + vars + " " + clauses);
-				cnf.close();
+				cnf.close(vars);
 
 				final String[] command = new String[options.length + 2];
 				command[0] = executable;
 				System.arraycopy(options, 0, command, 1, options.length);
 				command[command.length - 1] = inTemp;
 				p = Runtime.getRuntime().exec(command);
+				process = p;
+				if (interrupted)
+					p.destroy();
 				new Thread(drain(p.getErrorStream())).start();
-				out = outputReader(p);
-				String line = null;
-				// System.out.println(out);
-				// System.out.println("("+out.read()+")");
-				while ((line = out.readLine()) != null) {
-					// System.out.println("2.0");
-					String[] tokens = line.split("\\s+");
-					int tlength = tokens.length;
-					// System.out.println("2.1");
-					if (tlength > 0) {
-						if (tokens[0].compareToIgnoreCase("s") == 0) {
-							if (tlength == 2) {
-								if (tokens[1].compareToIgnoreCase("SATISFIABLE") == 0) {
-									sat = Boolean.TRUE;
-									continue;
-								} else if (tokens[1].compareToIgnoreCase("UNSATISFIABLE") == 0) {
-									sat = Boolean.FALSE;
-									continue;
-								}
-							}
-							throw new SATAbortedException("Invalid " + executable + " output. Line: " + line);
-						} else if (tokens[0].compareToIgnoreCase("v") == 0) {
-							int last = tlength - 1;
-							for (int i = 1; i < last; i++) {
-								updateSolution(Integer.parseInt(tokens[i]));
-							}
-							int lit = Integer.parseInt(tokens[last]);
-							if (lit != 0)
-								updateSolution(lit);
-							else if (sat != null)
-								break;
-						} // not a solution line or a variable line, so ignore
-							// it.
-					}
-				}
-				if (sat == null) {
-					throw new SATAbortedException("Invalid " + executable + " output: no line specifying the outcome.");
-				}
+				out = p.getInputStream();
+				sat = new DIMACSModelReader(out, executable).read(solution, vars);
 			} catch (IOException e) {
-				throw new SATAbortedException(e);
-			} catch (NumberFormatException e) {
-				throw new SATAbortedException(
-						"Invalid " + executable + " output: encountered a non-integer variable token.", e);
+				throw interrupted ? new SATAbortedException("interrupted", e) : new SATAbortedException(e);
+			} catch (SATAbortedException e) {
+				throw interrupted ? new SATAbortedException("interrupted", e) : e;
 			} finally {
+				process = null;
 				close(cnf);
 				close(out);
 			}
@@ -296,6 +221,20 @@ final public class ExternalSolver implements SATSolver {
 		return sat;
 	}
 
+	/**
+	 * Kills the solver process, if it is running. Since the clauses are not kept
+	 * once the process is started, the interrupted call to solve cannot be
+	 * retried.
+	 * 
+	 * @see kodkod.engine.satlab.InterruptibleSATSolver#interrupt()
+	 */
+	public void interrupt() {
+		interrupted = true;
+		final Process p = process;
+		if (p != null)
+			p.destroy();
+	}
+
 	/**
 	 * Returns a runnable that drains the specified input stream.
 	 * 
@@ -319,21 +258,6 @@ final public class ExternalSolver implements SATSolver {
 		};
 	}
 
-	/**
-	 * Returns a reader for reading the output of the given process.
-	 * 
-	 * @return a reader for reading the output of the given process.
-	 * @throws IOException
-	 */
-	private BufferedReader outputReader(Process p) throws IOException {
-		try {
-			return new BufferedReader(new InputStreamReader(p.getInputStream(), "ISO-8859-1"));
-		} catch (IOException e) {
-			close(p.getInputStream());
-			throw e;
-		}
-	}
-
 	/**
 	 * @see kodkod.engine.satlab.SATSolver#valueOf(int)
 	 */
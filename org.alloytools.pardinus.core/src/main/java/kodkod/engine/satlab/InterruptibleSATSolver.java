@@ -0,0 +1,46 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.satlab;
+
+/**
+ * Provides an interface to a SAT solver whose search can be stopped from
+ * another thread. An interrupted call to solve throws a
+ * {@link SATAbortedException}, but leaves the solver in a state where further
+ * clauses can be added and solve can be called again, if the solver is
+ * incremental.
+ * 
+ * @specfield variables: set [1..)
+ * @specfield clauses: set Clause
+ */
+public interface InterruptibleSATSolver extends SATSolver {
+
+	/**
+	 * Stops the call to solve that is currently running on this solver, if any,
+	 * causing it to throw a {@link SATAbortedException}. Whether a call to solve
+	 * that starts after this method returns is affected depends on the solver,
+	 * so callers racing with the start of the search should interrupt again
+	 * until the call returns. This method may be called from any thread.
+	 */
+	public abstract void interrupt();
+
+}
@@ -0,0 +1,197 @@
+/*
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.satlab;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import kodkod.engine.config.ExtendedOptions;
+
+/**
+ * A factory for solvers that run a portfolio of SAT solvers in parallel. Every
+ * member of the portfolio receives the same variables and clauses, each call
+ * to solve races the members on their own threads, and the first outcome is
+ * returned while the remaining searches are cancelled.
+ * <p>
+ * A member is either a different solver, or a copy of a solver that receives
+ * the problem under a seeded renaming of its variables and their polarities.
+ * Such a renaming preserves satisfiability but changes the order in which the
+ * solver branches, which is usually enough to diversify the searches of a
+ * deterministic solver.
+ * </p>
+ * <p>
+ * Members whose solvers are {@link InterruptibleSATSolver interruptible} are
+ * stopped when they lose a race and take part in the following calls to solve.
+ * Those that cannot be stopped are dropped from the portfolio and freed once
+ * their search ends, so incremental problems keep being solved by the members
+ * that remain.
+ * </p>
+ *
+ * @specfield members: seq SATFactory
+ * @specfield seeds: members.elems -> one long // 0 for the identity renaming
+ */
+public final class Portfolio extends SATFactory {
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<SATFactory> members;
+	private final long[] seeds;
+
+	/**
+	 * Constructs a portfolio of the given members, renaming the variables of
+	 * each member with the corresponding seed.
+	 *
+	 * @requires members.size() = seeds.length && members.size() > 0
+	 */
+	private Portfolio(List<SATFactory> members, long[] seeds) {
+		if (members.isEmpty())
+			throw new IllegalArgumentException("empty portfolio");
+		for (SATFactory member : members)
+			if (member.isTransformer())
+				throw new IllegalArgumentException(member + " does not solve the clauses");
+		this.members = new ArrayList<>(members);
+		this.seeds = seeds;
+	}
+
+	/**
+	 * Returns a factory for a portfolio that runs the solvers created by the given
+	 * factories.
+	 *
+	 * @return some p: Portfolio | p.members = members && all m: members | p.seeds[m]
+	 *         = 0
+	 * @throws IllegalArgumentException
+	 *             no members or some member is a transformer
+	 */
+	public static Portfolio of(SATFactory... members) {
+		return new Portfolio(Arrays.asList(members), new long[members.length]);
+	}
+
+	/**
+	 * Returns a factory for a portfolio that runs the given number of copies of
+	 * the solvers created by the given factory. The first copy receives the
+	 * problem unchanged and the others under renamings derived from the given
+	 * seed.
+	 *
+	 * @requires copies > 0
+	 * @return some p: Portfolio | #p.members = copies && p.members.elems = member
+	 * @throws IllegalArgumentException
+	 *             copies <= 0 or member is a transformer
+	 */
+	public static Portfolio seeded(SATFactory member, int copies, long seed) {
+		if (copies <= 0)
+			throw new IllegalArgumentException("copies <= 0: " + copies);
+		final long[] seeds = new long[copies];
+		for (int i = 1; i < copies; i++)
+			seeds[i] = seed + i;
+		return new Portfolio(new ArrayList<>(Collections.nCopies(copies, member)), seeds);
+	}
+
+	/**
+	 * Returns the factories of the members of this portfolio.
+	 *
+	 * @return this.members
+	 */
+	public List<SATFactory> members() {
+		return Collections.unmodifiableList(members);
+	}
+
+	@Override
+	public String id() {
+		final StringBuilder b = new StringBuilder("portfolio(");
+		for (int i = 0; i < members.size(); i++) {
+			if (i > 0)
+				b.append(",");
+			b.append(members.get(i).id());
+			if (seeds[i] != 0)
+				b.append("#").append(seeds[i]);
+		}
+		return b.append(")").toString();
+	}
+
+	@Override
+	protected SATSolver createSolver() {
+		final List<SATSolver> solvers = new ArrayList<>(members.size());
+		try {
+			for (SATFactory member : members)
+				solvers.add(member.instance());
+		} catch (RuntimeException e) {
+			for (SATSolver solver : solvers)
+				solver.free();
+			throw e;
+		}
+		return new PortfolioSolver(solvers, seeds);
+	}
+
+	/**
+	 * {@inheritDoc} A portfolio is incremental if all its members are.
+	 */
+	@Override
+	public boolean incremental() {
+		return members.stream().allMatch(SATFactory::incremental);
+	}
+
+	/**
+	 * {@inheritDoc} A portfolio accepts assumptions if all its members do.
+	 */
+	@Override
+	public boolean assumptions() {
+		return members.stream().allMatch(SATFactory::assumptions);
+	}
+
+	@Override
+	public String[] getLibraries() {
+		final Set<String> libraries = new LinkedHashSet<>();
+		for (SATFactory member : members)
+			libraries.addAll(Arrays.asList(member.getLibraries()));
+		return libraries.toArray(EMPTY);
+	}
+
+	@Override
+	public String[] getExecutables() {
+		final Set<String> executables = new LinkedHashSet<>();
+		for (SATFactory member : members)
+			executables.addAll(Arrays.asList(member.getExecutables()));
+		return executables.toArray(EMPTY);
+	}
+
+	@Override
+	public SATFactory doOptions(ExtendedOptions options) {
+		final List<SATFactory> configured = members.stream().map(m -> m.doOptions(options))
+				.collect(Collectors.toList());
+		for (int i = 0; i < members.size(); i++)
+			if (configured.get(i) != members.get(i))
+				return new Portfolio(configured, seeds);
+		return this;
+	}
+
+	@Override
+	public String type() {
+		return "portfolio";
+	}
+
+}
@@ -0,0 +1,415 @@
+/*
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.satlab;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A solver that races a portfolio of SAT solvers over the same clauses.
+ *
+ * @specfield members: set SATSolver
+ * @specfield winner: lone members // the member that answered the last call to solve
+ * @see Portfolio
+ */
+final class PortfolioSolver implements AssumptionSATSolver, InterruptibleSATSolver {
+
+	private static final AtomicInteger POOLS = new AtomicInteger();
+
+	private final List<Member> members;
+	private final ExecutorService executor;
+	private volatile boolean interrupted;
+	private Member winner;
+	private Boolean sat;
+	private int vars, clauses;
+
+	/**
+	 * Constructs a portfolio of the given solvers, renaming the variables of each
+	 * with the corresponding seed.
+	 *
+	 * @requires solvers.size() = seeds.length
+	 */
+	PortfolioSolver(List<SATSolver> solvers, long[] seeds) {
+		this.members = new ArrayList<>(solvers.size());
+		for (int i = 0; i < solvers.size(); i++)
+			members.add(new Member(solvers.get(i), seeds[i]));
+		final int pool = POOLS.incrementAndGet();
+		final AtomicInteger threads = new AtomicInteger();
+		this.executor = Executors.newCachedThreadPool(r -> {
+			final Thread t = new Thread(r, "portfolio-" + pool + "-" + threads.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		this.sat = null;
+		this.vars = this.clauses = 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see kodkod.engine.satlab.SATSolver#numberOfVariables()
+	 */
+	public int numberOfVariables() {
+		return vars;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see kodkod.engine.satlab.SATSolver#numberOfClauses()
+	 */
+	public int numberOfClauses() {
+		return clauses;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see kodkod.engine.satlab.SATSolver#addVariables(int)
+	 */
+	public void addVariables(int numVars) {
+		if (numVars < 0)
+			throw new IllegalArgumentException("numVars < 0: " + numVars);
+		else if (numVars > 0) {
+			for (Member member : members)
+				member.addVariables(vars, numVars);
+			vars += numVars;
+		}
+	}
+
+	/**
+	 * {@inheritDoc} Each member but the last receives its own copy of the
+	 * literals, since solvers may modify the array.
+	 * 
+	 * @see kodkod.engine.satlab.SATSolver#addClause(int[])
+	 */
+	public boolean addClause(int[] lits) {
+		boolean changed = false;
+		final int last = members.size() - 1;
+		for (int i = 0; i <= last; i++)
+			changed |= members.get(i).addClause(lits, i < last);
+		if (changed)
+			clauses++;
+		return changed;
+	}
+
+	/**
+	 * {@inheritDoc} The buffer is shared by the members that do not rename
+	 * variables, since solvers do not modify it.
+	 * 
+	 * @see kodkod.engine.satlab.SATSolver#addClauses(kodkod.engine.satlab.ClauseBuffer)
+	 */
+	public boolean addClauses(ClauseBuffer buffer) {
+		boolean changed = false;
+		for (Member member : members)
+			changed |= member.addClauses(buffer);
+		if (changed)
+			clauses += buffer.size();
+		return changed;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see kodkod.engine.satlab.SATSolver#solve()
+	 */
+	public boolean solve() throws SATAbortedException {
+		if (Boolean.FALSE.equals(sat))
+			return false;
+		sat = race(null);
+		return sat;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see kodkod.engine.satlab.AssumptionSATSolver#solve(int[])
+	 */
+	public boolean solve(int[] assumptions) throws SATAbortedException {
+		if (Boolean.FALSE.equals(sat))
+			return false;
+		// an unsat outcome only holds under these assumptions, so it is not recorded
+		sat = race(assumptions) ? Boolean.TRUE : null;
+		return sat != null;
+	}
+
+	/**
+	 * Solves the clauses, under the given assumptions if they are non-null, with
+	 * every member in parallel and returns the first outcome. The losing members
+	 * are interrupted if possible and dropped otherwise.
+	 *
+	 * @ensures this.winner' = the member that answered first
+	 * @throws SATAbortedException
+	 *             this solver was interrupted or no member could solve the
+	 *             clauses
+	 */
+	private boolean race(int[] assumptions) {
+		winner = null;
+		interrupted = false;
+		if (members.isEmpty())
+			throw new SATAbortedException("no solver left in the portfolio");
+		if (members.size() == 1) {
+			final Member member = members.get(0);
+			final boolean outcome = member.solve(assumptions);
+			winner = member;
+			return outcome;
+		}
+		final CompletionService<Boolean> service = new ExecutorCompletionService<>(executor);
+		final List<Future<Boolean>> futures = new ArrayList<>(members.size());
+		for (Member member : members)
+			futures.add(service.submit(() -> member.solve(assumptions)));
+		RuntimeException failure = null;
+		Boolean outcome = null;
+		try {
+			for (int pending = members.size(); pending > 0 && outcome == null && !interrupted; pending--) {
+				final Future<Boolean> next = service.take();
+				try {
+					outcome = next.get();
+					winner = members.get(futures.indexOf(next));
+				} catch (ExecutionException e) {
+					if (failure == null)
+						failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+								: new SATAbortedException(e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			interrupted = true;
+		} finally {
+			stopLosers(futures);
+		}
+		if (outcome == null) {
+			throw interrupted || failure == null ? new SATAbortedException("interrupted") : failure;
+		}
+		return outcome;
+	}
+
+	/**
+	 * Stops every member other than this.winner whose search has not finished.
+	 * Members that can be interrupted are waited for, others are dropped and
+	 * freed when their search ends. Members whose search failed are dropped.
+	 */
+	private void stopLosers(List<Future<Boolean>> futures) {
+		final List<Member> dropped = new ArrayList<>();
+		for (int i = 0; i < futures.size(); i++) {
+			final Member member = members.get(i);
+			final Future<Boolean> future = futures.get(i);
+			if (member == winner || (future.isDone() && !failed(future)))
+				continue;
+			if (member.solver instanceof InterruptibleSATSolver) {
+				while (!future.isDone()) {
+					((InterruptibleSATSolver) member.solver).interrupt();
+					try {
+						future.get(10, TimeUnit.MILLISECONDS);
+					} catch (TimeoutException | ExecutionException e) {
+						// interrupted searches throw SATAbortedException
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+				if (future.isDone() && !failed(future))
+					continue;
+			}
+			dropped.add(member);
+			executor.execute(() -> {
+				try {
+					future.get();
+				} catch (InterruptedException | ExecutionException e) {
+					// the member is dropped regardless
+				} finally {
+					member.solver.free();
+				}
+			});
+		}
+		members.removeAll(dropped);
+	}
+
+	/**
+	 * Returns true if the given finished search threw anything other than a
+	 * {@link SATAbortedException} reporting an interrupt.
+	 */
+	private static boolean failed(Future<Boolean> future) {
+		try {
+			future.get();
+			return false;
+		} catch (ExecutionException e) {
+			return !(e.getCause() instanceof SATAbortedException);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return true;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see kodkod.engine.satlab.SATSolver#valueOf(int)
+	 */
+	public boolean valueOf(int variable) {
+		if (!Boolean.TRUE.equals(sat))
+			throw new IllegalStateException();
+		if (variable < 1 || variable > vars)
+			throw new IllegalArgumentException(variable + " !in [1.." + vars + "]");
+		return winner.valueOf(variable);
+	}
+
+	/**
+	 * Interrupts every member of this portfolio.
+	 * 
+	 * @see kodkod.engine.satlab.InterruptibleSATSolver#interrupt()
+	 */
+	public void interrupt() {
+		interrupted = true;
+		for (Member member : members)
+			if (member.solver instanceof InterruptibleSATSolver)
+				((InterruptibleSATSolver) member.solver).interrupt();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see kodkod.engine.satlab.SATSolver#free()
+	 */
+	public synchronized void free() {
+		for (Member member : members)
+			member.solver.free();
+		members.clear();
+		executor.shutdown();
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return "portfolio" + members;
+	}
+
+	/**
+	 * A member of the portfolio, with the renaming of the portfolio's variables
+	 * into its own.
+	 *
+	 * @specfield solver: SATSolver
+	 * @specfield renaming: [1..) -> one int // literal of the member for each variable
+	 */
+	private static final class Member {
+		final SATSolver solver;
+		final Random random;
+		int[] renaming;
+
+		/**
+		 * Constructs a member for the given solver that renames variables with the
+		 * given seed, or not at all if the seed is 0.
+		 */
+		Member(SATSolver solver, long seed) {
+			this.solver = solver;
+			this.random = seed == 0 ? null : new Random(seed);
+			this.renaming = random == null ? null : new int[16];
+		}
+
+		/**
+		 * Adds numVars variables to the solver, following the given number of
+		 * existing ones, and shuffles the new block.
+		 */
+		void addVariables(int vars, int numVars) {
+			solver.addVariables(numVars);
+			if (random == null)
+				return;
+			if (renaming.length <= vars + numVars)
+				renaming = Arrays.copyOf(renaming, Math.max(renaming.length * 2, vars + numVars + 1));
+			for (int i = 1; i <= numVars; i++) {
+				final int j = 1 + random.nextInt(i);
+				renaming[vars + i] = renaming[vars + j];
+				renaming[vars + j] = vars + i;
+			}
+			for (int i = 1; i <= numVars; i++)
+				if (random.nextBoolean())
+					renaming[vars + i] = -renaming[vars + i];
+		}
+
+		/**
+		 * Returns the given literals renamed for this member, copying them if
+		 * required.
+		 */
+		int[] rename(int[] lits, boolean copy) {
+			if (random == null)
+				return copy ? lits.clone() : lits;
+			final int[] renamed = new int[lits.length];
+			for (int i = 0; i < lits.length; i++) {
+				final int lit = lits[i];
+				renamed[i] = lit > 0 ? renaming[lit] : -renaming[-lit];
+			}
+			return renamed;
+		}
+
+		boolean addClause(int[] lits, boolean copy) {
+			return solver.addClause(rename(lits, copy));
+		}
+
+		boolean addClauses(ClauseBuffer buffer) {
+			if (random == null)
+				return solver.addClauses(buffer);
+			final int[] literals = buffer.literals();
+			boolean changed = false;
+			for (int i = 0, size = buffer.size(); i < size; i++) {
+				final int from = buffer.start(i);
+				final int[] renamed = new int[buffer.end(i) - from];
+				for (int j = 0; j < renamed.length; j++) {
+					final int lit = literals[from + j];
+					renamed[j] = lit > 0 ? renaming[lit] : -renaming[-lit];
+				}
+				changed |= solver.addClause(renamed);
+			}
+			return changed;
+		}
+
+		boolean solve(int[] assumptions) {
+			if (assumptions == null)
+				return solver.solve();
+			return ((AssumptionSATSolver) solver).solve(rename(assumptions, true));
+		}
+
+		boolean valueOf(int variable) {
+			if (random == null)
+				return solver.valueOf(variable);
+			final int lit = renaming[variable];
+			return lit > 0 ? solver.valueOf(lit) : !solver.valueOf(-lit);
+		}
+
+		public String toString() {
+			return solver.toString();
+		}
+	}
+}
@@ -36,6 +36,9 @@ import java.util.stream.Collectors;
 import org.slf4j.LoggerFactory;
 
 import kodkod.engine.config.ExtendedOptions;
+import kodkod.solvers.CDCLCoreRef;
+import kodkod.solvers.CDCLProverRef;
+import kodkod.solvers.CDCLRef;
 import kodkod.solvers.LightSat4JRef;
 import kodkod.solvers.PMaxSAT4JRef;
 import kodkod.solvers.SAT4JRef;
@@ -90,6 +93,9 @@ public abstract class SATFactory implements Serializable, Comparable<SATFactory>
 		extensions.add(DEFAULT);
 		extensions.add(LightSat4JRef.INSTANCE);
 		extensions.add(PMaxSAT4JRef.INSTANCE);
+		extensions.add(CDCLRef.INSTANCE);
+		extensions.add(CDCLProverRef.INSTANCE);
+		extensions.add(CDCLCoreRef.INSTANCE);
 	}
 
 	transient Optional<Boolean> initialized = null;
@@ -188,6 +194,18 @@ public abstract class SATFactory implements Serializable, Comparable<SATFactory>
 		return false;
 	}
 
+	/**
+	 * Returns true if the solvers returned by this.instance() are
+	 * {@link AssumptionSATSolver AssumptionSATSolvers}, i.e., if they can be
+	 * called repeatedly under different sets of assumptions.
+	 *
+	 * @return true if the solvers returned by this.instance() are
+	 *         {@link AssumptionSATSolver AssumptionSATSolvers}
+	 */
+	public boolean assumptions() {
+		return false;
+	}
+
 	/**
 	 * Returns true if the solvers returned by this.instance() are unbounded.
 	 * 
@@ -74,6 +74,32 @@ public interface SATSolver {
 	 */
 	public abstract boolean addClause(int[] lits);
 	
+	/**
+	 * Ensures that this solver logically contains all clauses in the 
+	 * given buffer, in order, and returns true if this.clauses changed as 
+	 * a result of the call.  The buffer is not modified and no reference 
+	 * to it is kept, so it can be cleared and reused.  The default 
+	 * implementation hands each clause to {@link #addClause(int[])}, 
+	 * reusing one array per clause length; solvers that can read the 
+	 * literals in place should override it.
+	 * @requires all c: clauses.clauses.elems | c satisfies the requirements of {@link #addClause(int[])}
+	 * @ensures [[this.clauses']] = ([[this.clauses]] and [[clauses.clauses.elems]])
+	 * @return #this.clauses' > #this.clauses
+	 * @throws NullPointerException  clauses = null
+	 */
+	public default boolean addClauses(ClauseBuffer clauses) {
+		final int[][] scratch = new int[8][];
+		boolean changed = false;
+		for(int i = 0, size = clauses.size(); i < size; i++) {
+			final int length = clauses.end(i) - clauses.start(i);
+			if (length < scratch.length) 
+				changed |= addClause(scratch[length] = clauses.clause(i, scratch[length]));
+			else 
+				changed |= addClause(clauses.clause(i, null));
+		}
+		return changed;
+	}
+	
 	/**
 	 * Returns true if there is a satisfying assignment for this.clauses.
 	 * Otherwise returns false.  If this.clauses are satisfiable, the 
@@ -0,0 +1,275 @@
+/*
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.ucore;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import kodkod.engine.fol2sat.TranslationLog;
+import kodkod.engine.fol2sat.Translator;
+import kodkod.engine.satlab.Clause;
+import kodkod.engine.satlab.ReductionStrategy;
+import kodkod.engine.satlab.ResolutionTrace;
+import kodkod.engine.satlab.SATAbortedException;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.engine.satlab.SATSolver;
+import kodkod.solvers.CDCLRef;
+import kodkod.util.ints.IntIterator;
+import kodkod.util.ints.IntSet;
+import kodkod.util.ints.IntTreeSet;
+import kodkod.util.ints.Ints;
+
+/**
+ * A parallel version of the {@linkplain RCEStrategy Recycling Core Extraction}
+ * strategy. It gives the same guarantee as RCE: let C be a core that is minimal
+ * according to this strategy, and let F(C) be the top-level logic constraints
+ * corresponding to C. Then for all f in F(C), F(C) - f is satisfiable.
+ * 
+ * <p>
+ * Where RCE hands one candidate reduction at a time to the prover, this
+ * strategy first tests up to <tt>threads</tt> candidates at once, each on an
+ * independent solver loaded with the axioms of the reduced core and the
+ * resolvents learnable from them. A formula
+ * whose removal is satisfiable is part of every core that is a subset of the
+ * current one, so it is never tried again. The formulas whose removal is
+ * unsatisfiable are merged into a single reduction, which is given to the
+ * prover. If the merged reduction turns out to be satisfiable, the next call
+ * falls back to the first confirmed formula alone, and the others are tried
+ * again against the smaller core. The prover thus makes one call per accepted
+ * reduction, while the calls that reject a reduction, which are most of the
+ * calls for a core that is nearly minimal, run in parallel.
+ * </p>
+ * 
+ * <p>
+ * A strategy instance should be used for a single minimization. Its threads
+ * are stopped once it has tried every formula.
+ * </p>
+ * 
+ * <p>
+ * This implementation will work properly only on CNFs generated by the kodkod
+ * {@linkplain Translator}.
+ * </p>
+ * 
+ * @see RCEStrategy
+ */
+public final class ParallelRCEStrategy implements ReductionStrategy {
+
+	private static final AtomicInteger POOLS = new AtomicInteger();
+
+	private final IntSet varsToTry;
+	private final int threads;
+	private final SATFactory factory;
+	private ThreadPoolExecutor executor;
+	// the trace given to the last call of next, and the formulas merged in
+	// the reduction it returned, if there were more than one
+	private ResolutionTrace lastTrace;
+	private IntSet merged;
+
+	/**
+	 * Constructs a parallel RCE strategy that will use the given translation log
+	 * to relate the cnf clauses back to the logic constraints from which they
+	 * were generated, with one thread per available processor, testing
+	 * candidate reductions with the {@linkplain CDCLRef Java CDCL} solver.
+	 */
+	public ParallelRCEStrategy(final TranslationLog log) {
+		this(log, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructs a parallel RCE strategy that will use the given translation log
+	 * to relate the cnf clauses back to the logic constraints from which they
+	 * were generated, testing up to <tt>threads</tt> candidate reductions at
+	 * once with the {@linkplain CDCLRef Java CDCL} solver.
+	 * 
+	 * @requires threads > 0
+	 */
+	public ParallelRCEStrategy(final TranslationLog log, int threads) {
+		this(log, threads, CDCLRef.INSTANCE);
+	}
+
+	/**
+	 * Constructs a parallel RCE strategy that will use the given translation log
+	 * to relate the cnf clauses back to the logic constraints from which they
+	 * were generated, testing up to <tt>threads</tt> candidate reductions at
+	 * once with solvers created by the given factory.
+	 * 
+	 * @requires threads > 0
+	 */
+	public ParallelRCEStrategy(final TranslationLog log, int threads, SATFactory factory) {
+		if (threads < 1)
+			throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+		this.varsToTry = StrategyUtils.rootVars(log);
+		this.threads = threads;
+		this.factory = factory;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see kodkod.engine.satlab.ReductionStrategy#next(kodkod.engine.satlab.ResolutionTrace)
+	 */
+	public IntSet next(ResolutionTrace trace) {
+		final IntSet relevantVars = StrategyUtils.coreTailUnits(trace);
+		if (trace == lastTrace && merged != null) {
+			// the merged reduction was satisfiable: the first of its formulas
+			// can be removed on its own, and the others are tried again later
+			final int first = merged.min();
+			merged.remove(first);
+			varsToTry.addAll(merged);
+			merged = null;
+			return reduce(trace, relevantVars, Ints.singleton(first));
+		}
+		merged = null;
+		varsToTry.retainAll(relevantVars);
+		while (!varsToTry.isEmpty() && relevantVars.size() > 1) {
+			final IntSet batch = new IntTreeSet();
+			for (IntIterator varItr = varsToTry.iterator(); varItr.hasNext() && batch.size() < threads;)
+				batch.add(varItr.next());
+			varsToTry.removeAll(batch);
+
+			final IntSet confirmed = unsatRemovals(trace, relevantVars, batch);
+			if (confirmed.isEmpty())
+				continue;
+			if (confirmed.size() == relevantVars.size()) { // keep at least one root formula
+				final int kept = confirmed.max();
+				confirmed.remove(kept);
+				varsToTry.add(kept);
+			}
+			if (confirmed.size() > 1)
+				merged = confirmed;
+			return reduce(trace, relevantVars, confirmed);
+		}
+		varsToTry.clear();
+		shutdown();
+		return Ints.EMPTY_SET;
+	}
+
+	/**
+	 * Returns the indices of all axioms and resolvents in the given trace that
+	 * form the translations of the given relevant formulas, minus the removed
+	 * ones, and records the trace as the last one seen by this strategy.
+	 */
+	private IntSet reduce(ResolutionTrace trace, IntSet relevantVars, IntSet removed) {
+		final IntSet remaining = new IntTreeSet(relevantVars);
+		remaining.removeAll(removed);
+		final IntSet relevantClauses = clausesFor(trace, remaining);
+		assert !relevantClauses.isEmpty() && !relevantClauses.contains(trace.size() - 1);
+		lastTrace = trace;
+		return relevantClauses;
+	}
+
+	/**
+	 * Returns the indices of all axioms and resolvents in the given trace that
+	 * form the translations of the formulas identified by the given variables.
+	 */
+	private static IntSet clausesFor(ResolutionTrace trace, IntSet relevantVars) {
+		return trace.learnable(StrategyUtils.clausesFor(trace, relevantVars));
+	}
+
+	/**
+	 * Tests, in parallel, whether the axioms and resolvents of the given
+	 * relevant formulas minus each of the candidates are unsatisfiable, and returns the
+	 * candidates for which they are.
+	 */
+	private IntSet unsatRemovals(ResolutionTrace trace, IntSet relevantVars, IntSet candidates) {
+		// the clauses are read from the trace on this thread, since traces
+		// are not meant to be shared
+		final List<Future<Boolean>> outcomes = new ArrayList<>(candidates.size());
+		for (IntIterator varItr = candidates.iterator(); varItr.hasNext();) {
+			final IntSet remaining = new IntTreeSet(relevantVars);
+			remaining.remove(varItr.next());
+			final List<int[]> clauses = new ArrayList<>();
+			int maxVar = 0;
+			for (Iterator<Clause> itr = trace.iterator(clausesFor(trace, remaining)); itr.hasNext();) {
+				final Clause clause = itr.next();
+				clauses.add(clause.toArray());
+				maxVar = StrictMath.max(maxVar, clause.maxVariable());
+			}
+			final int numVars = maxVar;
+			outcomes.add(executor().submit(() -> {
+				final SATSolver solver = factory.instance();
+				try {
+					solver.addVariables(numVars);
+					for (int[] clause : clauses)
+						solver.addClause(clause);
+					return solver.solve();
+				} finally {
+					solver.free();
+				}
+			}));
+		}
+
+		final IntSet confirmed = new IntTreeSet();
+		try {
+			final IntIterator varItr = candidates.iterator();
+			for (Future<Boolean> outcome : outcomes) {
+				final int var = varItr.next();
+				if (!outcome.get())
+					confirmed.add(var);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			shutdown();
+			throw new SATAbortedException(e);
+		} catch (ExecutionException e) {
+			shutdown();
+			throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+					: new SATAbortedException(e.getCause());
+		}
+		return confirmed;
+	}
+
+	/**
+	 * Returns the executor of this strategy, creating it if needed.
+	 */
+	private ThreadPoolExecutor executor() {
+		if (executor == null) {
+			final int pool = POOLS.incrementAndGet();
+			final AtomicInteger count = new AtomicInteger();
+			executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+				final Thread t = new Thread(r, "ucore-" + pool + "-" + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
+			executor.allowCoreThreadTimeOut(true);
+		}
+		return executor;
+	}
+
+	/**
+	 * Stops the threads of this strategy, if any.
+	 */
+	private void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+}
@@ -55,9 +55,19 @@ public abstract class Tuple  {
      * a Tuple's index is the decimal representation of this number.  
      *  
      * @return sum({i: [0..arity) | universe.index(atoms[i]) * universe.size^(arity - 1 - i)})
+     * @throws kodkod.engine.CapacityExceededException  universe.size^arity > Integer.MAX_VALUE
      */
     public abstract int index();
     
+    /**
+     * Returns the index of this tuple as a long.  Unlike {@link #index()}, this
+     * method is defined for tuples whose index does not fit in an int, which 
+     * can be stored in bounds but not translated.
+     *  
+     * @return sum({i: [0..arity) | universe.index(atoms[i]) * universe.size^(arity - 1 - i)})
+     */
+    public long longIndex() { return index(); }
+    
     /**
      * Returns the atom at the specified index
      *
@@ -102,7 +112,7 @@ public abstract class Tuple  {
     		if (this==o) return true;
     		else if (o instanceof Tuple) {
             final Tuple t = (Tuple) o;
-            return universe().equals(t.universe()) && arity()==t.arity() && index()==t.index();
+            return universe().equals(t.universe()) && arity()==t.arity() && longIndex()==t.longIndex();
         }
         else return false;   
     }
@@ -113,7 +123,8 @@ public abstract class Tuple  {
      * @return the hashcode for this tuple
      */
     public int hashCode() {
-        return (arity() * 19 + index())^universe().hashCode();
+        final long index = longIndex();
+        return (arity() * 19 + (int)(index ^ (index >>> 32)))^universe().hashCode();
     }
     
     /**
@@ -71,7 +71,7 @@ public final class TupleFactory {
      */
 	public Tuple tuple(Object... atoms) {
 		if (atoms.length<1) throw new IllegalArgumentException("atoms.length<1");
-		return new IntTuple(atoms);
+		return wide(atoms.length) ? new LongTuple(atoms) : new IntTuple(atoms);
 	}
 	
 	/**  
@@ -85,7 +85,7 @@ public final class TupleFactory {
      */
 	public Tuple tuple(List<?> atoms) {
 		if (atoms.size()<1) throw new IllegalArgumentException("atoms.size()<1");
-		return new IntTuple(atoms.toArray());
+		return tuple(atoms.toArray());
 	}
 	
 	/**  
@@ -97,7 +97,23 @@ public final class TupleFactory {
      * @throws IllegalArgumentException  arity < 1 || index < 0 || index >= universe.size^arity
      */
 	public Tuple tuple(final int arity, final int index) {
-		return new IntTuple(arity, index);
+		return wide(arity) ? new LongTuple(arity, index) : new IntTuple(arity, index);
+	}
+	
+	/**  
+     * Returns a tuple with the specified arity whose index in an arity-dimensional 
+     * space over this.universe is given by the index parameter.  Unlike 
+     * {@link #tuple(int, int)}, this method accepts indices that do not fit in an int.
+     * 
+     * @return {t: Tuple | t.universe = this.universe && t.arity = arity && 
+     *                     index = sum({i : [0..arity) | universe.index(t.atoms[i]) * universe.size^(arity - 1 - i))}) }
+     * @throws IllegalArgumentException  arity < 1 || index < 0 || index >= universe.size^arity
+     */
+	public Tuple tuple(final int arity, final long index) {
+		if (wide(arity)) return new LongTuple(arity, index);
+		if (index > Integer.MAX_VALUE) 
+			throw new IllegalArgumentException("arity < 1 || index < 0 || index >= universe.size^arity");
+		return new IntTuple(arity, (int) index);
 	}
 	
 	/**
@@ -105,8 +121,10 @@ public final class TupleFactory {
 	 * @return { s: TupleSet | s.universe = this.universe && s.arity = arity && 
 	 *                         s.tuples = {t: Tuple | t.universe = this.universe && t.arity = arity} }
 	 * @throws IllegalArgumentException  arity < 1                     
+	 * @throws CapacityExceededException  this.universe.size^arity > Integer.MAX_VALUE
 	 */
 	public TupleSet allOf(int arity) {
+		checkIntCapacity(arity);
 		return new TupleSet(universe, arity, 
 				                      0, ((int) Math.pow(base, arity)) - 1);
 	}
@@ -143,7 +161,8 @@ public final class TupleFactory {
 		if (!first.universe().equals(universe))
 			throw new IllegalArgumentException("first.universe != this.universe");
 
-		final TupleSet ret = new TupleSet(universe, first.arity(), first.index(), first.index());
+		final TupleSet ret = new TupleSet(universe, first.arity());
+		ret.add(first);
 		for(Tuple tuple: rest) {
 			ret.add(tuple);
 		}
@@ -183,6 +202,7 @@ public final class TupleFactory {
 	 * @throws IllegalArgumentException  tupleIndices is uncloneable
 	 * @throws IllegalArgumentException  arity < 1
 	 * @throws IllegalArgumentException  tupleIndices.min() < 0 || tupleIndices.max() >= this.universe.size()^arity 
+	 * @throws CapacityExceededException  this.universe.size^arity > Integer.MAX_VALUE
 	 */
 	public TupleSet setOf(int arity, IntSet tupleIndices) {
 		try {
@@ -219,6 +239,15 @@ public final class TupleFactory {
 			throw new IllegalArgumentException("from.arity!=to.arity");
 		if (!(from.universe().equals(universe)&&to.universe().equals(universe)))
 			throw new IllegalArgumentException("from.universe != this.universe || to.universe != this.universe");
+		if (wide(from.arity())) {
+			if (from.longIndex() > to.longIndex())
+				throw new IndexOutOfBoundsException(from.longIndex() + " > " + to.longIndex());
+			final TupleSet ret = new TupleSet(universe, from.arity());
+			for(long i = from.longIndex(); i <= to.longIndex(); i++) {
+				ret.add(new LongTuple(from.arity(), i));
+			}
+			return ret;
+		}
 		return new TupleSet(universe, from.arity(), from.index(), to.index());
 	}
 	
@@ -255,16 +284,58 @@ public final class TupleFactory {
 		return ret;
 	}
 	
+	/**
+	 * Throws a CapacityExceededException if all tuples of the given arity 
+	 * drawn from this.universe cannot be represented as a long.
+	 * @throws CapacityExceededException if all tuples of the given arity 
+	 * drawn from this.universe cannot be represented as a long.
+	 */
+	void checkCapacity(int arity) { 
+		if (StrictMath.pow(base,arity) >= Long.MAX_VALUE) {
+			throw capacityExceeded(arity);
+		}
+	}
+	
 	/**
 	 * Throws a CapacityExceededException if all tuples of the given arity 
 	 * drawn from this.universe cannot be represented as an integer.
 	 * @throws CapacityExceededException if all tuples of the given arity 
 	 * drawn from this.universe cannot be represented as an integer.
 	 */
-	void checkCapacity(int arity) { 
-		if (StrictMath.pow(base,arity) > Integer.MAX_VALUE) {
-			throw new CapacityExceededException("Arity too large (" + arity + ") for a universe of size " + universe.size(), Ints.nCopies(arity, base));
+	void checkIntCapacity(int arity) { 
+		if (wide(arity)) {
+			throw capacityExceeded(arity);
+		}
+	}
+	
+	/**
+	 * Returns a CapacityExceededException for tuples of the given arity.
+	 * @return a CapacityExceededException for tuples of the given arity.
+	 */
+	private CapacityExceededException capacityExceeded(int arity) {
+		return new CapacityExceededException("Arity too large (" + arity + ") for a universe of size " + universe.size(), Ints.nCopies(arity, base));
+	}
+	
+	/**
+	 * Returns true if the tuples of the given arity drawn from this.universe 
+	 * cannot be represented as an integer, and are indexed by longs instead.
+	 * @return this.universe.size^arity > Integer.MAX_VALUE
+	 */
+	boolean wide(int arity) {
+		return StrictMath.pow(base,arity) > Integer.MAX_VALUE;
+	}
+	
+	/**
+	 * Returns this.universe.size^arity as a long.
+	 * @requires !(this.universe.size^arity > Long.MAX_VALUE)
+	 * @return this.universe.size^arity
+	 */
+	long capacity(int arity) {
+		long capacity = 1;
+		for(int i = 0; i < arity; i++) {
+			capacity *= base;
 		}
+		return capacity;
 	}
 	
 	/**
@@ -278,6 +349,17 @@ public final class TupleFactory {
         return (tupleIndex / ((int) Math.pow(base, arity-1-column))) % base;
 	}
 	
+	/**
+	 * Projects the tuple with the specified long index and arity onto the 
+	 * specified column.    
+	 * @requires tupleIndex >= 0 && tupleIndex < this.universe.size() ^ arity
+	 * @return this.universe.index(this.tuple(arity, tupleIndex).atoms[i])
+	 */
+	int project(long tupleIndex, int arity, int column) {
+		if (column < 0 || column >= arity) throw new IndexOutOfBoundsException(column+"");
+        return (int) ((tupleIndex / capacity(arity-1-column)) % base);
+	}
+	
 	/**
 	 * An implementation of the Tuple interface that stores
 	 * only the tuple's arity and index, rather than the full
@@ -303,7 +385,7 @@ public final class TupleFactory {
 	     * @throws IllegalArgumentException  arity < 1 || index < 0 || index >= TupleFactory.this.base^arity
 	     */
 	    IntTuple(final int arity, final int index) {
-	    	checkCapacity(arity);
+	    	checkIntCapacity(arity);
 	        if (arity < 1 || index < 0 || index >= Math.pow(base, arity)) {
 	            throw new IllegalArgumentException("arity < 1 || index < 0 || index >= universe.size^arity");
 	        }
@@ -322,7 +404,7 @@ public final class TupleFactory {
 	     */
 	    IntTuple(final Object... atoms) {
 	        this.arity = atoms.length;
-	        checkCapacity(arity);
+	        checkIntCapacity(arity);
 	        int tempIndex = 0, multiplier = 1;
 	        for (int i = arity - 1; i >= 0; i--) { 
 	            tempIndex += universe.index(atoms[i]) * multiplier;
@@ -341,7 +423,7 @@ public final class TupleFactory {
 	     */
 	    @SuppressWarnings("unused")
 		IntTuple(final int arity, final Object atom) {
-	    	checkCapacity(arity);
+	    	checkIntCapacity(arity);
 	    	if (arity < 1) throw new IllegalArgumentException("arity < 1");
 	    	this.arity = arity;
 	    	int tempIndex = 1;
@@ -385,10 +467,111 @@ public final class TupleFactory {
 	    /** {@inheritDoc} */
 	    public Tuple product(Tuple tuple) {
 	    	if (!universe.equals(tuple.universe())) throw new IllegalArgumentException("tuple.universe != this.universe");
+	    	if (wide(arity + tuple.arity())) {
+	    		checkCapacity(arity + tuple.arity());
+	    		return new LongTuple(arity + tuple.arity(), index * capacity(tuple.arity()) + tuple.longIndex());
+	    	}
 	        return new IntTuple(arity + tuple.arity(), 
 	        		                index * ((int)Math.pow(base, tuple.arity())) + tuple.index());
 	    }
 	}
 	
+	/**
+	 * An implementation of the Tuple interface for tuples whose index
+	 * does not fit in an int.  Such tuples can be stored in tuple sets
+	 * and bounds, but the index based structures of the translation 
+	 * cannot hold them, so their {@link #index()} method throws a 
+	 * CapacityExceededException.
+	 * 
+	 * @specfield universe: TupleFactory.this.universe
+	 * @specfield arity: int
+	 * @specfield index: long
+	 * @invariant TupleFactory.this.base^arity > Integer.MAX_VALUE
+	 * @invariant 0 <= index < TupleFactory.this.base^arity
+	 * @invariant index = sum({i: [0..arity) | TupleFactory.this.universe.index(atoms[i]) * TupleFactory.this.base^(arity - 1 - i))
+	 */
+	private final class LongTuple extends Tuple {
+		private final int arity;
+		private final long index;
+		
+		/**  
+	     * Constructs a tuple with the specified arity and index, whose atoms
+	     * are drawn from the factory's universe.
+	     * 
+	     * @ensures this.arity' = arity && 
+	     *          this.index' = index 
+	     * @throws IllegalArgumentException  index < 0 || index >= TupleFactory.this.base^arity
+	     */
+		LongTuple(final int arity, final long index) {
+			checkCapacity(arity);
+	        if (index < 0 || index >= capacity(arity)) {
+	            throw new IllegalArgumentException("arity < 1 || index < 0 || index >= universe.size^arity");
+	        }
+	        this.arity = arity;
+	        this.index = index;
+		}
+		
+		/**  
+	     * Constructs a tuple that contains the specified sequence of atoms, drawn from the
+	     * enclosing factory's universe.
+	     * 
+	     * @ensures this.atoms' = atoms
+	     * @throws NullPointerException  atoms = null
+	     * @throws IllegalArgumentException   some a: atoms[int] | a !in universe.atoms[int]
+	     */
+		LongTuple(final Object... atoms) {
+			this.arity = atoms.length;
+			checkCapacity(arity);
+			long tempIndex = 0;
+			for (Object atom : atoms) { 
+	            tempIndex = tempIndex * base + universe.index(atom);
+	        }
+	        this.index = tempIndex;
+		}
+		
+	    /** {@inheritDoc} */
+	    public Universe universe() { return universe; }
+	    
+	    /** {@inheritDoc} */
+	    public int arity() { return arity; }
+	    
+	    /** 
+	     * Throws a CapacityExceededException, since the index of this tuple does not fit in an int.
+	     * @throws CapacityExceededException  always
+	     */
+	    public int index() { 
+	    	throw capacityExceeded(arity);
+	    }
+	    
+	    /** {@inheritDoc} */
+	    public long longIndex() { return index; }
+	    
+	    /** {@inheritDoc} */
+	    public Object atom(int i) {
+	        return universe.atom(atomIndex(i));
+	    }
+	    
+	    /** {@inheritDoc} */
+	    public int atomIndex(int i) {
+	    	return project(index,arity,i);
+	    }
+	    
+	    /** {@inheritDoc} */
+	    public boolean contains(Object atom) {
+	    	final int atomIndex = universe.index(atom);
+	        for (int i = 0; i < arity; i++) {
+	            if (atomIndex(i) == atomIndex) return true;
+	        }
+	        return false;
+	    }
+
+	    /** {@inheritDoc} */
+	    public Tuple product(Tuple tuple) {
+	    	if (!universe.equals(tuple.universe())) throw new IllegalArgumentException("tuple.universe != this.universe");
+	    	checkCapacity(arity + tuple.arity());
+	    	return new LongTuple(arity + tuple.arity(), index * capacity(tuple.arity()) + tuple.longIndex());
+	    }
+	}
+	
 	
 }
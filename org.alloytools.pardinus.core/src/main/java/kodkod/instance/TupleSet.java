@@ -23,7 +23,10 @@ package kodkod.instance;
 
 import java.util.AbstractSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 import kodkod.util.ints.IntIterator;
 import kodkod.util.ints.IntSet;
@@ -38,6 +41,13 @@ import kodkod.util.ints.Ints;
  * when passed null.  The iterator of a TupleSet returns tuples in the order of their
  * {@link kodkod.instance.Tuple#index() indeces}.  
  * 
+ * <p>A set whose tuples cannot all be indexed by an int, because this.universe.size^arity 
+ * exceeds Integer.MAX_VALUE, keeps the {@link kodkod.instance.Tuple#longIndex() long indices}
+ * of its tuples in a sparse sorted set instead.  Such a set can be used to build bounds, 
+ * but its {@link #indexView() index view} and {@link #capacity() capacity} are undefined, 
+ * and the translation of a problem that mentions its relation fails with a 
+ * {@link kodkod.engine.CapacityExceededException}.</p>
+ * 
  * @specfield tuples: set Tuple
  * @specfield universe: Universe
  * @specfield arity: int
@@ -49,6 +59,7 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	private final Universe universe;
 	private final int arity;
 	private final IntSet tuples;
+	private final SortedSet<Long> longTuples;
 	private IntSet indexView = null;
 		
 	/**
@@ -64,7 +75,13 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 		universe.factory().checkCapacity(arity);
 		this.universe = universe;
 		this.arity = arity;
-		tuples = Ints.bestSet(capacity());
+		if (universe.factory().wide(arity)) {
+			tuples = null;
+			longTuples = new TreeSet<Long>();
+		} else {
+			tuples = Ints.bestSet(capacity());
+			longTuples = null;
+		}
 	}
 	
 	/**
@@ -103,9 +120,10 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 */
 	TupleSet(Universe universe, int arity, IntSet tupleIndeces) {
 		if (arity < 1) throw new IllegalArgumentException("arity < 1");
-		universe.factory().checkCapacity(arity);
+		universe.factory().checkIntCapacity(arity);
 		this.universe = universe;
 		this.arity = arity;
+		this.longTuples = null;
 		if (!tupleIndeces.isEmpty()) {
 			if (tupleIndeces.min()<0 || tupleIndeces.max() >= capacity())
 				throw new IllegalArgumentException(tupleIndeces.min() + "<0 || " + tupleIndeces.max()+">="+universe.size()+"^"+arity);
@@ -113,6 +131,20 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 		tuples = tupleIndeces;
 	}
 	
+	/**
+	 * Constructs a tuple set of the given arity, over the specified universe, 
+	 * backed by the given set of long indices.
+	 * @requires universe.factory().wide(arity)
+	 * @ensures this.universe' = universe && this.arity' = arity && 
+	 *          this.tuples' = {t: Tuple | t.longIndex() in longTuples} 
+	 */
+	private TupleSet(Universe universe, int arity, SortedSet<Long> longTuples) {
+		this.universe = universe;
+		this.arity = arity;
+		this.tuples = null;
+		this.longTuples = longTuples;
+	}
+	
 	/**
 	 * Copy constructor.
 	 * @ensures constructs a deep copy of the given tupleset
@@ -120,10 +152,16 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	private TupleSet(TupleSet original) {
 		this.universe = original.universe;
 		this.arity = original.arity;
-		try {
-			this.tuples = original.tuples.clone();
-		} catch (CloneNotSupportedException e) {
-			throw new InternalError(); // unreachable code
+		if (original.longTuples != null) {
+			this.tuples = null;
+			this.longTuples = new TreeSet<Long>(original.longTuples);
+		} else {
+			try {
+				this.tuples = original.tuples.clone();
+			} catch (CloneNotSupportedException e) {
+				throw new InternalError(); // unreachable code
+			}
+			this.longTuples = null;
 		}
 		this.indexView = null;
 	}
@@ -140,8 +178,10 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 * Returns the capacity of this set -- the maximum number of tuples
 	 * that it can hold, given its universe and arity.  
 	 * @return this.universe.size() ^ this.arity
+	 * @throws kodkod.engine.CapacityExceededException  this.universe.size() ^ this.arity > Integer.MAX_VALUE
 	 */
 	public final int capacity() {
+		universe.factory().checkIntCapacity(arity);
 		return (int) StrictMath.pow(universe.size(),arity);
 	}
 
@@ -166,8 +206,10 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 * view is backed by this set, so changes to this set are
 	 * reflected in the index set. 
 	 * @return { s: IntSet | s.ints = {i: int | some t: this.tuples | t.index = i}
+	 * @throws kodkod.engine.CapacityExceededException  this.universe.size() ^ this.arity > Integer.MAX_VALUE
 	 */
 	public IntSet indexView() {
+		universe.factory().checkIntCapacity(arity);
 		if (indexView==null) {
 			indexView = Ints.unmodifiableIntSet(tuples);
 		}
@@ -182,6 +224,8 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 * @return an unmodifiable view of the this tupleset
 	 */
 	public TupleSet unmodifiableView() {
+		if (longTuples != null)
+			return new TupleSet(universe,arity,Collections.unmodifiableSortedSet(longTuples));
 		return new TupleSet(universe,arity,indexView());
 	}
 	
@@ -198,7 +242,15 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 		if (!s.universe().equals(universe))
 			throw new IllegalArgumentException("s.universe != this.universe");
 		final TupleSet ret = new TupleSet(universe, arity+s.arity());
-		if (!s.isEmpty()) {
+		if (ret.longTuples != null) {
+			final long mCapacity = universe.factory().capacity(s.arity);
+			for(Tuple t0 : this) {
+				final long i0 = mCapacity * t0.longIndex();
+				for(Tuple t1 : s) {
+					ret.longTuples.add(i0 + t1.longIndex());
+				}
+			}
+		} else if (!s.isEmpty()) {
 			final int mCapacity = (int) StrictMath.pow(universe.size(), s.arity);
 			for(IntIterator indeces0 = tuples.iterator(); indeces0.hasNext(); ) {
 				int i0 = mCapacity * indeces0.next();
@@ -222,8 +274,14 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 		}
 		final IntSet projection = Ints.bestSet(universe.size());
 		final TupleFactory factory = universe.factory();
-		for(IntIterator indexIter = tuples.iterator(); indexIter.hasNext();) {
-			projection.add(factory.project(indexIter.next(), arity, dimension));
+		if (longTuples != null) {
+			for(long index : longTuples) {
+				projection.add(factory.project(index, arity, dimension));
+			}
+		} else {
+			for(IntIterator indexIter = tuples.iterator(); indexIter.hasNext();) {
+				projection.add(factory.project(indexIter.next(), arity, dimension));
+			}
 		}
 		return new TupleSet(universe,1,projection);
 	}
@@ -243,6 +301,22 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 */
 	@Override
 	public Iterator<Tuple> iterator() {
+		if (longTuples != null) {
+			return new Iterator<Tuple>() {
+				final Iterator<Long> indexIter = longTuples.iterator();
+				public boolean hasNext() {
+					return indexIter.hasNext();
+				}
+
+				public Tuple next() {
+					return universe.factory().tuple(arity, indexIter.next().longValue());
+				}
+
+				public void remove() {
+					indexIter.remove();
+				}
+			};
+		}
 		return new Iterator<Tuple>() {
 			IntIterator indexIter = tuples.iterator();
 			public boolean hasNext() {
@@ -266,10 +340,30 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 * @throws IllegalArgumentException  t.arity != this.arity || t.universe != this.universe
 	 */
 	private final int extractIndex(Tuple t) {
+		checkTuple(t);
+		return t.index();
+	}
+	
+	/**
+	 * Returns the long index of the given tuple, if the tuple has the same
+	 * arity and universe as this.  Otherwise throws an IllegalArgumentException.
+	 * @return t.longIndex
+	 * @throws IllegalArgumentException  t.arity != this.arity || t.universe != this.universe
+	 */
+	private final long extractLongIndex(Tuple t) {
+		checkTuple(t);
+		return t.longIndex();
+	}
+	
+	/**
+	 * Throws an IllegalArgumentException if the given tuple does not 
+	 * have the same arity and universe as this.
+	 * @throws IllegalArgumentException  t.arity != this.arity || t.universe != this.universe
+	 */
+	private final void checkTuple(Tuple t) {
 		if (t.arity() != arity || !t.universe().equals(universe)) {
 			throw new IllegalArgumentException("t.arity != this.arity || t.universe != this.universe");
 		}
-		return t.index();
 	}
 	
 	/**
@@ -279,6 +373,8 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 */
 	@Override
 	public boolean contains(Object o) {
+		if (longTuples != null)
+			return longTuples.contains(extractLongIndex((Tuple)o));
 		return tuples.contains(extractIndex((Tuple)o));
 	}
 	
@@ -287,7 +383,7 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 * @return #this.tuples
 	 */
 	@Override
-	public int size() { return tuples.size(); }
+	public int size() { return longTuples != null ? longTuples.size() : tuples.size(); }
 	
 	/**
 	 * Removes all tuples from this tupleset.
@@ -295,7 +391,10 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 */
 	@Override
 	public void clear() { 
-		tuples.clear(); 
+		if (longTuples != null)
+			longTuples.clear();
+		else
+			tuples.clear(); 
 	}
 
 	/**
@@ -308,6 +407,8 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 */
 	@Override
 	public boolean add(Tuple t) {
+		if (longTuples != null)
+			return longTuples.add(extractLongIndex(t));
 		return tuples.add(extractIndex(t));
 	}
 
@@ -320,13 +421,15 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 */
 	@Override
 	public boolean remove(Object o) {
+		if (longTuples != null)
+			return longTuples.remove(extractLongIndex((Tuple)o));
 		return tuples.remove(extractIndex((Tuple)o));
 	}
 	
 	/**
 	 * If c is not a TupleSet or it is a tupleset with a universe different than
-	 * this.universe, returns null.  Otherwise, returns the tuples associated 
-	 * with the modifiable view of c. 
+	 * this.universe, or a set of tuples indexed by longs, returns null.  Otherwise, 
+	 * returns the tuples associated with the modifiable view of c. 
 	 * @requires c in TupleSet => c.arity = this.arity
 	 * @return c in TupleSet && c.universe = this.universe && c.arity = this.arity => c.tuples, null
 	 * @throws NullPointerException  s = null
@@ -403,7 +506,7 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 		if (o instanceof TupleSet) {
 			final TupleSet s = (TupleSet) o;
 			return arity==s.arity && universe.equals(s.universe) && 
-			       tuples.equals(s.tuples);
+			       (longTuples != null ? longTuples.equals(s.longTuples) : tuples.equals(s.tuples));
 		}
 		return super.equals(o);
 	}
@@ -413,6 +516,6 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 */
 	@Override
 	public int hashCode() { 
-		return tuples.hashCode();
+		return longTuples != null ? longTuples.hashCode() : tuples.hashCode();
 	}
 }
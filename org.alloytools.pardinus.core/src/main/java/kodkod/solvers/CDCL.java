@@ -0,0 +1,1140 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.solvers;
+
+import java.util.Arrays;
+
+import kodkod.engine.satlab.AssumptionSATSolver;
+import kodkod.engine.satlab.ClauseBuffer;
+import kodkod.engine.satlab.InterruptibleSATSolver;
+import kodkod.engine.satlab.SATAbortedException;
+
+/**
+ * A conflict-driven clause learning SAT solver written in Java, for the
+ * platforms where the native solvers cannot be loaded.
+ * 
+ * <p>All clauses are stored in a single int array, each as a header followed
+ * by its literals, and are referenced by their offset in that array. Unit
+ * propagation uses two watched literals with a blocking literal per watch.
+ * Learned clauses are minimized, ranked by their literal block distance
+ * (the number of decision levels among their literals), and the half with
+ * the highest distance is deleted periodically, keeping the clauses with a
+ * distance of at most two. Branching uses VSIDS with phase saving, and the
+ * search restarts according to the Luby sequence. Apart from the growth of
+ * its arrays, the solver does not allocate while it searches.</p>
+ * 
+ * <p>Literals are encoded internally as 2*v for v and 2*v+1 for -v, so that
+ * the negation of a literal is obtained by flipping its lowest bit.</p>
+ * 
+ * @specfield variables: set [1..)
+ * @specfield clauses: set Clause
+ * @see CDCLProver
+ */
+public class CDCL implements AssumptionSATSolver, InterruptibleSATSolver {
+	
+	/* Values of literals. */
+	static final byte TRUE = 1, FALSE = -1, UNDEF = 0;
+	
+	/* Clause header: size, flags, proof identifier. */
+	static final int HEADER = 3;
+	private static final int LEARNT = 1, DELETED = 2;
+	static final int NONE = -1;
+
+	private static final int[] NO_ASSUMPTIONS = new int[0];
+	private static final double VAR_DECAY = 0.95;
+	private static final int RESTART_BASE = 100;
+	private static final int FIRST_REDUCE = 2000, REDUCE_INCREMENT = 300;
+	
+	/** Whether the steps needed for a resolution proof are recorded. */
+	final boolean proof;
+	
+	private volatile boolean interrupted;
+	private Boolean sat;
+	/* The assumptions responsible for the last unsat outcome under assumptions, if known. */
+	private int[] failed;
+	/* False once the clauses are unsatisfiable regardless of assumptions. */
+	boolean ok;
+	private int vars, clauses;
+	
+	/* The clause arena. */
+	int[] arena;
+	private int arenaSize, wasted;
+	
+	/* The assignment, indexed by literal and by variable. */
+	byte[] value;
+	int[] level, reason;
+	private boolean[] polarity;
+	private byte[] seen;
+	int[] trail;
+	int trailSize;
+	private int qhead;
+	private int[] trailLim;
+	private int decisionLevel;
+	
+	/* The watch lists, indexed by literal: pairs of clause reference and blocking literal. */
+	private int[][] watches;
+	private int[] watchSize;
+	
+	/* The variable order. */
+	private double[] activity;
+	private double varInc;
+	private int[] heap, heapIndex;
+	private int heapSize;
+	
+	/* The learned clauses. */
+	private int[] learnts;
+	private int numLearnts;
+	private long conflicts, nextReduce;
+	private int reductions;
+	
+	/* Buffers reused across calls. */
+	private int[] learnt, stack, toClear, levelStamp;
+	private int stamp;
+	private boolean[] model;
+	
+	/**
+	 * Constructs a new solver with no variables and no clauses.
+	 */
+	public CDCL() {
+		this(false);
+	}
+	
+	/**
+	 * Constructs a new solver with no variables and no clauses, which records
+	 * the steps of its proofs if the given flag is true.
+	 */
+	CDCL(boolean proof) {
+		this.proof = proof;
+		this.ok = true;
+		this.arena = new int[1024];
+		this.value = new byte[2];
+		this.level = new int[1];
+		this.reason = new int[1];
+		this.polarity = new boolean[1];
+		this.seen = new byte[1];
+		this.trail = new int[1];
+		this.trailLim = new int[16];
+		this.watches = new int[2][];
+		this.watchSize = new int[2];
+		this.activity = new double[1];
+		this.varInc = 1;
+		this.heap = new int[1];
+		this.heapIndex = new int[1];
+		this.learnts = new int[256];
+		this.learnt = new int[16];
+		this.stack = new int[16];
+		this.toClear = new int[16];
+		this.levelStamp = new int[16];
+		this.nextReduce = FIRST_REDUCE;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#numberOfVariables()
+	 */
+	public int numberOfVariables() {
+		return vars;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#numberOfClauses()
+	 */
+	public int numberOfClauses() {
+		return clauses;
+	}
+	
+	/**
+	 * Sets the number of clauses reported by this solver.
+	 */
+	void setNumberOfClauses(int clauses) {
+		this.clauses = clauses;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#addVariables(int)
+	 */
+	public void addVariables(int numVars) {
+		if (numVars < 0)
+			throw new IllegalArgumentException("numVars < 0: " + numVars);
+		if (numVars == 0)
+			return;
+		final int n = vars + numVars + 1;
+		value = Arrays.copyOf(value, 2 * n);
+		level = Arrays.copyOf(level, n);
+		reason = Arrays.copyOf(reason, n);
+		polarity = Arrays.copyOf(polarity, n);
+		seen = Arrays.copyOf(seen, n);
+		trail = Arrays.copyOf(trail, n);
+		activity = Arrays.copyOf(activity, n);
+		heap = Arrays.copyOf(heap, n);
+		heapIndex = Arrays.copyOf(heapIndex, n);
+		watches = Arrays.copyOf(watches, 2 * n);
+		watchSize = Arrays.copyOf(watchSize, 2 * n);
+		if (stack.length < n) {
+			stack = new int[n];
+			toClear = new int[n];
+		}
+		for (int v = vars + 1; v < n; v++) {
+			reason[v] = NONE;
+			heapIndex[v] = -1;
+			watches[2 * v] = new int[4];
+			watches[2 * v + 1] = new int[4];
+			heapInsert(v);
+		}
+		vars += numVars;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#addClause(int[])
+	 */
+	public boolean addClause(int[] lits) {
+		return add(lits, 0, lits.length);
+	}
+
+	/**
+	 * {@inheritDoc} The literals are read in place from the buffer.
+	 * @see kodkod.engine.satlab.SATSolver#addClauses(kodkod.engine.satlab.ClauseBuffer)
+	 */
+	public boolean addClauses(ClauseBuffer buffer) {
+		final int[] literals = buffer.literals();
+		boolean changed = false;
+		for (int i = 0, size = buffer.size(); i < size; i++) {
+			changed |= add(literals, buffer.start(i), buffer.end(i));
+		}
+		return changed;
+	}
+	
+	/**
+	 * Adds the clause given by lits[from..to) to this solver.  Literals that 
+	 * are false at the top level are dropped from the clause, and the clause
+	 * is not stored at all if one of its literals is true at the top level.
+	 * @return true if the clause was added 
+	 */
+	private boolean add(int[] lits, int from, int to) {
+		if (proof && !axiom(lits, from, to))
+			return false;
+		clauses++;
+		if (!ok)
+			return true;
+		final int size = to - from;
+		if (size + 1 > learnt.length)
+			learnt = new int[Math.max(size + 1, 2 * learnt.length)];
+		if (proof) {
+			addAxiom(lits, from, to);
+			return true;
+		}
+		int k = 0;
+		for (int i = from; i < to; i++) {
+			final int lit = internal(lits[i]);
+			final byte val = value[lit];
+			if (val == TRUE)
+				return true;
+			if (val == UNDEF)
+				learnt[k++] = lit;
+		}
+		if (k == 0) {
+			ok = false;
+		} else if (k == 1) {
+			assign(learnt[0], NONE);
+		} else {
+			attach(allocate(learnt, k, false, 0));
+		}
+		return true;
+	}
+	
+	/**
+	 * Adds the clause given by lits[from..to) to this solver without dropping
+	 * any of its literals, so that it can serve as the reason of an assignment
+	 * in a proof.  The clause is not stored if one of its literals is true at 
+	 * the top level, since it is then never needed in a proof.
+	 */
+	private void addAxiom(int[] lits, int from, int to) {
+		final int size = to - from;
+		int k = 0, f = size;
+		for (int i = from; i < to; i++) {
+			final int lit = internal(lits[i]);
+			final byte val = value[lit];
+			if (val == TRUE)
+				return;
+			if (val == UNDEF)
+				learnt[k++] = lit;
+			else
+				learnt[--f] = lit;
+		}
+		if (size == 0) {
+			conflict(NONE);
+			ok = false;
+			return;
+		}
+		final int cref = allocate(learnt, size, false, 0);
+		if (k == 0) {
+			conflict(cref);
+			ok = false;
+			return;
+		}
+		if (size > 1)
+			attach(cref);
+		if (k == 1)
+			assign(learnt[0], cref);
+	}
+	
+	/**
+	 * Records the clause given by lits[from..to) as an axiom of proofs.
+	 * @return false if the clause is not added because the solver already 
+	 * contains the empty clause
+	 */
+	boolean axiom(int[] lits, int from, int to) {
+		return true;
+	}
+	
+	/**
+	 * Returns the internal encoding of the given literal.
+	 * @throws IllegalArgumentException  abs(lit) !in this.variables
+	 */
+	final int internal(int lit) {
+		final int var = lit < 0 ? -lit : lit;
+		if (var < 1 || var > vars)
+			throw new IllegalArgumentException(lit + " !in [1.." + vars + "]");
+		return lit < 0 ? 2 * var + 1 : 2 * var;
+	}
+	
+	/**
+	 * Returns the external encoding of the given internal literal.
+	 */
+	static final int external(int lit) {
+		return (lit & 1) == 0 ? lit >> 1 : -(lit >> 1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#solve()
+	 */
+	public boolean solve() {
+		interrupted = false;
+		if (!Boolean.FALSE.equals(sat)) {
+			sat = null;
+			sat = search(NO_ASSUMPTIONS) ? Boolean.TRUE : Boolean.FALSE;
+		}
+		return sat;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.AssumptionSATSolver#solve(int[])
+	 */
+	public boolean solve(int[] assumptions) {
+		interrupted = false;
+		failed = null;
+		if (Boolean.FALSE.equals(sat)) {
+			failed = NO_ASSUMPTIONS;
+			return false;
+		}
+		final int[] internal = new int[assumptions.length];
+		for (int i = 0; i < assumptions.length; i++)
+			internal[i] = internal(assumptions[i]);
+		sat = null;
+		final boolean outcome = search(internal);
+		// an unsat outcome only holds under these assumptions, so it is not recorded
+		// unless the clauses themselves are unsatisfiable
+		sat = outcome ? Boolean.TRUE : ok ? null : Boolean.FALSE;
+		if (!ok)
+			failed = NO_ASSUMPTIONS;
+		return outcome;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.AssumptionSATSolver#failedAssumptions()
+	 */
+	public int[] failedAssumptions() {
+		return failed == null ? null : failed.clone();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.InterruptibleSATSolver#interrupt()
+	 */
+	public void interrupt() {
+		interrupted = true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#valueOf(int)
+	 */
+	public final boolean valueOf(int variable) {
+		if (!Boolean.TRUE.equals(sat))
+			throw new IllegalStateException();
+		if (variable < 1 || variable > vars)
+			throw new IllegalArgumentException(variable + " !in [1.." + vars + "]");
+		return model[variable];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#free()
+	 */
+	public synchronized void free() {
+		arena = null;
+		watches = null;
+		learnts = null;
+	}
+	
+	/**
+	 * Returns the number of conflicts encountered by this solver so far.
+	 * @return number of conflicts encountered by this solver so far
+	 */
+	public long numberOfConflicts() {
+		return conflicts;
+	}
+
+	/*----------------------------------------------------------------------------*/
+	/* Search                                                                     */
+	/*----------------------------------------------------------------------------*/
+	
+	/**
+	 * Searches for a model of this.clauses under the given assumptions,
+	 * restarting according to the Luby sequence, and leaves the solver at
+	 * the top level.
+	 * @return true if a model was found
+	 * @throws SATAbortedException  the search was interrupted
+	 */
+	private boolean search(int[] assumptions) {
+		if (!ok)
+			return false;
+		try {
+			for (int restarts = 0;; restarts++) {
+				final byte outcome = search(assumptions, (long) (luby(restarts) * RESTART_BASE));
+				if (outcome != UNDEF)
+					return outcome == TRUE;
+			}
+		} finally {
+			cancelUntil(0);
+		}
+	}
+	
+	/**
+	 * Searches for a model under the given assumptions until the given number of 
+	 * conflicts is reached.
+	 * @return TRUE if a model was found, FALSE if there is none under the assumptions,
+	 * UNDEF if the conflict budget ran out
+	 */
+	private byte search(int[] assumptions, long budget) {
+		for (long found = 0;;) {
+			final int confl = propagate();
+			if (confl != NONE) {
+				conflicts++;
+				found++;
+				if (decisionLevel == 0) {
+					conflict(confl);
+					ok = false;
+					return FALSE;
+				}
+				final int size = analyze(confl);
+				final int backtrack = size == 1 ? 0 : level[learnt[1] >> 1];
+				cancelUntil(backtrack);
+				if (size == 1) {
+					assign(learnt[0], proof ? allocate(learnt, 1, true, 1) : NONE);
+				} else {
+					final int cref = allocate(learnt, size, true, lbd(learnt, size));
+					attach(cref);
+					addLearnt(cref);
+					assign(learnt[0], cref);
+				}
+				varInc /= VAR_DECAY;
+				if (interrupted)
+					throw new SATAbortedException("interrupted");
+			} else {
+				if (found >= budget) {
+					cancelUntil(0);
+					return UNDEF;
+				}
+				if (conflicts >= nextReduce) {
+					nextReduce = conflicts + FIRST_REDUCE + REDUCE_INCREMENT * ++reductions;
+					reduce();
+				}
+				int next = NONE;
+				while (decisionLevel < assumptions.length) {
+					final int p = assumptions[decisionLevel];
+					if (value[p] == TRUE) {
+						newDecisionLevel();
+					} else if (value[p] == FALSE) {
+						analyzeFinal(p);
+						return FALSE;
+					} else {
+						next = p;
+						break;
+					}
+				}
+				if (next == NONE) {
+					next = pickBranchLiteral();
+					if (next == NONE) {
+						saveModel();
+						return TRUE;
+					}
+				}
+				newDecisionLevel();
+				assign(next, NONE);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the ith element of the Luby sequence.
+	 */
+	private static double luby(int i) {
+		int size = 1, seq = 0;
+		while (size < i + 1) {
+			seq++;
+			size = 2 * size + 1;
+		}
+		while (size - 1 != i) {
+			size = (size - 1) >> 1;
+			seq--;
+			i = i % size;
+		}
+		return Math.pow(2, seq);
+	}
+	
+	/**
+	 * Copies the current assignment into this.model.
+	 */
+	private void saveModel() {
+		if (model == null || model.length < vars + 1)
+			model = new boolean[vars + 1];
+		for (int v = 1; v <= vars; v++)
+			model[v] = value[2 * v] == TRUE;
+	}
+	
+	private void newDecisionLevel() {
+		if (decisionLevel == trailLim.length)
+			trailLim = Arrays.copyOf(trailLim, 2 * trailLim.length);
+		trailLim[decisionLevel++] = trailSize;
+	}
+	
+	/**
+	 * Makes the given literal true, with the given clause as its reason.
+	 */
+	final void assign(int lit, int cref) {
+		final int var = lit >> 1;
+		value[lit] = TRUE;
+		value[lit ^ 1] = FALSE;
+		level[var] = decisionLevel;
+		reason[var] = cref;
+		trail[trailSize++] = lit;
+	}
+	
+	/**
+	 * Undoes all assignments made above the given level.
+	 */
+	private void cancelUntil(int lvl) {
+		if (decisionLevel <= lvl)
+			return;
+		final int lim = trailLim[lvl];
+		for (int i = trailSize - 1; i >= lim; i--) {
+			final int lit = trail[i], var = lit >> 1;
+			value[lit] = UNDEF;
+			value[lit ^ 1] = UNDEF;
+			polarity[var] = (lit & 1) == 0;
+			if (heapIndex[var] < 0)
+				heapInsert(var);
+		}
+		trailSize = lim;
+		qhead = lim;
+		decisionLevel = lvl;
+	}
+	
+	/**
+	 * Returns the next decision literal, or NONE if all variables are assigned.
+	 */
+	private int pickBranchLiteral() {
+		while (heapSize > 0) {
+			final int var = heapRemoveMax();
+			if (value[2 * var] == UNDEF)
+				return polarity[var] ? 2 * var : 2 * var + 1;
+		}
+		return NONE;
+	}
+	
+	/**
+	 * Propagates all enqueued assignments.
+	 * @return the reference of a conflicting clause, or NONE if there is no conflict
+	 */
+	private int propagate() {
+		final int[] arena = this.arena;
+		final byte[] value = this.value;
+		while (qhead < trailSize) {
+			final int falseLit = trail[qhead++] ^ 1;
+			final int[] ws = watches[falseLit];
+			final int n = watchSize[falseLit];
+			int i = 0, j = 0;
+			while (i < n) {
+				final int cref = ws[i], blocker = ws[i + 1];
+				i += 2;
+				if (value[blocker] == TRUE) {
+					ws[j++] = cref;
+					ws[j++] = blocker;
+					continue;
+				}
+				final int base = cref + HEADER;
+				if (arena[base] == falseLit) {
+					arena[base] = arena[base + 1];
+					arena[base + 1] = falseLit;
+				}
+				final int first = arena[base];
+				if (first != blocker && value[first] == TRUE) {
+					ws[j++] = cref;
+					ws[j++] = first;
+					continue;
+				}
+				boolean moved = false;
+				for (int k = base + 2, end = base + arena[cref]; k < end; k++) {
+					final int lit = arena[k];
+					if (value[lit] != FALSE) {
+						arena[base + 1] = lit;
+						arena[k] = falseLit;
+						watch(lit, cref, first);
+						moved = true;
+						break;
+					}
+				}
+				if (moved)
+					continue;
+				ws[j++] = cref;
+				ws[j++] = first;
+				if (value[first] == FALSE) {
+					while (i < n)
+						ws[j++] = ws[i++];
+					watchSize[falseLit] = j;
+					qhead = trailSize;
+					return cref;
+				}
+				assign(first, cref);
+			}
+			watchSize[falseLit] = j;
+		}
+		return NONE;
+	}
+
+	/*----------------------------------------------------------------------------*/
+	/* Conflict analysis                                                          */
+	/*----------------------------------------------------------------------------*/
+	
+	/**
+	 * Derives the first UIP clause of the given conflict into this.learnt,
+	 * with the asserting literal first and a literal of the highest remaining
+	 * level second, and returns its size.
+	 */
+	private int analyze(int confl) {
+		final int[] arena = this.arena;
+		int pathC = 0, p = NONE, size = 1, index = trailSize - 1;
+		startChain(confl);
+		do {
+			final int base = confl + HEADER;
+			if ((arena[confl + 1] & LEARNT) != 0)
+				updateLbd(confl);
+			for (int k = p == NONE ? 0 : 1, n = arena[confl]; k < n; k++) {
+				final int q = arena[base + k], var = q >> 1;
+				if (seen[var] == 0) {
+					if (level[var] > 0) {
+						seen[var] = 1;
+						bump(var);
+						if (level[var] >= decisionLevel) {
+							pathC++;
+						} else {
+							if (size == learnt.length)
+								learnt = Arrays.copyOf(learnt, 2 * size);
+							learnt[size++] = q;
+						}
+					} else if (proof) {
+						seen[var] = 2;
+					}
+				}
+			}
+			while (seen[trail[index] >> 1] != 1)
+				index--;
+			p = trail[index--];
+			confl = reason[p >> 1];
+			seen[p >> 1] = 0;
+			pathC--;
+			if (pathC > 0)
+				chain(confl);
+		} while (pathC > 0);
+		learnt[0] = p ^ 1;
+		
+		if (proof) {
+			resolveTopLevel();
+		} else {
+			size = minimize(size);
+		}
+		for (int i = 1; i < size; i++)
+			seen[learnt[i] >> 1] = 0;
+		
+		if (size > 1) {
+			int max = 1;
+			for (int i = 2; i < size; i++) {
+				if (level[learnt[i] >> 1] > level[learnt[max] >> 1])
+					max = i;
+			}
+			final int lit = learnt[max];
+			learnt[max] = learnt[1];
+			learnt[1] = lit;
+		}
+		return size;
+	}
+	
+	/**
+	 * Records in this.failed the given assumption, which is false, together 
+	 * with the earlier assumptions that imply its negation.  These are found 
+	 * by walking the trail back from the latest assignment and following the 
+	 * reasons of the marked variables down to the decisions, all of which are 
+	 * assumptions at this point of the search.
+	 */
+	private void analyzeFinal(int p) {
+		int size = 0;
+		int[] core = new int[Math.min(decisionLevel, 15) + 1];
+		core[size++] = external(p);
+		if (level[p >> 1] > 0) {
+			final int[] arena = this.arena;
+			seen[p >> 1] = 1;
+			for (int i = trailSize - 1; i >= trailLim[0]; i--) {
+				final int var = trail[i] >> 1;
+				if (seen[var] == 0)
+					continue;
+				final int cref = reason[var];
+				if (cref == NONE) {
+					if (size == core.length)
+						core = Arrays.copyOf(core, 2 * size);
+					core[size++] = external(trail[i]);
+				} else {
+					final int base = cref + HEADER;
+					for (int k = 1, n = arena[cref]; k < n; k++) {
+						final int q = arena[base + k] >> 1;
+						if (level[q] > 0)
+							seen[q] = 1;
+					}
+				}
+				seen[var] = 0;
+			}
+		}
+		failed = Arrays.copyOf(core, size);
+	}
+	
+	/**
+	 * Removes from this.learnt[1..size) the literals that are implied by
+	 * the others, and returns the new size.
+	 */
+	private int minimize(int size) {
+		int abstractLevels = 0;
+		for (int i = 1; i < size; i++)
+			abstractLevels |= 1 << (level[learnt[i] >> 1] & 31);
+		int clear = 0, j = 1;
+		for (int i = 1; i < size; i++) {
+			final int var = learnt[i] >> 1;
+			if (reason[var] == NONE) {
+				learnt[j++] = learnt[i];
+			} else {
+				final int result = redundant(learnt[i], abstractLevels, clear);
+				if (result < 0) {
+					learnt[j++] = learnt[i];
+				} else {
+					clear = result;
+					toClear[clear++] = var;
+				}
+			}
+		}
+		for (int i = 0; i < clear; i++)
+			seen[toClear[i]] = 0;
+		return j;
+	}
+	
+	/**
+	 * Checks whether the given literal of the learned clause is implied by the 
+	 * other literals through the reasons of its variable.  The variables 
+	 * visited are marked as seen and recorded in this.toClear starting at 
+	 * the given position.
+	 * @return the new number of variables in this.toClear if the literal is 
+	 * redundant, or -1 otherwise
+	 */
+	private int redundant(int lit, int abstractLevels, int clear) {
+		final int[] arena = this.arena;
+		final int top = clear;
+		int sp = 0;
+		stack[sp++] = lit;
+		while (sp > 0) {
+			final int cref = reason[stack[--sp] >> 1];
+			final int base = cref + HEADER;
+			for (int k = 1, n = arena[cref]; k < n; k++) {
+				final int q = arena[base + k], var = q >> 1;
+				if (seen[var] == 0 && level[var] > 0) {
+					if (reason[var] != NONE && (abstractLevels & (1 << (level[var] & 31))) != 0) {
+						seen[var] = 1;
+						stack[sp++] = q;
+						toClear[clear++] = var;
+					} else {
+						for (int i = top; i < clear; i++)
+							seen[toClear[i]] = 0;
+						return -1;
+					}
+				}
+			}
+		}
+		return clear;
+	}
+	
+	/**
+	 * Returns the number of distinct decision levels among the given literals.
+	 */
+	private int lbd(int[] lits, int size) {
+		if (++stamp == Integer.MAX_VALUE) {
+			Arrays.fill(levelStamp, 0);
+			stamp = 1;
+		}
+		if (levelStamp.length <= trailLim.length)
+			levelStamp = Arrays.copyOf(levelStamp, trailLim.length + 1);
+		int lbd = 0;
+		for (int i = 0; i < size; i++) {
+			final int lvl = level[lits[i] >> 1];
+			if (levelStamp[lvl] != stamp) {
+				levelStamp[lvl] = stamp;
+				lbd++;
+			}
+		}
+		return lbd;
+	}
+	
+	/**
+	 * Recomputes the literal block distance of the given learned clause,
+	 * which takes part in a conflict, and lowers it if it decreased.
+	 */
+	private void updateLbd(int cref) {
+		final int old = arena[cref + 1] >>> 2;
+		if (old <= 2)
+			return;
+		final int size = arena[cref];
+		if (size > stack.length)
+			return;
+		System.arraycopy(arena, cref + HEADER, stack, 0, size);
+		final int lbd = lbd(stack, size);
+		if (lbd < old)
+			arena[cref + 1] = (lbd << 2) | (arena[cref + 1] & 3);
+	}
+	
+	/**
+	 * Records that the clauses are unsatisfiable because of the given
+	 * clause, all of whose literals are false at the top level, or because
+	 * the empty clause was added if the given reference is NONE.
+	 */
+	void conflict(int confl) {
+	}
+	
+	/**
+	 * Starts the resolution chain of a learned clause with the given conflict.
+	 */
+	void startChain(int confl) {
+	}
+	
+	/**
+	 * Appends the given reason to the resolution chain of the clause being learned.
+	 */
+	void chain(int cref) {
+	}
+	
+	/**
+	 * Appends to the resolution chain the reasons of the top-level variables
+	 * marked by the analysis, and clears their marks.
+	 */
+	final void resolveTopLevel() {
+		final int end = decisionLevel > 0 ? trailLim[0] : trailSize;
+		for (int i = end - 1; i >= 0; i--) {
+			final int var = trail[i] >> 1;
+			if (seen[var] == 2) {
+				final int cref = reason[var];
+				chain(cref);
+				final int base = cref + HEADER;
+				for (int k = 1, n = arena[cref]; k < n; k++)
+					seen[arena[base + k] >> 1] = 2;
+				seen[var] = 0;
+			}
+		}
+	}
+	
+	/**
+	 * Marks the variables of the given clause, all of whose literals are 
+	 * false at the top level, for {@link #resolveTopLevel()}.
+	 */
+	final void markTopLevel(int cref) {
+		final int base = cref + HEADER;
+		for (int k = 0, n = arena[cref]; k < n; k++)
+			seen[arena[base + k] >> 1] = 2;
+	}
+
+	/*----------------------------------------------------------------------------*/
+	/* Clause database                                                            */
+	/*----------------------------------------------------------------------------*/
+	
+	/**
+	 * Stores the first size literals of the given array as a clause and returns
+	 * its reference.
+	 */
+	final int allocate(int[] lits, int size, boolean learnt, int lbd) {
+		final int need = arenaSize + HEADER + size;
+		if (need > arena.length)
+			arena = Arrays.copyOf(arena, Math.max(need, 2 * arena.length));
+		final int cref = arenaSize;
+		arena[cref] = size;
+		arena[cref + 1] = (lbd << 2) | (learnt ? LEARNT : 0);
+		arena[cref + 2] = proof ? proofId(learnt) : 0;
+		System.arraycopy(lits, 0, arena, cref + HEADER, size);
+		arenaSize = need;
+		return cref;
+	}
+	
+	/**
+	 * Returns the proof identifier of the clause being allocated.
+	 */
+	int proofId(boolean learnt) {
+		return 0;
+	}
+	
+	/**
+	 * Watches the first two literals of the given clause.
+	 */
+	final void attach(int cref) {
+		final int base = cref + HEADER;
+		watch(arena[base], cref, arena[base + 1]);
+		watch(arena[base + 1], cref, arena[base]);
+	}
+	
+	private void watch(int lit, int cref, int blocker) {
+		int[] ws = watches[lit];
+		final int n = watchSize[lit];
+		if (n + 2 > ws.length)
+			watches[lit] = ws = Arrays.copyOf(ws, 2 * ws.length);
+		ws[n] = cref;
+		ws[n + 1] = blocker;
+		watchSize[lit] = n + 2;
+	}
+	
+	private void addLearnt(int cref) {
+		if (numLearnts == learnts.length)
+			learnts = Arrays.copyOf(learnts, 2 * numLearnts);
+		learnts[numLearnts++] = cref;
+	}
+	
+	/**
+	 * Returns true if the given clause is the reason of an assignment.
+	 */
+	private boolean locked(int cref) {
+		final int lit = arena[cref + HEADER];
+		return value[lit] == TRUE && reason[lit >> 1] == cref;
+	}
+	
+	/**
+	 * Deletes the half of the learned clauses with the highest literal block 
+	 * distance, except for the binary clauses, the clauses with a distance of 
+	 * at most two, and the reasons of current assignments.
+	 */
+	private void reduce() {
+		sortLearnts(0, numLearnts - 1);
+		final int limit = numLearnts / 2;
+		int j = 0;
+		for (int i = 0; i < numLearnts; i++) {
+			final int cref = learnts[i];
+			if (i < limit && arena[cref] > 2 && (arena[cref + 1] >>> 2) > 2 && !locked(cref)) {
+				arena[cref + 1] |= DELETED;
+				wasted += HEADER + arena[cref];
+			} else {
+				learnts[j++] = cref;
+			}
+		}
+		numLearnts = j;
+		if (wasted > arenaSize / 4) {
+			collectGarbage();
+		} else {
+			for (int lit = 2; lit < watches.length; lit++) {
+				final int[] ws = watches[lit];
+				int k = 0;
+				for (int i = 0, n = watchSize[lit]; i < n; i += 2) {
+					if ((arena[ws[i] + 1] & DELETED) == 0) {
+						ws[k++] = ws[i];
+						ws[k++] = ws[i + 1];
+					}
+				}
+				watchSize[lit] = k;
+			}
+		}
+	}
+	
+	/**
+	 * Sorts learnts[lo..hi] by decreasing literal block distance, and the
+	 * clauses with the same distance from the oldest to the newest.
+	 */
+	private void sortLearnts(int lo, int hi) {
+		while (lo < hi) {
+			if (hi - lo < 16) {
+				for (int i = lo + 1; i <= hi; i++) {
+					final int c = learnts[i];
+					int j = i - 1;
+					while (j >= lo && before(c, learnts[j])) {
+						learnts[j + 1] = learnts[j];
+						j--;
+					}
+					learnts[j + 1] = c;
+				}
+				return;
+			}
+			final int pivot = learnts[(lo + hi) >>> 1];
+			int i = lo, j = hi;
+			while (i <= j) {
+				while (before(learnts[i], pivot)) i++;
+				while (before(pivot, learnts[j])) j--;
+				if (i <= j) {
+					final int c = learnts[i];
+					learnts[i++] = learnts[j];
+					learnts[j--] = c;
+				}
+			}
+			if (j - lo < hi - i) {
+				sortLearnts(lo, j);
+				lo = i;
+			} else {
+				sortLearnts(i, hi);
+				hi = j;
+			}
+		}
+	}
+	
+	private boolean before(int c1, int c2) {
+		final int lbd1 = arena[c1 + 1] >>> 2, lbd2 = arena[c2 + 1] >>> 2;
+		return lbd1 > lbd2 || (lbd1 == lbd2 && c1 < c2);
+	}
+	
+	/**
+	 * Compacts the clause arena, dropping the deleted clauses, and rebuilds the
+	 * watch lists.
+	 */
+	private void collectGarbage() {
+		final int[] old = arena;
+		final int[] fresh = new int[Math.max(1024, 2 * (arenaSize - wasted))];
+		int size = 0;
+		for (int cref = 0; cref < arenaSize; cref += HEADER + old[cref]) {
+			if ((old[cref + 1] & DELETED) == 0) {
+				final int length = HEADER + old[cref];
+				System.arraycopy(old, cref, fresh, size, length);
+				old[cref + 1] = size;
+				size += length;
+			} else {
+				old[cref + 1] = NONE;
+			}
+		}
+		for (int i = 0; i < trailSize; i++) {
+			final int var = trail[i] >> 1;
+			if (reason[var] != NONE)
+				reason[var] = old[reason[var] + 1];
+		}
+		for (int i = 0; i < numLearnts; i++)
+			learnts[i] = old[learnts[i] + 1];
+		arena = fresh;
+		arenaSize = size;
+		wasted = 0;
+		Arrays.fill(watchSize, 0);
+		for (int cref = 0; cref < arenaSize; cref += HEADER + arena[cref]) {
+			if (arena[cref] > 1)
+				attach(cref);
+		}
+	}
+
+	/*----------------------------------------------------------------------------*/
+	/* Variable order                                                             */
+	/*----------------------------------------------------------------------------*/
+	
+	private void bump(int var) {
+		if ((activity[var] += varInc) > 1e100) {
+			for (int v = 1; v <= vars; v++)
+				activity[v] *= 1e-100;
+			varInc *= 1e-100;
+		}
+		if (heapIndex[var] >= 0)
+			heapUp(heapIndex[var]);
+	}
+	
+	private void heapInsert(int var) {
+		heapIndex[var] = heapSize;
+		heap[heapSize++] = var;
+		heapUp(heapSize - 1);
+	}
+	
+	private int heapRemoveMax() {
+		final int max = heap[0];
+		final int last = heap[--heapSize];
+		heapIndex[max] = -1;
+		if (heapSize > 0) {
+			heap[0] = last;
+			heapIndex[last] = 0;
+			heapDown(0);
+		}
+		return max;
+	}
+	
+	private void heapUp(int i) {
+		final int var = heap[i];
+		final double act = activity[var];
+		while (i > 0) {
+			final int parent = (i - 1) >> 1;
+			if (activity[heap[parent]] >= act)
+				break;
+			heap[i] = heap[parent];
+			heapIndex[heap[i]] = i;
+			i = parent;
+		}
+		heap[i] = var;
+		heapIndex[var] = i;
+	}
+	
+	private void heapDown(int i) {
+		final int var = heap[i];
+		final double act = activity[var];
+		for (int child = 2 * i + 1; child < heapSize; child = 2 * i + 1) {
+			if (child + 1 < heapSize && activity[heap[child + 1]] > activity[heap[child]])
+				child++;
+			if (activity[heap[child]] <= act)
+				break;
+			heap[i] = heap[child];
+			heapIndex[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = var;
+		heapIndex[var] = i;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return "CDCL";
+	}
+}
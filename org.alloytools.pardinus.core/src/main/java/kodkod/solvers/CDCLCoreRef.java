@@ -0,0 +1,53 @@
+package kodkod.solvers;
+
+import java.util.Optional;
+
+import kodkod.engine.config.ExtendedOptions;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.engine.satlab.SATSolver;
+
+public class CDCLCoreRef extends SATFactory {
+	private static final long serialVersionUID = 1L;
+	public static final SATFactory INSTANCE = new CDCLCoreRef();
+
+	private CDCLCoreRef() {}
+
+	@Override
+	public String id() {
+		return "cdcl.core";
+	}
+
+	@Override
+	public CDCLCoreRef doOptions(ExtendedOptions options) {
+		options.setLogTranslation(2);
+		options.setAssumptionCores(true);
+		options.setSymmetryBreaking(20);
+		return this;
+	}
+
+	@Override
+	public SATSolver createSolver() {
+		return new CDCL();
+	}
+
+	@Override
+	public boolean incremental() {
+		return true;
+	}
+
+	@Override
+	public boolean assumptions() {
+		return true;
+	}
+
+	@Override
+	public Optional<String> getDescription() {
+		return Optional.of("The Java CDCL solver, extracting unsatisfiable cores from failed assumptions instead of resolution proofs, so that it needs less memory than cdcl.prover. It needs no native libraries and works on all platforms");
+	}
+
+	@Override
+	public String type() {
+		return "java";
+	}
+
+}
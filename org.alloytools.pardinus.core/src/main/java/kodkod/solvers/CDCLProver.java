@@ -0,0 +1,223 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.solvers;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import kodkod.engine.satlab.Clause;
+import kodkod.engine.satlab.LazyTrace;
+import kodkod.engine.satlab.ReductionStrategy;
+import kodkod.engine.satlab.ResolutionTrace;
+import kodkod.engine.satlab.SATProver;
+import kodkod.util.ints.IntSet;
+
+/**
+ * A {@link CDCL} solver that records the resolution steps of the clauses it
+ * learns, so that it can produce a proof of unsatisfiability.
+ * 
+ * <p>Every clause in the arena carries a proof identifier: the index of the
+ * axiom it was added as, or the negated (1-based) index of the resolvent it
+ * was learned as.  The antecedents of each resolvent are stored, in the order
+ * of resolution, in a single int array.  The axioms are kept unsimplified, 
+ * and the literals that are false at the top level are resolved away with
+ * their reasons when a clause is learned, so that every resolvent can be
+ * recomputed from its antecedents by the {@link LazyTrace} of the proof.</p>
+ * 
+ * @specfield variables: set [1..)
+ * @specfield clauses: set Clause
+ * @specfield resolvents: set Clause
+ */
+public final class CDCLProver extends CDCL implements SATProver {
+	
+	/* The literals of the axioms, sorted by increasing absolute values. */
+	private int[][] axioms;
+	private int numAxioms;
+	/* True if the empty clause was added. */
+	private boolean trivial;
+	
+	/* The antecedents of the resolvents, and the end of each resolvent's antecedents in that array. */
+	private int[] chains, ends;
+	private int chainsSize, numResolvents;
+	
+	private LazyTrace proof;
+	
+	/**
+	 * Constructs a new prover with no variables and no clauses.
+	 */
+	public CDCLProver() {
+		super(true);
+		this.axioms = new int[64][];
+		this.chains = new int[1024];
+		this.ends = new int[64];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.solvers.CDCL#axiom(int[], int, int)
+	 */
+	@Override
+	boolean axiom(int[] lits, int from, int to) {
+		if (trivial)
+			return false;
+		final int size = to - from;
+		final int[] keys = new int[size];
+		for (int i = 0; i < size; i++) {
+			final int lit = lits[from + i];
+			keys[i] = lit < 0 ? (-lit << 1) | 1 : lit << 1;
+		}
+		Arrays.sort(keys);
+		for (int i = 0; i < size; i++)
+			keys[i] = (keys[i] & 1) == 0 ? keys[i] >>> 1 : -(keys[i] >>> 1);
+		if (numAxioms == axioms.length)
+			axioms = Arrays.copyOf(axioms, 2 * numAxioms);
+		axioms[numAxioms++] = keys;
+		proof = null;
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.solvers.CDCL#proofId(boolean)
+	 */
+	@Override
+	int proofId(boolean learnt) {
+		if (!learnt)
+			return numAxioms - 1;
+		final int start = numResolvents == 0 ? 0 : ends[numResolvents - 1];
+		if (chainsSize - start == 1) {
+			// nothing was resolved: the clause is its own antecedent
+			chainsSize = start;
+			return chains[start];
+		}
+		if (numResolvents == ends.length)
+			ends = Arrays.copyOf(ends, 2 * numResolvents);
+		ends[numResolvents++] = chainsSize;
+		return -numResolvents;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.solvers.CDCL#startChain(int)
+	 */
+	@Override
+	void startChain(int confl) {
+		chainsSize = numResolvents == 0 ? 0 : ends[numResolvents - 1];
+		chain(confl);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.solvers.CDCL#chain(int)
+	 */
+	@Override
+	void chain(int cref) {
+		if (chainsSize == chains.length)
+			chains = Arrays.copyOf(chains, 2 * chainsSize);
+		chains[chainsSize++] = arena[cref + 2];
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.solvers.CDCL#conflict(int)
+	 */
+	@Override
+	void conflict(int confl) {
+		if (confl == NONE) {
+			trivial = true;
+			return;
+		}
+		startChain(confl);
+		markTopLevel(confl);
+		resolveTopLevel();
+		proofId(true);
+	}
+	
+	/**
+	 * Returns the raw trace of the last proof, as specified by 
+	 * {@link LazyTrace#LazyTrace(int[][], int)}.
+	 * @requires !this.ok
+	 */
+	private int[][] trace() {
+		if (trivial) 
+			return Arrays.copyOf(axioms, numAxioms);
+		final int[][] trace = new int[numAxioms + numResolvents][];
+		System.arraycopy(axioms, 0, trace, 0, numAxioms);
+		for (int r = 0, start = 0; r < numResolvents; r++) {
+			final int end = ends[r];
+			final int[] resolvent = new int[end - start];
+			for (int i = start; i < end; i++) {
+				final int id = chains[i];
+				resolvent[i - start] = id >= 0 ? id : numAxioms - id - 1;
+			}
+			trace[numAxioms + r] = resolvent;
+			start = end;
+		}
+		return trace;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATProver#proof()
+	 */
+	public ResolutionTrace proof() {
+		if (ok)
+			throw new IllegalStateException();
+		if (proof == null) 
+			proof = new LazyTrace(trace(), numAxioms);
+		return proof;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATProver#reduce(kodkod.engine.satlab.ReductionStrategy)
+	 */
+	public void reduce(ReductionStrategy strategy) {
+		proof();
+		if (proof.resolvents().isEmpty()) {
+			return; // nothing to minimize; the empty clause was added to the solver
+		}
+		for (IntSet next = strategy.next(proof); !next.isEmpty(); next = strategy.next(proof)) {
+			final CDCLProver prover = new CDCLProver();
+			prover.addVariables(numberOfVariables());
+			for (Iterator<Clause> itr = proof.iterator(next); itr.hasNext();) {
+				Clause c = itr.next();
+				if (!prover.addClause(c.toArray())) {
+					throw new AssertionError("could not add non-redundant clause: " + c);
+				}
+			}
+			if (!prover.solve()) {
+				setNumberOfClauses(next.size());
+				proof = new LazyTrace(proof, next, prover.trace());
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "CDCLProver";
+	}
+}
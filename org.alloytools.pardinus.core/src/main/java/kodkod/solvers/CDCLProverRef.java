@@ -0,0 +1,57 @@
+package kodkod.solvers;
+
+import java.util.Optional;
+
+import kodkod.engine.config.ExtendedOptions;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.engine.satlab.SATSolver;
+
+public class CDCLProverRef extends SATFactory {
+	private static final long serialVersionUID = 1L;
+	public static final SATFactory INSTANCE = new CDCLProverRef();
+
+	private CDCLProverRef() {}
+
+	@Override
+	public String id() {
+		return "cdcl.prover";
+	}
+
+	@Override
+	public CDCLProverRef doOptions(ExtendedOptions options) {
+		options.setLogTranslation(2);
+		options.setSymmetryBreaking(20);
+		return this;
+	}
+
+	@Override
+	public SATSolver createSolver() {
+		return new CDCLProver();
+	}
+
+	@Override
+	public boolean incremental() {
+		return true;
+	}
+
+	@Override
+	public boolean assumptions() {
+		return true;
+	}
+
+	@Override
+	public boolean prover() {
+		return true;
+	}
+
+	@Override
+	public Optional<String> getDescription() {
+		return Optional.of("The Java CDCL solver, recording resolution proofs so that it can extract unsatisfiable cores. It needs no native libraries and works on all platforms");
+	}
+
+	@Override
+	public String type() {
+		return "java";
+	}
+
+}
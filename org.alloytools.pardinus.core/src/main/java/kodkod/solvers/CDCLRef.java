@@ -0,0 +1,44 @@
+package kodkod.solvers;
+
+import java.util.Optional;
+
+import kodkod.engine.satlab.SATFactory;
+import kodkod.engine.satlab.SATSolver;
+
+public class CDCLRef extends SATFactory {
+	private static final long serialVersionUID = 1L;
+	public static final SATFactory INSTANCE = new CDCLRef();
+
+	private CDCLRef() {}
+
+	@Override
+	public String id() {
+		return "cdcl";
+	}
+
+	@Override
+	public SATSolver createSolver() {
+		return new CDCL();
+	}
+
+	@Override
+	public boolean incremental() {
+		return true;
+	}
+
+	@Override
+	public boolean assumptions() {
+		return true;
+	}
+
+	@Override
+	public Optional<String> getDescription() {
+		return Optional.of("A conflict-driven clause learning SAT solver written in Java, with two watched literals, learned clause deletion by literal block distance and incremental assumptions. It needs no native libraries and works on all platforms");
+	}
+
+	@Override
+	public String type() {
+		return "java";
+	}
+
+}
@@ -21,14 +21,19 @@
  */
 package kodkod.solvers;
 
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 
+import org.sat4j.core.VecInt;
 import org.sat4j.specs.ContradictionException;
 import org.sat4j.specs.ISolver;
 import org.sat4j.specs.IVecInt;
 import org.sat4j.specs.IteratorInt;
 
-import kodkod.engine.satlab.SATSolver;
+import kodkod.engine.satlab.AssumptionSATSolver;
+import kodkod.engine.satlab.ClauseBuffer;
+import kodkod.engine.satlab.InterruptibleSATSolver;
+import kodkod.engine.satlab.SATAbortedException;
 
 /**
  * A wrapper class that provides
@@ -37,8 +42,9 @@ import kodkod.engine.satlab.SATSolver;
  * 
  * @author Emina Torlak
  */
-public final class SAT4J implements SATSolver {
-	private ISolver solver;
+public final class SAT4J implements AssumptionSATSolver, InterruptibleSATSolver {
+	private volatile ISolver solver;
+	private volatile boolean interrupted;
 	private final ReadOnlyIVecInt wrapper;
 	private Boolean sat; 
 	private int vars, clauses;
@@ -108,20 +114,106 @@ public final class SAT4J implements SATSolver {
 		return false;
 	}
 
+	/**
+	 * {@inheritDoc} The literals are read in place from the buffer.
+	 * @see kodkod.engine.satlab.SATSolver#addClauses(kodkod.engine.satlab.ClauseBuffer)
+	 */
+	public boolean addClauses(ClauseBuffer buffer) {
+		final int[] literals = buffer.literals();
+		boolean changed = false;
+		for(int i = 0, size = buffer.size(); i < size && !Boolean.FALSE.equals(sat); i++) {
+			try {
+				clauses++;
+				solver.addClause(wrapper.wrap(literals, buffer.start(i), buffer.end(i)));
+				changed = true;
+			} catch (ContradictionException e) {
+				sat = Boolean.FALSE;
+			}
+		}
+		return changed;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see kodkod.engine.satlab.SATSolver#solve()
 	 */
 	public boolean solve() {
 		try {
+			interrupted = false;
 			if (!Boolean.FALSE.equals(sat))
 				sat = Boolean.valueOf(solver.isSatisfiable());
 			return sat;
 		} catch (org.sat4j.specs.TimeoutException e) {
-			throw new RuntimeException("timed out");
+			throw timedOut();
+		} catch (NullPointerException e) {
+			// an interrupt discards the timer that SAT4J cancels when the search ends
+			if (interrupted)
+				throw timedOut();
+			throw e;
+		} 
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.AssumptionSATSolver#solve(int[])
+	 */
+	public boolean solve(int[] assumptions) {
+		try {
+			interrupted = false;
+			if (Boolean.FALSE.equals(sat))
+				return false;
+			// an unsat outcome only holds under these assumptions, so it is not recorded
+			sat = solver.isSatisfiable(new VecInt(assumptions)) ? Boolean.TRUE : null;
+			return sat != null;
+		} catch (org.sat4j.specs.TimeoutException e) {
+			throw timedOut();
+		} catch (NullPointerException e) {
+			// an interrupt discards the timer that SAT4J cancels when the search ends
+			if (interrupted)
+				throw timedOut();
+			throw e;
 		} 
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.AssumptionSATSolver#failedAssumptions()
+	 */
+	public int[] failedAssumptions() {
+		if (Boolean.FALSE.equals(sat))
+			return new int[0];
+		final IVecInt core = solver.unsatExplanation();
+		if (core == null)
+			return null;
+		final int[] failed = new int[core.size()];
+		for (int i = 0; i < failed.length; i++)
+			failed[i] = core.get(i);
+		return failed;
+	}
+
+	/**
+	 * Clears the outcome of the last call to solve, which ran out of time, and
+	 * returns the exception that reports it.
+	 */
+	private RuntimeException timedOut() {
+		sat = null;
+		if (interrupted)
+			return new SATAbortedException("interrupted");
+		return new RuntimeException("timed out");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.InterruptibleSATSolver#interrupt()
+	 */
+	public void interrupt() {
+		final ISolver s = solver;
+		if (s != null) {
+			interrupted = true;
+			s.expireTimeout();
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see kodkod.engine.satlab.SATSolver#valueOf(int)
@@ -143,92 +235,95 @@ public final class SAT4J implements SATSolver {
 	}
 	
 	/**
-	 * A wrapper for an int array that provides
-	 * read-only access to the array via the IVecInt interface. 
+	 * A wrapper for a range of an int array that provides
+	 * read-only access to the range via the IVecInt interface. 
 	 * 
 	 * @author Emina Torlak
 	 */
 	private static final class ReadOnlyIVecInt implements IVecInt {
 		private static final long serialVersionUID = -7689441271777278043L;
 		private int[] vec;
+		private int from, size;
 		
 		/**
 		 * Sets this.vec to the given vector
 		 * and returns this.
 		 */
 		IVecInt wrap(int[] vec) {
+			return wrap(vec, 0, vec.length);
+		}
+		
+		/**
+		 * Sets this.vec to the range [from..to) of
+		 * the given vector and returns this.
+		 */
+		IVecInt wrap(int[] vec, int from, int to) {
 			this.vec = vec;
+			this.from = from;
+			this.size = to - from;
 			return this;
 		}
 		
-		public int size() 				{ return vec.length; }
+		public int size() 				{ return size; }
 		public boolean isEmpty() 		{ return size() == 0; }
-		public int unsafeGet(int arg0)	{ return vec[arg0]; }
-		public int last() 				{ return vec[vec.length - 1]; }
-		public int[] toArray() 			{ return vec; }
+		public int unsafeGet(int arg0)	{ return vec[from + arg0]; }
+		public int last() 				{ return vec[from + size - 1]; }
+		public int[] toArray() 			{ return from == 0 && size == vec.length ? vec : Arrays.copyOfRange(vec, from, from + size); }
 
 		public int get(int arg0) {
-			if (arg0 < 0 || arg0 >= vec.length)
+			if (arg0 < 0 || arg0 >= size)
 				throw new IndexOutOfBoundsException("arg0: " + arg0);
-			return vec[arg0];
+			return vec[from + arg0];
 		}
 
 		public boolean contains(int arg0) {
-			final int[] workArray = vec; // faster access
-			for(int i : workArray) {
-				if (i==arg0) return true;
-			}
-			return false;
+			return indexOf(arg0) >= 0;
 		}
 
 		public void copyTo(IVecInt arg0) {
 			int argLength = arg0.size();
 			final int[] workArray = vec; // faster access
-			arg0.ensure(argLength + workArray.length);
-			for(int i : workArray) {
-				arg0.set(argLength++, i);
+			arg0.ensure(argLength + size);
+			for(int i = from, n = from + size; i < n; i++) {
+				arg0.set(argLength++, workArray[i]);
 			}
 		}
 
 		public void copyTo(int[] arg0) {
-			assert arg0.length >= vec.length;
-			System.arraycopy(vec,0, arg0, 0, vec.length);
+			assert arg0.length >= size;
+			System.arraycopy(vec, from, arg0, 0, size);
 		}
 
 		public IteratorInt iterator() {
 			return new IteratorInt() {
 				int cursor = 0;
 				public boolean hasNext() {
-					return cursor < vec.length;
+					return cursor < size;
 				}
 				public int next() {
 					if (!hasNext()) throw new NoSuchElementException();
-					return vec[cursor++];
+					return vec[from + cursor++];
 				}
 			};
 		}
 
 		public int containsAt(int e) {
-			final int[] workArray = vec; // faster access
-			for(int n=workArray.length, i=0; i<n; i++) 
-				if (workArray[i]==e) 
-					return i;
-			return -1;
+			return indexOf(e);
 		}
 
 		public int containsAt(int e, int from) {
 			final int[] workArray = vec; // faster access
-			if (from<workArray.length) 
-				for(int n=workArray.length, i=from+1; i<n; i++) 
-					if (workArray[i]==e) 
+			if (from<size) 
+				for(int i=from+1; i<size; i++) 
+					if (workArray[this.from + i]==e) 
 						return i;
 			return -1;
 		}
 
 		public int indexOf(int e) {
 			final int[] workArray = vec; // faster access
-			for (int i = 0, n = workArray.length; i < n; i++) {
-				if (workArray[i] == e)
+			for (int i = 0; i < size; i++) {
+				if (workArray[from + i] == e)
 					return i;
 			}
 			return -1;
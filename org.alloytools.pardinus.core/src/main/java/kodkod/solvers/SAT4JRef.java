@@ -19,6 +19,10 @@ public class SAT4JRef extends SATFactory {
 	public boolean incremental() {
 		return true;
 	}
+	@Override
+	public boolean assumptions() {
+		return true;
+	}
 
 	@Override
 	public Optional<String> getDescription() {
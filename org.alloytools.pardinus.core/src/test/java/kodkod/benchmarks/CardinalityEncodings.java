@@ -0,0 +1,151 @@
+/*
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import kodkod.ast.Formula;
+import kodkod.ast.IntConstant;
+import kodkod.ast.Relation;
+import kodkod.ast.Variable;
+import kodkod.engine.Solution;
+import kodkod.engine.Solver;
+import kodkod.engine.Statistics;
+import kodkod.engine.config.Options.CardinalityEncoding;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.Universe;
+
+/**
+ * Compares the {@link CardinalityEncoding cardinality encodings} on problems
+ * that compare cardinalities with constants. For every problem and encoding, it
+ * reports the number of gates (variables that are not primary), the number of
+ * clauses, and the translation and solving times. ADDER is the binary adder
+ * encoding that the others replace.
+ */
+public final class CardinalityEncodings {
+
+	private static void usage() {
+		System.out.println("Usage: java kodkod.benchmarks.CardinalityEncodings [scope]");
+		System.exit(1);
+	}
+
+	private final Relation a = Relation.unary("A"), b = Relation.unary("B"), r = Relation.binary("r");
+
+	/**
+	 * Returns bounds that map A to n atoms, B to m atoms and r to A->B, with a
+	 * bitwidth large enough to count the tuples of r.
+	 */
+	private Bounds bounds(int n, int m) {
+		final List<String> atoms = new ArrayList<String>(n + m);
+		for (int i = 0; i < n; i++)
+			atoms.add("A" + i);
+		for (int i = 0; i < m; i++)
+			atoms.add("B" + i);
+		final Universe u = new Universe(atoms);
+		final TupleFactory f = u.factory();
+		final Bounds bounds = new Bounds(u);
+		bounds.boundExactly(a, f.range(f.tuple("A0"), f.tuple("A" + (n - 1))));
+		bounds.boundExactly(b, f.range(f.tuple("B0"), f.tuple("B" + (m - 1))));
+		bounds.bound(r, bounds.upperBound(a).product(bounds.upperBound(b)));
+		return bounds;
+	}
+
+	/**
+	 * Returns the bitwidth needed to represent the number of tuples of r in the
+	 * given bounds.
+	 */
+	private int bitwidth(Bounds bounds) {
+		return 33 - Integer.numberOfLeadingZeros(bounds.upperBound(r).size());
+	}
+
+	/**
+	 * Returns #r = k: a single cardinality over all the tuples of r.
+	 */
+	private Formula total(int k) {
+		return r.count().eq(IntConstant.constant(k));
+	}
+
+	/**
+	 * Returns the constraints of a k-regular bipartite graph: every atom of A and
+	 * every atom of B has exactly k neighbours.
+	 */
+	private Formula regular(int k) {
+		final Variable x = Variable.unary("x"), y = Variable.unary("y");
+		return x.join(r).count().eq(IntConstant.constant(k)).forAll(x.oneOf(a))
+				.and(r.join(y).count().eq(IntConstant.constant(k)).forAll(y.oneOf(b)));
+	}
+
+	/**
+	 * Returns the pigeonhole principle stated with cardinalities: every pigeon in
+	 * A has at least one hole, and every hole in B at most one pigeon.
+	 */
+	private Formula pigeonhole() {
+		final Variable x = Variable.unary("x"), y = Variable.unary("y");
+		return x.join(r).count().gte(IntConstant.constant(1)).forAll(x.oneOf(a))
+				.and(r.join(y).count().lte(IntConstant.constant(1)).forAll(y.oneOf(b)));
+	}
+
+	/**
+	 * Solves the given problem with the given encoding and prints its statistics.
+	 */
+	private void run(String name, Formula formula, Bounds bounds, CardinalityEncoding encoding) {
+		final Solver solver = new Solver();
+		solver.options().setSolver(SATFactory.DEFAULT);
+		solver.options().setBitwidth(bitwidth(bounds));
+		solver.options().setCardinalityEncoding(encoding);
+		final Solution sol = solver.solve(formula, bounds);
+		final Statistics stats = sol.stats();
+		System.out.println(String.format("%-12s %-15s %-26s %9d %9d %8d %8d", name, encoding, sol.outcome(),
+				stats.variables() - stats.primaryVariables(), stats.clauses(), stats.translationTime(),
+				stats.solvingTime()));
+	}
+
+	/**
+	 * Usage: java kodkod.benchmarks.CardinalityEncodings [scope]
+	 */
+	public static void main(String[] args) {
+		int scope = 8;
+		if (args.length > 0) {
+			try {
+				scope = Integer.parseInt(args[0]);
+			} catch (NumberFormatException e) {
+				usage();
+			}
+		}
+		if (scope < 2)
+			usage();
+
+		final CardinalityEncodings problems = new CardinalityEncodings();
+		System.out.println(String.format("%-12s %-15s %-26s %9s %9s %8s %8s", "problem", "encoding", "outcome",
+				"gates", "clauses", "trans ms", "solve ms"));
+		for (CardinalityEncoding encoding : CardinalityEncoding.values()) {
+			final Bounds square = problems.bounds(scope, scope);
+			problems.run("Total", problems.total(scope * scope / 3), square, encoding);
+			problems.run("Regular", problems.regular(scope / 2), square, encoding);
+			problems.run("Pigeonhole", problems.pigeonhole(), problems.bounds(scope + 1, scope), encoding);
+		}
+	}
+}
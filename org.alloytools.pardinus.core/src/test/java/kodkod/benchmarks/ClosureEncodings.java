@@ -0,0 +1,97 @@
+/*
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.benchmarks;
+
+import kodkod.ast.Formula;
+import kodkod.engine.Solution;
+import kodkod.engine.Solver;
+import kodkod.engine.Statistics;
+import kodkod.engine.config.Options.ClosureEncoding;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.examples.alloy.Dijkstra;
+import kodkod.examples.alloy.FileSystem;
+import kodkod.examples.alloy.RingElection;
+import kodkod.examples.alloy.ToyFilesystem;
+import kodkod.examples.alloy.Trees;
+import kodkod.instance.Bounds;
+
+/**
+ * Compares the {@link ClosureEncoding closure encodings} on the bundled
+ * examples that use transitive closure. For every example and encoding, it
+ * reports the number of gates (variables that are not primary), the number of
+ * clauses, and the translation and solving times.
+ */
+public final class ClosureEncodings {
+
+	private static void usage() {
+		System.out.println("Usage: java kodkod.benchmarks.ClosureEncodings [scope]");
+		System.exit(1);
+	}
+
+	/**
+	 * Solves the given problem with the given encoding and prints its statistics.
+	 */
+	private static void run(String name, Formula formula, Bounds bounds, ClosureEncoding encoding) {
+		final Solver solver = new Solver();
+		solver.options().setSolver(SATFactory.DEFAULT);
+		solver.options().setClosureEncoding(encoding);
+		final Solution sol = solver.solve(formula, bounds);
+		final Statistics stats = sol.stats();
+		System.out.println(String.format("%-14s %-9s %-26s %9d %9d %8d %8d", name, encoding, sol.outcome(),
+				stats.variables() - stats.primaryVariables(), stats.clauses(), stats.translationTime(),
+				stats.solvingTime()));
+	}
+
+	/**
+	 * Usage: java kodkod.benchmarks.ClosureEncodings [scope]
+	 */
+	public static void main(String[] args) {
+		int scope = 5;
+		if (args.length > 0) {
+			try {
+				scope = Integer.parseInt(args[0]);
+			} catch (NumberFormatException e) {
+				usage();
+			}
+		}
+		if (scope < 1)
+			usage();
+
+		final Trees trees = new Trees();
+		final FileSystem fs = new FileSystem();
+		final RingElection ring = new RingElection();
+		final Dijkstra dijkstra = new Dijkstra();
+		final ToyFilesystem toy = new ToyFilesystem();
+
+		System.out.println(String.format("%-14s %-9s %-26s %9s %9s %8s %8s", "problem", "encoding", "outcome", "gates",
+				"clauses", "trans ms", "solve ms"));
+		for (ClosureEncoding encoding : ClosureEncoding.values()) {
+			run("Trees", trees.declsAndFacts().and(trees.statement1()).and(trees.statement2().not()),
+					trees.bounds(scope), encoding);
+			run("FileSystem", fs.checkNoDirAliases(), fs.bounds(scope), encoding);
+			run("RingElection", ring.checkAtMostOneElected(), ring.bounds(scope, scope * 2), encoding);
+			run("Dijkstra", dijkstra.checkDijkstraPreventsDeadlocks(), dijkstra.bounds(scope), encoding);
+			run("ToyFilesystem", toy.constraints(), toy.bounds(), encoding);
+		}
+	}
+}
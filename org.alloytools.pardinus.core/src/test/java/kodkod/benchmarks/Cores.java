@@ -0,0 +1,155 @@
+/*
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import kodkod.ast.Formula;
+import kodkod.engine.Proof;
+import kodkod.engine.Solution;
+import kodkod.engine.Solver;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.engine.ucore.ParallelRCEStrategy;
+import kodkod.engine.ucore.RCEStrategy;
+import kodkod.examples.alloy.Dijkstra;
+import kodkod.examples.alloy.Lists;
+import kodkod.examples.alloy.RingElection;
+import kodkod.examples.alloy.Trees;
+import kodkod.instance.Bounds;
+import kodkod.solvers.CDCLProverRef;
+import kodkod.solvers.CDCLRef;
+import kodkod.solvers.SAT4JRef;
+
+/**
+ * Compares unsatisfiable core extraction from a resolution trace, with
+ * {@link CDCLProverRef} and the {@link RCEStrategy} or the
+ * {@link ParallelRCEStrategy}, with core extraction from
+ * the failed assumptions of an incremental solver, with {@link CDCLRef} and
+ * {@link SAT4JRef}. For every unsatisfiable example and solver, it reports the
+ * number of top-level formulas in the initial and in the minimal core, the
+ * time spent solving and minimizing, and the peak heap. The minimal cores are
+ * solved again, over the bounds of the translation, to check that they are unsatisfiable.
+ */
+public final class Cores {
+
+	private static void usage() {
+		System.out.println("Usage: java kodkod.benchmarks.Cores [scope] [threads]");
+		System.exit(1);
+	}
+
+	private static long peakHeap() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP)
+				peak += pool.getPeakUsage().getUsed();
+		}
+		return peak;
+	}
+
+	private static void resetPeakHeap() {
+		System.gc();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			pool.resetPeakUsage();
+	}
+
+	/**
+	 * Solves the given unsatisfiable problem with the given solver, minimizes
+	 * its core, with the parallel strategy on the given number of threads if
+	 * it is positive, and prints the sizes of the initial and minimal cores.
+	 */
+	private static void run(String name, Formula formula, Bounds bounds, SATFactory factory, int threads) {
+		final Solver solver = new Solver();
+		solver.options().setSolver(factory);
+		solver.options().setLogTranslation(1);
+		solver.options().setAssumptionCores(!factory.prover());
+		resetPeakHeap();
+		final Solution sol = solver.solve(formula, bounds);
+		final Proof proof = sol.proof();
+		if (proof == null) {
+			System.out.println(String.format("%-16s %-12s %-24s", name, label(factory, threads), sol.outcome()));
+			return;
+		}
+		final int initial = proof.highLevelCore().size();
+		final long start = System.currentTimeMillis();
+		if (!factory.prover())
+			proof.minimize(null);
+		else if (threads > 0)
+			proof.minimize(new ParallelRCEStrategy(proof.log(), threads));
+		else
+			proof.minimize(new RCEStrategy(proof.log()));
+		final long minimizing = System.currentTimeMillis() - start;
+		final int minimal = proof.highLevelCore().size();
+		final long peak = peakHeap();
+
+		final Solver checker = new Solver();
+		checker.options().setSolver(SAT4JRef.INSTANCE);
+		if (checker.solve(Formula.and(proof.highLevelCore().keySet()), proof.log().bounds()).sat())
+			throw new AssertionError("Satisfiable core for " + name + " with " + label(factory, threads));
+
+		System.out.println(String.format("%-16s %-12s %8d %8d %10d %10d %8d", name, label(factory, threads), initial, minimal,
+				sol.stats().solvingTime(), minimizing, peak >> 20));
+	}
+
+	private static String label(SATFactory factory, int threads) {
+		return threads > 0 ? factory.id() + "/" + threads : factory.id();
+	}
+
+	private static void run(String name, Formula formula, Bounds bounds, int threads) {
+		run(name, formula, bounds, CDCLProverRef.INSTANCE, 0);
+		run(name, formula, bounds, CDCLProverRef.INSTANCE, threads);
+		run(name, formula, bounds, CDCLRef.INSTANCE, 0);
+		run(name, formula, bounds, SAT4JRef.INSTANCE, 0);
+	}
+
+	/**
+	 * Usage: java kodkod.benchmarks.Cores [scope] [threads]
+	 */
+	public static void main(String[] args) {
+		int scope = 5, threads = Runtime.getRuntime().availableProcessors();
+		try {
+			if (args.length > 0)
+				scope = Integer.parseInt(args[0]);
+			if (args.length > 1)
+				threads = Integer.parseInt(args[1]);
+		} catch (NumberFormatException e) {
+			usage();
+		}
+		if (scope < 1 || threads < 1)
+			usage();
+
+		System.out.println(String.format("%-16s %-12s %8s %8s %10s %10s %8s", "problem", "solver", "initial", "minimal",
+				"solve ms", "minimize ms", "heap MB"));
+		final Trees trees = new Trees();
+		run("Trees", trees.checkEquivOfTreeDefns(), trees.bounds(scope), threads);
+		final Lists lists = new Lists();
+		run("Lists.empties", lists.checkEmpties(), lists.bounds(scope), threads);
+		run("Lists.reflexive", lists.checkReflexive(), lists.bounds(scope), threads);
+		run("Lists.symmetric", lists.checkSymmetric(), lists.bounds(scope), threads);
+		final RingElection ring = new RingElection();
+		run("RingElection", ring.checkAtMostOneElected(), ring.bounds(scope, scope * 2), threads);
+		final Dijkstra dijkstra = new Dijkstra();
+		run("Dijkstra", dijkstra.checkDijkstraPreventsDeadlocks(), dijkstra.bounds(scope), threads);
+	}
+}
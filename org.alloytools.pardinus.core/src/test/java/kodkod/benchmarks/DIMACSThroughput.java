@@ -0,0 +1,205 @@
+/*
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.Random;
+
+import kodkod.engine.satlab.DIMACSModelReader;
+import kodkod.engine.satlab.DIMACSWriter;
+
+/**
+ * Compares the throughput of the DIMACS pipeline used by
+ * {@link kodkod.engine.satlab.ExternalSolver} against the previous one, which
+ * formatted clauses into a string buffer flushed through a random access file
+ * and parsed the solver output line by line.
+ */
+public final class DIMACSThroughput {
+
+	private static void usage() {
+		System.out.println("Usage: java kodkod.benchmarks.DIMACSThroughput [# variables] [# clauses] [# runs]");
+		System.exit(1);
+	}
+
+	/**
+	 * Writes the given clauses as the previous ExternalSolver did.
+	 */
+	private static long writeLegacy(File file, int vars, int[][] clauses) throws IOException {
+		final int capacity = 8192;
+		try (RandomAccessFile cnf = new RandomAccessFile(file, "rw")) {
+			cnf.setLength(0);
+			final StringBuilder buffer = new StringBuilder();
+			for (int i = String.valueOf(Integer.MAX_VALUE).length() * 2 + 8; i > 0; i--)
+				buffer.append(" ");
+			buffer.append("\n");
+			for (int[] lits : clauses) {
+				if (buffer.length() > capacity) {
+					cnf.writeBytes(buffer.toString());
+					buffer.setLength(0);
+				}
+				for (int lit : lits) {
+					buffer.append(lit);
+					buffer.append(" ");
+				}
+				buffer.append("0\n");
+			}
+			cnf.writeBytes(buffer.toString());
+			cnf.seek(0);
+			cnf.writeBytes("p cnf " + vars + " " + clauses.length);
+			return cnf.length();
+		}
+	}
+
+	/**
+	 * Writes the given clauses with a {@link DIMACSWriter}.
+	 */
+	private static long writeDirect(File file, int vars, int[][] clauses) throws IOException {
+		final DIMACSWriter cnf = new DIMACSWriter(file);
+		for (int[] lits : clauses)
+			cnf.addClause(lits);
+		final long size = cnf.size();
+		cnf.close(vars);
+		return size;
+	}
+
+	/**
+	 * Reads a model as the previous ExternalSolver did.
+	 */
+	private static boolean readLegacy(byte[] output, BitSet solution) throws IOException {
+		final BufferedReader out = new BufferedReader(
+				new InputStreamReader(new ByteArrayInputStream(output), "ISO-8859-1"));
+		Boolean sat = null;
+		String line;
+		while ((line = out.readLine()) != null) {
+			final String[] tokens = line.split("\\s+");
+			if (tokens[0].compareToIgnoreCase("s") == 0) {
+				sat = tokens[1].compareToIgnoreCase("SATISFIABLE") == 0;
+			} else if (tokens[0].compareToIgnoreCase("v") == 0) {
+				for (int i = 1; i < tokens.length; i++) {
+					final int lit = Integer.parseInt(tokens[i]);
+					if (lit != 0)
+						solution.set(StrictMath.abs(lit) - 1, lit > 0);
+				}
+			}
+		}
+		return sat;
+	}
+
+	/**
+	 * Reads a model with a {@link DIMACSModelReader}.
+	 */
+	private static boolean readDirect(byte[] output, BitSet solution, int vars) throws IOException {
+		return new DIMACSModelReader(new ByteArrayInputStream(output), "benchmark").read(solution, vars);
+	}
+
+	/**
+	 * Returns a random 3-cnf formula with the given number of variables and
+	 * clauses.
+	 */
+	private static int[][] clauses(int vars, int clauses, Random random) {
+		final int[][] cnf = new int[clauses][3];
+		for (int[] lits : cnf)
+			for (int i = 0; i < lits.length; i++)
+				lits[i] = (random.nextInt(vars) + 1) * (random.nextBoolean() ? 1 : -1);
+		return cnf;
+	}
+
+	/**
+	 * Returns the output of a solver reporting a random model for the given
+	 * number of variables, with ten literals per line.
+	 */
+	private static byte[] model(int vars, Random random) {
+		final StringBuilder out = new StringBuilder("c random model\ns SATISFIABLE\n");
+		for (int i = 1; i <= vars; i++) {
+			if (i % 10 == 1)
+				out.append(i > 1 ? "\nv" : "v");
+			out.append(' ').append(random.nextBoolean() ? i : -i);
+		}
+		out.append("\nv 0\n");
+		return out.toString().getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Usage: java kodkod.benchmarks.DIMACSThroughput [# variables] [# clauses] [#
+	 * runs]
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3)
+			usage();
+		final int vars, size, runs;
+		try {
+			vars = Integer.parseInt(args[0]);
+			size = Integer.parseInt(args[1]);
+			runs = Integer.parseInt(args[2]);
+		} catch (NumberFormatException e) {
+			usage();
+			return;
+		}
+		if (vars < 1 || size < 1 || runs < 1)
+			usage();
+
+		final Random random = new Random(2020);
+		final int[][] cnf = clauses(vars, size, random);
+		final byte[] output = model(vars, random);
+		final File file = File.createTempFile("kodkod-benchmark", ".cnf");
+		file.deleteOnExit();
+		try {
+			for (int run = 0; run < runs; run++) {
+				long start = System.nanoTime();
+				final long bytes = writeLegacy(file, vars, cnf);
+				final long legacy = System.nanoTime() - start;
+				start = System.nanoTime();
+				writeDirect(file, vars, cnf);
+				final long direct = System.nanoTime() - start;
+				System.out.println(String.format("write run %d: legacy %d ms (%.1f MB/s), direct %d ms (%.1f MB/s)", run,
+						legacy / 1000000, throughput(bytes, legacy), direct / 1000000, throughput(bytes, direct)));
+
+				final BitSet legacyModel = new BitSet(), directModel = new BitSet();
+				start = System.nanoTime();
+				readLegacy(output, legacyModel);
+				final long legacyRead = System.nanoTime() - start;
+				start = System.nanoTime();
+				readDirect(output, directModel, vars);
+				final long directRead = System.nanoTime() - start;
+				if (!legacyModel.equals(directModel))
+					throw new IllegalStateException("models differ");
+				System.out.println(String.format("read run %d: legacy %d ms (%.1f MB/s), direct %d ms (%.1f MB/s)", run,
+						legacyRead / 1000000, throughput(output.length, legacyRead), directRead / 1000000,
+						throughput(output.length, directRead)));
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static double throughput(long bytes, long nanos) {
+		return (bytes / (1024.0 * 1024.0)) / (nanos / 1e9);
+	}
+}
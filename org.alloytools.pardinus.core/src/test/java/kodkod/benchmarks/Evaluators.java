@@ -0,0 +1,186 @@
+/*
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.benchmarks;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import kodkod.ast.Expression;
+import kodkod.ast.Formula;
+import kodkod.ast.IntExpression;
+import kodkod.ast.Node;
+import kodkod.ast.visitor.AbstractVoidVisitor;
+import kodkod.engine.Solution;
+import kodkod.engine.Solver;
+import kodkod.engine.config.Options;
+import kodkod.engine.fol2sat.ConcreteInterpreter;
+import kodkod.engine.fol2sat.Translator;
+import kodkod.engine.fol2sat.UnboundLeafException;
+import kodkod.examples.alloy.Dijkstra;
+import kodkod.examples.alloy.FileSystem;
+import kodkod.examples.alloy.Lists;
+import kodkod.examples.alloy.RingElection;
+import kodkod.instance.Bounds;
+import kodkod.instance.Instance;
+
+/**
+ * Compares the {@link ConcreteInterpreter concrete interpreter} with the 
+ * evaluation of boolean circuits by the {@link Translator} on instances of the 
+ * bundled examples.  Every formula, expression and integer expression of a 
+ * problem that has no free variables is evaluated against an instance of the 
+ * problem.  For every example, it reports the number of evaluated nodes and the
+ * average time taken to evaluate all of them by the translator, by a new 
+ * interpreter, and by an interpreter that memoized the values of a previous run.
+ */
+public final class Evaluators {
+
+	private static void usage() {
+		System.out.println("Usage: java kodkod.benchmarks.Evaluators [scope] [repetitions]");
+		System.exit(1);
+	}
+
+	/**
+	 * Returns the formulas, expressions and integer expressions in the given formula.
+	 */
+	private static List<Node> nodes(Formula formula) {
+		final List<Node> nodes = new ArrayList<Node>();
+		formula.accept(new AbstractVoidVisitor() {
+			final Map<Node, Node> visited = new IdentityHashMap<Node, Node>();
+			protected boolean visited(Node n) {
+				if (visited.put(n, n) != null) return true;
+				if (n instanceof Formula || n instanceof Expression || n instanceof IntExpression)
+					nodes.add(n);
+				return false;
+			}
+		});
+		return nodes;
+	}
+	
+	/**
+	 * Evaluates the given node with the translator.
+	 */
+	private static Object circuit(Node node, Instance instance, Options options) {
+		if (node instanceof Formula) 
+			return Translator.evaluate((Formula) node, instance, options).booleanValue();
+		else if (node instanceof Expression) 
+			return instance.universe().factory().setOf(((Expression) node).arity(), 
+					Translator.evaluate((Expression) node, instance, options).denseIndices());
+		else 
+			return Translator.evaluate((IntExpression) node, instance, options).value();
+	}
+	
+	/**
+	 * Evaluates the given node with the interpreter.
+	 */
+	private static Object concrete(Node node, ConcreteInterpreter interpreter) {
+		if (node instanceof Formula) 
+			return interpreter.evaluate((Formula) node);
+		else if (node instanceof Expression) 
+			return interpreter.evaluate((Expression) node);
+		else 
+			return interpreter.evaluate((IntExpression) node);
+	}
+
+	/**
+	 * Solves the given problem and evaluates its closed nodes against the instance 
+	 * found, the given number of times after one warm-up run, and prints the 
+	 * average evaluation times.
+	 */
+	private static void run(String name, Formula formula, Bounds bounds, int repetitions) {
+		final Solver solver = new Solver();
+		final Solution sol = solver.solve(formula, bounds);
+		if (sol.instance() == null) {
+			System.out.println(String.format("%-16s %s", name, sol.outcome()));
+			return;
+		}
+		final Instance instance = sol.instance();
+		final Options options = solver.options();
+		
+		final List<Node> nodes = new ArrayList<Node>();
+		final List<Object> values = new ArrayList<Object>();
+		for (Node node : nodes(formula)) {
+			try {
+				values.add(circuit(node, instance, options));
+				nodes.add(node);
+			} catch (UnboundLeafException e) {
+				// the node has free variables
+			}
+		}
+		
+		long circuit = 0, concrete = 0, memoized = 0;
+		ConcreteInterpreter interpreter = null;
+		for (int i = 0; i <= repetitions; i++) {
+			long start = System.nanoTime();
+			for (Node node : nodes) 
+				circuit(node, instance, options);
+			long end = System.nanoTime();
+			if (i > 0) circuit += end - start;
+			
+			interpreter = new ConcreteInterpreter(instance, options);
+			start = System.nanoTime();
+			for (int j = 0; j < nodes.size(); j++) {
+				if (!concrete(nodes.get(j), interpreter).equals(values.get(j)))
+					throw new AssertionError("Different values for " + nodes.get(j));
+			}
+			end = System.nanoTime();
+			if (i > 0) concrete += end - start;
+			
+			start = System.nanoTime();
+			for (Node node : nodes) 
+				concrete(node, interpreter);
+			end = System.nanoTime();
+			if (i > 0) memoized += end - start;
+		}
+		System.out.println(String.format("%-16s %8d %12.2f %12.2f %12.2f", name, nodes.size(), 
+				circuit / 1e6 / repetitions, concrete / 1e6 / repetitions, memoized / 1e6 / repetitions));
+	}
+
+	/**
+	 * Usage: java kodkod.benchmarks.Evaluators [scope] [repetitions]
+	 */
+	public static void main(String[] args) {
+		int scope = 5, repetitions = 5;
+		try {
+			if (args.length > 0)
+				scope = Integer.parseInt(args[0]);
+			if (args.length > 1)
+				repetitions = Integer.parseInt(args[1]);
+		} catch (NumberFormatException e) {
+			usage();
+		}
+		if (scope < 1 || repetitions < 1)
+			usage();
+
+		System.out.println(String.format("%-16s %8s %12s %12s %12s", "problem", "nodes", "circuit ms", "concrete ms", "memoized ms"));
+		final FileSystem fs = new FileSystem();
+		run("FileSystem", fs.decls().and(fs.facts()), fs.bounds(scope), repetitions);
+		final Lists lists = new Lists();
+		run("Lists.show", lists.runShow(), lists.bounds(scope), repetitions);
+		final RingElection ring = new RingElection();
+		run("RingElection", ring.declarations().and(ring.traces()), ring.bounds(scope, scope * 2), repetitions);
+		final Dijkstra dijkstra = new Dijkstra();
+		run("Dijkstra", dijkstra.showDijkstra(), dijkstra.bounds(scope), repetitions);
+	}
+}
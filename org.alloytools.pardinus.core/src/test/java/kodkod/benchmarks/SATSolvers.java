@@ -0,0 +1,103 @@
+/*
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.benchmarks;
+
+import kodkod.ast.Formula;
+import kodkod.engine.Solution;
+import kodkod.engine.Solver;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.examples.alloy.Dijkstra;
+import kodkod.examples.alloy.FileSystem;
+import kodkod.examples.alloy.Lists;
+import kodkod.examples.alloy.RingElection;
+import kodkod.examples.alloy.Trees;
+import kodkod.instance.Bounds;
+import kodkod.solvers.CDCLRef;
+import kodkod.solvers.SAT4JRef;
+
+/**
+ * Compares the {@link CDCLRef pure Java CDCL solver} with {@link SAT4JRef SAT4J}
+ * on the bundled examples. For every example and solver, it reports the
+ * outcome and the average time spent in the SAT solver.
+ */
+public final class SATSolvers {
+
+	private static void usage() {
+		System.out.println("Usage: java kodkod.benchmarks.SATSolvers [scope] [repetitions]");
+		System.exit(1);
+	}
+
+	/**
+	 * Solves the given problem with the given solver the given number of times,
+	 * after one warm-up run, and prints the average solving time.
+	 */
+	private static void run(String name, Formula formula, Bounds bounds, SATFactory factory, int repetitions) {
+		final Solver solver = new Solver();
+		solver.options().setSolver(factory);
+		Solution sol = solver.solve(formula, bounds);
+		long time = 0;
+		for (int i = 0; i < repetitions; i++) {
+			sol = solver.solve(formula, bounds);
+			time += sol.stats().solvingTime();
+		}
+		System.out.println(String.format("%-16s %-8s %10d %-24s %10.1f", name, factory.id(),
+				sol.stats().clauses(), sol.outcome(), time / (double) repetitions));
+	}
+
+	private static void run(String name, Formula formula, Bounds bounds, int repetitions) {
+		run(name, formula, bounds, SAT4JRef.INSTANCE, repetitions);
+		run(name, formula, bounds, CDCLRef.INSTANCE, repetitions);
+	}
+
+	/**
+	 * Usage: java kodkod.benchmarks.SATSolvers [scope] [repetitions]
+	 */
+	public static void main(String[] args) {
+		int scope = 5, repetitions = 3;
+		try {
+			if (args.length > 0)
+				scope = Integer.parseInt(args[0]);
+			if (args.length > 1)
+				repetitions = Integer.parseInt(args[1]);
+		} catch (NumberFormatException e) {
+			usage();
+		}
+		if (scope < 1 || repetitions < 1)
+			usage();
+
+		System.out.println(String.format("%-16s %-8s %10s %-24s %10s", "problem", "solver", "clauses", "outcome", "ms"));
+		final Trees trees = new Trees();
+		run("Trees", trees.checkEquivOfTreeDefns(), trees.bounds(scope), repetitions);
+		final FileSystem fs = new FileSystem();
+		run("FileSystem", fs.checkNoDirAliases(), fs.bounds(scope), repetitions);
+		final Lists lists = new Lists();
+		run("Lists.empties", lists.checkEmpties(), lists.bounds(scope), repetitions);
+		run("Lists.reflexive", lists.checkReflexive(), lists.bounds(scope), repetitions);
+		run("Lists.symmetric", lists.checkSymmetric(), lists.bounds(scope), repetitions);
+		run("Lists.show", lists.runShow(), lists.bounds(scope), repetitions);
+		final RingElection ring = new RingElection();
+		run("RingElection", ring.checkAtMostOneElected(), ring.bounds(scope, scope * 2), repetitions);
+		final Dijkstra dijkstra = new Dijkstra();
+		run("Dijkstra", dijkstra.checkDijkstraPreventsDeadlocks(), dijkstra.bounds(scope), repetitions);
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ * Pardinus -- Copyright (c) 2013-present, Nuno Macedo, INESC TEC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.benchmarks;
+
+import java.util.Set;
+
+import kodkod.engine.fol2sat.SymmetryDetector;
+import kodkod.examples.alloy.Bigconfig;
+import kodkod.examples.alloy.Dijkstra;
+import kodkod.examples.alloy.FileSystem;
+import kodkod.examples.alloy.Hotel;
+import kodkod.examples.alloy.Lists;
+import kodkod.examples.alloy.Netconfig;
+import kodkod.examples.alloy.RingElection;
+import kodkod.examples.alloy.Toughnut;
+import kodkod.examples.alloy.Trees;
+import kodkod.instance.Bounds;
+import kodkod.util.ints.IntSet;
+
+/**
+ * Measures {@link SymmetryDetector#partition(Bounds) symmetry detection} on the
+ * bounds of the bundled examples. For every example, it reports the size of
+ * the universe, the number of symmetry classes, and the average time taken to
+ * partition the universe.
+ */
+public final class SymmetryDetection {
+
+	private static void usage() {
+		System.out.println("Usage: java kodkod.benchmarks.SymmetryDetection [scope] [repetitions]");
+		System.exit(1);
+	}
+
+	/**
+	 * Partitions the universe of the given bounds the given number of times, 
+	 * after as many warm-up runs, and prints the average time.
+	 */
+	private static void run(String name, Bounds bounds, int repetitions) {
+		Set<IntSet> parts = null;
+		for (int i = 0; i < repetitions; i++) {
+			parts = SymmetryDetector.partition(bounds);
+		}
+		final long start = System.nanoTime();
+		for (int i = 0; i < repetitions; i++) {
+			parts = SymmetryDetector.partition(bounds);
+		}
+		final long time = (System.nanoTime() - start) / repetitions;
+		System.out.println(String.format("%-14s %8d %8d %12.3f", name, bounds.universe().size(), parts.size(),
+				time / 1000000.0));
+	}
+
+	/**
+	 * Usage: java kodkod.benchmarks.SymmetryDetection [scope] [repetitions]
+	 */
+	public static void main(String[] args) {
+		int scope = 10, repetitions = 20;
+		try {
+			if (args.length > 0)
+				scope = Integer.parseInt(args[0]);
+			if (args.length > 1)
+				repetitions = Integer.parseInt(args[1]);
+		} catch (NumberFormatException e) {
+			usage();
+		}
+		if (scope < 1 || repetitions < 1)
+			usage();
+
+		System.out.println(String.format("%-14s %8s %8s %12s", "problem", "atoms", "classes", "ms"));
+		run("Trees", new Trees().bounds(scope), repetitions);
+		run("FileSystem", new FileSystem().bounds(scope), repetitions);
+		run("RingElection", new RingElection().bounds(scope, scope * 2), repetitions);
+		run("Dijkstra", new Dijkstra().bounds(scope), repetitions);
+		run("Lists", new Lists().bounds(scope), repetitions);
+		run("Toughnut", new Toughnut().bounds(scope), repetitions);
+		run("Hotel", new Hotel().bounds(scope), repetitions);
+		run("Netconfig", new Netconfig().bounds(scope, scope / 2 + 1, scope, scope * 2), repetitions);
+		run("Bigconfig", new Bigconfig(scope).bounds(scope / 2 + 1, scope * 2, scope * 4), repetitions);
+	}
+}
@@ -24,6 +24,7 @@ package org.alloytools.solvers.natv.minisatprover;
 import java.util.Iterator;
 
 import kodkod.engine.satlab.Clause;
+import kodkod.engine.satlab.LazyTrace;
 import kodkod.engine.satlab.NativeSolver;
 import kodkod.engine.satlab.ReductionStrategy;
 import kodkod.engine.satlab.ResolutionTrace;